@@ -22,6 +22,7 @@
 package bluej.classmgr;
 
 import bluej.utility.Debug;
+import bluej.views.View;
 import java.io.File;
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -29,6 +30,8 @@ import java.net.URL;
 import java.net.URLClassLoader;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * A Bluej Project ClassLoader that can be used to load or obtain information about classes loadable in a bluej project.
@@ -55,6 +58,10 @@ public final class BPClassLoader extends URLClassLoader
     private List javaMEcoreLibs;  // Java ME core libraries
     private List javaMEoptLibs;   // Java ME optional libraries  
     
+    // Views of the classes loaded by this loader. They are kept here, rather
+    // than in View, so that they can be collected along with the loader.
+    private final ConcurrentMap<Class<?>,View> views = new ConcurrentHashMap<Class<?>,View>();
+    
     /**
      * Constructructor.
      * @param parent the parent loader that is searched first to resolve classes.
@@ -196,6 +203,14 @@ public final class BPClassLoader extends URLClassLoader
         return "BPClassLoader path=" + getClassPathAsString();
     }
     
+    /**
+     * Get the views of classes loaded by this loader.
+     * @see bluej.views.View#getView(Class)
+     */
+    public ConcurrentMap<Class<?>,View> getViews() {
+        return views;
+    }
+    
     public void setJavaMEcoreLibs( List list ) { javaMEcoreLibs = list; }
     public void setJavaMEoptLibs ( List list ) { javaMEoptLibs  = list; }   
     
@@ -0,0 +1,625 @@
+/*
+ This file is part of the BlueJ program. 
+ Copyright (C) 1999-2009  Michael Kolling and John Rosenberg 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package bluej.classmgr;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The API signature of a compiled class, read from its class file: a hash
+ * of everything about the class which code in other classes can depend on,
+ * and the names of the classes it refers to.
+ * 
+ * <p>The hash covers the class's modifiers, supertypes and generic signature,
+ * and the modifiers, names, types, generic signatures, thrown exceptions and
+ * constant values of its non-private, non-synthetic fields and methods.
+ * (Package-private members are included, as they may be used by other
+ * classes in the same package.) Method bodies, private members and debug
+ * information do not affect it.
+ * 
+ * <p>A second hash covers what determines the initial values of the class's
+ * static fields: the code of its static initializer, and the constant
+ * values of all its fields.
+ */
+public class ClassSignature
+{
+    private static final int ACC_PRIVATE = 0x0002;
+    private static final int ACC_SUPER = 0x0020;
+    private static final int ACC_SYNTHETIC = 0x1000;
+    
+    // constant pool tags
+    private static final int CONSTANT_Utf8 = 1;
+    private static final int CONSTANT_Integer = 3;
+    private static final int CONSTANT_Float = 4;
+    private static final int CONSTANT_Long = 5;
+    private static final int CONSTANT_Double = 6;
+    private static final int CONSTANT_Class = 7;
+    private static final int CONSTANT_String = 8;
+    private static final int CONSTANT_NameAndType = 12;
+    private static final int CONSTANT_MethodHandle = 15;
+    private static final int CONSTANT_MethodType = 16;
+    private static final int CONSTANT_Dynamic = 17;
+    private static final int CONSTANT_InvokeDynamic = 18;
+    private static final int CONSTANT_Module = 19;
+    private static final int CONSTANT_Package = 20;
+    
+    private String hash;
+    private String staticInitHash;
+    private Set<String> references = new HashSet<String>();
+    private List<String> supertypes = new ArrayList<String>();
+    
+    // constant pool contents while reading
+    private int [] tags;
+    private Object [] values;
+    private int [] refs;
+    private int [] refs2;
+    private boolean usesBootstrapMethods;
+    
+    private ClassSignature()
+    {
+    }
+    
+    /**
+     * Read the signature of a class from its class file.
+     * 
+     * @throws IOException  if the file could not be read or is not a
+     *                      valid class file
+     */
+    public static ClassSignature read(File classFile)
+        throws IOException
+    {
+        InputStream in = new BufferedInputStream(new FileInputStream(classFile));
+        try {
+            ClassSignature sig = new ClassSignature();
+            sig.read(new DataInputStream(in));
+            return sig;
+        }
+        finally {
+            in.close();
+        }
+    }
+    
+    /**
+     * Get the signature hash, as a string of hex digits. Two versions of a
+     * class with the same hash are interchangeable as far as the code of
+     * other classes is concerned.
+     */
+    public String getHash()
+    {
+        return hash;
+    }
+    
+    /**
+     * Get the hash of what determines the initial values of the class's
+     * static fields, as a string of hex digits. If it is the same for two
+     * versions of a class, their static fields start with the same values.
+     */
+    public String getStaticInitHash()
+    {
+        return staticInitHash;
+    }
+    
+    /**
+     * Get the binary names of the direct superclass (if any) and
+     * superinterfaces of the class. The hash does not cover what the class
+     * inherits from them; code depending on the class's inherited members
+     * depends on their signatures as well.
+     */
+    public List<String> getSupertypes()
+    {
+        return supertypes;
+    }
+    
+    /**
+     * Get the binary names (using '.' as the package separator) of the
+     * classes referred to by the class, excluding itself. Array classes are
+     * reported as their element class.
+     */
+    public Set<String> getReferences()
+    {
+        return references;
+    }
+    
+    private void read(DataInputStream in)
+        throws IOException
+    {
+        if (in.readInt() != 0xCAFEBABE) {
+            throw new IOException("Not a class file");
+        }
+        in.readUnsignedShort(); // minor version
+        in.readUnsignedShort(); // major version
+        
+        readConstantPool(in);
+        
+        List<String> members = new ArrayList<String>();
+        
+        int access = in.readUnsignedShort() & ~ACC_SUPER;
+        String thisName = getClassName(in.readUnsignedShort());
+        int superIndex = in.readUnsignedShort();
+        String superName = superIndex == 0 ? "" : getClassName(superIndex);
+        
+        int interfaceCount = in.readUnsignedShort();
+        List<String> interfaces = new ArrayList<String>();
+        for (int i = 0; i < interfaceCount; i++) {
+            interfaces.add(getClassName(in.readUnsignedShort()));
+        }
+        Collections.sort(interfaces);
+        
+        if (superIndex != 0) {
+            supertypes.add(superName.replace('/', '.'));
+        }
+        for (int i = 0; i < interfaces.size(); i++) {
+            supertypes.add(interfaces.get(i).replace('/', '.'));
+        }
+        
+        String header = "class " + access + " " + thisName + " " + superName + " " + interfaces;
+        
+        List<String> staticInit = new ArrayList<String>();
+        readMembers(in, "field", members, staticInit);
+        readMembers(in, "method", members, staticInit);
+        
+        // class attributes: only the generic signature is of interest
+        int attrCount = in.readUnsignedShort();
+        for (int i = 0; i < attrCount; i++) {
+            String attrName = getUtf8(in.readUnsignedShort());
+            int length = in.readInt();
+            if (attrName.equals("Signature")) {
+                String signature = getUtf8(in.readUnsignedShort());
+                addDescriptorReferences(signature);
+                header += " " + signature;
+            }
+            else if (attrName.equals("BootstrapMethods") && usesBootstrapMethods) {
+                // The static initializer's dynamic call sites or constants
+                // (string concatenation, for instance) depend on these
+                int count = in.readUnsignedShort();
+                for (int j = 0; j < count; j++) {
+                    StringBuffer method = new StringBuffer("bootstrap " + j + " ");
+                    method.append(describeConstant(in.readUnsignedShort()));
+                    int argCount = in.readUnsignedShort();
+                    for (int k = 0; k < argCount; k++) {
+                        method.append(' ').append(describeConstant(in.readUnsignedShort()));
+                    }
+                    staticInit.add(method.toString());
+                }
+            }
+            else {
+                skipFully(in, length);
+            }
+        }
+        
+        Collections.sort(members);
+        members.add(0, header);
+        hash = digest(members);
+        Collections.sort(staticInit);
+        staticInitHash = digest(staticInit);
+        
+        references.remove(thisName.replace('/', '.'));
+        tags = null;
+        values = null;
+        refs = null;
+        refs2 = null;
+    }
+    
+    /**
+     * Read the constant pool, and collect the classes referred to in it.
+     */
+    private void readConstantPool(DataInputStream in)
+        throws IOException
+    {
+        int count = in.readUnsignedShort();
+        tags = new int[count];
+        values = new Object[count];
+        refs = new int[count];
+        refs2 = new int[count];
+        
+        List<Integer> descriptors = new ArrayList<Integer>();
+        
+        for (int i = 1; i < count; i++) {
+            int tag = in.readUnsignedByte();
+            tags[i] = tag;
+            switch (tag) {
+                case CONSTANT_Utf8:
+                    values[i] = in.readUTF();
+                    break;
+                case CONSTANT_Integer:
+                    values[i] = Integer.valueOf(in.readInt());
+                    break;
+                case CONSTANT_Float:
+                    values[i] = Float.valueOf(in.readFloat());
+                    break;
+                case CONSTANT_Long:
+                    values[i++] = Long.valueOf(in.readLong());
+                    break;
+                case CONSTANT_Double:
+                    values[i++] = Double.valueOf(in.readDouble());
+                    break;
+                case CONSTANT_Class:
+                case CONSTANT_String:
+                case CONSTANT_Module:
+                case CONSTANT_Package:
+                    refs[i] = in.readUnsignedShort();
+                    break;
+                case CONSTANT_MethodType:
+                    refs[i] = in.readUnsignedShort();
+                    descriptors.add(Integer.valueOf(refs[i]));
+                    break;
+                case CONSTANT_NameAndType:
+                    refs[i] = in.readUnsignedShort();
+                    refs2[i] = in.readUnsignedShort();
+                    descriptors.add(Integer.valueOf(refs2[i]));
+                    break;
+                case CONSTANT_MethodHandle:
+                    refs2[i] = in.readUnsignedByte();
+                    refs[i] = in.readUnsignedShort();
+                    break;
+                default:
+                    // field/method/interface method references and
+                    // (invoke)dynamic entries: two indexes
+                    if (tag < 9 || tag > 18) {
+                        throw new IOException("Bad constant pool tag: " + tag);
+                    }
+                    refs[i] = in.readUnsignedShort();
+                    refs2[i] = in.readUnsignedShort();
+            }
+        }
+        
+        for (int i = 1; i < count; i++) {
+            if (tags[i] == CONSTANT_Class) {
+                String name = getUtf8(refs[i]);
+                if (name.startsWith("[")) {
+                    addDescriptorReferences(name);
+                }
+                else {
+                    references.add(name.replace('/', '.'));
+                }
+            }
+        }
+        for (int i = 0; i < descriptors.size(); i++) {
+            addDescriptorReferences(getUtf8(descriptors.get(i).intValue()));
+        }
+    }
+    
+    /**
+     * Read the fields or methods of the class, adding a description of
+     * each non-private, non-synthetic one to the members list, and the
+     * constant values of fields and the code of the static initializer to
+     * the staticInit list.
+     */
+    private void readMembers(DataInputStream in, String kind, List<String> members,
+            List<String> staticInit)
+        throws IOException
+    {
+        int count = in.readUnsignedShort();
+        for (int i = 0; i < count; i++) {
+            int access = in.readUnsignedShort();
+            String name = getUtf8(in.readUnsignedShort());
+            String descriptor = getUtf8(in.readUnsignedShort());
+            addDescriptorReferences(descriptor);
+            
+            StringBuffer member = new StringBuffer();
+            member.append(kind).append(' ').append(access).append(' ');
+            member.append(name).append(' ').append(descriptor);
+            
+            int attrCount = in.readUnsignedShort();
+            for (int j = 0; j < attrCount; j++) {
+                String attrName = getUtf8(in.readUnsignedShort());
+                int length = in.readInt();
+                if (attrName.equals("Signature")) {
+                    String signature = getUtf8(in.readUnsignedShort());
+                    addDescriptorReferences(signature);
+                    member.append(" signature ").append(signature);
+                }
+                else if (attrName.equals("ConstantValue")) {
+                    String value = getConstant(in.readUnsignedShort());
+                    member.append(" value ").append(value);
+                    staticInit.add("value " + name + " " + descriptor + " " + value);
+                }
+                else if (attrName.equals("Code") && name.equals("<clinit>")) {
+                    staticInit.add("clinit " + readCode(in));
+                }
+                else if (attrName.equals("Exceptions")) {
+                    int exCount = in.readUnsignedShort();
+                    List<String> exceptions = new ArrayList<String>();
+                    for (int k = 0; k < exCount; k++) {
+                        exceptions.add(getClassName(in.readUnsignedShort()));
+                    }
+                    Collections.sort(exceptions);
+                    member.append(" throws ").append(exceptions);
+                }
+                else {
+                    skipFully(in, length);
+                }
+            }
+            
+            if ((access & (ACC_PRIVATE | ACC_SYNTHETIC)) == 0) {
+                members.add(member.toString());
+            }
+        }
+    }
+    
+    /**
+     * Read a Code attribute, and return a description of the code in which
+     * the constant pool entries used are shown by their contents rather
+     * than their indexes (which change whenever another part of the class
+     * changes). Debug information is not included.
+     */
+    private String readCode(DataInputStream in)
+        throws IOException
+    {
+        StringBuffer result = new StringBuffer();
+        result.append(in.readUnsignedShort()).append(' '); // max stack
+        result.append(in.readUnsignedShort()).append(' '); // max locals
+        
+        byte [] code = new byte[in.readInt()];
+        in.readFully(code);
+        int pc = 0;
+        while (pc < code.length) {
+            int opcode = code[pc] & 0xff;
+            int length = getInstructionLength(code, pc);
+            result.append(opcode);
+            if (opcode == 0x12) {
+                // ldc: a one-byte constant pool index
+                result.append('(').append(describeConstant(code[pc + 1] & 0xff)).append(')');
+            }
+            else if ((opcode >= 0x13 && opcode <= 0x14) || (opcode >= 0xb2 && opcode <= 0xbb)
+                    || opcode == 0xbd || opcode == 0xc0 || opcode == 0xc1 || opcode == 0xc5) {
+                // two-byte constant pool index, perhaps followed by operands
+                int index = ((code[pc + 1] & 0xff) << 8) | (code[pc + 2] & 0xff);
+                result.append('(').append(describeConstant(index)).append(')');
+                for (int i = 3; i < length; i++) {
+                    result.append(' ').append(code[pc + i]);
+                }
+            }
+            else {
+                for (int i = 1; i < length; i++) {
+                    result.append(' ').append(code[pc + i]);
+                }
+            }
+            result.append(';');
+            pc += length;
+        }
+        
+        int handlerCount = in.readUnsignedShort();
+        for (int i = 0; i < handlerCount; i++) {
+            result.append(" catch ").append(in.readUnsignedShort());
+            result.append(' ').append(in.readUnsignedShort());
+            result.append(' ').append(in.readUnsignedShort());
+            int catchType = in.readUnsignedShort();
+            result.append(' ').append(catchType == 0 ? "any" : getClassName(catchType));
+        }
+        
+        int attrCount = in.readUnsignedShort();
+        for (int i = 0; i < attrCount; i++) {
+            in.readUnsignedShort();
+            skipFully(in, in.readInt());
+        }
+        return result.toString();
+    }
+    
+    /**
+     * Get the length of the instruction at the given offset in some code.
+     */
+    private static int getInstructionLength(byte [] code, int pc)
+        throws IOException
+    {
+        int opcode = code[pc] & 0xff;
+        int length;
+        if (opcode == 0xaa || opcode == 0xab) {
+            // tableswitch, lookupswitch: padded to a multiple of 4
+            int operands = (pc + 4) & ~3;
+            if (operands + 12 > code.length) {
+                throw new IOException("Bad switch instruction");
+            }
+            if (opcode == 0xaa) {
+                int low = readInt(code, operands + 4);
+                int high = readInt(code, operands + 8);
+                length = operands - pc + 12 + 4 * (high - low + 1);
+            }
+            else {
+                length = operands - pc + 8 + 8 * readInt(code, operands + 4);
+            }
+        }
+        else if (opcode == 0xc4) {
+            // wide: iinc has a second two-byte operand
+            length = (pc + 1 < code.length && (code[pc + 1] & 0xff) == 0x84) ? 6 : 4;
+        }
+        else if (opcode == 0x10 || opcode == 0x12 || (opcode >= 0x15 && opcode <= 0x19)
+                || (opcode >= 0x36 && opcode <= 0x3a) || opcode == 0xa9 || opcode == 0xbc) {
+            length = 2;
+        }
+        else if (opcode == 0x11 || opcode == 0x13 || opcode == 0x14 || opcode == 0x84
+                || (opcode >= 0x99 && opcode <= 0xa8) || (opcode >= 0xb2 && opcode <= 0xb8)
+                || opcode == 0xbb || opcode == 0xbd || opcode == 0xc0 || opcode == 0xc1
+                || opcode == 0xc6 || opcode == 0xc7) {
+            length = 3;
+        }
+        else if (opcode == 0xc5) {
+            length = 4;
+        }
+        else if (opcode == 0xb9 || opcode == 0xba || opcode == 0xc8 || opcode == 0xc9) {
+            length = 5;
+        }
+        else {
+            length = 1;
+        }
+        
+        if (length <= 0 || pc + length > code.length) {
+            throw new IOException("Bad instruction at " + pc);
+        }
+        return length;
+    }
+    
+    private static int readInt(byte [] code, int offset)
+    {
+        return ((code[offset] & 0xff) << 24) | ((code[offset + 1] & 0xff) << 16)
+            | ((code[offset + 2] & 0xff) << 8) | (code[offset + 3] & 0xff);
+    }
+    
+    /**
+     * Describe a constant pool entry by its contents.
+     */
+    private String describeConstant(int index)
+        throws IOException
+    {
+        if (index <= 0 || index >= tags.length) {
+            throw new IOException("Bad constant pool index: " + index);
+        }
+        switch (tags[index]) {
+            case CONSTANT_Utf8:
+                return getUtf8(index);
+            case CONSTANT_Class:
+                return "class " + getClassName(index);
+            case CONSTANT_String:
+            case CONSTANT_Integer:
+            case CONSTANT_Float:
+            case CONSTANT_Long:
+            case CONSTANT_Double:
+                return getConstant(index);
+            case CONSTANT_MethodHandle:
+                return "handle " + refs2[index] + " " + describeConstant(refs[index]);
+            case CONSTANT_MethodType:
+                return "type " + getUtf8(refs[index]);
+            case CONSTANT_NameAndType:
+                return getUtf8(refs[index]) + ":" + getUtf8(refs2[index]);
+            case CONSTANT_Dynamic:
+            case CONSTANT_InvokeDynamic:
+                // the bootstrap method is identified by an index into the
+                // BootstrapMethods attribute, which is described separately
+                usesBootstrapMethods = true;
+                return "dynamic " + refs[index] + " " + describeConstant(refs2[index]);
+            default:
+                // field, method and interface method references
+                return describeConstant(refs[index]) + "." + describeConstant(refs2[index]);
+        }
+    }
+    
+    /**
+     * Add the classes named in a type descriptor or generic signature to
+     * the references.
+     */
+    private void addDescriptorReferences(String descriptor)
+    {
+        int length = descriptor.length();
+        int i = 0;
+        while (i < length) {
+            char c = descriptor.charAt(i);
+            if (c == 'L') {
+                int j = i + 1;
+                while (j < length && descriptor.charAt(j) != ';' && descriptor.charAt(j) != '<') {
+                    j++;
+                }
+                references.add(descriptor.substring(i + 1, j).replace('/', '.'));
+                i = j;
+            }
+            else if (c == 'T' || c == '.') {
+                // type variable, or the name of an inner class of a
+                // parameterized type: not a top-level class name
+                while (i < length && descriptor.charAt(i) != ';' && descriptor.charAt(i) != '<') {
+                    i++;
+                }
+            }
+            else {
+                i++;
+            }
+        }
+    }
+    
+    private String getUtf8(int index)
+        throws IOException
+    {
+        if (index <= 0 || index >= tags.length || tags[index] != CONSTANT_Utf8) {
+            throw new IOException("Bad constant pool index: " + index);
+        }
+        return (String) values[index];
+    }
+    
+    private String getClassName(int index)
+        throws IOException
+    {
+        if (index <= 0 || index >= tags.length || tags[index] != CONSTANT_Class) {
+            throw new IOException("Bad constant pool index: " + index);
+        }
+        return getUtf8(refs[index]);
+    }
+    
+    private String getConstant(int index)
+        throws IOException
+    {
+        if (index <= 0 || index >= tags.length) {
+            throw new IOException("Bad constant pool index: " + index);
+        }
+        if (tags[index] == CONSTANT_String) {
+            return "\"" + getUtf8(refs[index]);
+        }
+        return String.valueOf(values[index]);
+    }
+    
+    private static void skipFully(DataInputStream in, int length)
+        throws IOException
+    {
+        while (length > 0) {
+            int skipped = in.skipBytes(length);
+            if (skipped <= 0) {
+                throw new IOException("Unexpected end of class file");
+            }
+            length -= skipped;
+        }
+    }
+    
+    private static String digest(List<String> parts)
+    {
+        try {
+            MessageDigest md = MessageDigest.getInstance("MD5");
+            for (int i = 0; i < parts.size(); i++) {
+                md.update(parts.get(i).getBytes("UTF-8"));
+                md.update((byte) '\n');
+            }
+            byte [] digest = md.digest();
+            StringBuffer result = new StringBuffer(digest.length * 2);
+            for (int i = 0; i < digest.length; i++) {
+                int b = digest[i] & 0xff;
+                if (b < 0x10) {
+                    result.append('0');
+                }
+                result.append(Integer.toHexString(b));
+            }
+            return result.toString();
+        }
+        catch (NoSuchAlgorithmException nsae) {
+            throw new RuntimeException(nsae);
+        }
+        catch (java.io.UnsupportedEncodingException uee) {
+            throw new RuntimeException(uee);
+        }
+    }
+}
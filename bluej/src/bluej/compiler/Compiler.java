@@ -25,6 +25,7 @@ package bluej.compiler;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.StringTokenizer;
 import bluej.classmgr.BPClassLoader;
 import bluej.Config;
@@ -158,4 +159,41 @@ abstract class Compiler
      */
     public abstract boolean compile(File[] sources, CompileObserver observer, boolean internal);
 
+    /**
+     * Check whether this compiler can compile source held in memory,
+     * producing the class files in memory (see compileInMemory).
+     */
+    public boolean canCompileInMemory()
+    {
+        return false;
+    }
+    
+    /**
+     * Compile a single source held in memory. The class files for the
+     * class declared by the source (and any of its inner classes) are not
+     * written to the destination directory, but put in the given map.
+     * This may only be used if canCompileInMemory() returns true.
+     * 
+     * @param source
+     *            The file the source would be held in. Used to name the
+     *            source in messages.
+     * @param className
+     *            The binary name of the class declared by the source
+     * @param sourceText
+     *            The source to compile
+     * @param observer
+     *            The compilation observer
+     * @param internal
+     *            True if compiling BlueJ-generated code (shell files) False if
+     *            compiling user code
+     * @param classes
+     *            A map in which to put the class file contents, by binary name
+     * @return    success
+     */
+    public boolean compileInMemory(File source, String className, String sourceText,
+            CompileObserver observer, boolean internal, Map<String,byte[]> classes)
+    {
+        throw new UnsupportedOperationException();
+    }
+
 }
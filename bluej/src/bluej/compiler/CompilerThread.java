@@ -22,12 +22,12 @@
 package bluej.compiler;
 
 import bluej.Config;
-import bluej.utility.Queue;
 
 /**
- * The compiler thread. BlueJ uses exactly one thread for compilation. Jobs are
- * queued, and this thread processes tham one by one. If there is no job, this
- * thread just sleeps.
+ * A compiler thread. BlueJ uses a small pool of these threads for
+ * compilation. Jobs are queued in the JobQueue, and each thread takes the
+ * next job which is ready to be compiled and compiles it with its own
+ * compiler. If there is no job, the thread just sleeps.
  * 
  * @author Michael Cahill
  * @author Michael Kolling
@@ -35,57 +35,38 @@ import bluej.utility.Queue;
  */
 class CompilerThread extends Thread
 {
-    private Queue jobs;
-    private boolean busy = true;
+    private JobQueue queue;
+    private Compiler compiler;
 
     /**
-     * Create a new compiler thread that holds its own job queue.
+     * Create a new compiler thread that takes its jobs from the given queue.
+     * 
+     * @param queue     The queue holding the jobs
+     * @param compiler  The compiler used (only) by this thread
+     * @param number    The number of this thread within the pool
      */
-    public CompilerThread()
+    public CompilerThread(JobQueue queue, Compiler compiler, int number)
     {
-        super(Config.getString("compiler.thread.title"));
-        jobs = new Queue();
+        super(Config.getString("compiler.thread.title") + (number == 0 ? "" : " " + number));
+        this.queue = queue;
+        this.compiler = compiler;
     }
 
     /**
      * Start running this thread. The compiler thread will run infinitely in a
-     * loop. It will compile jobs as long as there are any jobs pending, and
-     * then wait for new jobs to be scheduled. New jobs are scheduled using the
-     * addJob method.
+     * loop. It will compile jobs as long as there are any jobs ready, and
+     * then wait for new jobs to be scheduled.
      */
     public void run()
     {
-        Job job;
         while (true) {
-            synchronized (this) {
-                while ((job = (Job) jobs.dequeue()) == null) {
-                    busy = false;
-                    notifyAll();
-                    try {
-                        wait();
-                    }
-                    catch (InterruptedException e) {}
-                }
+            Job job = queue.nextJob();
+            try {
+                job.compile(compiler);
+            }
+            finally {
+                queue.jobFinished(job);
             }
-
-            job.compile();
         }
     }
-
-    /**
-     * Add a new job to this thread's job queue. The job will be processed by
-     * this thread some tim ein the near future. This method returns
-     * immediately.
-     */
-    public synchronized void addJob(Job job)
-    {
-        jobs.enqueue(job);
-        busy = true;
-        notifyAll();
-    }
-
-    public boolean isBusy()
-    {
-        return busy;
-    }
-}
\ No newline at end of file
+}
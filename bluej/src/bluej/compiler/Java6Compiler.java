@@ -21,30 +21,117 @@
  */
 package bluej.compiler;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import javax.tools.Diagnostic;
 import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
 import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
 import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
 import javax.tools.StandardJavaFileManager;
 import javax.tools.StandardLocation;
 import javax.tools.ToolProvider;
 
+import bluej.Config;
+
 /**
  * Compiler class implemented using the JavaCompiler
  * 
+ * <p>Unless the "bluej.compiler.warm" property is false, the compiler
+ * keeps its file manager between compilations and reuses it for as long as
+ * the project class path stays the same. This means the archives on the
+ * class path are opened and indexed only once, rather than for every
+ * compilation (including that of each shell class used for an interactive
+ * invocation).
+ * 
  * @author Marion Zalk
  */
 public class Java6Compiler extends Compiler
 {
+    private static JavaCompiler systemCompiler;
+    
+    private boolean keepFileManager;
+    
+    // The retained file manager, the class path it was set up for, and
+    // the modification times of the archives on that path when it was.
+    private StandardJavaFileManager fileManager;
+    private File [] fileManagerPath;
+    private long [] archiveStamps;
+    
     public Java6Compiler()
     {
         setDebug(true);
+        keepFileManager = ! "false".equals(Config.getPropString("bluej.compiler.warm", "true"));
+    }
+    
+    /**
+     * Get the system java compiler. It is looked up only once.
+     */
+    private static synchronized JavaCompiler getSystemCompiler()
+    {
+        if (systemCompiler == null) {
+            systemCompiler = ToolProvider.getSystemJavaCompiler();
+        }
+        return systemCompiler;
+    }
+    
+    /**
+     * Get a file manager whose source and class path locations are set to
+     * the given path. The previously used file manager is returned if it was
+     * set up for the same path and none of the archives on the path have
+     * been modified since; otherwise it is closed and a new one is created.
+     */
+    private StandardJavaFileManager getFileManager(JavaCompiler jc, File [] path)
+        throws IOException
+    {
+        long [] stamps = getArchiveStamps(path);
+        
+        if (fileManager != null) {
+            if (keepFileManager && Arrays.equals(path, fileManagerPath)
+                    && Arrays.equals(stamps, archiveStamps)) {
+                return fileManager;
+            }
+            fileManager.close();
+            fileManager = null;
+        }
+        
+        StandardJavaFileManager sjfm = jc.getStandardFileManager(null, null, null);
+        List<File> pathList = Arrays.asList(path);
+        sjfm.setLocation(StandardLocation.SOURCE_PATH, pathList);
+        sjfm.setLocation(StandardLocation.CLASS_PATH, pathList);
+        
+        fileManager = sjfm;
+        fileManagerPath = path;
+        archiveStamps = stamps;
+        return sjfm;
+    }
+    
+    /**
+     * Get the modification times of the archives on a class path. Directory
+     * entries are read afresh by the file manager for each compilation, and
+     * so are not included.
+     */
+    private static long [] getArchiveStamps(File [] path)
+    {
+        long [] stamps = new long[path.length];
+        for (int i = 0; i < path.length; i++) {
+            if (path[i] != null && path[i].isFile()) {
+                stamps[i] = path[i].lastModified();
+            }
+        }
+        return stamps;
     }
     
     /**
@@ -63,34 +150,16 @@ public class Java6Compiler extends Compiler
     public boolean compile(File[] sources, CompileObserver observer,
             boolean internal) 
     {
-        boolean result = true;
-        JavaCompiler jc = ToolProvider.getSystemJavaCompiler();
-        List<String> optionsList = new ArrayList<String>();
+        JavaCompiler jc = getSystemCompiler();
         DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
         try
         {  
             //setup the filemanager
-            StandardJavaFileManager sjfm = jc.getStandardFileManager(diagnostics, null, null);
-            List <File>pathList = new ArrayList<File>();
-            List<File> outputList= new ArrayList<File>();
-            outputList.add(getDestDir());
-            pathList.addAll(Arrays.asList(getProjectClassLoader().getClassPathAsFiles()));
-            sjfm.setLocation(StandardLocation.SOURCE_PATH, pathList);
-            sjfm.setLocation(StandardLocation.CLASS_PATH, pathList);
-            sjfm.setLocation(StandardLocation.CLASS_OUTPUT, outputList);
+            StandardJavaFileManager sjfm = getOutputFileManager(jc);
             //get the source files for compilation  
             Iterable<? extends JavaFileObject> compilationUnits1 =
                 sjfm.getJavaFileObjectsFromFiles(Arrays.asList(sources));
-            //add any options
-            if(isDebug())
-                optionsList.add("-g");
-            if(isDeprecation())
-                optionsList.add("-deprecation"); 
-            addUserSpecifiedOptions(optionsList, COMPILER_OPTIONS);
-            //compile
-            jc.getTask(null, sjfm, diagnostics, optionsList, null, compilationUnits1).call();
-            sjfm.close();            
-
+            runTask(jc, sjfm, sjfm, diagnostics, compilationUnits1);
         }
         catch(IOException e)
         {
@@ -98,6 +167,118 @@ public class Java6Compiler extends Compiler
             return false;
         }
 
+        return processDiagnostics(diagnostics, observer, internal);
+    }
+    
+    public boolean canCompileInMemory()
+    {
+        return true;
+    }
+    
+    /**
+     * Compile a single source held in memory by using the JavaCompiler API.
+     * The class files of the declared class and its inner classes are
+     * collected in memory; any other class files (for user classes which
+     * had to be compiled as well) are written to the destination directory
+     * as usual.
+     */
+    public boolean compileInMemory(File source, final String className, String sourceText,
+            CompileObserver observer, boolean internal, final Map<String,byte[]> classes)
+    {
+        JavaCompiler jc = getSystemCompiler();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+        final List<MemoryClassFile> classFiles = new ArrayList<MemoryClassFile>();
+        try
+        {
+            StandardJavaFileManager sjfm = getOutputFileManager(jc);
+            JavaFileManager memoryManager = new ForwardingJavaFileManager<StandardJavaFileManager>(sjfm) {
+                public JavaFileObject getJavaFileForOutput(Location location, String name,
+                        JavaFileObject.Kind kind, FileObject sibling)
+                    throws IOException
+                {
+                    if (kind == JavaFileObject.Kind.CLASS && location == StandardLocation.CLASS_OUTPUT
+                            && (name.equals(className) || name.startsWith(className + "$"))) {
+                        MemoryClassFile classFile = new MemoryClassFile(name);
+                        classFiles.add(classFile);
+                        return classFile;
+                    }
+                    return super.getJavaFileForOutput(location, name, kind, sibling);
+                }
+            };
+            List<JavaFileObject> compilationUnits = new ArrayList<JavaFileObject>();
+            compilationUnits.add(new MemorySource(source, sourceText));
+            runTask(jc, memoryManager, sjfm, diagnostics, compilationUnits);
+        }
+        catch(IOException e)
+        {
+            e.printStackTrace(System.out);
+            return false;
+        }
+        
+        boolean result = processDiagnostics(diagnostics, observer, internal);
+        if (result) {
+            for (Iterator<MemoryClassFile> i = classFiles.iterator(); i.hasNext(); ) {
+                MemoryClassFile classFile = i.next();
+                classes.put(classFile.className, classFile.getBytes());
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Get the file manager, with its output location set to the destination
+     * directory.
+     */
+    private StandardJavaFileManager getOutputFileManager(JavaCompiler jc)
+        throws IOException
+    {
+        StandardJavaFileManager sjfm = getFileManager(jc, getProjectClassLoader().getClassPathAsFiles());
+        List<File> outputList= new ArrayList<File>();
+        outputList.add(getDestDir());
+        sjfm.setLocation(StandardLocation.CLASS_OUTPUT, outputList);
+        return sjfm;
+    }
+    
+    /**
+     * Run a compilation task, using the given file manager (which may
+     * be a wrapper around the standard file manager).
+     */
+    private void runTask(JavaCompiler jc, JavaFileManager fileManager,
+            StandardJavaFileManager sjfm, DiagnosticCollector<JavaFileObject> diagnostics,
+            Iterable<? extends JavaFileObject> compilationUnits)
+        throws IOException
+    {
+        List<String> optionsList = new ArrayList<String>();
+        //add any options
+        if(isDebug())
+            optionsList.add("-g");
+        if(isDeprecation())
+            optionsList.add("-deprecation"); 
+        addUserSpecifiedOptions(optionsList, COMPILER_OPTIONS);
+        //compile
+        try {
+            jc.getTask(null, fileManager, diagnostics, optionsList, null, compilationUnits).call();
+        }
+        finally {
+            sjfm.flush();
+            if (! keepFileManager) {
+                sjfm.close();
+                this.fileManager = null;
+            }
+        }
+    }
+    
+    /**
+     * Pass the error and warning messages from a compilation on to the
+     * observer.
+     * 
+     * @return  true if there were no errors
+     */
+    private boolean processDiagnostics(DiagnosticCollector<JavaFileObject> diagnostics,
+            CompileObserver observer, boolean internal)
+    {
+        boolean result = true;
+        
         //Query diagnostics for error/warning messages
         List<Diagnostic<? extends JavaFileObject>> diagnosticList = diagnostics.getDiagnostics();        
         String src=null;
@@ -167,6 +348,58 @@ public class Java6Compiler extends Compiler
         return result;
     }
 
+    /**
+     * A source held in memory. It is named by the file which would hold it.
+     */
+    private static class MemorySource extends SimpleJavaFileObject
+    {
+        private File file;
+        private String text;
+        
+        MemorySource(File file, String text)
+        {
+            super(file.toURI(), JavaFileObject.Kind.SOURCE);
+            this.file = file;
+            this.text = text;
+        }
+        
+        public CharSequence getCharContent(boolean ignoreEncodingErrors)
+        {
+            return text;
+        }
+        
+        public String toString()
+        {
+            return file.getPath();
+        }
+    }
+    
+    /**
+     * A class file produced in memory.
+     */
+    private static class MemoryClassFile extends SimpleJavaFileObject
+    {
+        private String className;
+        private ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        
+        MemoryClassFile(String className)
+        {
+            super(URI.create("memory:///" + className.replace('.', '/') + ".class"),
+                    JavaFileObject.Kind.CLASS);
+            this.className = className;
+        }
+        
+        public OutputStream openOutputStream()
+        {
+            return bytes;
+        }
+        
+        byte [] getBytes()
+        {
+            return bytes.toByteArray();
+        }
+    }
+
     /**
      * @param  String msg representing the message retrieved from the diagnostic tool
      * processMessage tidies up the message returned from the diagnostic tool
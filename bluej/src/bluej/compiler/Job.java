@@ -23,20 +23,24 @@ package bluej.compiler;
 
 import bluej.classmgr.BPClassLoader;
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 
 import bluej.Config;
 
 /**
  * A compiler "job". A list of filenames to compile + parameters.
- * Jobs are held in a queue by the CompilerThread, which compiles them
- * by running the job's "compile" method.
+ * Jobs are held in the JobQueue until the jobs they depend on have
+ * finished; a CompilerThread then compiles them by running the job's
+ * "compile" method.
  *
  * @author  Michael Cahill
  * @version $Id: Job.java 6215 2009-03-30 13:28:25Z polle $
  */
 class Job
 {
-    Compiler compiler;		// The compiler for this job
     CompileObserver observer;
     File destDir;
     BPClassLoader bpClassLoader;
@@ -45,15 +49,26 @@ class Job
                       // or user files if we want to suppress 
                       // "unchecked" warnings, false otherwise
 
+    
+    // For a job compiling source held in memory: the class name, source
+    // text and map to receive the class files
+    String className;
+    String sourceText;
+    Map<String,byte[]> classes;
+    
+    UpToDateCheck upToDateCheck;  // may be null
+
+    private List<Job> dependencies = new ArrayList<Job>();
+    private boolean barrier;   // true if later jobs must wait for this one
+    private boolean finished;
 	
     /**
      * Create a job with a set of sources.
      */
-    public Job(File[] sourceFiles, Compiler compiler, CompileObserver observer,
+    public Job(File[] sourceFiles, CompileObserver observer,
     			BPClassLoader bpClassLoader, File destDir, boolean internal)
     {
         this.sources = sourceFiles;
-        this.compiler = compiler;
         this.observer = observer;
         this.bpClassLoader = bpClassLoader;
         this.destDir = destDir;
@@ -61,9 +76,61 @@ class Job
     }
 	
     /**
-     * Compile this job
+     * Create a job which compiles source held in memory, producing the
+     * class files in memory.
+     */
+    public Job(File sourceFile, String className, String sourceText, Map<String,byte[]> classes,
+            CompileObserver observer, BPClassLoader bpClassLoader, File destDir, boolean internal)
+    {
+        this(new File[] {sourceFile}, observer, bpClassLoader, destDir, internal);
+        this.className = className;
+        this.sourceText = sourceText;
+        this.classes = classes;
+    }
+    
+    /**
+     * Add a job which must finish before this job can be started.
+     * Access is synchronized by the JobQueue.
+     */
+    void addDependency(Job job)
+    {
+        dependencies.add(job);
+    }
+    
+    /**
+     * Check whether all the jobs this job depends on have finished.
+     * Access is synchronized by the JobQueue.
+     */
+    boolean isReady()
+    {
+        for (Iterator<Job> i = dependencies.iterator(); i.hasNext(); ) {
+            if (! i.next().finished) {
+                return false;
+            }
+            i.remove();
+        }
+        return true;
+    }
+    
+    void setFinished()
+    {
+        finished = true;
+    }
+    
+    void setBarrier(boolean barrier)
+    {
+        this.barrier = barrier;
+    }
+    
+    boolean isBarrier()
+    {
+        return barrier;
+    }
+	
+    /**
+     * Compile this job using the given compiler
      */
-    public void compile()
+    public void compile(Compiler compiler)
     {
         try {
             boolean successful = true;
@@ -76,7 +143,16 @@ class Job
 
             compiler.setProjectClassLoader(bpClassLoader);   // The correct class loader must always be set
 
-            successful = compiler.compile(sources, observer, internal);
+            if (upToDateCheck != null && upToDateCheck.isUpToDate(sources)) {
+                // existing class files are still valid
+            }
+            else if (sourceText != null) {
+                successful = compiler.compileInMemory(sources[0], className, sourceText,
+                        observer, internal, classes);
+            }
+            else {
+                successful = compiler.compile(sources, observer, internal);
+            }
 	        //Debug.message("compile success: " + successful);
 
             if(observer != null)
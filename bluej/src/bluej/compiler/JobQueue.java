@@ -23,6 +23,15 @@ package bluej.compiler;
 
 import bluej.classmgr.BPClassLoader;
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import bluej.Config;
 import bluej.utility.Debug;
@@ -30,6 +39,12 @@ import bluej.utility.Debug;
 /**
  * Reasonably generic interface between the BlueJ IDE and the Java compiler.
  * 
+ * <p>Jobs are compiled by a pool of compiler threads. A job which is added
+ * together with the source files it depends on is only started once every
+ * queued job compiling one of those files has finished; independent jobs
+ * may be compiled at the same time. The number of compiler threads is set
+ * by the "bluej.compiler.threads" property (0 means one per processor).
+ * 
  * @author Michael Cahill
  * @version $Id: JobQueue.java 7085 2010-02-03 02:28:15Z marionz $
  */
@@ -46,8 +61,12 @@ public class JobQueue
 
     // ---- instance ----
 
-    private CompilerThread thread = null;
-    private Compiler compiler = null;
+    private CompilerThread [] threads;
+    private String compilertype;
+    private boolean inMemory;
+    
+    private List<Job> waiting = new LinkedList<Job>();  // jobs not yet started
+    private Set<Job> running = new HashSet<Job>();      // jobs being compiled
 
     /**
      *  
@@ -55,8 +74,39 @@ public class JobQueue
     private JobQueue()
     {
         // determine which compiler we should be using
-        String compilertype = Config.getPropString("bluej.compiler.type");
+        compilertype = Config.getPropString("bluej.compiler.type");
+
+        int numThreads = Config.getPropInteger("bluej.compiler.threads", 0);
+        if (numThreads <= 0) {
+            numThreads = Runtime.getRuntime().availableProcessors();
+        }
 
+        // Lower priority to improve GUI response time during compilation
+        int priority = Thread.currentThread().getPriority() - 1;
+        if (priority < Thread.MIN_PRIORITY)
+            priority = Thread.MIN_PRIORITY;
+
+        // Each thread gets its own compiler, as compilers hold per-job state
+        threads = new CompilerThread[numThreads];
+        inMemory = true;
+        for (int i = 0; i < numThreads; i++) {
+            Compiler compiler = createCompiler();
+            inMemory &= compiler != null && compiler.canCompileInMemory();
+            threads[i] = new CompilerThread(this, compiler, i);
+            threads[i].setPriority(priority);
+        }
+        for (int i = 0; i < numThreads; i++) {
+            threads[i].start();
+        }
+    }
+    
+    /**
+     * Create a compiler instance of the configured type.
+     */
+    private Compiler createCompiler()
+    {
+        Compiler compiler = null;
+        
         //even though it is specified to use internal, the preferred compiler for a
         //system running Java 6 or greater is the JavaCompiler API
         if (compilertype.equals("internal")) {
@@ -87,20 +137,13 @@ public class JobQueue
         else {
             Debug.message(Config.getString("compiler.invalidcompiler"));
         }
-
-        thread = new CompilerThread();
-
-        // Lower priority to improve GUI response time during compilation
-        int priority = Thread.currentThread().getPriority() - 1;
-        if (priority < Thread.MIN_PRIORITY)
-            priority = Thread.MIN_PRIORITY;
-        thread.setPriority(Thread.currentThread().getPriority() - 1);
-
-        thread.start();
+        
+        return compiler;
     }
 
     /**
-     * Adds a job to the compile queue.
+     * Adds a job to the compile queue. The job will not be started until
+     * all previously added jobs have finished.
      * 
      * @param sources   The files to compile
      * @param observer  Observer to be notified when compilation begins,
@@ -111,21 +154,154 @@ public class JobQueue
      */
     public void addJob(File[] sources, CompileObserver observer, BPClassLoader bpClassLoader, File destDir, boolean suppressUnchecked)
     {
-        thread.addJob(new Job(sources, compiler, observer, bpClassLoader, destDir, suppressUnchecked));
+        addJob(new Job(sources, observer, bpClassLoader, destDir, suppressUnchecked), null);
+    }
+    
+    /**
+     * Adds a job to the compile queue. The job will be started once every
+     * queued job which compiles one of the given dependency sources has
+     * finished; it may be compiled at the same time as other jobs.
+     * 
+     * @param sources   The files to compile
+     * @param dependencySources  The source files which the sources depend on
+     * @param observer  Observer to be notified when compilation begins,
+     *                  errors/warnings, completes
+     * @param classPath The classpath to use to locate objects/source code
+     * @param destDir   Destination for class files?
+     * @param suppressUnchecked    Suppress "unchecked" warning in java 1.5
+     */
+    public void addJob(File[] sources, File[] dependencySources, CompileObserver observer,
+            BPClassLoader bpClassLoader, File destDir, boolean suppressUnchecked)
+    {
+        addJob(sources, dependencySources, null, observer, bpClassLoader, destDir, suppressUnchecked);
+    }
+    
+    /**
+     * Adds a job to the compile queue, as above. When the job is started the
+     * given check is made first, and if it finds the existing class files
+     * are up to date the sources are not compiled.
+     * 
+     * @param sources   The files to compile
+     * @param dependencySources  The source files which the sources depend on
+     * @param upToDateCheck  The check to make before compiling (may be null)
+     * @param observer  Observer to be notified when compilation begins,
+     *                  errors/warnings, completes
+     * @param classPath The classpath to use to locate objects/source code
+     * @param destDir   Destination for class files?
+     * @param suppressUnchecked    Suppress "unchecked" warning in java 1.5
+     */
+    public void addJob(File[] sources, File[] dependencySources, UpToDateCheck upToDateCheck,
+            CompileObserver observer, BPClassLoader bpClassLoader, File destDir, boolean suppressUnchecked)
+    {
+        Job job = new Job(sources, observer, bpClassLoader, destDir, suppressUnchecked);
+        job.upToDateCheck = upToDateCheck;
+        addJob(job, new HashSet<File>(Arrays.asList(dependencySources)));
+    }
+    
+    /**
+     * Check whether the compiler can compile source held in memory (see
+     * addMemoryJob).
+     */
+    public boolean canCompileInMemory()
+    {
+        return inMemory;
+    }
+    
+    /**
+     * Adds a job which compiles a single source held in memory to the compile
+     * queue. The class files for the class declared by the source, and its
+     * inner classes, are not written to the destination directory but put in
+     * the given map. The job will not be started until all previously added
+     * jobs have finished. This may only be used if canCompileInMemory()
+     * returns true.
+     * 
+     * @param source     The file the source would be held in
+     * @param className  The binary name of the class declared by the source
+     * @param sourceText The source to compile
+     * @param classes    The map to receive the class files, by binary name
+     * @param observer   Observer to be notified when compilation begins,
+     *                   errors/warnings, completes
+     * @param classPath  The classpath to use to locate objects/source code
+     * @param destDir    Destination for any other class files
+     * @param suppressUnchecked    Suppress "unchecked" warning in java 1.5
+     */
+    public void addMemoryJob(File source, String className, String sourceText, Map<String,byte[]> classes,
+            CompileObserver observer, BPClassLoader bpClassLoader, File destDir, boolean suppressUnchecked)
+    {
+        addJob(new Job(source, className, sourceText, classes, observer, bpClassLoader,
+                destDir, suppressUnchecked), null);
+    }
+    
+    /**
+     * Queue a job. If dependencySources is null, the job depends on every
+     * job already in the queue; otherwise it depends on the jobs compiling
+     * any of the given files, and on any job queued without dependency
+     * information.
+     */
+    private synchronized void addJob(Job job, Set<File> dependencySources)
+    {
+        List<Job> queued = new ArrayList<Job>(running);
+        queued.addAll(waiting);
+        
+        for (Iterator<Job> i = queued.iterator(); i.hasNext(); ) {
+            Job other = i.next();
+            if (dependencySources == null || other.isBarrier()
+                    || ! Collections.disjoint(dependencySources, Arrays.asList(other.sources))) {
+                job.addDependency(other);
+            }
+        }
+        
+        job.setBarrier(dependencySources == null);
+        waiting.add(job);
+        notifyAll();
+    }
+    
+    /**
+     * Get the next job which is ready to be compiled, waiting if there is
+     * none. Jobs are started in the order in which they were added, except
+     * that a job whose dependencies have not finished is passed over.
+     * Called by the compiler threads.
+     */
+    synchronized Job nextJob()
+    {
+        while (true) {
+            for (Iterator<Job> i = waiting.iterator(); i.hasNext(); ) {
+                Job job = i.next();
+                if (job.isReady()) {
+                    i.remove();
+                    running.add(job);
+                    return job;
+                }
+            }
+            
+            try {
+                wait();
+            }
+            catch (InterruptedException ie) {}
+        }
+    }
+    
+    /**
+     * Mark a job as finished, possibly allowing jobs which depend on it to
+     * start. Called by the compiler threads.
+     */
+    synchronized void jobFinished(Job job)
+    {
+        job.setFinished();
+        running.remove(job);
+        notifyAll();
     }
 
     /**
      * Wait until the compiler job queue is empty, then return.
      */
-    public void waitForEmptyQueue()
+    public synchronized void waitForEmptyQueue()
     {
-        synchronized (thread) {
-            while (thread.isBusy()) {
-                try {
-                    thread.wait();
-                }
-                catch (InterruptedException ex) {}
+        while (! waiting.isEmpty() || ! running.isEmpty()) {
+            try {
+                wait();
             }
+            catch (InterruptedException ex) {}
         }
     }
 }
@@ -0,0 +1,40 @@
+/*
+ This file is part of the BlueJ program. 
+ Copyright (C) 1999-2009  Michael Kolling and John Rosenberg 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package bluej.compiler;
+
+import java.io.File;
+
+/**
+ * A check, made by a compiler job just before it would compile its sources,
+ * of whether compilation can be skipped because the existing class files are
+ * still valid. The check is made on a compiler thread, after all the jobs
+ * the job depends on have finished.
+ */
+public interface UpToDateCheck
+{
+    /**
+     * Check whether the class files for the given sources are up to date.
+     * If this returns true, the sources are not compiled, and the job's
+     * observer is told that compilation was successful.
+     */
+    boolean isUpToDate(File[] sources);
+}
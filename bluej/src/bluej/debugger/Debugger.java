@@ -22,6 +22,7 @@
 package bluej.debugger;
 
 import java.io.File;
+import java.util.List;
 import java.util.Map;
 
 import bluej.classmgr.BPClassLoader;
@@ -113,18 +114,25 @@ public abstract class Debugger
      */
     public abstract boolean addObject(String scopeId, String newInstanceName, DebuggerObject dob);
 
+    /**
+     * Add several debugger objects into the project scope. This is quicker
+     * than adding them one at a time.
+     * 
+     * @param   scopeId  the scope identifier
+     * @param   objects  the names of the objects, and the objects themselves
+     */
+    public abstract void addObjects(String scopeId, Map<String,DebuggerObject> objects);
+
     /**
      * Remove a debugger object from the project scope.
      */
     public abstract void removeObject(String scopeId, String instanceName);
 
     /**
-     * Return the debugger objects that exist in the
-     * debugger.
-     * 
-     * @return			a Map of (String name, DebuggerObject obj) entries
+     * Remove several debugger objects from the project scope. This is
+     * quicker than removing them one at a time.
      */
-    public abstract Map<String,DebuggerObject> getObjects();
+    public abstract void removeObjects(String scopeId, List<String> instanceNames);
 
     /**
      * Guess a suitable name for an object about to be put on the object bench.
@@ -171,11 +179,69 @@ public abstract class Debugger
      */
     public abstract DebuggerTestResult runTestMethod(String className, String methodName);
 
+    /**
+     * Run a number of test methods, one after another, and report the results
+     * as the tests finish. This takes much less time than running each test
+     * with runTestMethod(). The listener is called on the calling thread,
+     * which waits until all the tests have run.
+     * 
+     * @param  classNames   the fully qualified name of the class of each test
+     * @param  methodNames  the name of each test method
+     * @param  listener     the listener for the results
+     */
+    public abstract void runTestMethods(String [] classNames, String [] methodNames,
+            DebuggerTestListener listener);
+
+    /**
+     * Run a number of test methods in several VMs at once, separate from the
+     * debug VM, and report the results as the tests finish. The listener is
+     * called from several threads, though never by two at once. Returns when
+     * all the tests have run, or the run has been stopped.
+     * 
+     * @param  classNames   the fully qualified name of the class of each test
+     * @param  methodNames  the name of each test method
+     * @param  vmCount      the greatest number of VMs to run the tests in
+     * @param  listener     the listener for the results
+     */
+    public abstract void runTestMethodsInParallel(String [] classNames, String [] methodNames,
+            int vmCount, DebuggerTestListener listener);
+
+    /**
+     * Stop any tests being run by runTestMethodsInParallel(), stopping
+     * their VMs. Tests which have not finished are not reported.
+     */
+    public abstract void stopTestRuns();
+
     /**
      * Dispose all top level windows in the remote machine.
      */
     public abstract void disposeWindows();
 
+    /**
+     * Define classes in the remote machine's current class loader from their
+     * bytecode, so that they can be loaded without class files being written.
+     * 
+     * @param names  the binary names of the classes; the first is loaded
+     * @param bytes  the class file contents of each class
+     * @return       true if the classes were defined, false if they must
+     *               be loaded from class files instead
+     */
+    public abstract boolean defineClasses(String [] names, byte [][] bytes);
+
+    /**
+     * Replace the code of those of some classes which the remote machine's
+     * current class loader has loaded, keeping their objects and the values
+     * of their static fields. This can only be done if nothing but the code
+     * of their methods has changed. If it is done, breakpoints are removed.
+     * 
+     * @param names  the binary names of the classes
+     * @param bytes  the new class file contents of each class
+     * @return       true if the loaded classes were replaced (or none were
+     *               loaded), false if the class loader must be replaced
+     *               instead
+     */
+    public abstract boolean redefineClasses(String [] names, byte [][] bytes);
+
     /**
      * "Run" a class (i.e. invoke its main method without arguments)
      */
@@ -250,4 +316,12 @@ public abstract class Debugger
      */
     public abstract void hideSystemThreads(boolean hide);
 
+    /**
+     * Note that values in the remote VM may have changed, so that the values
+     * of objects read before must be read again. Values are read again anyway
+     * once the VM has run or stopped; this is for changes made by threads
+     * which are running in the background.
+     */
+    public abstract void valuesChanged();
+
 }
@@ -0,0 +1,59 @@
+/*
+ This file is part of the BlueJ program. 
+ Copyright (C) 2010  Michael Kolling and John Rosenberg 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package bluej.debugger;
+
+import java.util.List;
+
+/**
+ * Some of the elements of a collection, or entries of a map, in the debugged
+ * VM, as they were when they were read.
+ * 
+ * @see DebuggerObject#getElements(int, int)
+ */
+public abstract class DebuggerCollection
+{
+    /**
+     * Get the number of elements in the collection (or entries in the map),
+     * including those which were not read.
+     */
+    public abstract int size();
+    
+    /**
+     * Return a list of strings with the description of each element that was
+     * read, in the format "[&lt;index&gt;] = &lt;value&gt;", or, for a map
+     * entry, "[&lt;key&gt;] = &lt;value&gt;".
+     */
+    public abstract List<String> getElements();
+    
+    /**
+     * Get the name of element 'index' of those read: "[&lt;index&gt;]" or
+     * "[&lt;key&gt;]".
+     */
+    public abstract String getElementName(int index);
+    
+    /**
+     * Get element 'index' of those read (for a map entry, the value).
+     * 
+     * @return  The element, or null if it is null
+     */
+    public abstract DebuggerObject getElementObject(int index);
+}
@@ -228,6 +228,36 @@ public abstract class DebuggerObject
      */
     public abstract List<String> getInstanceFields(boolean includeModifiers);
 
+    /**
+     * Return a list of strings with the description of some of the instance
+     * fields, in the same format as getInstanceFields(): those in slots
+     * 'first' to 'first + count - 1' (or as many of them as exist). For an
+     * array, these are the elements from index 'first'.<p>
+     *
+     * The values are read from the debug VM together, and kept until it
+     * next runs, so that a large array can be shown a part at a time.
+     *
+     *@param  includeModifiers  Whether to include the access modifier
+     *@param  first             The first slot to describe
+     *@param  count             The number of slots to describe
+     *@return                   The InstanceFields value
+     */
+    public abstract List<String> getInstanceFields(boolean includeModifiers, int first, int count);
+
+    /**
+     * If this object is a collection or a map of a kind the debugger can
+     * read as a whole, return its elements (or entries) from 'first' to
+     * 'first + count - 1', or as many of them as exist. They are read from
+     * the debug VM in a single request, rather than through the fields of
+     * the collection.
+     *
+     *@param  first  The first element to read
+     *@param  count  The number of elements to read
+     *@return        The elements, or null if this object's elements can't
+     *               be read in this way
+     */
+    public abstract DebuggerCollection getElements(int first, int count);
+
     /**
      *  Return a list of strings with the description of each field
      *  (including static and instance) in the
@@ -0,0 +1,39 @@
+/*
+ This file is part of the BlueJ program. 
+ Copyright (C) 2010  Michael Kolling and John Rosenberg 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package bluej.debugger;
+
+import java.util.EventListener;
+import java.util.List;
+
+/**
+ * The listener for the results of tests run by
+ * Debugger.runTestMethods().
+ */
+public interface DebuggerTestListener extends EventListener
+{
+    /**
+     * Some more of the tests have been run.
+     * 
+     * @param results  the results of the tests, in the order they were run
+     */
+    void testsFinished(List<DebuggerTestResult> results);
+}
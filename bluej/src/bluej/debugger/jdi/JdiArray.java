@@ -242,7 +242,7 @@ public class JdiArray extends JdiObject
      */
     public DebuggerObject getInstanceFieldObject(int slot)
     {
-        Value val = ((ArrayReference) obj).getValue(slot);
+        Value val = getValue(slot);
         if(componentType != null)
             return JdiObject.getDebuggerObject((ObjectReference) val, componentType);
         else
@@ -272,22 +272,37 @@ public class JdiArray extends JdiObject
      */
     public List<String> getInstanceFields(boolean includeModifiers)
     {
-        List<Value> values;
+        return getInstanceFields(includeModifiers, 0, getValueCount());
+    }
 
-        if (((ArrayReference) obj).length() > 0) {
-            values = ((ArrayReference) obj).getValues();
-        } else {
-            values = new ArrayList<Value>();
-        }
-        List<String> fields = new ArrayList<String>(values.size());
+    /**
+     *  Return a list of strings with the description of the elements from
+     *  index 'first' to 'first + count - 1' (or as many of them as exist),
+     *  in the format "[index] = <value>".
+     */
+    public List<String> getInstanceFields(boolean includeModifiers, int first, int count)
+    {
+        int last = Math.min(first + count, getValueCount());
+        fetchValues(first, last - first);
+        List<String> fields = new ArrayList<String>(Math.max(last - first, 0));
 
-        for (int i = 0; i < values.size(); i++) {
-            Value val = (Value) values.get(i);
+        for (int i = first; i < last; i++) {
+            Value val = getValue(i);
             String valString = JdiUtils.getJdiUtils().getValueString(val);
             fields.add("[" + i + "]" + " = " + valString);
         }
         return fields;
     }
+    
+    int getValueCount()
+    {
+        return ((ArrayReference) obj).length();
+    }
+    
+    List<Value> readValues(int first, int count)
+    {
+        return ((ArrayReference) obj).getValues(first, count);
+    }
 
     /**
      * Is an object of this class assignable to the given fully qualified type?
@@ -402,7 +417,7 @@ public class JdiArray extends JdiObject
      */
     public boolean instanceFieldIsObject(int slot)
     {
-        Value val = ((ArrayReference) obj).getValue(slot);
+        Value val = getValue(slot);
 
         if (val == null) {
             return false;
@@ -0,0 +1,144 @@
+/*
+ This file is part of the BlueJ program. 
+ Copyright (C) 2010  Michael Kolling and John Rosenberg 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package bluej.debugger.jdi;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import bluej.debugger.DebuggerCollection;
+import bluej.debugger.DebuggerObject;
+import bluej.runtime.CollectionSnapshot;
+import bluej.runtime.ExecServer;
+
+import com.sun.jdi.ObjectReference;
+import com.sun.jdi.Value;
+
+/**
+ * Some of the elements of a collection or map in the remote VM, from a
+ * snapshot taken there.
+ * 
+ * @see CollectionSnapshot
+ */
+class JdiCollection extends DebuggerCollection
+{
+    private int size;
+    private List<String> names = new ArrayList<String>();
+    private List<String> descriptions = new ArrayList<String>();
+    private List<Value> elements = new ArrayList<Value>();
+    
+    /**
+     * Construct a JdiCollection from a snapshot.
+     * 
+     * @param first         The index of the first element in the snapshot
+     * @param descriptions  The descriptions string of the snapshot
+     * @param values        The elements (or keys and values) of the snapshot
+     */
+    JdiCollection(int first, String descriptions, List<Value> values)
+    {
+        int [] pos = new int[1];
+        size = Integer.parseInt(ExecServer.nextField(descriptions, pos));
+        boolean isMap = ExecServer.nextField(descriptions, pos).equals(CollectionSnapshot.MAP);
+        
+        for (int i = 0; i < values.size(); i++) {
+            String name;
+            if (isMap) {
+                name = "[" + describe(values.get(i), ExecServer.nextField(descriptions, pos)) + "]";
+                i++;
+            }
+            else {
+                name = "[" + (first + names.size()) + "]";
+            }
+            Value element = values.get(i);
+            addElement(name, element, describe(element, ExecServer.nextField(descriptions, pos)));
+        }
+    }
+    
+    /**
+     * Construct a JdiCollection from elements read from the collection's
+     * fields (see VMReference.takeSnapshot). The elements are described as
+     * the values of fields are.
+     * 
+     * @param first   The index of the first element read
+     * @param size    The size of the collection
+     * @param isMap   Whether the collection is a map
+     * @param values  The elements (or keys and values) read
+     */
+    JdiCollection(int first, int size, boolean isMap, List<Value> values)
+    {
+        this.size = size;
+        JdiUtils utils = JdiUtils.getJdiUtils();
+        for (int i = 0; i < values.size(); i++) {
+            String name;
+            if (isMap) {
+                name = "[" + utils.getValueString(values.get(i)) + "]";
+                i++;
+            }
+            else {
+                name = "[" + (first + names.size()) + "]";
+            }
+            Value element = values.get(i);
+            addElement(name, element, utils.getValueString(element));
+        }
+    }
+    
+    private void addElement(String name, Value element, String description)
+    {
+        names.add(name);
+        elements.add(element);
+        descriptions.add(name + " = " + description);
+    }
+    
+    /**
+     * Describe an element, given its description from the snapshot.
+     */
+    private static String describe(Value element, String description)
+    {
+        if (element == null) {
+            return JdiUtils.getJdiUtils().getValueString(null);
+        }
+        else if (description.length() == 0) {
+            return DebuggerObject.OBJECT_REFERENCE;
+        }
+        return description;
+    }
+    
+    public int size()
+    {
+        return size;
+    }
+    
+    public List<String> getElements()
+    {
+        return descriptions;
+    }
+    
+    public String getElementName(int index)
+    {
+        return names.get(index);
+    }
+    
+    public DebuggerObject getElementObject(int index)
+    {
+        ObjectReference element = (ObjectReference) elements.get(index);
+        return (element == null) ? null : JdiObject.getDebuggerObject(element);
+    }
+}
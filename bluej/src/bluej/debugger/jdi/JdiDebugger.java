@@ -31,6 +31,7 @@ import bluej.classmgr.BPClassLoader;
 import bluej.debugger.*;
 import bluej.debugger.gentype.JavaType;
 import bluej.debugmgr.Invoker;
+import bluej.runtime.ExecServer;
 import bluej.utility.Debug;
 import bluej.utility.JavaNames;
 
@@ -59,6 +60,9 @@ import com.sun.jdi.*;
 public class JdiDebugger extends Debugger
 {
     private static final int loaderPriority = Thread.NORM_PRIORITY - 2;
+    
+    // how often to read the results of running tests, in milliseconds
+    private static final int RESULTS_INTERVAL = 100;
 
     // indicates whether the debug VM has been successfully loaded and started
     volatile private boolean vmRunning = false;
@@ -76,6 +80,11 @@ public class JdiDebugger extends Debugger
     // the thread that we spawn to load the current remote VM
     private MachineLoaderThread machineLoader;
     
+    // a VM started in advance, which replaces the current remote VM when
+    // that is restarted, and the thread that we spawn to load it
+    private VMReference standbyVM;
+    private StandbyLoaderThread standbyLoader;
+    
     /** An object to provide a lock for server thread execution */
     private Object serverThreadLock = new Object();
 
@@ -96,7 +105,7 @@ public class JdiDebugger extends Debugger
 
     // a Set of strings which have been used as names on the
     // object bench. We endeavour to not reuse them.
-    private Set usedNames;
+    private Set<String> usedNames;
 
     // indicate whether we want to see system threads
     private boolean hideSystemThreads;
@@ -129,7 +138,7 @@ public class JdiDebugger extends Debugger
 
         allThreads = new JdiThreadSet();
         treeModel = new JdiThreadTreeModel(new JdiThreadNode());
-        usedNames = new TreeSet();
+        usedNames = new TreeSet<String>();
         hideSystemThreads = true;
     }
 
@@ -220,6 +229,53 @@ public class JdiDebugger extends Debugger
             selfRestart = false;
             machineLoader = null;
         }
+        
+        // A standby VM is only wanted for a restart
+        if (!restart)
+            closeStandbyVM();
+    }
+    
+    /**
+     * Start a VM on standby in the background, unless there is one already,
+     * to replace the current VM when it is restarted. A restart then only
+     * needs to wait for the new VM if it is still starting. This can be
+     * turned off with "bluej.vm.standby".
+     */
+    private synchronized void startStandbyVM()
+    {
+        if (standbyVM != null || standbyLoader != null || !autoRestart
+                || !Config.getPropBoolean("bluej.vm.standby", true))
+            return;
+        
+        standbyLoader = new StandbyLoaderThread();
+        standbyLoader.setPriority(loaderPriority);
+        standbyLoader.start();
+    }
+    
+    /**
+     * Take the VM on standby, if it has started, so that it can be activated
+     * as the current VM.
+     * 
+     * @return  the standby VM, or null if there is none ready
+     */
+    private synchronized VMReference takeStandbyVM()
+    {
+        VMReference vm = standbyVM;
+        standbyVM = null;
+        return vm;
+    }
+    
+    /**
+     * Close the VM on standby, or the one being started.
+     */
+    private synchronized void closeStandbyVM()
+    {
+        // A VM which is still being started is closed once it has started
+        standbyLoader = null;
+        if (standbyVM != null) {
+            standbyVM.close();
+            standbyVM = null;
+        }
     }
 
     /**
@@ -346,6 +402,23 @@ public class JdiDebugger extends Debugger
         return true;
     }
 
+    /**
+     * Add several debugger objects into the project scope at once.
+     */
+    public synchronized void addObjects(String scopeId, Map<String,DebuggerObject> objects)
+    {
+        VMReference vmr = getVMNoWait();
+        if (vmr != null) {
+            Map<String,ObjectReference> refs = new LinkedHashMap<String,ObjectReference>();
+            for (Iterator<Map.Entry<String,DebuggerObject>> i = objects.entrySet().iterator(); i.hasNext(); ) {
+                Map.Entry<String,DebuggerObject> entry = i.next();
+                refs.put(entry.getKey(), ((JdiObject) entry.getValue()).getObjectReference());
+            }
+            vmr.addObjects(scopeId, refs);
+            usedNames.addAll(objects.keySet());
+        }
+    }
+
     /**
      * Remove an object from a package scope (when removed from object bench).
      */
@@ -358,23 +431,16 @@ public class JdiDebugger extends Debugger
     }
 
     /**
-     * Return the debugger objects that exist in the debugger.
-     * 
-     * @return a Map of (String name, DebuggerObject obj) entries
+     * Remove several objects from a package scope at once.
      */
-    public Map getObjects()
+    public void removeObjects(String scopeId, List<String> instanceNames)
     {
-        throw new IllegalStateException("not implemented");
-        // the returned array consists of double the number of objects
-        // they alternate, name, object, name, object
-        // ie.
-        // arrayRef[0] = a field name 0 (StringReference)
-        // arrayRef[1] = a field value 0 (ObjectReference)
-        // arrayRef[2] = a field name 1 (StringReference)
-        // arrayRef[3] = a field value 1 (ObjectReference)
-        //
+        VMReference vmr = getVMNoWait();
+        if (vmr != null) {
+            vmr.removeObjects(scopeId, instanceNames);
+        }
     }
-    
+
     /**
      * Return the machine status; one of the "machine state" constants:
      * NOTREADY, IDLE, RUNNING, or SUSPENDED.
@@ -484,19 +550,22 @@ public class JdiDebugger extends Debugger
                 
                 if (arrayRef != null) {
                     
+                    // Fetch all the values at once, rather than with one request each
+                    List<Value> values = arrayRef.getValues();
+                    
                     // The test case object
-                    ObjectReference testObject = (ObjectReference)arrayRef.getValue(arrayRef.length()-1);
+                    ObjectReference testObject = (ObjectReference) values.get(values.size() - 1);
                     // get the associated JdiObject so that we can get potentially generic fields 
                     // from the test case.
                     JdiObject jdiTestObject = JdiObject.getDebuggerObject(testObject);
                     
                     // last slot in array is test case object so it does not get touched here
                     // our iteration boundary is therefore one less than array length
-                    for (int i = 0; i < arrayRef.length() - 1; i += 2) {
-                        String fieldName = ((StringReference) arrayRef.getValue(i)).value();
+                    for (int i = 0; i < values.size() - 1; i += 2) {
+                        String fieldName = ((StringReference) values.get(i)).value();
                         Field testField = testObject.referenceType().fieldByName(fieldName);            
                         returnMap.put(fieldName, JdiObject
-                                .getDebuggerObject((ObjectReference) arrayRef.getValue(i + 1), testField, jdiTestObject));
+                                .getDebuggerObject((ObjectReference) values.get(i + 1), testField, jdiTestObject));
                     }
                 }
             }
@@ -525,45 +594,129 @@ public class JdiDebugger extends Debugger
      */
     public DebuggerTestResult runTestMethod(String className, String methodName)
     {
-        ArrayReference arrayRef = null;
+        final List<DebuggerTestResult> results = new ArrayList<DebuggerTestResult>(1);
+        runTestMethods(new String [] {className}, new String [] {methodName},
+                new DebuggerTestListener() {
+                    public void testsFinished(List<DebuggerTestResult> finished)
+                    {
+                        results.addAll(finished);
+                    }
+                });
+        return results.get(0);
+    }
 
+    /**
+     * Run a number of test methods, one after another, and report the results
+     * as the tests finish. The tests are run by a single request to the
+     * remote VM; the results of those which have finished are read from it
+     * every RESULTS_INTERVAL milliseconds while the others run.
+     * 
+     * @param classNames   the fully qualified name of the class of each test
+     * @param methodNames  the name of each test method
+     * @param listener     the listener for the results
+     */
+    public void runTestMethods(String [] classNames, String [] methodNames,
+            DebuggerTestListener listener)
+    {
+        StringBuffer tests = new StringBuffer();
+        for (int i = 0; i < classNames.length; i++) {
+            ExecServer.addField(tests, classNames[i]);
+            ExecServer.addField(tests, methodNames[i]);
+        }
+        
+        int reported = 0;
         try {
             VMReference vmr = getVM();
             synchronized (serverThreadLock) {
                 if (vmr != null) {
-                    arrayRef = (ArrayReference) vmr.invokeRunTest(className, methodName);
-                }
-                
-                if (arrayRef != null && arrayRef.length() > 5) {
-                    String failureType = ((StringReference) arrayRef.getValue(0)).value();
-                    String exMsg = ((StringReference) arrayRef.getValue(1)).value();
-                    String traceMsg = ((StringReference) arrayRef.getValue(2)).value();
-                    
-                    String failureClass = ((StringReference) arrayRef.getValue(3)).value();
-                    String failureSource = ((StringReference) arrayRef.getValue(4)).value();
-                    String failureMethod = ((StringReference) arrayRef.getValue(5)).value();
-                    int lineNo = Integer.parseInt(((StringReference) arrayRef.getValue(6)).value());
-                    
-                    SourceLocation failPoint = new SourceLocation(failureClass, failureSource, failureMethod, lineNo);
-                    
-                    if (failureType.equals("failure"))
-                        return new JdiTestResultFailure(className, methodName, exMsg, traceMsg, failPoint);
-                    else
-                        return new JdiTestResultError(className, methodName, exMsg, traceMsg, failPoint);
+                    vmr.startTests(tests.toString());
+                    boolean finished;
+                    do {
+                        finished = vmr.serverThreadStartWait(RESULTS_INTERVAL);
+                        List<String> read = vmr.readTestResults(reported);
+                        if (! read.isEmpty()) {
+                            List<DebuggerTestResult> results = new ArrayList<DebuggerTestResult>(read.size());
+                            for (String result : read) {
+                                results.add(getTestResult(classNames[reported], methodNames[reported], result));
+                                reported++;
+                            }
+                            listener.testsFinished(results);
+                        }
+                    }
+                    while (! finished);
                 }
             }
         }
-        catch (InvocationException ie) {
-            // what to do here??
-            return new JdiTestResultError(className, methodName, "Internal invocation error", "", null);
+        catch (VMDisconnectedException vmde) { }
+        
+        // Any tests which have not been run were stopped by the VM restarting
+        if (reported < classNames.length) {
+            List<DebuggerTestResult> results = new ArrayList<DebuggerTestResult>();
+            for (int i = reported; i < classNames.length; i++) {
+                results.add(new JdiTestResultError(classNames[i], methodNames[i], "VM restarted", "", null));
+            }
+            listener.testsFinished(results);
         }
-        catch (VMDisconnectedException vmde) {
-            return new JdiTestResultError(className, methodName, "VM restarted", "", null);
+    }
+    
+    /**
+     * Run a number of test methods in several test VMs at once (see
+     * ParallelTestRunner), and report the results as the tests finish.
+     * 
+     * @param classNames   the fully qualified name of the class of each test
+     * @param methodNames  the name of each test method
+     * @param vmCount      the greatest number of test VMs to run
+     * @param listener     the listener for the results
+     */
+    public void runTestMethodsInParallel(String [] classNames, String [] methodNames,
+            int vmCount, DebuggerTestListener listener)
+    {
+        new ParallelTestRunner(startingDirectory, lastProjectClassLoader.getURLs(), terminal,
+                vmCount).runTestMethods(classNames, methodNames, listener);
+    }
+    
+    /**
+     * Stop the test runs of this project, destroying their test VMs.
+     */
+    public void stopTestRuns()
+    {
+        ParallelTestRunner.stopRuns(startingDirectory);
+    }
+    
+    /**
+     * Get the result of a test from its result in the remote VM (see
+     * ExecServer.runTestMethod).
+     * 
+     * @param result  null if the test passed, otherwise the fields which
+     *                describe the failure or error
+     */
+    static DebuggerTestResult getTestResult(String className, String methodName, String result)
+    {
+        if (result == null) {
+            return new JdiTestResult(className, methodName);
         }
-
-
-        // a null means that we had success. Return a success test result
-        return new JdiTestResult(className, methodName);
+        
+        int [] pos = new int[1];
+        String failureType = ExecServer.nextField(result, pos);
+        String exMsg = ExecServer.nextField(result, pos);
+        String traceMsg = ExecServer.nextField(result, pos);
+        
+        SourceLocation failPoint = null;
+        if (pos[0] < result.length()) {
+            String failureClass = ExecServer.nextField(result, pos);
+            String failureSource = ExecServer.nextField(result, pos);
+            String failureMethod = ExecServer.nextField(result, pos);
+            int lineNo = Integer.parseInt(ExecServer.nextField(result, pos));
+            if (failureSource.length() == 0) {
+                failureSource = null;
+            }
+            failPoint = new SourceLocation(failureClass, failureSource, failureMethod, lineNo);
+        }
+        
+        if (failureType.equals("failure"))
+            return new JdiTestResultFailure(className, methodName, exMsg, traceMsg, failPoint);
+        else
+            return new JdiTestResultError(className, methodName, exMsg, traceMsg, failPoint);
     }
 
     /**
@@ -602,6 +755,44 @@ public class JdiDebugger extends Debugger
         }
     }
     
+    /**
+     * Define classes in the remote VM's current class loader directly from
+     * their bytecode.
+     */
+    public boolean defineClasses(String [] names, byte [][] bytes)
+    {
+        VMReference vmr = getVM();
+        if (vmr != null) {
+            try {
+                return vmr.defineClasses(names, bytes);
+            }
+            catch (VMDisconnectedException vmde) {}
+        }
+        return false;
+    }
+    
+    /**
+     * Replace the code of classes loaded by the remote VM's current class
+     * loader.
+     */
+    public boolean redefineClasses(String [] names, byte [][] bytes)
+    {
+        VMReference vmr = getVMNoWait();
+        if (vmr != null) {
+            try {
+                if (! vmr.redefineClasses(names, bytes)) {
+                    return false;
+                }
+                vmr.clearAllBreakpoints();
+            }
+            catch (VMDisconnectedException vmde) {}
+        }
+        
+        // If the VM isn't running, the classes will be loaded afresh in the
+        // next one
+        return true;
+    }
+    
     /**
      * Construct a class instance using the default constructor.
      */
@@ -695,6 +886,10 @@ public class JdiDebugger extends Debugger
         // because state change is effectively serialized by VMEventHandler (except
         // in some cases where it is known that no VM is running).
         
+        // Even if the state is unchanged (a thread has stepped, say) values
+        // in the VM may have changed
+        JdiObject.newEpoch();
+        
         if (newState != machineState) {
             
             // If going from running state to notready state, first pass
@@ -881,6 +1076,15 @@ public class JdiDebugger extends Debugger
         updateThreadDisplay();
     }
 
+    /**
+     * Note that values in the remote VM may have changed, so that the values
+     * of objects read before must be read again.
+     */
+    public void valuesChanged()
+    {
+        JdiObject.newEpoch();
+    }
+
     /**
      * Re-build the treeModel for the currently displayed threads using the
      * allThreads set and the 'hideSystemThreads' flag.
@@ -960,7 +1164,17 @@ public class JdiDebugger extends Debugger
         public void run()
         {
             try {
-                vmRef = new VMReference(JdiDebugger.this, terminal, startingDirectory);
+                // Use the VM on standby if there is one; it has already
+                // started, so there is no need to wait.
+                VMReference standby = takeStandbyVM();
+                if (standby != null && standby.activate()) {
+                    vmRef = standby;
+                }
+                else {
+                    if (standby != null)
+                        standby.close();
+                    vmRef = new VMReference(JdiDebugger.this, terminal, startingDirectory);
+                }
                 
                 synchronized(JdiDebugger.this) {
                     if (vmRef.getExitStatus() != Debugger.TERMINATED) {
@@ -968,6 +1182,9 @@ public class JdiDebugger extends Debugger
                             // We now have a running VM.
                             vmRef.newClassLoader(lastProjectClassLoader.getURLs());
                             vmRunning = true;
+                            
+                            // Have the next VM ready for a restart
+                            startStandbyVM();
                         }
                         else {
                             // autoRestart is false - a call to JdiDebugger.close(false)
@@ -1013,4 +1230,33 @@ public class JdiDebugger extends Debugger
                 return vmRef;
         }
     }
+    
+    /**
+     * A thread which starts a VM on standby (see startStandbyVM()).
+     */
+    class StandbyLoaderThread extends Thread
+    {
+        public void run()
+        {
+            VMReference vm = null;
+            try {
+                vm = new VMReference(JdiDebugger.this, terminal, startingDirectory, true);
+            }
+            catch (JdiVmCreationException e) {
+                // There will be no standby VM; a restart will launch a VM
+                // as usual.
+            }
+            
+            synchronized(JdiDebugger.this) {
+                if (standbyLoader == this) {
+                    standbyVM = vm;
+                    standbyLoader = null;
+                }
+                else if (vm != null) {
+                    // closeStandbyVM() was called while it was starting
+                    vm.close();
+                }
+            }
+        }
+    }
 }
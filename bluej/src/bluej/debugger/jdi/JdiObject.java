@@ -22,13 +22,16 @@
 package bluej.debugger.jdi;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import bluej.Config;
 import bluej.debugger.DebuggerClass;
+import bluej.debugger.DebuggerCollection;
 import bluej.debugger.DebuggerObject;
 import bluej.debugger.gentype.JavaType;
 import bluej.debugger.gentype.GenTypeClass;
 import bluej.debugger.gentype.Reflective;
+import bluej.runtime.CollectionSnapshot;
 import bluej.utility.Debug;
 import bluej.utility.JavaNames;
 
@@ -46,6 +49,30 @@ public class JdiObject extends DebuggerObject
     // boolean - true if our JVM supports generics
     static boolean jvmSupportsGenerics = Config.isJava15();
     
+    /**
+     * The debug VM "epoch", which changes whenever the VM, or a thread in it,
+     * is run or stopped, and when the inspectors are updated (as threads may
+     * be running in the background). Values read from the VM stay valid
+     * while it is unchanged.
+     */
+    private static final AtomicInteger epoch = new AtomicInteger();
+    
+    /**
+     * The most values to read in one request. (Asking the debug VM for many
+     * more object references at once exhausts its JDWP agent's memory.)
+     */
+    static final int MAX_VALUES_READ = 10000;
+    
+    /**
+     * Note that the debug VM has been run or stopped, or that values in it
+     * may otherwise have changed, so that values read from it before may no
+     * longer be valid.
+     */
+    static void newEpoch()
+    {
+        epoch.incrementAndGet();
+    }
+    
     /**
      *  Factory method that returns instances of JdiObjects.
      *
@@ -104,6 +131,12 @@ public class JdiObject extends DebuggerObject
     GenTypeClass genType = null; // the generic type, if known
     List<Field> fields;
     
+    // The values of the fields (the elements, for an array) which have been
+    // read from the remote object, and the epoch in which they were read
+    private Value[] values;
+    private boolean[] valuesRead;
+    private int valuesEpoch;
+    
     // used by JdiArray.
     protected JdiObject()
     {
@@ -358,9 +391,9 @@ public class JdiObject extends DebuggerObject
      */
     public DebuggerObject getStaticFieldObject(int slot)
     {
-        Field field = getField(true, slot);
-        ObjectReference val = (ObjectReference) obj.getValue(field);
-        return getDebuggerObject(val, field, this);
+        int index = getFieldIndex(true, slot);
+        ObjectReference val = (ObjectReference) getFieldValue(index);
+        return getDebuggerObject(val, fields.get(index), this);
     }
 
     /**
@@ -372,9 +405,9 @@ public class JdiObject extends DebuggerObject
      */
     public DebuggerObject getInstanceFieldObject(int slot)
     {
-        Field field = getField(false, slot);
-        ObjectReference val = (ObjectReference) obj.getValue(field);
-        return getDebuggerObject(val, field, this);
+        int index = getFieldIndex(false, slot);
+        ObjectReference val = (ObjectReference) getFieldValue(index);
+        return getDebuggerObject(val, fields.get(index), this);
     }
     
     /**
@@ -387,8 +420,7 @@ public class JdiObject extends DebuggerObject
      */
     public DebuggerObject getInstanceFieldObject(int slot, JavaType expectedType)
     {
-        Field field = getField(false, slot);
-        ObjectReference val = (ObjectReference) obj.getValue(field);
+        ObjectReference val = (ObjectReference) getFieldValue(getFieldIndex(false, slot));
         return getDebuggerObject(val, expectedType);
     }
 
@@ -403,7 +435,7 @@ public class JdiObject extends DebuggerObject
     public DebuggerObject getFieldObject(int slot)
     {
         Field field = (Field) fields.get(slot);
-        ObjectReference val = (ObjectReference) obj.getValue(field);
+        ObjectReference val = (ObjectReference) getFieldValue(slot);
         return getDebuggerObject(val, field, this);
     }
     
@@ -417,8 +449,7 @@ public class JdiObject extends DebuggerObject
      */
     public DebuggerObject getFieldObject(int slot, JavaType expectedType)
     {
-        Field field = (Field) fields.get(slot);
-        ObjectReference val = (ObjectReference) obj.getValue(field);
+        ObjectReference val = (ObjectReference) getFieldValue(slot);
         return getDebuggerObject(val, expectedType);
     }
 
@@ -431,15 +462,13 @@ public class JdiObject extends DebuggerObject
     
     public String getFieldValueString(int slot) 
     {
-        Field field = (Field) fields.get(slot);
-        Value val = obj.getValue(field);
+        Value val = getFieldValue(slot);
         return JdiUtils.getJdiUtils().getValueString(val); 
     }
     
     public String getFieldValueTypeString(int slot) 
     {
-        Field field = (Field) fields.get(slot);
-        Value val = obj.getValue(field);
+        Value val = getFieldValue(slot);
         return val.type().name();  
     }
 
@@ -458,7 +487,7 @@ public class JdiObject extends DebuggerObject
      */
     public List<String> getStaticFields(boolean includeModifiers)
     {
-        return getFields(false, true, includeModifiers);
+        return getFields(false, true, includeModifiers, 0, fields.size());
     }
 
     /**
@@ -470,10 +499,35 @@ public class JdiObject extends DebuggerObject
      */
     public List<String> getInstanceFields(boolean includeModifiers)
     {
-        return getFields(false, false, includeModifiers);
+        return getFields(false, false, includeModifiers, 0, fields.size());
+    }
+
+    /**
+     *  Return a list of strings with the description of the instance fields
+     *  in slots 'first' to 'first + count - 1'.
+     */
+    public List<String> getInstanceFields(boolean includeModifiers, int first, int count)
+    {
+        return getFields(false, false, includeModifiers, first, count);
     }
 
 
+    /**
+     *  If this is a collection or map which the remote VM can take a
+     *  snapshot of, return the elements 'first' to 'first + count - 1'.
+     */
+    public DebuggerCollection getElements(int first, int count)
+    {
+        if (obj == null || ! CollectionSnapshot.canTake(obj.referenceType().name())) {
+            return null;
+        }
+        VMReference vmr = VMReference.getVmForMachine(obj.virtualMachine());
+        if (vmr == null) {
+            return null;
+        }
+        return vmr.takeSnapshot(obj, first, count);
+    }
+
     /**
      *  Return a list of strings with the description of each field
      *  in the format "<modifier> <type> <name> = <value>".
@@ -483,7 +537,7 @@ public class JdiObject extends DebuggerObject
      */
     public List<String> getAllFields(boolean includeModifiers)
     {
-        return getFields(true, true, includeModifiers);
+        return getFields(true, true, includeModifiers, 0, fields.size());
     }
 
 
@@ -543,8 +597,7 @@ public class JdiObject extends DebuggerObject
      */
     public boolean fieldIsObject(int slot)
     {
-        Field field = fields.get(slot);
-        Value val = obj.getValue(field);
+        Value val = getFieldValue(slot);
         return (val instanceof ObjectReference);
     }
 
@@ -573,30 +626,36 @@ public class JdiObject extends DebuggerObject
      *  ('getStatic' is ignored). If 'getAll' is false, then 'getStatic'
      *  determines whether static fields or instance fields are returned.
      *
+     *  Only the fields in slots 'first' to 'first + count - 1' (counting
+     *  only the fields which are returned) are described.
+     *
      *@param  getAll            If true, get static and instance fields
      *@param  getStatic         If 'getAll' is false, determine which fields to get
      *@param  includeModifiers  If true, include the modifier name (public, private)
+     *@param  first             The first slot to describe
+     *@param  count             The number of slots to describe
      *@return                   The Fields value
      */
     private List<String> getFields(boolean getAll, boolean getStatic,
-            boolean includeModifiers)
+            boolean includeModifiers, int first, int count)
     {
-        List<String> fieldStrings = new ArrayList<String>(fields.size());
+        List<String> fieldStrings = new ArrayList<String>(Math.min(count, fields.size()));
 
         if (obj == null)
             return fieldStrings;
             
         ReferenceType cls = obj.referenceType();
         List<Field> visible = cls.visibleFields();
+        int slot = 0;
 
-        for (int i = 0; i < fields.size(); i++) {
+        for (int i = 0; i < fields.size() && slot < first + count; i++) {
             Field field = (Field) fields.get(i);
 
             if (checkIgnoreField(field))
                 continue;
 
-            if (getAll || (field.isStatic() == getStatic)) {
-                Value val = obj.getValue(field);
+            if ((getAll || (field.isStatic() == getStatic)) && slot++ >= first) {
+                Value val = getFieldValue(i);
 
                 String valString = JdiUtils.getJdiUtils().getValueString(val);
                 String fieldString = "";
@@ -636,6 +695,17 @@ public class JdiObject extends DebuggerObject
     }
 
     private Field getField(boolean getStatic, int slot)
+    {
+        int index = getFieldIndex(getStatic, slot);
+        return (index == -1) ? null : fields.get(index);
+    }
+
+    /**
+     * Get the index in 'fields' of the static or instance field at 'slot'.
+     * 
+     * @return  the index, or -1 if there is no such field
+     */
+    private int getFieldIndex(boolean getStatic, int slot)
     {
         for (int i = 0; i < fields.size(); i++) {
             Field field = (Field) fields.get(i);
@@ -645,7 +715,7 @@ public class JdiObject extends DebuggerObject
 
             if (field.isStatic() == getStatic) {
                 if (slot == 0) {
-                    return field;
+                    return i;
                 }
                 else {
                     slot--;
@@ -653,7 +723,85 @@ public class JdiObject extends DebuggerObject
             }
         }
         Debug.reportError("invalid slot in remote object");
-        return null;
+        return -1;
+    }
+    
+    /**
+     * Get the value of the field at 'index' in 'fields'. The values of all
+     * the fields are read together, the first time one is needed.
+     */
+    private Value getFieldValue(int index)
+    {
+        fetchValues(0, fields.size());
+        return getValue(index);
+    }
+    
+    /**
+     * Get the number of values which the remote object holds: fields or,
+     * for an array, elements.
+     */
+    int getValueCount()
+    {
+        return fields.size();
+    }
+    
+    /**
+     * Read values from the remote object in a single request: the values of
+     * the fields at indexes 'first' to 'first + count - 1' in 'fields', or,
+     * for an array, those elements.
+     */
+    List<Value> readValues(int first, int count)
+    {
+        List<Field> toRead = fields.subList(first, first + count);
+        Map<Field,Value> read = obj.getValues(toRead);
+        List<Value> result = new ArrayList<Value>(count);
+        for (Field field : toRead) {
+            result.add(read.get(field));
+        }
+        return result;
+    }
+    
+    /**
+     * Make sure that values 'first' to 'first + count - 1' (or as many of
+     * them as exist) have been read from the remote object in the current
+     * epoch. Those which have not are read together, in as few requests as
+     * possible.
+     */
+    final synchronized void fetchValues(int first, int count)
+    {
+        int currentEpoch = epoch.get();
+        if (values == null || valuesEpoch != currentEpoch) {
+            int valueCount = getValueCount();
+            values = new Value[valueCount];
+            valuesRead = new boolean[valueCount];
+            valuesEpoch = currentEpoch;
+        }
+        
+        int last = Math.min(first + count, values.length);
+        while (first < last && valuesRead[first]) {
+            first++;
+        }
+        while (last > first && valuesRead[last - 1]) {
+            last--;
+        }
+        while (first < last) {
+            List<Value> read = readValues(first, Math.min(last - first, MAX_VALUES_READ));
+            for (int i = 0; i < read.size(); i++) {
+                values[first + i] = read.get(i);
+                valuesRead[first + i] = true;
+            }
+            first += read.size();
+        }
+    }
+    
+    /**
+     * Get value 'index' of the remote object (see getValueCount()), reading
+     * just that value if it has not already been read in this epoch.
+     */
+    final synchronized Value getValue(int index)
+    {
+        fetchValues(index, 1);
+        return values[index];
     }
 
     private boolean checkIgnoreField(Field f)
@@ -684,8 +832,7 @@ public class JdiObject extends DebuggerObject
 
     private boolean checkFieldForObject(boolean getStatic, int slot)
     {
-        Field field = getField(getStatic, slot);
-        Value val = obj.getValue(field);
+        Value val = getFieldValue(getFieldIndex(getStatic, slot));
         return (val instanceof ObjectReference);
     }  // list of fields of the object
 
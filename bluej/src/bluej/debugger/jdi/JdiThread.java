@@ -472,6 +472,7 @@ class JdiThread extends DebuggerThread
 	public void halt()
 	{
 		rt.suspend();
+		JdiObject.newEpoch();
 		
 		JdiThreadNode jtn = jttm.findThreadNode(rt);
 		
@@ -485,6 +486,7 @@ class JdiThread extends DebuggerThread
 	public void cont()
 	{
 		rt.resume();		
+		JdiObject.newEpoch();
 
 		JdiThreadNode jtn = jttm.findThreadNode(rt);
 		
@@ -518,6 +520,7 @@ class JdiThread extends DebuggerThread
         request.enable();
 
 		rt.resume();
+		JdiObject.newEpoch();
 
 		JdiThreadNode jtn = jttm.findThreadNode(rt);
 		
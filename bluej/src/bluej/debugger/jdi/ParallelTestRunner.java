@@ -0,0 +1,504 @@
+/*
+ This file is part of the BlueJ program. 
+ Copyright (C) 2010  Michael Kolling and John Rosenberg 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package bluej.debugger.jdi;
+
+import java.io.*;
+import java.net.URL;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import bluej.Boot;
+import bluej.Config;
+import bluej.classmgr.BPClassLoader;
+import bluej.debugger.DebuggerTerminal;
+import bluej.debugger.DebuggerTestListener;
+import bluej.debugger.DebuggerTestResult;
+import bluej.runtime.ExecServer;
+import bluej.runtime.TestWorker;
+import bluej.utility.Debug;
+
+/**
+ * Runs the unit tests of a project in a number of test VMs at once, rather
+ * than one after another in the debug VM. Each test VM runs a test class
+ * at a time (see TestWorker); the classes are handed out as the VMs become
+ * free, those which took longest when last run going first.<p>
+ * 
+ * The test VMs are started for a run and stop when it is finished. They
+ * are headless and not debugged, so a test can't stop at a breakpoint, and
+ * the objects a test creates are not available afterwards.<p>
+ * 
+ * A test which runs for longer than "bluej.testing.timeout" seconds is
+ * stopped, along with its VM, and it and the rest of its class's tests are
+ * errors. The VMs of a project are stopped when its debug VM is reset or
+ * the project is closed (see stopRuns), and when BlueJ exits.
+ * 
+ * @see JdiDebugger#runTestMethodsInParallel(String[], String[], int, DebuggerTestListener)
+ */
+class ParallelTestRunner
+{
+    /** The time, in milliseconds, each test class took when it last ran */
+    private static Map<String,Long> durations = new ConcurrentHashMap<String,Long>();
+    
+    /** The runs in progress */
+    private static Set<ParallelTestRunner> runs = new HashSet<ParallelTestRunner>();
+    
+    /** The timer which stops test VMs whose tests take too long */
+    private static Timer timeoutTimer;
+    
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread("BlueJ test VM shutdown") {
+            public void run()
+            {
+                stopRuns(null);
+            }
+        });
+    }
+    
+    private File startingDirectory;
+    private URL [] classPath;
+    private DebuggerTerminal terminal;
+    private int vmCount;
+    private long timeout;
+    
+    /** The test VMs running; null once the run has been stopped */
+    private List<TestVM> vms = new ArrayList<TestVM>();
+    
+    /**
+     * Create a runner for the tests of a project.
+     * 
+     * @param startingDirectory  the directory the test VMs run in
+     * @param classPath          the project's class path
+     * @param terminal           the terminal for the output of the tests
+     * @param vmCount            the greatest number of test VMs to run
+     */
+    ParallelTestRunner(File startingDirectory, URL [] classPath,
+            DebuggerTerminal terminal, int vmCount)
+    {
+        this(startingDirectory, classPath, terminal, vmCount,
+                Config.getPropInteger("bluej.testing.timeout", 60) * 1000L);
+    }
+    
+    /**
+     * Create a runner for the tests of a project, with the given timeout
+     * (in milliseconds, or 0 for none) for each test.
+     */
+    ParallelTestRunner(File startingDirectory, URL [] classPath,
+            DebuggerTerminal terminal, int vmCount, long timeout)
+    {
+        this.startingDirectory = startingDirectory;
+        this.classPath = classPath;
+        this.terminal = terminal;
+        this.vmCount = vmCount;
+        this.timeout = timeout;
+    }
+    
+    /**
+     * Stop the test runs of a project, destroying their test VMs. Tests
+     * which have not finished are not reported.
+     * 
+     * @param startingDirectory  the directory the project's test VMs run
+     *                           in, or null to stop all runs
+     */
+    static void stopRuns(File startingDirectory)
+    {
+        List<ParallelTestRunner> toStop = new ArrayList<ParallelTestRunner>();
+        synchronized (runs) {
+            for (ParallelTestRunner run : runs) {
+                if (startingDirectory == null || startingDirectory.equals(run.startingDirectory)) {
+                    toStop.add(run);
+                }
+            }
+        }
+        for (ParallelTestRunner run : toStop) {
+            run.stop();
+        }
+    }
+    
+    /**
+     * Stop this run, destroying its test VMs.
+     */
+    private void stop()
+    {
+        List<TestVM> running;
+        synchronized (this) {
+            running = vms;
+            vms = null;
+        }
+        if (running != null) {
+            for (TestVM vm : running) {
+                vm.destroy();
+            }
+        }
+    }
+    
+    /**
+     * Check whether this run has been stopped.
+     */
+    private synchronized boolean isStopped()
+    {
+        return vms == null;
+    }
+    
+    /**
+     * Start a test VM for this run. Returns null if the run has been
+     * stopped.
+     */
+    private TestVM startVM()
+        throws IOException
+    {
+        TestVM vm = newVM();
+        synchronized (this) {
+            if (vms != null) {
+                vms.add(vm);
+                return vm;
+            }
+        }
+        vm.destroy();
+        return null;
+    }
+    
+    /**
+     * Start a test VM, with the runtime and the project's classes on its
+     * class path.
+     */
+    TestVM newVM()
+        throws IOException
+    {
+        return new ProcessTestVM();
+    }
+    
+    /**
+     * Read the result of the next test from a test VM. If it takes too
+     * long, the VM is destroyed. Returns null if the VM has stopped.
+     */
+    private String readResult(final TestVM vm)
+        throws IOException
+    {
+        TimerTask timeoutTask = null;
+        if (timeout > 0) {
+            timeoutTask = new TimerTask() {
+                public void run()
+                {
+                    vm.timedOut = true;
+                    vm.destroy();
+                }
+            };
+            getTimeoutTimer().schedule(timeoutTask, timeout);
+        }
+        try {
+            return vm.readResult();
+        }
+        finally {
+            if (timeoutTask != null) {
+                timeoutTask.cancel();
+            }
+        }
+    }
+    
+    /**
+     * Forget a test VM which has finished, or been destroyed.
+     */
+    private synchronized void removeVM(TestVM vm)
+    {
+        if (vms != null) {
+            vms.remove(vm);
+        }
+    }
+    
+    /**
+     * Get the timer used to stop test VMs whose tests take too long.
+     */
+    private static synchronized Timer getTimeoutTimer()
+    {
+        if (timeoutTimer == null) {
+            timeoutTimer = new Timer("BlueJ test timeout", true);
+        }
+        return timeoutTimer;
+    }
+    
+    /**
+     * Run a number of test methods, and report the result of each as it
+     * finishes. The listener is called from several threads, though never
+     * by two at once. Returns when all the tests have run, or the run has
+     * been stopped.
+     * 
+     * @param classNames   the fully qualified name of the class of each test
+     * @param methodNames  the name of each test method
+     * @param listener     the listener for the results
+     */
+    void runTestMethods(String [] classNames, String [] methodNames,
+            final DebuggerTestListener listener)
+    {
+        final Map<String,List<String>> tests = new HashMap<String,List<String>>();
+        List<String> classes = new ArrayList<String>();
+        for (int i = 0; i < classNames.length; i++) {
+            List<String> methods = tests.get(classNames[i]);
+            if (methods == null) {
+                methods = new ArrayList<String>();
+                tests.put(classNames[i], methods);
+                classes.add(classNames[i]);
+            }
+            methods.add(methodNames[i]);
+        }
+        
+        // Those classes which took longest go first, so that the VMs finish
+        // at about the same time. Those not yet run may be the longest.
+        Collections.sort(classes, new Comparator<String>() {
+            public int compare(String a, String b)
+            {
+                Long durationA = durations.get(a);
+                Long durationB = durations.get(b);
+                if (durationA == null || durationB == null) {
+                    return (durationA == null ? 0 : 1) - (durationB == null ? 0 : 1);
+                }
+                return durationB.compareTo(durationA);
+            }
+        });
+        
+        synchronized (runs) {
+            runs.add(this);
+        }
+        
+        final Queue<String> queue = new ConcurrentLinkedQueue<String>(classes);
+        Thread [] threads = new Thread[Math.min(vmCount, classes.size())];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread("BlueJ test VM " + (i + 1)) {
+                public void run()
+                {
+                    runClasses(queue, tests, listener);
+                }
+            };
+            threads[i].start();
+        }
+        
+        boolean interrupted = false;
+        for (int i = 0; i < threads.length; i++) {
+            try {
+                threads[i].join();
+            }
+            catch (InterruptedException ie) {
+                // Stop the VMs, and wait for the threads to finish
+                stop();
+                interrupted = true;
+                i--;
+            }
+        }
+        
+        synchronized (runs) {
+            runs.remove(this);
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * Run test classes from the queue, in a test VM, until the queue is
+     * empty or the run is stopped. If the VM stops before a class's tests
+     * have all run, or a test takes too long, those remaining are errors,
+     * and another VM is started for the next class.
+     */
+    private void runClasses(Queue<String> queue, Map<String,List<String>> tests,
+            DebuggerTestListener listener)
+    {
+        TestVM vm = null;
+        String className = queue.poll();
+        while (className != null && ! isStopped()) {
+            List<String> methods = tests.get(className);
+            int reported = 0;
+            try {
+                if (vm == null) {
+                    vm = startVM();
+                    if (vm == null) {
+                        break;
+                    }
+                }
+                long start = System.currentTimeMillis();
+                vm.startTests(className, methods);
+                while (reported < methods.size()) {
+                    String result = readResult(vm);
+                    if (result == null) {
+                        throw new EOFException();
+                    }
+                    report(listener, JdiDebugger.getTestResult(className, methods.get(reported),
+                            result.length() == 0 ? null : result));
+                    reported++;
+                }
+                durations.put(className, System.currentTimeMillis() - start);
+            }
+            catch (IOException ioe) {
+                // The VM couldn't be started, or it stopped (perhaps a test
+                // called System.exit())
+                if (vm == null) {
+                    Debug.reportError("Could not start test VM: " + ioe);
+                }
+                if (isStopped()) {
+                    break;
+                }
+                for (int i = reported; i < methods.size(); i++) {
+                    String message = "VM terminated";
+                    if (i == reported && vm != null && vm.timedOut) {
+                        message = "Test timed out after " + timeout / 1000 + " seconds";
+                    }
+                    report(listener, new JdiTestResultError(className, methods.get(i),
+                            message, "", null));
+                }
+                if (vm != null) {
+                    vm.destroy();
+                    removeVM(vm);
+                    vm = null;
+                }
+            }
+            className = queue.poll();
+        }
+        
+        if (vm != null) {
+            if (isStopped()) {
+                vm.destroy();
+            }
+            else {
+                vm.close();
+            }
+            removeVM(vm);
+        }
+    }
+    
+    /**
+     * Report the result of a single test to the listener.
+     */
+    private static void report(DebuggerTestListener listener, DebuggerTestResult result)
+    {
+        synchronized (listener) {
+            listener.testsFinished(Collections.singletonList(result));
+        }
+    }
+    
+    /**
+     * A running test VM.
+     */
+    static abstract class TestVM
+    {
+        /** Whether the VM was destroyed because a test took too long */
+        volatile boolean timedOut;
+        
+        /**
+         * Ask the VM to run some of the test methods of a class.
+         */
+        abstract void startTests(String className, List<String> methods)
+            throws IOException;
+        
+        /**
+         * Read the result of the next test (see TestWorker). Returns null
+         * if the VM has stopped.
+         */
+        abstract String readResult()
+            throws IOException;
+        
+        /**
+         * Let the VM finish, once it has run its tests.
+         */
+        abstract void close();
+        
+        /**
+         * Stop the VM.
+         */
+        abstract void destroy();
+    }
+    
+    /**
+     * A test VM running in a separate process.
+     */
+    private class ProcessTestVM extends TestVM
+    {
+        private Process process;
+        private Writer commands;
+        private Reader results;
+        private VMReference.IOHandlerThread errorRedirector;
+        
+        ProcessTestVM()
+            throws IOException
+        {
+            List<URL> urls = new ArrayList<URL>();
+            urls.addAll(Arrays.asList(Boot.getInstance().getRuntimeUserClassPath()));
+            urls.addAll(Arrays.asList(classPath));
+            String allClassPath = BPClassLoader.toClasspathString(
+                    BPClassLoader.toFiles(urls.toArray(new URL[urls.size()])));
+            
+            List<String> paramList = new ArrayList<String>();
+            paramList.add(Config.getJDKExecutablePath(null, "java"));
+            paramList.addAll(Config.getDebugVMArgs());
+            paramList.add("-Djava.awt.headless=true");
+            paramList.add("-classpath");
+            paramList.add(allClassPath);
+            paramList.add(TestWorker.class.getName());
+            String [] params = paramList.toArray(new String[paramList.size()]);
+            
+            process = Runtime.getRuntime().exec(params, null, startingDirectory);
+            commands = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), "UTF-8"));
+            results = new BufferedReader(new InputStreamReader(process.getInputStream(), "UTF-8"));
+            errorRedirector = new VMReference.IOHandlerThread(
+                    new InputStreamReader(process.getErrorStream()), terminal.getWriter());
+            errorRedirector.start();
+        }
+        
+        void startTests(String className, List<String> methods)
+            throws IOException
+        {
+            StringBuffer command = new StringBuffer();
+            ExecServer.addField(command, className);
+            ExecServer.addField(command, Integer.toString(methods.size()));
+            for (String method : methods) {
+                ExecServer.addField(command, method);
+            }
+            commands.write(command.toString());
+            commands.flush();
+        }
+        
+        String readResult()
+            throws IOException
+        {
+            return TestWorker.readField(results);
+        }
+        
+        void close()
+        {
+            try {
+                commands.close();
+                process.waitFor();
+                errorRedirector.join();
+            }
+            catch (IOException ioe) {
+                destroy();
+            }
+            catch (InterruptedException ie) {
+                destroy();
+            }
+        }
+        
+        void destroy()
+        {
+            process.destroy();
+            errorRedirector.close();
+        }
+    }
+}
@@ -30,6 +30,7 @@ import java.io.Reader;
 import java.io.Writer;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
@@ -46,6 +47,7 @@ import bluej.debugger.DebuggerTerminal;
 import bluej.debugger.ExceptionDescription;
 import bluej.debugger.SourceLocation;
 import bluej.debugger.gentype.GenTypeClass;
+import bluej.runtime.CollectionSnapshot;
 import bluej.runtime.ExecServer;
 import bluej.utility.Debug;
 
@@ -148,6 +150,19 @@ class VMReference
     private VirtualMachine machine = null;
     private Process remoteVMprocess = null;
 
+    // Whether the VM is on standby: started before it is needed, to replace
+    // the current VM when that is restarted. Until it is activated, its
+    // events are not passed on to the owner, and its standard streams are
+    // not connected to the terminal.
+    private volatile boolean standby;
+    
+    // held while thread start and death events are passed to the owner
+    private Object threadEventLock = new Object();
+    
+    // the threads started while on standby (which the owner is told about
+    // when the VM is activated)
+    private List<ThreadReference> standbyThreads = new ArrayList<ThreadReference>();
+
     // The handler for virtual machine events
     private VMEventHandler eventHandler = null;
 
@@ -163,12 +178,29 @@ class VMReference
     private ThreadReference workerThread = null;
     private boolean workerThreadReady = false;
     private BreakpointRequest workerBreakpoint;
+    
+    // array types of system classes, which are loaded only once (see getSystemArrayType)
+    private Map<String,ArrayType> systemArrayTypes = new HashMap<String,ArrayType>();
+    private static final String [] SYSTEM_ARRAY_TYPES = {
+        "[Ljava.lang.Object;", "[Ljava.lang.String;", "[B", "[[B"
+    };
 
     // a record of the threads we start up for
     // redirecting ExecServer streams
     private IOHandlerThread inputStreamRedirector = null;
     private IOHandlerThread outputStreamRedirector = null;
     private IOHandlerThread errorStreamRedirector = null;
+    
+    // the terminal and the streams of the VM process, kept until the streams
+    // are connected to the terminal (see launchVM)
+    private DebuggerTerminal terminal;
+    private Reader errorReader;
+    private Reader outReader;
+    private Writer inputWriter;
+
+    // the start of the line the debug VM prints when it is waiting for the
+    // debugger to connect, which ends with the port number
+    private static final String LISTEN_MESSAGE = "Listening for transport dt_socket at address:";
 
     // the current class loader in the ExecServer
     private ClassLoaderReference currentLoader = null;
@@ -179,6 +211,8 @@ class VMReference
     // A counter for giving names to shared memory blocks for the shared
     // memory transport
     static private int shmCount = 0;
+    // whether the class data sharing archive was found to be missing
+    static private boolean sharedArchiveMissing = false;
     // array index of memory transport parameter 
     private int transportIndex = 0;
     
@@ -201,6 +235,7 @@ class VMReference
 
         int portNumber;
         String [] launchParams;
+        long launchStart = System.currentTimeMillis();
 
         // launch the VM using the runtime classpath.
         Boot boot = Boot.getInstance();
@@ -215,6 +250,8 @@ class VMReference
         
         paramList.addAll(Config.getDebugVMArgs());
         
+        paramList.addAll(getSharedArchiveOptions());
+        
         paramList.add("-classpath");
         paramList.add(allClassPath);
         paramList.add("-Xdebug");
@@ -330,11 +367,13 @@ class VMReference
                         remoteVMprocess = null;
                         throw t;
                     }
-                    Debug.log("Connected to debug VM via dt_socket transport...");
+                    Debug.log("Connected to debug VM via dt_socket transport ("
+                            + (System.currentTimeMillis() - launchStart) + " ms)...");
                     machine = m;
                     setupEventHandling();
                     waitForStartup();
-                    Debug.log("Communication with debug VM fully established.");
+                    Debug.log("Communication with debug VM fully established ("
+                            + (System.currentTimeMillis() - launchStart) + " ms).");
                     return m;
                 }
                 catch(Throwable t) {
@@ -378,11 +417,13 @@ class VMReference
                             remoteVMprocess = null;
                             throw t;
                         }
-                        Debug.log("Connected to debug VM via dt_shmem transport...");
+                        Debug.log("Connected to debug VM via dt_shmem transport ("
+                                + (System.currentTimeMillis() - launchStart) + " ms)...");
                         machine = m;
                         setupEventHandling();
                         waitForStartup();
-                        Debug.log("Communication with debug VM fully established.");
+                        Debug.log("Communication with debug VM fully established ("
+                                + (System.currentTimeMillis() - launchStart) + " ms).");
                         return m;
                     }
                 }
@@ -431,12 +472,76 @@ class VMReference
         eventHandler = new VMEventHandler(this, machine);
     }
 
+    /**
+     * Get the options for the debug VM to use the class data sharing archive
+     * named by "bluej.vm.sharedArchive", if any, so that it starts faster.
+     * The archive is made by the "runtime-cds" build target; it can't be made
+     * by the debug VM itself, as a VM being debugged can't write one. If the
+     * archive doesn't match the VM or the runtime jars (because they have
+     * been rebuilt since), the VM starts without it. The warning it would
+     * print is turned off, as it would come before the line giving the port
+     * to connect to.<p>
+     * 
+     * Archives of this kind need Java 13 or later; older VMs don't accept
+     * the option at all, so it is not given to them.
+     * 
+     * @return  the options (none if no archive is used)
+     */
+    private static synchronized List<String> getSharedArchiveOptions()
+    {
+        List<String> options = new ArrayList<String>();
+        String archiveName = Config.getPropString("bluej.vm.sharedArchive", null);
+        if (archiveName == null || archiveName.length() == 0
+                || getJavaMajorVersion() < 13) {
+            return options;
+        }
+        
+        File archive = new File(archiveName);
+        if (! archive.isAbsolute()) {
+            archive = new File(Config.getBlueJLibDir(), archiveName);
+        }
+        if (! archive.exists()) {
+            if (! sharedArchiveMissing) {
+                Debug.log("Class data sharing archive " + archive + " not found");
+                sharedArchiveMissing = true;
+            }
+            return options;
+        }
+        options.add("-XX:SharedArchiveFile=" + archive.getPath());
+        options.add("-Xshare:auto");
+        options.add("-Xlog:cds=off,cds+dynamic=off");
+        return options;
+    }
+    
+    /**
+     * Get the major version of the Java the debug VM runs on (the same as
+     * BlueJ's): 5 for "1.5", 13 for "13", and so on.
+     */
+    private static int getJavaMajorVersion()
+    {
+        String version = System.getProperty("java.specification.version");
+        if (version.startsWith("1.")) {
+            version = version.substring(2);
+        }
+        int dot = version.indexOf('.');
+        if (dot != -1) {
+            version = version.substring(0, dot);
+        }
+        try {
+            return Integer.parseInt(version);
+        }
+        catch (NumberFormatException nfe) {
+            return 0;
+        }
+    }
+
     /**
      * Launch the debug VM and set up the I/O connectors to the terminal.
      * @param initDir   the directory which the vm should be started in
      * @param params    the parameters (including executable as first param)
-     * @param line      a buffer which receives the first line of output from
-     *                  the debug vm process
+     * @param line      a buffer which receives the line of output from the
+     *                  debug vm process which gives the port to connect to
+     *                  (or the last line, if there is no such line)
      * @param term      the terminal to connect to process I/O
      */
     private Process launchVM(File initDir, String [] params, StringBuffer line, DebuggerTerminal term)
@@ -444,7 +549,17 @@ class VMReference
     {    
         Process vmProcess = Runtime.getRuntime().exec(params, null, initDir);
         BufferedReader br = new BufferedReader(new InputStreamReader(vmProcess.getInputStream()));
+        
+        // The VM may print warnings before the line giving the port
         String listenMessage = br.readLine();
+        while (listenMessage != null && ! listenMessage.startsWith(LISTEN_MESSAGE)) {
+            Debug.message("Output from debug VM before it listened: " + listenMessage);
+            String next = br.readLine();
+            if (next == null) {
+                break;
+            }
+            listenMessage = next;
+        }
         line.append(listenMessage);
         
         // grab anything else the VM spits out before we try to connect to it.
@@ -453,10 +568,11 @@ class VMReference
             StringBuffer extra = new StringBuffer();
             // Two streams to check: standard output and standard error
                 
+            // The VM has stopped to wait for us by now, so anything it wrote
+            // before the line above is already there: only wait for more if
+            // there is some.
             char [] buf = new char[1024];
             for (int i = 0; i < 5; i++) {
-                Thread.sleep(200);
-                
                 // discontinue if no data available or stream closed
                 if (! br.ready())
                     break;
@@ -465,6 +581,7 @@ class VMReference
                     break;
                 
                 extra.append(buf, 0, len);
+                Thread.sleep(200);
             }
             if (extra.length() != 0) {
                 Debug.message("Extra output from debug VM on launch:" + extra);
@@ -473,12 +590,8 @@ class VMReference
         catch (InterruptedException ie) {}
         
         // redirect standard streams from process to Terminal
-        // error stream System.err
-        Reader errorReader = null;
-        // output stream System.out
-        Reader outReader = null;
-        // input stream System.in
-        Writer inputWriter = null;
+        // (for a VM on standby, this is done when it is activated)
+        terminal = term;
         
         if(isDefaultEncoding) {
             errorReader = new InputStreamReader(vmProcess.getErrorStream());
@@ -492,12 +605,22 @@ class VMReference
             inputWriter = new OutputStreamWriter(vmProcess.getOutputStream(), streamEncoding);
         }
         
-        errorStreamRedirector = redirectIOStream(errorReader, term.getErrorWriter());
-        outputStreamRedirector = redirectIOStream(outReader, term.getWriter());
-        inputStreamRedirector = redirectIOStream(term.getReader(), inputWriter);
+        if (! standby) {
+            redirectIOStreams();
+        }
         
         return vmProcess;
     }
+    
+    /**
+     * Connect the standard streams of the VM process to the terminal.
+     */
+    private void redirectIOStreams()
+    {
+        errorStreamRedirector = redirectIOStream(errorReader, terminal.getErrorWriter());
+        outputStreamRedirector = redirectIOStream(outReader, terminal.getWriter());
+        inputStreamRedirector = redirectIOStream(terminal.getReader(), inputWriter);
+    }
 
     /**
      * Parse the message printed when starting up in server=y mode but when no
@@ -513,7 +636,7 @@ class VMReference
         int colonIndex = msg.indexOf(":");
         int val = -1;
 
-        if (! msg.startsWith("Listening for transport dt_socket at address:")) {
+        if (! msg.startsWith(LISTEN_MESSAGE)) {
             return -1;
         }
         
@@ -535,8 +658,20 @@ class VMReference
      */
     public VMReference(JdiDebugger owner, DebuggerTerminal term, File initialDirectory)
         throws JdiVmCreationException
+    {
+        this(owner, term, initialDirectory, false);
+    }
+    
+    /**
+     * Create the second virtual machine and start the execution server on
+     * that machine, possibly to wait on standby until it is activated.
+     */
+    public VMReference(JdiDebugger owner, DebuggerTerminal term, File initialDirectory,
+            boolean standby)
+        throws JdiVmCreationException
     {
         this.owner = owner;
+        this.standby = standby;
         
         // machine will be suspended at startup
         machine = localhostSocketLaunch(initialDirectory, term, Bootstrap.virtualMachineManager());
@@ -550,6 +685,34 @@ class VMReference
         vmToReferenceMap.put(machine, this);
     }
 
+    /**
+     * Activate a VM which is on standby, so that it becomes the owner's
+     * current VM: connect its streams to the terminal, and tell the owner
+     * about the threads it is running and that it is idle.
+     * 
+     * @return  false if the VM has already ended, in which case it can't
+     *          be used
+     */
+    public boolean activate()
+    {
+        synchronized (this) {
+            if (exitStatus == Debugger.TERMINATED) {
+                return false;
+            }
+            standby = false;
+        }
+        
+        redirectIOStreams();
+        synchronized (threadEventLock) {
+            for (ThreadReference thread : standbyThreads) {
+                owner.threadStart(thread);
+            }
+            standbyThreads = null;
+        }
+        owner.raiseStateChangeEvent(Debugger.IDLE);
+        return true;
+    }
+
     /**
      * Wait for all our virtual machine initialisation to occur.
      */
@@ -800,6 +963,353 @@ class VMReference
         }
     }
     
+    /**
+     * Replace the code of those of some classes which the current class
+     * loader has loaded. Methods which are running carry on with their old
+     * code. The JDI can't do this if anything else about the classes has
+     * changed (such as their fields, or the methods they have).
+     * 
+     * @param names  The binary names of the classes
+     * @param bytes  The new class file contents of each class
+     * @return  true if the loaded classes were replaced, or none of them were
+     *          loaded; false if they can't be replaced.
+     */
+    boolean redefineClasses(String [] names, byte [][] bytes)
+    {
+        if (currentLoader == null) {
+            return true;
+        }
+        
+        Map<String,byte[]> classes = new HashMap<String,byte[]>();
+        for (int i = 0; i < names.length; i++) {
+            classes.put(names[i], bytes[i]);
+        }
+        
+        Map<ReferenceType,byte[]> redefinitions = new HashMap<ReferenceType,byte[]>();
+        Iterator<ReferenceType> i = currentLoader.definedClasses().iterator();
+        while (i.hasNext()) {
+            ReferenceType type = i.next();
+            byte [] classBytes = classes.get(type.name());
+            if (classBytes != null) {
+                redefinitions.put(type, classBytes);
+            }
+        }
+        if (redefinitions.isEmpty()) {
+            return true;
+        }
+        
+        if (! machine.canRedefineClasses()) {
+            return false;
+        }
+        try {
+            machine.redefineClasses(redefinitions);
+            return true;
+        }
+        catch (UnsupportedOperationException uoe) {
+            // The classes have changed in more than their code
+            return false;
+        }
+        catch (LinkageError le) {
+            // The class files are not valid, or not for these classes
+            return false;
+        }
+    }
+    
+    /**
+     * Define classes in the remote machine's current class loader directly
+     * from their bytecode, and load the first of them. The classes are sent
+     * in a single request to the worker thread.
+     * 
+     * @param names  The binary names of the classes
+     * @param bytes  The class file contents of each class
+     * @return  true if the classes were defined, or false if the remote
+     *          class loader does not support it (the classes must then be
+     *          loaded from class files).
+     */
+    boolean defineClasses(String [] names, byte [][] bytes)
+    {
+        synchronized(workerThread) {
+            boolean needsMachineResume = false;
+            try {
+                workerThreadReadyWait();
+                
+                ArrayType stringArray = getSystemArrayType("[Ljava.lang.String;");
+                ArrayType byteArrayArray = getSystemArrayType("[[B");
+                ArrayType byteArray = getSystemArrayType("[B");
+                
+                // Suspend the machine to prevent the new arrays from being
+                // garbage collected before they are stored (see invokeConstructor).
+                machine.suspend();
+                needsMachineResume = true;
+                
+                ArrayReference namesArray = stringArray.newInstance(names.length);
+                ArrayReference bytesArray = byteArrayArray.newInstance(names.length);
+                List<Value> nameValues = new ArrayList<Value>(names.length);
+                List<Value> classArrays = new ArrayList<Value>(names.length);
+                for (int i = 0; i < names.length; i++) {
+                    nameValues.add(machine.mirrorOf(names[i]));
+                    
+                    ArrayReference classArray = byteArray.newInstance(bytes[i].length);
+                    if (bytes[i].length != 0) {
+                        List<Value> byteValues = new ArrayList<Value>(bytes[i].length);
+                        for (int j = 0; j < bytes[i].length; j++) {
+                            byteValues.add(machine.mirrorOf(bytes[i][j]));
+                        }
+                        classArray.setValues(byteValues);
+                    }
+                    classArrays.add(classArray);
+                }
+                namesArray.setValues(nameValues);
+                bytesArray.setValues(classArrays);
+                
+                setStaticFieldValue(serverClass, ExecServer.WORKER_ACTION_NAME, machine.mirrorOf(ExecServer.DEFINE_CLASSES));
+                setStaticFieldValue(serverClass, ExecServer.CLASSNAMES_NAME, namesArray);
+                setStaticFieldValue(serverClass, ExecServer.CLASSBYTES_NAME, bytesArray);
+                machine.resume();
+                needsMachineResume = false;
+                
+                workerThreadReady = false;
+                workerThread.resume();
+                workerThreadReadyWait();
+                
+                return getStaticFieldObject(serverClass, ExecServer.WORKER_RETURN_NAME) != null;
+            }
+            catch (ClassNotFoundException cnfe) { }
+            catch (ClassNotLoadedException cnle) { }
+            catch (InvalidTypeException ite) { }
+            finally {
+                if (needsMachineResume) {
+                    machine.resume();
+                }
+            }
+            return false;
+        }
+    }
+    
+    /**
+     * Have the worker thread perform a batch of actions. However many actions
+     * the batch holds, it is sent with a fixed, small number of JDI requests.
+     * 
+     * May throw VMDisconnectedException.
+     * 
+     * @param batch     The actions to perform
+     * @param waitDone  Whether to wait for the actions to be performed and
+     *                  return their results
+     * @return  The result of each action (see ExecServer.runBatch), or null if
+     *          not waiting or the batch couldn't be sent
+     */
+    List<Value> runBatch(WorkerBatch batch, boolean waitDone)
+    {
+        synchronized(workerThread) {
+            boolean needsMachineResume = false;
+            try {
+                workerThreadReadyWait();
+                
+                List<ObjectReference> objects = batch.getObjects();
+                ArrayType objectArray = null;
+                if (! objects.isEmpty()) {
+                    objectArray = getSystemArrayType("[Ljava.lang.Object;");
+                }
+                
+                // Suspend the machine to prevent the command string and the array
+                // from being garbage collected before they are stored.
+                machine.suspend();
+                needsMachineResume = true;
+                
+                ArrayReference objectsArray = null;
+                if (objectArray != null) {
+                    objectsArray = objectArray.newInstance(objects.size());
+                    objectsArray.setValues(objects);
+                }
+                
+                setStaticFieldValue(serverClass, ExecServer.WORKER_ACTION_NAME, machine.mirrorOf(ExecServer.BATCH));
+                setStaticFieldValue(serverClass, ExecServer.BATCH_COMMANDS_NAME, machine.mirrorOf(batch.getCommands()));
+                setStaticFieldValue(serverClass, ExecServer.BATCH_OBJECTS_NAME, objectsArray);
+                machine.resume();
+                needsMachineResume = false;
+                
+                workerThreadReady = false;
+                workerThread.resume();
+                if (! waitDone) {
+                    return null;
+                }
+                workerThreadReadyWait();
+                
+                ArrayReference results = (ArrayReference) getStaticFieldObject(serverClass, ExecServer.WORKER_RETURN_NAME);
+                return (results != null) ? results.getValues() : null;
+            }
+            catch (ClassNotFoundException cnfe) { }
+            catch (ClassNotLoadedException cnle) { }
+            catch (InvalidTypeException ite) { }
+            finally {
+                if (needsMachineResume) {
+                    machine.resume();
+                }
+            }
+            return null;
+        }
+    }
+    
+    /**
+     * Take a snapshot of some of the elements of a collection or map, with
+     * the worker thread (see CollectionSnapshot.take).
+     * 
+     * May throw VMDisconnectedException.
+     * 
+     * @return  The snapshot, or null if one couldn't be taken
+     */
+    JdiCollection takeSnapshot(ObjectReference collection, int first, int count)
+    {
+        // The worker thread must not wait for a lock which a stopped (or
+        // busy) thread holds. It takes no locks for the other classes.
+        if (CollectionSnapshot.takesLock(collection.referenceType().name())) {
+            return readElements(collection, first, count);
+        }
+        
+        synchronized(workerThread) {
+            WorkerBatch batch = new WorkerBatch();
+            batch.takeSnapshot(collection, first, count);
+            List<Value> results = runBatch(batch, true);
+            if (results == null || results.get(0) == null) {
+                return null;
+            }
+            
+            // Read the snapshot while the worker thread still holds it, so
+            // that it can't be garbage collected
+            List<Value> snapshot = ((ArrayReference) results.get(0)).getValues();
+            String descriptions = ((StringReference) snapshot.get(0)).value();
+            ArrayReference elements = (ArrayReference) snapshot.get(1);
+            return new JdiCollection(first, descriptions,
+                    readArray(elements, 0, elements.length()));
+        }
+    }
+    
+    /**
+     * Read some of the elements of a Vector (or Stack) or entries of a
+     * Hashtable from its fields, with the machine suspended so that they
+     * are consistent.
+     * 
+     * May throw VMDisconnectedException.
+     * 
+     * @return  The elements, or null if they couldn't be read
+     */
+    private static JdiCollection readElements(ObjectReference collection, int first, int count)
+    {
+        VirtualMachine machine = collection.virtualMachine();
+        ReferenceType type = collection.referenceType();
+        Field dataField = type.fieldByName("elementData");
+        Field countField = type.fieldByName("elementCount");
+        Field tableField = type.fieldByName("table");
+        if (tableField != null) {
+            countField = type.fieldByName("count");
+        }
+        if (countField == null || (dataField == null && tableField == null)) {
+            return null;
+        }
+        
+        machine.suspend();
+        try {
+            int size = ((IntegerValue) collection.getValue(countField)).value();
+            int last = Math.min(first + count, size);
+            first = Math.min(first, last);
+            if (dataField != null) {
+                ArrayReference data = (ArrayReference) collection.getValue(dataField);
+                return new JdiCollection(first, size, false, readArray(data, first, last - first));
+            }
+            
+            // Go through the table from the end, as the iterator does,
+            // reading the keys and values of the entries wanted
+            List<Value> values = new ArrayList<Value>();
+            ArrayReference table = (ArrayReference) collection.getValue(tableField);
+            List<Value> buckets = readArray(table, 0, table.length());
+            List<Field> entryFields = null;
+            int index = 0;
+            for (int i = buckets.size() - 1; i >= 0 && index < last; i--) {
+                ObjectReference entry = (ObjectReference) buckets.get(i);
+                while (entry != null && index < last) {
+                    if (entryFields == null) {
+                        ReferenceType entryType = entry.referenceType();
+                        entryFields = Arrays.asList(new Field [] {entryType.fieldByName("next"),
+                                entryType.fieldByName("key"), entryType.fieldByName("value")});
+                        if (entryFields.contains(null)) {
+                            return null;
+                        }
+                    }
+                    if (index >= first) {
+                        Map<Field,Value> entryValues = entry.getValues(entryFields);
+                        values.add(entryValues.get(entryFields.get(1)));
+                        values.add(entryValues.get(entryFields.get(2)));
+                        entry = (ObjectReference) entryValues.get(entryFields.get(0));
+                    }
+                    else {
+                        entry = (ObjectReference) entry.getValue(entryFields.get(0));
+                    }
+                    index++;
+                }
+            }
+            return new JdiCollection(first, size, true, values);
+        }
+        catch (ObjectCollectedException oce) {
+            return null;
+        }
+        catch (ClassCastException cce) {
+            // the fields are not those expected
+            return null;
+        }
+        finally {
+            machine.resume();
+        }
+    }
+    
+    /**
+     * Read elements 'first' to 'first + count - 1' of an array, in as many
+     * requests as JdiObject.MAX_VALUES_READ allows.
+     */
+    private static List<Value> readArray(ArrayReference array, int first, int count)
+    {
+        List<Value> values = new ArrayList<Value>(count);
+        while (values.size() < count) {
+            values.addAll(array.getValues(first + values.size(),
+                    Math.min(count - values.size(), JdiObject.MAX_VALUES_READ)));
+        }
+        return values;
+    }
+    
+    /**
+     * Get the type of an array of a system class or primitive type. These are
+     * the same whatever the current class loader, so each is loaded just once.
+     * The types in SYSTEM_ARRAY_TYPES are all loaded (in one batch) the first
+     * time any is needed.
+     * 
+     * @param name  The binary name of the array type, eg "[Ljava.lang.Object;"
+     */
+    private ArrayType getSystemArrayType(String name)
+        throws ClassNotFoundException
+    {
+        synchronized(workerThread) {
+            if (systemArrayTypes.isEmpty()) {
+                WorkerBatch batch = new WorkerBatch();
+                for (int i = 0; i < SYSTEM_ARRAY_TYPES.length; i++) {
+                    batch.loadClass(SYSTEM_ARRAY_TYPES[i]);
+                }
+                List<Value> results = runBatch(batch, true);
+                for (int i = 0; results != null && i < SYSTEM_ARRAY_TYPES.length; i++) {
+                    ClassObjectReference result = (ClassObjectReference) results.get(i);
+                    if (result != null) {
+                        systemArrayTypes.put(SYSTEM_ARRAY_TYPES[i], (ArrayType) result.reflectedType());
+                    }
+                }
+            }
+            
+            ArrayType type = systemArrayTypes.get(name);
+            if (type == null) {
+                type = (ArrayType) loadClass(name);
+                systemArrayTypes.put(name, type);
+            }
+            return type;
+        }
+    }
+    
     /**
      * Load and initialize a class in the remote machine, and return a reference to it.
      * Initialization causes static initializer assignments and blocks to be executed in
@@ -1017,8 +1527,11 @@ class VMReference
         synchronized (this) {
             // Do the owner disconnect first, because it is synchronized on
             // JdiDebugger. This allows machine loader thread to check the exit
-            // status in a meaningful way.
-            owner.vmDisconnect();
+            // status in a meaningful way. A VM on standby isn't the owner's
+            // VM yet, so its end doesn't concern the owner.
+            if (! standby) {
+                owner.vmDisconnect();
+            }
             
             // If VM disconnect occurs during invocation, the server thread won't
             // restart in this VM; the method waiting for it to start will hang
@@ -1045,7 +1558,14 @@ class VMReference
      */
     public void threadStartEvent(ThreadStartEvent tse)
     {
-        owner.threadStart(tse.thread());
+        synchronized (threadEventLock) {
+            if (standby) {
+                standbyThreads.add(tse.thread());
+            }
+            else {
+                owner.threadStart(tse.thread());
+            }
+        }
     }
 
     /**
@@ -1054,7 +1574,14 @@ class VMReference
     public void threadDeathEvent(ThreadDeathEvent tde)
     {
         ThreadReference tr = tde.thread();
-        owner.threadDeath(tr);
+        synchronized (threadEventLock) {
+            if (standby) {
+                standbyThreads.remove(tr);
+            }
+            else {
+                owner.threadDeath(tr);
+            }
+        }
 
         // There appears to be a VM bug related to system.exit() being called
         // in an invocation thread. The event is only seen as a thread death.
@@ -1201,7 +1728,9 @@ class VMReference
             synchronized (this) {
                 serverThreadStarted = true;
                 serverThread = event.thread();
-                owner.raiseStateChangeEvent(Debugger.IDLE);
+                if (! standby) {
+                    owner.raiseStateChangeEvent(Debugger.IDLE);
+                }
                 notifyAll();
             }
         }
@@ -1533,6 +2062,28 @@ class VMReference
         }
     }
     
+    /**
+     * Wait for the server thread to finish the work it is doing and a new
+     * server thread to start, but for no longer than the given time.
+     * 
+     * @param timeout  The longest time to wait, in milliseconds
+     * @return  true if the new server thread has started
+     */
+    boolean serverThreadStartWait(long timeout)
+    {
+        synchronized(this) {
+            try {
+                if (!serverThreadStarted) {
+                    if (exitStatus == Debugger.TERMINATED)
+                        throw new VMDisconnectedException();
+                    wait(timeout);
+                }
+            }
+            catch (InterruptedException ie) {}
+            return serverThreadStarted;
+        }
+    }
+    
     /**
      * Resume the server thread to begin executing some function.
      * 
@@ -1622,8 +2173,8 @@ class VMReference
 
             // Store the class, parameter types and arguments
 
-            ArrayType objectArray = (ArrayType) loadClass("[Ljava.lang.Object;");
-            ArrayType stringArray = (ArrayType) loadClass("[Ljava.lang.String;");
+            ArrayType objectArray = getSystemArrayType("[Ljava.lang.Object;");
+            ArrayType stringArray = getSystemArrayType("[Ljava.lang.String;");
 
             // avoid problems with ObjectCollectedExceptions, see:
             // http://bugs.sun.com/bugdatabase/view_bug.do?bug_id=4257193
@@ -1634,16 +2185,20 @@ class VMReference
             ArrayReference typesArray = stringArray.newInstance(length);
             
             // Fill the arrays with the correct values
-            for (int i = 0; i < length; i++) {
-                StringReference s = machine.mirrorOf(paramTypes[i]);
-                typesArray.setValue(i, s);
-                argsArray.setValue(i, args[i]);
+            if (length != 0) {
+                List<Value> types = new ArrayList<Value>(length);
+                for (int i = 0; i < length; i++) {
+                    types.add(machine.mirrorOf(paramTypes[i]));
+                }
+                typesArray.setValues(types);
+                argsArray.setValues(Arrays.asList(args));
             }
             
             setStaticFieldValue(serverClass, ExecServer.PARAMETER_TYPES_NAME, typesArray);
             setStaticFieldValue(serverClass, ExecServer.ARGUMENTS_NAME, argsArray);
 
-            setStaticFieldObject(serverClass, ExecServer.CLASS_TO_RUN_NAME, className);
+            // (the machine is suspended, so the string can't be collected)
+            setStaticFieldValue(serverClass, ExecServer.CLASS_TO_RUN_NAME, machine.mirrorOf(className));
             setStaticFieldValue(serverClass, ExecServer.EXEC_ACTION_NAME, machine.mirrorOf(ExecServer.INSTANTIATE_CLASS_ARGS));
             machine.resume();
             needsMachineResume = false;
@@ -1705,44 +2260,52 @@ class VMReference
     }
     
     /**
-     * Run a unit test method (including setup/teardown).
-     * @param cl     The class containing the method
-     * @param method The test method to run
-     * @return  null if the test passed, or an ArrayReference if it fails, with:
-     *          [0] = failure type ("failure"/"error")
-     *          [1] = the exception message
-     *          [2] = the stack trace
-     *          [3] = the class of the failure point
-     *          [4] = the source file name containing the failure point
-     *          [5] = the line number of the failure point
-     * @throws InvocationException
-     */
-    public Value invokeRunTest(String cl, String method)
-        throws InvocationException
+     * Start running a list of unit test methods (including setup/teardown),
+     * one after another. Their results can be read with readTestResults as
+     * they finish; serverThreadStartWait returns when all have been run.
+     * 
+     * @param tests  The class name and method name of each test, written
+     *               as fields for ExecServer.nextField
+     */
+    void startTests(String tests)
     {
         // Calls to this method are serialized via serverThreadLock in JdiDebugger
 
         serverThreadStartWait();
         
-        // Store the class and method to call
-        setStaticFieldObject(serverClass, ExecServer.CLASS_TO_RUN_NAME, cl);
-        setStaticFieldObject(serverClass, ExecServer.METHOD_TO_RUN_NAME, method);
+        // Store the tests to run, and clear the results of any earlier run
+        setStaticFieldObject(serverClass, ExecServer.TESTS_TO_RUN_NAME, tests);
+        setStaticFieldValue(serverClass, ExecServer.TEST_RESULTS_NAME, null);
+        setStaticFieldValue(serverClass, ExecServer.TESTS_RUN_NAME, machine.mirrorOf(0));
         setStaticFieldValue(serverClass, ExecServer.EXEC_ACTION_NAME, machine.mirrorOf(ExecServer.TEST_RUN));
         
-        // Resume the thread, wait for it to finish and the new thread to start
+        // Resume the thread; the tests run while the results are read
         serverThreadStarted = false;
         resumeServerThread();
-        serverThreadStartWait();
+    }
+    
+    /**
+     * Read the results of the tests started by startTests which have
+     * finished, from test 'first' on. The tests may still be running.
+     * 
+     * @return  The result of each test (see ExecServer.runTestMethod): null
+     *          if it passed, otherwise the fields describing the failure
+     */
+    List<String> readTestResults(int first)
+    {
+        Field resultsField = serverClass.fieldByName(ExecServer.TEST_RESULTS_NAME);
+        Field runField = serverClass.fieldByName(ExecServer.TESTS_RUN_NAME);
+        Map<Field,Value> values = serverClass.getValues(Arrays.asList(new Field[] {resultsField, runField}));
         
-        Value rval = getStaticFieldObject(serverClass, ExecServer.METHOD_RETURN_NAME);
-        if (rval == null) {
-            ObjectReference e = getStaticFieldObject(serverClass, ExecServer.EXCEPTION_NAME);
-            if (e != null) {
-                exceptionEvent(new InvocationException(e));
-                throw new InvocationException(e);
+        ArrayReference results = (ArrayReference) values.get(resultsField);
+        int run = ((IntegerValue) values.get(runField)).value();
+        List<String> read = new ArrayList<String>();
+        if (results != null && run > first) {
+            for (Value result : results.getValues(first, run - first)) {
+                read.add(result == null ? null : ((StringReference) result).value());
             }
         }
-        return rval;
+        return read;
     }
 
     /**
@@ -1809,7 +2372,45 @@ class VMReference
             catch(VMDisconnectedException vmde) { }
         }
     }
-
+    
+    /**
+     * Add several objects to the object map on the debug vm. They are all
+     * sent in a single request.
+     * @param objects  the names of the objects to add, and the objects
+     */
+    void addObjects(String scopeId, Map<String,ObjectReference> objects)
+    {
+        WorkerBatch batch = new WorkerBatch();
+        for (Iterator<Map.Entry<String,ObjectReference>> i = objects.entrySet().iterator(); i.hasNext(); ) {
+            Map.Entry<String,ObjectReference> entry = i.next();
+            batch.addObject(scopeId, entry.getKey(), entry.getValue());
+        }
+        
+        try {
+            runBatch(batch, false);
+        }
+        catch (VMDisconnectedException vmde) {}
+        catch (VMMismatchException vmmme) {}
+    }
+    
+    /**
+     * Remove several objects from the object map on the debug vm. They are
+     * all removed with a single request.
+     * @param instanceNames  the names of the objects to remove
+     */
+    void removeObjects(String scopeId, List<String> instanceNames)
+    {
+        WorkerBatch batch = new WorkerBatch();
+        for (Iterator<String> i = instanceNames.iterator(); i.hasNext(); ) {
+            batch.removeObject(scopeId, i.next());
+        }
+        
+        try {
+            runBatch(batch, false);
+        }
+        catch (VMDisconnectedException vmde) {}
+    }
+    
     /**
      * Check whether a thread is sitting on the server thread breakpoint. 
      */
@@ -1966,7 +2567,7 @@ class VMReference
      * The thread for retrieving output from the remote machine and redirecting
      * it to the terminal.
      */
-    private class IOHandlerThread extends Thread
+    static class IOHandlerThread extends Thread
     {
         private Reader reader;
         private Writer writer;
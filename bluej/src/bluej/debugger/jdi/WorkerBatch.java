@@ -0,0 +1,122 @@
+/*
+ This file is part of the BlueJ program. 
+ Copyright (C) 1999-2009  Michael Kolling and John Rosenberg 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package bluej.debugger.jdi;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import bluej.runtime.ExecServer;
+
+import com.sun.jdi.ObjectReference;
+
+/**
+ * A batch of actions for the worker thread of the debug VM to perform
+ * together (see ExecServer.runBatch). The actions and their string
+ * arguments are packed into a single string, so that a batch is sent with
+ * the same small number of JDI requests however many actions it holds.
+ * 
+ * @see VMReference#runBatch(WorkerBatch, boolean)
+ */
+class WorkerBatch
+{
+    private StringBuffer commands = new StringBuffer();
+    private List<ObjectReference> objects = new ArrayList<ObjectReference>();
+    private int size;
+    
+    /**
+     * Add an object to a scope on the debug VM.
+     */
+    void addObject(String scopeId, String instanceName, ObjectReference object)
+    {
+        addField(Integer.toString(ExecServer.ADD_OBJECT));
+        addField(scopeId);
+        addField(instanceName);
+        objects.add(object);
+        size++;
+    }
+    
+    /**
+     * Remove an object from a scope on the debug VM.
+     */
+    void removeObject(String scopeId, String instanceName)
+    {
+        addField(Integer.toString(ExecServer.REMOVE_OBJECT));
+        addField(scopeId);
+        addField(instanceName);
+        size++;
+    }
+    
+    /**
+     * Load (but don't initialize) a class with the current class loader.
+     * The result for this action is the class object, or null if the class
+     * could not be loaded.
+     */
+    void loadClass(String className)
+    {
+        addField(Integer.toString(ExecServer.LOAD_CLASS));
+        addField(className);
+        size++;
+    }
+    
+    /**
+     * Take a snapshot of some of the elements of a collection or map. The
+     * result for this action is the snapshot, or null if one couldn't be
+     * taken (see CollectionSnapshot.take).
+     */
+    void takeSnapshot(ObjectReference collection, int first, int count)
+    {
+        addField(Integer.toString(ExecServer.TAKE_SNAPSHOT));
+        addField(Integer.toString(first));
+        addField(Integer.toString(count));
+        objects.add(collection);
+        size++;
+    }
+    
+    /**
+     * Get the number of actions in the batch.
+     */
+    int size()
+    {
+        return size;
+    }
+    
+    /**
+     * Get the actions as a command string for ExecServer.
+     */
+    String getCommands()
+    {
+        return commands.toString();
+    }
+    
+    /**
+     * Get the object arguments of the actions, in order.
+     */
+    List<ObjectReference> getObjects()
+    {
+        return objects;
+    }
+    
+    private void addField(String field)
+    {
+        commands.append(field.length()).append(':').append(field);
+    }
+}
@@ -24,8 +24,10 @@ package bluej.debugmgr;
 import java.awt.EventQueue;
 import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
@@ -56,7 +58,9 @@ import bluej.views.MethodView;
 /**
  * Debugger class that arranges invocation of constructors or methods. This
  * class constructs a "shell" java source file, compiles it, then loads the
- * resulting class file and executes a method in a new thread.
+ * resulting class file and executes a method in a new thread. Where the
+ * compiler supports it, the shell source is compiled in memory and the
+ * resulting bytecode is sent straight to the debug VM.
  * 
  * @author Michael Kolling
  * @version $Id: Invoker.java 7006 2010-01-13 05:08:52Z marionz $
@@ -93,6 +97,8 @@ public class Invoker
     private Map<String,GenTypeParameter> typeMap; // map type parameter names to types
     private ValueCollection localVars;
     private String imports; // import statements to include in shell file
+    private String shellSource; // shell source, if it is compiled in memory
+    private Map<String,byte[]> shellClasses; // class files compiled in memory
     private boolean doTryAgain = false; // whether to re-try
     
     /**
@@ -610,7 +616,9 @@ public class Invoker
     /**
      * Write a source file for a class (the 'shell file') to do the interactive
      * invocation. Returns the written file, or null if the file cannot be written
-     * (an error dialog will be shown in this case).
+     * (an error dialog will be shown in this case). If the compiler can compile
+     * the source in memory, the source is kept instead of being written, and the
+     * returned file is only used to name it.
      * 
      * <p>A shell file has the following form:
      * 
@@ -784,35 +792,44 @@ public class Invoker
         }
         String scopeSave = buffer.toString();
 
+        StringBuilder source = new StringBuilder();
+        source.append(packageLine);
+        source.append(Config.nl);
+        if (imports != null) {
+            source.append(imports);
+            source.append(Config.nl);
+        }
+        source.append("public class ");
+        source.append(shellName);
+        source.append(" extends bluej.runtime.Shell {");
+        source.append(Config.nl);
+        source.append(resultDecl);
+        source.append(Config.nl);
+        source.append("public static void run() throws Throwable {");
+        source.append(Config.nl);
+        source.append(vardecl);
+        source.append(Config.nl);
+        source.append(paramInit);
+        source.append(invocation);
+        source.append(scopeSave);
+        if (! isVoid && constype != null && ! constructing) {
+            source.append("} };");
+        }
+        source.append(Config.nl);
+        source.append("}}");
+
         File shellFile = new File(pkg.getPath(), shellName + ".java");
+        
+        // If the compiler can compile it in memory, don't write the file
+        if (JobQueue.getJobQueue().canCompileInMemory()) {
+            shellSource = source.toString();
+            return shellFile;
+        }
+        
         BufferedWriter shell = null;
         try {
             shell = new BufferedWriter(new FileWriter(shellFile));
-
-            shell.write(packageLine);
-            shell.newLine();
-            if (imports != null) {
-                shell.write(imports);
-                shell.newLine();
-            }
-            shell.write("public class ");
-            shell.write(shellName);
-            shell.write(" extends bluej.runtime.Shell {");
-            shell.newLine();
-            shell.write(resultDecl);
-            shell.newLine();
-            shell.write("public static void run() throws Throwable {");
-            shell.newLine();
-            shell.write(vardecl);
-            shell.newLine();
-            shell.write(paramInit);
-            shell.write(invocation);
-            shell.write(scopeSave);
-            if (! isVoid && constype != null && ! constructing) {
-                shell.write("} };");
-            }
-            shell.newLine();
-            shell.write("}}");
+            shell.write(source.toString());
             shell.close();
         }
         catch (IOException e) {
@@ -997,6 +1014,14 @@ public class Invoker
      */
     private void compileInvocationFile(File shellFile)
     {
+        if (shellSource != null) {
+            shellClasses = new HashMap<String,byte[]>();
+            JobQueue.getJobQueue().addMemoryJob(shellFile, pkg.getQualifiedName(shellName), shellSource,
+                    shellClasses, new EventqueueCompileObserver(this), pkg.getProject().getClassLoader(),
+                    pkg.getProject().getProjectDir(), true);
+            return;
+        }
+        
         File[] files = {shellFile};
         JobQueue.getJobQueue().addJob(files, new EventqueueCompileObserver(this), pkg.getProject().getClassLoader(), pkg.getProject().getProjectDir(),true);
     }
@@ -1106,6 +1131,54 @@ public class Invoker
 
         File classFile = new File(pkg.getPath(), shellName + ".class");
         classFile.delete();
+        
+        if (shellClasses != null) {
+            for (Iterator<String> i = shellClasses.keySet().iterator(); i.hasNext(); ) {
+                classFile = new File(pkg.getPath(), JavaNames.getBase(i.next()) + ".class");
+                classFile.delete();
+            }
+            shellClasses = null;
+        }
+        shellSource = null;
+    }
+    
+    /**
+     * Make the shell classes which were compiled in memory available in the
+     * debug VM. They are defined there directly from their bytecode; if that
+     * isn't possible, the class files are written to the package directory.
+     */
+    private void loadShellClasses(String shellClassName)
+    {
+        String [] names = new String[shellClasses.size()];
+        byte [][] bytes = new byte[names.length][];
+        
+        // The shell class itself comes first, as it is the one loaded
+        names[0] = shellClassName;
+        bytes[0] = shellClasses.get(shellClassName);
+        int n = 1;
+        for (Iterator<Map.Entry<String,byte[]>> i = shellClasses.entrySet().iterator(); i.hasNext(); ) {
+            Map.Entry<String,byte[]> entry = i.next();
+            if (! entry.getKey().equals(shellClassName)) {
+                names[n] = entry.getKey();
+                bytes[n++] = entry.getValue();
+            }
+        }
+        
+        if (pkg.getProject().getDebugger().defineClasses(names, bytes)) {
+            return;
+        }
+        
+        for (int i = 0; i < names.length; i++) {
+            File classFile = new File(pkg.getPath(), JavaNames.getBase(names[i]) + ".class");
+            try {
+                OutputStream out = new FileOutputStream(classFile);
+                out.write(bytes[i]);
+                out.close();
+            }
+            catch (IOException ioe) {
+                Debug.reportError("could not write shell class file: " + ioe);
+            }
+        }
     }
 
     // -- end of CompileObserver interface --
@@ -1122,6 +1195,9 @@ public class Invoker
         new Thread() {
             public void run() {
                 try {
+                    if (shellClasses != null) {
+                        loadShellClasses(shellClassName);
+                    }
                     final DebuggerResult result = pkg.getProject().getDebugger().runClassMain(shellClassName);
                     
                     EventQueue.invokeLater(new Runnable() {
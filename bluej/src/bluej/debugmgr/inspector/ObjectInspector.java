@@ -29,9 +29,12 @@ import java.util.List;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
 
 import bluej.BlueJTheme;
 import bluej.Config;
+import bluej.debugger.DebuggerCollection;
 import bluej.debugger.DebuggerObject;
 import bluej.pkgmgr.Package;
 import bluej.testmgr.record.InvokerRecord;
@@ -76,6 +79,21 @@ public class ObjectInspector extends Inspector
      */
     protected List<Integer> indexToSlotList = null; 
 
+    /**
+     * The elements shown, if the object is a collection whose elements are
+     * shown rather than its fields
+     */
+    private DebuggerCollection elements = null;
+
+    /**
+     * The number of elements shown at the start of an array or collection.
+     * More are shown as the list is scrolled down to the [...] slot.
+     */
+    private int arrayStartShown = VISIBLE_ARRAY_START;
+    
+    /** Whether an update to show more array elements is pending */
+    private boolean showingMore = false;
+
     /**
      *  Note: 'pkg' may be null if 'ir' is null.
      * 
@@ -156,6 +174,13 @@ public class ObjectInspector extends Inspector
 
         JScrollPane scrollPane = createFieldListScrollPane();
         mainPanel.add(scrollPane, BorderLayout.CENTER);
+        final JViewport viewport = scrollPane.getViewport();
+        viewport.addChangeListener(new ChangeListener() {
+            public void stateChanged(ChangeEvent e)
+            {
+                showMoreElements(viewport.getViewRect());
+            }
+        });
 
         JPanel inspectAndGetButtons = createInspectAndGetButtons();
         mainPanel.add(inspectAndGetButtons, BorderLayout.EAST);
@@ -205,9 +230,16 @@ public class ObjectInspector extends Inspector
         // if is an array (we potentially will compress the array if it is
         // large)
         if (obj.isArray()) {
-            return compressArrayList(obj.getInstanceFields(true)).toArray(new Object[0]);
+            return getArrayList().toArray(new Object[0]);
+        }
+
+        // show the elements of a collection, if they can be read
+        elements = obj.getElements(0, arrayStartShown);
+        if (elements != null) {
+            return getCollectionList().toArray(new Object[0]);
         }
         else {
+            indexToSlotList = null;
             return obj.getInstanceFields(true).toArray(new Object[0]);
         }
     }
@@ -217,6 +249,11 @@ public class ObjectInspector extends Inspector
      */
     protected void listElementSelected(int slot)
     {
+        if (elements != null) {
+            collectionElementSelected(indexToSlot(slot));
+            return;
+        }
+
         // add index to slot method for truncated arrays
         if (obj.isArray()) {
             slot = indexToSlot(slot);
@@ -259,6 +296,28 @@ public class ObjectInspector extends Inspector
         }
     }
 
+    /**
+     * An element of a collection was selected.
+     * 
+     * @param index  the index of the element in 'elements', or one of the
+     *               ARRAY_..._SLOT_VALUE markers
+     */
+    private void collectionElementSelected(int index)
+    {
+        DebuggerObject element = null;
+        if (index >= 0) {
+            element = elements.getElementObject(index);
+        }
+        if (element != null) {
+            setCurrentObj(element, elements.getElementName(index), element.getGenClassName());
+            setButtonsEnabled(true, false);
+        }
+        else {
+            setCurrentObj(null, null, null);
+            setButtonsEnabled(false, false);
+        }
+    }
+
     /**
      * Show the inspector for the class of an object.
      */
@@ -335,6 +394,9 @@ public class ObjectInspector extends Inspector
                                                        // first 40 elements
     private final static int VISIBLE_ARRAY_TAIL = 5; // and the last five
                                                      // elements
+    private final static int ARRAY_PAGE_SIZE = 100; // show 100 more elements
+                                                    // each time the list is
+                                                    // scrolled to the end
 
     private final static int ARRAY_QUERY_SLOT_VALUE = -2; // signal marker of
                                                           // the [...] slot in
@@ -345,68 +407,118 @@ public class ObjectInspector extends Inspector
                                                            // length
 
     /**
-     * Compress a potentially large array into a more displayable shortened
-     * form.
+     * Get the field list for a potentially large array, in a more displayable
+     * shortened form.
      * 
-     * Compresses an array field name list to a maximum of VISIBLE_ARRAY_START
-     * which are guaranteed to be displayed at the start, then some [..]
-     * expansion slots, followed by VISIBLE_ARRAY_TAIL elements from the end of
-     * the array. When a selected element is chosen indexToSlot allows the
-     * selection to be converted to the original array element position.
+     * The list holds the array length, then the first arrayStartShown elements
+     * (at least VISIBLE_ARRAY_START), then a [...] expansion slot, followed by
+     * the last VISIBLE_ARRAY_TAIL elements of the array. Only the elements
+     * listed are read from the debug VM. When a selected element is chosen
+     * indexToSlot allows the selection to be converted to the original array
+     * element position.
      * 
-     * @param fullArrayFieldList
-     *            the full field list for an array
-     * @return the compressed array
+     * @return the shortened field list
      */
-    private List<String> compressArrayList(List<String> fullArrayFieldList)
+    private List<String> getArrayList()
     {
+        int length = obj.getInstanceFieldCount();
+        List<String> list = new ArrayList<String>();
+        indexToSlotList = new ArrayList<Integer>();
+
         // mimic the public length field that arrays possess
         // according to the java spec...
-        fullArrayFieldList.add(0, ("int length = " + fullArrayFieldList.size()));
-        indexToSlotList = new LinkedList<Integer>();
-        indexToSlotList.add(0, new Integer(ARRAY_LENGTH_SLOT_VALUE));
-
-        // the +1 here is due to the fact that if we do not have at least one
-        // more than
-        // the sum of start elements and tail elements, then there is no point
-        // in displaying
-        // the ... elements because there would be no elements for them to
-        // reveal
-        if (fullArrayFieldList.size() > (VISIBLE_ARRAY_START + VISIBLE_ARRAY_TAIL + 2)) {
-
-            // the destination list
-            List<String> newArray = new ArrayList<String>();
-            for (int i = 0; i <= VISIBLE_ARRAY_START; i++) {
-                // first 40 elements are displayed as per normal
-                newArray.add(fullArrayFieldList.get(i));
-                if (i < VISIBLE_ARRAY_START)
-                    indexToSlotList.add(new Integer(i));
-            }
+        list.add("int length = " + length);
+        indexToSlotList.add(new Integer(ARRAY_LENGTH_SLOT_VALUE));
+
+        // if we do not have at least two more elements than the start and tail
+        // elements, then there is no point in displaying the ... slot because
+        // it would not hide any more elements than it takes up
+        int startShown = arrayStartShown;
+        if (length <= startShown + VISIBLE_ARRAY_TAIL + 1) {
+            startShown = length;
+        }
+
+        list.addAll(obj.getInstanceFields(true, 0, startShown));
+        for (int i = 0; i < startShown; i++) {
+            indexToSlotList.add(new Integer(i));
+        }
 
-            // now the first of our expansion slots
-            newArray.add("[...]");
+        if (startShown < length) {
+            // now the expansion slot
+            list.add("[...]");
             indexToSlotList.add(new Integer(ARRAY_QUERY_SLOT_VALUE));
 
-            for (int i = VISIBLE_ARRAY_TAIL; i > 0; i--) {
-                // last 5 elements are displayed
-                newArray.add(fullArrayFieldList.get(fullArrayFieldList.size() - i));
-                // slot is offset by one due to length field being included in
-                // fullArrayFieldList therefore we add 1 to compensate
-                indexToSlotList.add(new Integer(fullArrayFieldList.size() - (i + 1)));
-            }
-            return newArray;
-        }
-        else {
-            for (int i = 0; i < fullArrayFieldList.size(); i++) {
+            // last 5 elements are displayed
+            int tailStart = length - VISIBLE_ARRAY_TAIL;
+            list.addAll(obj.getInstanceFields(true, tailStart, VISIBLE_ARRAY_TAIL));
+            for (int i = tailStart; i < length; i++) {
                 indexToSlotList.add(new Integer(i));
             }
-            return fullArrayFieldList;
         }
+        return list;
+    }
+
+    /**
+     * Get the list of elements of a collection: its size, then the elements
+     * read, then a [...] slot if there are more. indexToSlot converts a
+     * position in the list to the index of the element in 'elements'.
+     * 
+     * @return the element list
+     */
+    private List<String> getCollectionList()
+    {
+        List<String> list = new ArrayList<String>();
+        indexToSlotList = new ArrayList<Integer>();
+
+        list.add("int size = " + elements.size());
+        indexToSlotList.add(new Integer(ARRAY_LENGTH_SLOT_VALUE));
+
+        List<String> read = elements.getElements();
+        list.addAll(read);
+        for (int i = 0; i < read.size(); i++) {
+            indexToSlotList.add(new Integer(i));
+        }
+
+        if (read.size() < elements.size()) {
+            list.add("[...]");
+            indexToSlotList.add(new Integer(ARRAY_QUERY_SLOT_VALUE));
+        }
+        return list;
+    }
+
+    /**
+     * If the [...] slot of an array's or collection's list is in the visible
+     * area of the list, show more of the elements at the start in place of it.
+     * 
+     * @param visible  the visible area of the field list
+     */
+    private void showMoreElements(Rectangle visible)
+    {
+        if (showingMore || indexToSlotList == null) {
+            return;
+        }
+        int queryRow = indexToSlotList.indexOf(new Integer(ARRAY_QUERY_SLOT_VALUE));
+        if (queryRow == -1 || queryRow >= fieldList.getRowCount()
+                || ! visible.intersects(fieldList.getCellRect(queryRow, 0, true))) {
+            return;
+        }
+
+        // Update later, not while the list is being laid out or scrolled
+        showingMore = true;
+        EventQueue.invokeLater(new Runnable() {
+            public void run()
+            {
+                showingMore = false;
+                arrayStartShown += ARRAY_PAGE_SIZE;
+                update();
+            }
+        });
     }
 
     /**
      * Converts list index position to that of array element position in arrays.
-     * Uses the List built in compressArrayList to do the mapping.
+     * Uses the List built in getArrayList or getCollectionList to do the
+     * mapping.
      * 
      * @param listIndexPosition
      *            the position selected in the list
@@ -331,7 +331,7 @@ public class ResultInspector extends Inspector
      */
     public String getResult()
     {
-        return (String) obj.getInstanceFields(false).get(0);
+        return (String) obj.getInstanceFields(false, 0, 1).get(0);
     }
 
     protected int getPreferredRows()
@@ -33,6 +33,7 @@ import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 
 import bluej.Config;
+import bluej.debugger.Debugger;
 import bluej.debugmgr.NamedValue;
 import bluej.debugmgr.ValueCollection;
 import bluej.testmgr.record.InvokerRecord;
@@ -160,12 +161,19 @@ public class ObjectBench extends JPanel implements ValueCollection,
     {
         setSelectedObject (null);
 
+        // remove the objects from the debugger all together
+        Debugger debugger = null;
+        List<String> names = new ArrayList<String>(objects.size());
         for(Iterator<ObjectWrapper> i = objects.iterator(); i.hasNext(); ) {
             ObjectWrapper wrapper = i.next();
             wrapper.prepareRemove();
-            wrapper.getPackage().getDebugger().removeObject(scopeId, wrapper.getName());
+            debugger = wrapper.getPackage().getDebugger();
+            names.add(wrapper.getName());
             obp.remove(wrapper);
         }
+        if (debugger != null) {
+            debugger.removeObjects(scopeId, names);
+        }
         objects.clear();
         resetRecordingInteractions();
         obp.revalidate();
@@ -80,7 +80,7 @@ public class CodeCompletionDisplay extends JFrame
 
     /**
      * Construct a code completion display panel, for the given editor and with the given
-     * suggestions. The location specifies the partial identifier entered by the user before
+     * suggestions, which must be sorted by display name. The location specifies the partial identifier entered by the user before
      * requesting suggestions (if any - it may be null).
      */
     public CodeCompletionDisplay(MoeEditor ed, String suggestionType, 
@@ -283,14 +283,28 @@ public class CodeCompletionDisplay extends JFrame
         pack();
     }
 
+    /**
+     * Show the values which begin with the current prefix. As the values are
+     * sorted by display name, these are found by a binary search.
+     */
     private void updatePrefix()
     {
-        Vector<AssistContent> listData = new Vector<AssistContent>();
-        for (int i=0;i <values.length; i++ ){
-            if (values[i].getDisplayName().startsWith(prefix)) {
-                listData.add(values[i]);
+        int low = 0;
+        int high = values.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (values[mid].getDisplayName().compareTo(prefix) < 0) {
+                low = mid + 1;
+            }
+            else {
+                high = mid;
             }
         }
+        
+        Vector<AssistContent> listData = new Vector<AssistContent>();
+        for (int i = low; i < values.length && values[i].getDisplayName().startsWith(prefix); i++) {
+            listData.add(values[i]);
+        }
         methodList.setListData(listData);
         methodList.setSelectedIndex(0);
     }
@@ -0,0 +1,208 @@
+/*
+ This file is part of the BlueJ program. 
+ Copyright (C) 2010  Michael Kolling and John Rosenberg 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package bluej.editor.moe;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import bluej.debugger.gentype.GenTypeClass;
+import bluej.debugger.gentype.GenTypeParameter;
+import bluej.debugger.gentype.MethodReflective;
+import bluej.debugger.gentype.Reflective;
+import bluej.utility.JavaReflective;
+
+/**
+ * An index of the methods which are members of (declared in or inherited by)
+ * a type, for use in code completion.
+ * 
+ * <p>The members of a type whose class has been loaded (one with a
+ * JavaReflective) cannot change until the class loader which loaded it is
+ * discarded, so they are cached, as a flattened list, until removeAll() is
+ * called for that loader. They may be retrieved from any thread. The members
+ * of other types (such as those parsed from source being edited) are never
+ * cached, and must be collected on the event dispatch thread.
+ */
+public final class MemberIndex
+{
+    /** Cached members, by class and then by (parameterised) type name */
+    private static Map<Class<?>,Map<String,List<Member>>> members =
+        new HashMap<Class<?>,Map<String,List<Member>>>();
+    
+    /**
+     * A method, with the type arguments of the type through which it is a member.
+     */
+    static class Member
+    {
+        final MethodReflective method;
+        final Map<String,GenTypeParameter> typeArgs;
+        final String displayName;
+        
+        Member(MethodReflective method, Map<String,GenTypeParameter> typeArgs)
+        {
+            this.method = method;
+            this.typeArgs = typeArgs;
+            displayName = MethodCompletion.getDisplayName(method, typeArgs);
+        }
+    }
+    
+    private MemberIndex() { }
+    
+    /**
+     * Remove the cached members of all classes which were loaded by the given
+     * class loader. This method is thread-safe.
+     */
+    public static void removeAll(ClassLoader loader)
+    {
+        synchronized (members) {
+            Iterator<Class<?>> i = members.keySet().iterator();
+            while (i.hasNext()) {
+                if (i.next().getClassLoader() == loader) {
+                    i.remove();
+                }
+            }
+        }
+    }
+    
+    /**
+     * Collect the members of a type which is not loaded, as far up its
+     * hierarchy as there are types which are not loaded. The loaded supertypes
+     * at which collection stops are added to a list, so that their members
+     * can be retrieved by getLoadedMembers() (which can be done on another
+     * thread). If the type itself is loaded, it is just added to the list.
+     * 
+     * <p>Must be called on the event dispatch thread.
+     * 
+     * @param type         The type whose members to collect
+     * @param members      The list to which members are added, with the most
+     *                     derived first
+     * @param loadedTypes  The list to which loaded supertypes are added
+     */
+    static void collectMembers(GenTypeClass type, List<Member> members,
+            List<GenTypeClass> loadedTypes)
+    {
+        Set<String> typesDone = new HashSet<String>();
+        LinkedList<GenTypeClass> typeQueue = new LinkedList<GenTypeClass>();
+        typeQueue.add(type);
+        
+        while (! typeQueue.isEmpty()) {
+            type = typeQueue.removeFirst();
+            if (! typesDone.add(type.getReflective().getName())) {
+                // we've already done this type...
+                continue;
+            }
+            if (type.getReflective() instanceof JavaReflective) {
+                loadedTypes.add(type);
+                continue;
+            }
+            addDeclaredMembers(type, members, typeQueue);
+        }
+    }
+    
+    /**
+     * Get the members of a loaded type (one with a JavaReflective), with those
+     * of the most derived types first, and without duplicates. This method
+     * is thread-safe.
+     * 
+     * @return  The members, or null if the current thread was interrupted
+     */
+    static List<Member> getLoadedMembers(GenTypeClass type)
+    {
+        Class<?> cl = ((JavaReflective) type.getReflective()).getUnderlyingClass();
+        String typeName = type.toString();
+        synchronized (members) {
+            Map<String,List<Member>> classMembers = members.get(cl);
+            if (classMembers != null) {
+                List<Member> typeMembers = classMembers.get(typeName);
+                if (typeMembers != null) {
+                    return typeMembers;
+                }
+            }
+        }
+        
+        Set<String> typesDone = new HashSet<String>();
+        Set<String> memberNames = new HashSet<String>();
+        List<Member> declared = new ArrayList<Member>();
+        List<Member> typeMembers = new ArrayList<Member>();
+        LinkedList<GenTypeClass> typeQueue = new LinkedList<GenTypeClass>();
+        typeQueue.add(type);
+        
+        while (! typeQueue.isEmpty()) {
+            if (Thread.currentThread().isInterrupted()) {
+                return null;
+            }
+            GenTypeClass stype = typeQueue.removeFirst();
+            if (! typesDone.add(stype.getReflective().getName())) {
+                continue;
+            }
+            declared.clear();
+            addDeclaredMembers(stype, declared, typeQueue);
+            for (Member member : declared) {
+                if (memberNames.add(member.displayName)) {
+                    typeMembers.add(member);
+                }
+            }
+        }
+        
+        synchronized (members) {
+            Map<String,List<Member>> classMembers = members.get(cl);
+            if (classMembers == null) {
+                classMembers = new HashMap<String,List<Member>>();
+                members.put(cl, classMembers);
+            }
+            classMembers.put(typeName, typeMembers);
+        }
+        return typeMembers;
+    }
+    
+    /**
+     * Add the methods declared in a type to a list of members, and its
+     * supertypes to a queue of types to be processed.
+     */
+    private static void addDeclaredMembers(GenTypeClass type, List<Member> members,
+            List<GenTypeClass> typeQueue)
+    {
+        Reflective reflective = type.getReflective();
+        Map<String,Set<MethodReflective>> methods = reflective.getDeclaredMethods();
+        Map<String,GenTypeParameter> typeArgs = type.getMap();
+        
+        for (Set<MethodReflective> mset : methods.values()) {
+            for (MethodReflective method : mset) {
+                members.add(new Member(method, typeArgs));
+            }
+        }
+        
+        for (GenTypeClass stype : reflective.getSuperTypes()) {
+            if (typeArgs != null) {
+                typeQueue.add(stype.mapTparsToTypes(typeArgs));
+            }
+            else {
+                typeQueue.add(stype.getErasedType());
+            }
+        }
+    }
+}
@@ -41,6 +41,7 @@ public class MethodCompletion extends AssistContent
     private MethodReflective method;
     private JavadocResolver javadocResolver;
     private Map<String,GenTypeParameter> typeArgs;
+    private String displayName;
     
     /**
      * Construct a new method completion
@@ -57,6 +58,19 @@ public class MethodCompletion extends AssistContent
         this.javadocResolver = javadocResolver;
     }
     
+    /**
+     * Construct a new method completion for a member found in the member index.
+     * @param member    The member to represent
+     * @param javadocResolver  The javadoc resolver to use
+     */
+    MethodCompletion(MemberIndex.Member member, JavadocResolver javadocResolver)
+    {
+        this.method = member.method;
+        this.typeArgs = member.typeArgs;
+        this.displayName = member.displayName;
+        this.javadocResolver = javadocResolver;
+    }
+    
     @Override
     public String getDeclaringClass()
     {
@@ -67,11 +81,24 @@ public class MethodCompletion extends AssistContent
 
     @Override
     public String getDisplayName()
+    {
+        if (displayName == null) {
+            displayName = getDisplayName(method, typeArgs);
+        }
+        return displayName;
+    }
+    
+    /**
+     * Get the display name (the name and parameter types) of a method.
+     * @param method    The method
+     * @param typeArgs  The type arguments (may be null if there are none)
+     */
+    static String getDisplayName(MethodReflective method, Map<String,GenTypeParameter> typeArgs)
     {
         String displayName = method.getName() + "(";
         List<JavaType> paramTypes = method.getParamTypes();
         for (Iterator<JavaType> i = paramTypes.iterator(); i.hasNext(); ) {
-            JavaType paramType = convertToSolid(i.next());
+            JavaType paramType = convertToSolid(i.next(), typeArgs);
             displayName += paramType.toString(true);
             if (i.hasNext()) {
                 displayName += ", ";
@@ -131,7 +158,7 @@ public class MethodCompletion extends AssistContent
     @Override
     public String getReturnType()
     {
-        return convertToSolid(method.getReturnType()).toString(true);
+        return convertToSolid(method.getReturnType(), typeArgs).toString(true);
     }
 
     @Override
@@ -145,7 +172,7 @@ public class MethodCompletion extends AssistContent
         return jd;
     }
     
-    private JavaType convertToSolid(JavaType type)
+    private static JavaType convertToSolid(JavaType type, Map<String,GenTypeParameter> typeArgs)
     {
         if (! type.isPrimitive()) {
             if (typeArgs != null) {
@@ -748,6 +748,7 @@ public final class MoeActions
         {
         	MoeEditor editor = getEditor(e);
         	doc = editor.getSourceDocument();
+        	doc.flushReparse();
                         
 			editor.undoManager.beginCompoundEdit();
 			List<DocumentAction> updates = calculateIndents(editor);
@@ -1634,6 +1635,7 @@ public final class MoeActions
         	// begun a new comment (and do need the ending)
         	
         	// Find the comment node that corresponds to our position:
+        	doc.flushReparse();
         	NodeAndPosition curNode = doc.getParser().findNodeAt(lineStart, 0);
         	while (curNode != null && !(curNode.getNode() instanceof CommentNode))
         	{
@@ -58,7 +58,6 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
@@ -105,8 +104,6 @@ import bluej.BlueJEventListener;
 import bluej.BlueJTheme;
 import bluej.Config;
 import bluej.debugger.gentype.GenTypeClass;
-import bluej.debugger.gentype.GenTypeParameter;
-import bluej.debugger.gentype.MethodReflective;
 import bluej.debugger.gentype.Reflective;
 import bluej.editor.EditorWatcher;
 import bluej.parser.CodeSuggestions;
@@ -123,6 +120,7 @@ import bluej.utility.Debug;
 import bluej.utility.DialogManager;
 import bluej.utility.FileUtility;
 import bluej.utility.JavaUtils;
+import bluej.utility.SwingWorker;
 import bluej.utility.Utility;
 
 /**
@@ -244,6 +242,7 @@ implements bluej.editor.Editor, BlueJEventListener, HyperlinkListener, DocumentL
     private MoeHighlighter editorHighlighter;
 
     private CodeCompletionDisplay codeCompletionDlg;
+    private SwingWorker completionWorker;
     
     /** Used to obtain javadoc for arbitrary methods */
     private JavadocResolver javadocResolver;
@@ -1054,6 +1053,7 @@ implements bluej.editor.Editor, BlueJEventListener, HyperlinkListener, DocumentL
      */
     public ParsedCUNode getParsedNode()
     {
+        sourceDocument.flushReparse();
         return sourceDocument.getParser();
     }
 
@@ -1090,6 +1090,7 @@ implements bluej.editor.Editor, BlueJEventListener, HyperlinkListener, DocumentL
     public void insertUpdate(DocumentEvent e)
     {
         removeSearchHighlights();
+        cancelContentAssist();
         if (!saveState.isChanged()) {
             saveState.setState(StatusLabel.CHANGED);
             setChanged();
@@ -1105,6 +1106,7 @@ implements bluej.editor.Editor, BlueJEventListener, HyperlinkListener, DocumentL
     public void removeUpdate(DocumentEvent e)
     {
         removeSearchHighlights();
+        cancelContentAssist();
         if (!saveState.isChanged()) {
             saveState.setState(StatusLabel.CHANGED);
             setChanged();
@@ -3280,15 +3282,65 @@ implements bluej.editor.Editor, BlueJEventListener, HyperlinkListener, DocumentL
     {
         //need to recreate the dialog each time it is pressed as the values may be different 
         closeContentAssist();
-        CodeSuggestions suggests = sourceDocument.getParser().getExpressionType(getCaretPosition(),
+        sourceDocument.flushReparse();
+        final CodeSuggestions suggests = sourceDocument.getParser().getExpressionType(getCaretPosition(),
                 sourceDocument);
-        if (suggests != null) {
-            LocatableToken suggestToken = suggests.getSuggestionToken();
-            AssistContent[] values = getPossibleCompletions(suggests, "");
-            if (values != null && values.length > 0) {
+        GenTypeClass exprType = (suggests != null) ? suggests.getSuggestionType().asClass() : null;
+        if (exprType == null) {
+            info.warning("No completions available.");
+            return;
+        }
+        
+        // The members of types parsed from source must be collected now; those
+        // of loaded types, which may take a while, are found in the background.
+        // Any change to the document before they are found cancels the request.
+        final List<MemberIndex.Member> sourceMembers = new ArrayList<MemberIndex.Member>();
+        final List<GenTypeClass> loadedTypes = new ArrayList<GenTypeClass>();
+        MemberIndex.collectMembers(exprType, sourceMembers, loadedTypes);
+        
+        completionWorker = new SwingWorker() {
+            public Object construct()
+            {
+                return getPossibleCompletions(sourceMembers, loadedTypes, "");
+            }
+            
+            @SuppressWarnings("unchecked")
+            public void finished()
+            {
+                if (completionWorker == this) {
+                    completionWorker = null;
+                    showContentAssist(suggests, (List<MemberIndex.Member>) getValue());
+                }
+            }
+        };
+        completionWorker.start();
+    }
+    
+    /**
+     * Show the content assist popup window with the possible completions
+     * which are accessible at the suggestion point.
+     */
+    private void showContentAssist(CodeSuggestions suggests, List<MemberIndex.Member> members)
+    {
+        if (members != null) {
+            GenTypeClass accessType = suggests.getAccessType();
+            Reflective accessReflective = (accessType != null) ? accessType.getReflective() : null;
+            
+            List<AssistContent> completions = new ArrayList<AssistContent>(members.size());
+            for (MemberIndex.Member member : members) {
+                if (accessReflective != null &&
+                        ! JavaUtils.checkMemberAccess(member.method.getDeclaringType(),
+                        accessReflective, member.method.getModifiers())) {
+                    continue;
+                }
+                completions.add(new MethodCompletion(member, javadocResolver));
+            }
+            
+            if (! completions.isEmpty()) {
+                AssistContent[] values = completions.toArray(new AssistContent[completions.size()]);
                 codeCompletionDlg = new CodeCompletionDisplay(this, 
                         suggests.getSuggestionType().toString(false), 
-                        values, suggestToken);
+                        values, suggests.getSuggestionToken());
                 int cpos = sourcePane.getCaretPosition();
                 try {
                     Rectangle pos = sourcePane.modelToView(cpos);
@@ -3307,95 +3359,74 @@ implements bluej.editor.Editor, BlueJEventListener, HyperlinkListener, DocumentL
     }
 
     /**
-     * Close the content assist popup window.
+     * Close the content assist popup window, and cancel any request for
+     * completions which is still being processed.
      */
     private void closeContentAssist()
     {
+        cancelContentAssist();
         if (codeCompletionDlg != null) {
             codeCompletionDlg.setVisible(false);
             codeCompletionDlg.dispose();
         }
     }
+    
+    /**
+     * Cancel any request for completions which is still being processed.
+     */
+    private void cancelContentAssist()
+    {
+        if (completionWorker != null) {
+            completionWorker.interrupt();
+            completionWorker = null;
+        }
+    }
 
     /**
-     * Get the possible code completions.
+     * Get the possible code completions: the members already collected from
+     * source, followed by those of the given loaded types, without duplicates
+     * and sorted by name. This need not be called on the event thread; it
+     * returns null if the calling thread is interrupted.
      */
-    private AssistContent[] getPossibleCompletions(CodeSuggestions suggests, String prefix)
+    private static List<MemberIndex.Member> getPossibleCompletions(List<MemberIndex.Member> sourceMembers,
+            List<GenTypeClass> loadedTypes, String prefix)
     {
-        if (suggests != null) {
-            //Map<String,JavaType> fields = exprType.getClassType().getReflective().getDeclaredFields();
-            //for (Iterator<String> i = fields.keySet().iterator(); i.hasNext(); ) {
-            //    System.out.println(" field: " + i.next());
-            //}
-            
-            GenTypeClass exprType = suggests.getSuggestionType().asClass();
-            if (exprType == null) {
+        Set<String> contentSigs = new HashSet<String>();
+        List<MemberIndex.Member> completions = new ArrayList<MemberIndex.Member>();
+        addCompletions(sourceMembers, prefix, contentSigs, completions);
+        
+        for (GenTypeClass loadedType : loadedTypes) {
+            List<MemberIndex.Member> members = MemberIndex.getLoadedMembers(loadedType);
+            if (members == null) {
                 return null;
             }
-            
-            GenTypeClass accessType = suggests.getAccessType();
-            Reflective accessReflective = (accessType != null) ? accessType.getReflective() : null;
-
-            // Use two sets, one to keep track of which types we have already processed,
-            // another for individual methods.
-            Set<String> contentSigs = new HashSet<String>();
-            Set<String> typesDone = new HashSet<String>();
-            List<AssistContent> completions = new ArrayList<AssistContent>();
-
-            LinkedList<GenTypeClass> typeQueue = new LinkedList<GenTypeClass>();
-            typeQueue.add(exprType);
-            
-            while (! typeQueue.isEmpty()) {
-                exprType = typeQueue.removeFirst();
-                if (! typesDone.add(exprType.getReflective().getName())) {
-                    // we've already done this type...
-                    continue;
-                }
-                Map<String,Set<MethodReflective>> methods = exprType.getReflective().getDeclaredMethods();
-                Map<String,GenTypeParameter> typeArgs = exprType.getMap();
-
-                for (String name : methods.keySet()) {
-                    if (name.startsWith(prefix)) {
-                        Set<MethodReflective> mset = methods.get(name);
-                        for (MethodReflective method : mset) {
-                            if (accessReflective != null &&
-                                    ! JavaUtils.checkMemberAccess(method.getDeclaringType(),
-                                    suggests.getAccessType().getReflective(),
-                                    method.getModifiers())) {
-                                continue;
-                            }
-                            MethodCompletion completion = new MethodCompletion(method,
-                                    typeArgs, javadocResolver);
-                            String sig = completion.getDisplayName();
-                            if (contentSigs.add(sig)) {
-                                completions.add(new MethodCompletion(method, typeArgs, javadocResolver));
-                            }
-                        }
-                    }
-                }
+            addCompletions(members, prefix, contentSigs, completions);
+        }
 
-                for (GenTypeClass stype : exprType.getReflective().getSuperTypes()) {
-                    if (typeArgs != null) {
-                        typeQueue.add(stype.mapTparsToTypes(typeArgs));
-                    }
-                    else {
-                        typeQueue.add(stype.getErasedType());
-                    }
-                }
+        // Sort the completions by name
+        Collections.sort(completions, new Comparator<MemberIndex.Member>() {
+            public int compare(MemberIndex.Member o1, MemberIndex.Member o2)
+            {
+                return o1.displayName.compareTo(o2.displayName);
             }
+        });
 
-            // Sort the completions by name
-            Collections.sort(completions, new Comparator<AssistContent>() {
-                public int compare(AssistContent o1, AssistContent o2)
-                {
-                    return o1.getDisplayName().compareTo(o2.getDisplayName());
-                }
-            });
-
-            return (AssistContent []) completions.toArray(new AssistContent[completions.size()]);
+        return completions;
+    }
+    
+    /**
+     * Add those members whose names begin with the given prefix, and which
+     * do not duplicate a completion already added, to a list of completions.
+     */
+    private static void addCompletions(List<MemberIndex.Member> members, String prefix,
+            Set<String> contentSigs, List<MemberIndex.Member> completions)
+    {
+        for (MemberIndex.Member member : members) {
+            if (member.method.getName().startsWith(prefix)
+                    && contentSigs.add(member.displayName)) {
+                completions.add(member);
+            }
         }
-
-        return null; // no completions
     }
 
     /**
@@ -22,7 +22,14 @@
 package bluej.editor.moe;
 
 import java.awt.Color;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.WeakHashMap;
 
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 import javax.swing.event.DocumentEvent;
 import javax.swing.event.DocumentEvent.EventType;
 import javax.swing.text.AttributeSet;
@@ -33,11 +40,18 @@ import javax.swing.text.PlainDocument;
 import bluej.Config;
 import bluej.parser.entity.EntityResolver;
 import bluej.parser.nodes.ParsedCUNode;
+import bluej.parser.nodes.NodeTree.NodeAndPosition;
 
 
 /**
  * An implementation of PlainDocument, with an optional added parser to provide
  * syntax highlighting, scope highlighting, and other advanced functionality.
+ * 
+ * <p>When the document is edited on the event thread, any reparse the parser
+ * needs is not done straight away, but after a short delay with no further
+ * edits, so that a burst of keystrokes causes only one reparse. Code which
+ * needs the parsed structure to be up to date with the text (rather than
+ * just painting it) should call flushReparse() first.
  *
  * @author Bruce Quig
  * @author Jo Wood (Modified to allow user-defined colours, March 2001)
@@ -51,6 +65,26 @@ public class MoeSyntaxDocument extends PlainDocument
 	
     private ParsedCUNode parsedNode;
     
+    /** Delay after the last edit before a deferred reparse is done (ms) */
+    private static final int REPARSE_DELAY = 150;
+    /** Longest time a reparse is deferred while edits keep coming (ms) */
+    private static final int MAX_REPARSE_DELAY = 1000;
+    
+    private Timer reparseTimer;
+    /** Start of the text affected by edits since the last reparse, or -1 if none pending */
+    private int reparseFrom = -1;
+    /** Time at which the pending reparse was first requested */
+    private long reparseRequested;
+    /** Offset of the edit being passed to the parser */
+    private int editOffset;
+    
+    /**
+     * The syntax colouring tokens for lines which have been painted, by line
+     * element. An entry is removed when the text of the line changes, or when
+     * the node structure covering it may have changed.
+     */
+    private Map<Element,Token> tokenCache = new WeakHashMap<Element,Token>();
+    
     /**
      * Create an empty MoeSyntaxDocument.
      */
@@ -74,13 +108,81 @@ public class MoeSyntaxDocument extends PlainDocument
     }
 
     /**
-     * Access the parsed node structure of this document.
+     * Access the parsed node structure of this document. The structure may
+     * not yet reflect the latest edits; see flushReparse().
      */
     public ParsedCUNode getParser()
     {
         return parsedNode;
     }
     
+    /**
+     * Called by the parser when an edit requires the document to be
+     * reparsed. If the edit is being made on the event thread, the reparse
+     * is scheduled to run once editing pauses and true is returned;
+     * otherwise false is returned and the parser should reparse at once.
+     */
+    public boolean deferReparse()
+    {
+        if (! SwingUtilities.isEventDispatchThread()) {
+            return false;
+        }
+        
+        if (reparseTimer == null) {
+            reparseTimer = new Timer(REPARSE_DELAY, new ActionListener() {
+                public void actionPerformed(ActionEvent e)
+                {
+                    flushReparse();
+                }
+            });
+            reparseTimer.setRepeats(false);
+        }
+        
+        if (reparseFrom == -1) {
+            reparseFrom = editOffset;
+            reparseRequested = System.currentTimeMillis();
+            reparseTimer.restart();
+        }
+        else {
+            reparseFrom = Math.min(reparseFrom, editOffset);
+            // Keep putting the reparse off while the user types, but not forever
+            if (System.currentTimeMillis() - reparseRequested < MAX_REPARSE_DELAY) {
+                reparseTimer.restart();
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Perform any pending reparse now, so that the parsed structure is up to
+     * date with the document text. Views are notified of the changed nodes,
+     * and of the text from the first edit onwards needing to be repainted.
+     */
+    public void flushReparse()
+    {
+        if (reparseFrom == -1) {
+            return;
+        }
+        reparseTimer.stop();
+        
+        int from = Math.min(reparseFrom, getLength());
+        reparseFrom = -1;
+        
+        MoeSyntaxEvent mse;
+        readLock();
+        try {
+            mse = new MoeSyntaxEvent(this,
+                    new DefaultDocumentEvent(from, getLength() - from, EventType.CHANGE));
+            parsedNode.addListener(mse);
+            parsedNode.reparse(this);
+            parsedNode.removeListener(mse);
+        }
+        finally {
+            readUnlock();
+        }
+        fireChangedUpdate(mse);
+    }
+    
     /**
      * Sets attributes for a paragraph.  This method was added to 
      * provide the ability to replicate DefaultStyledDocument's ability to 
@@ -206,14 +308,59 @@ public class MoeSyntaxDocument extends PlainDocument
     
     /**
      * Identify the token types and positions in a line. This is used for syntax colouring.
+     * The returned tokens may be shared with later calls, and must not be modified.
      * @param line  The line number (0 based).
      */
     public Token getTokensForLine(int line)
     {
         Element lineEl = getDefaultRootElement().getElement(line);
-        int pos = lineEl.getStartOffset();
-        int length = lineEl.getEndOffset() - pos - 1;
-        return parsedNode.getMarkTokensFor(pos, length, 0, this);
+        Token tokens = tokenCache.get(lineEl);
+        if (tokens == null) {
+            int pos = lineEl.getStartOffset();
+            int length = lineEl.getEndOffset() - pos - 1;
+            tokens = parsedNode.getMarkTokensFor(pos, length, 0, this);
+            tokenCache.put(lineEl, tokens);
+        }
+        return tokens;
+    }
+    
+    /**
+     * Discard the cached tokens for the lines covering the given range of
+     * the document.
+     */
+    private void invalidateTokens(int start, int end)
+    {
+        if (tokenCache.isEmpty()) {
+            return;
+        }
+        if (start <= 0 && end >= getLength()) {
+            tokenCache.clear();
+            return;
+        }
+        
+        Element root = getDefaultRootElement();
+        int firstLine = root.getElementIndex(start);
+        int lastLine = root.getElementIndex(end);
+        for (int i = firstLine; i <= lastLine; i++) {
+            tokenCache.remove(root.getElement(i));
+        }
+    }
+    
+    /**
+     * Discard the cached tokens for the lines affected by an event: the
+     * changed text, and any nodes added or removed.
+     */
+    private void invalidateTokens(MoeSyntaxEvent mse)
+    {
+        invalidateTokens(mse.getOffset(), mse.getOffset() + mse.getLength());
+        for (Iterator<NodeAndPosition> i = mse.getRemovedNodes().iterator(); i.hasNext(); ) {
+            NodeAndPosition node = i.next();
+            invalidateTokens(node.getPosition(), node.getEnd());
+        }
+        for (Iterator<NodeAndPosition> i = mse.getAddedNodes().iterator(); i.hasNext(); ) {
+            NodeAndPosition node = i.next();
+            invalidateTokens(node.getPosition(), node.getEnd());
+        }
     }
     
     /**
@@ -242,9 +389,14 @@ public class MoeSyntaxDocument extends PlainDocument
     {
         MoeSyntaxEvent mse = new MoeSyntaxEvent(this, e);
         if (parsedNode != null) {
+            if (reparseFrom > e.getOffset()) {
+                reparseFrom += e.getLength();
+            }
+            editOffset = e.getOffset();
             parsedNode.addListener(mse);
             parsedNode.textInserted(this, 0, e.getOffset(), e.getLength());
             parsedNode.removeListener(mse);
+            invalidateTokens(mse);
         }
         super.fireInsertUpdate(mse);
     }
@@ -256,13 +408,34 @@ public class MoeSyntaxDocument extends PlainDocument
     {
         MoeSyntaxEvent mse = new MoeSyntaxEvent(this, e);
         if (parsedNode != null) {
+            if (reparseFrom > e.getOffset()) {
+                reparseFrom = Math.max(e.getOffset(), reparseFrom - e.getLength());
+            }
+            editOffset = e.getOffset();
             parsedNode.addListener(mse);
             parsedNode.textRemoved(this, 0, e.getOffset(), e.getLength());
             parsedNode.removeListener(mse);
+            invalidateTokens(mse);
         }
         super.fireRemoveUpdate(mse);
     }
     
+    /*
+     * Override the default implementation to discard cached tokens for the
+     * changed region (changes to attributes, or to the node structure).
+     * @see javax.swing.text.AbstractDocument#fireChangedUpdate(javax.swing.event.DocumentEvent)
+     */
+    protected void fireChangedUpdate(DocumentEvent e)
+    {
+        if (e instanceof MoeSyntaxEvent) {
+            invalidateTokens((MoeSyntaxEvent) e);
+        }
+        else {
+            invalidateTokens(e.getOffset(), e.getOffset() + e.getLength());
+        }
+        super.fireChangedUpdate(e);
+    }
+    
     /**
      * Notify that the whole document potentially needs repainting.
      */
@@ -23,7 +23,6 @@ package bluej.graph;
 
 import java.awt.Dimension;
 import java.awt.Rectangle;
-import java.awt.geom.Area;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
@@ -53,6 +52,16 @@ public abstract class Graph
      */
     public abstract Iterator<? extends Edge> getEdges();
 
+    /**
+     * Return the spatial index of the vertices in this graph, or null if the
+     * graph does not keep one (in which case searches for vertices look at
+     * each one).
+     */
+    protected VertexIndex getVertexIndex()
+    {
+        return null;
+    }
+
     /**
      * Return the minimum size of this graph. The minimum size depends on the
      * position of the elements in this graph. It is calculated so that all
@@ -88,19 +97,6 @@ public abstract class Graph
      */
     public void findSpaceForVertex(Vertex t)
     {
-        Area a = new Area();
-
-        for (Iterator<? extends Vertex> it = getVertices(); it.hasNext();) {
-            Vertex vertex = it.next();
-
-            // lets discount the vertex we are adding from the space
-            // calculations
-            if (vertex != t) {
-                Rectangle vr = new Rectangle(vertex.getX(), vertex.getY(), vertex.getWidth(), vertex.getHeight());
-                a.add(new Area(vr));
-            }
-        }
-
         Dimension min = getMinimumSize();
 
         if (RIGHT_PLACEMENT_MIN > min.width)
@@ -109,12 +105,28 @@ public abstract class Graph
         Rectangle targetRect = new Rectangle(t.getWidth() + WHITESPACE_SIZE * 2, t.getHeight() + WHITESPACE_SIZE * 2);
 
         for (int y = 0; y < (2 * min.height); y += 10) {
-            for (int x = 0; x < (min.width - t.getWidth() - 2 * WHITESPACE_SIZE); x += 10) {
+            int x = 0;
+            while (x < (min.width - t.getWidth() - 2 * WHITESPACE_SIZE)) {
                 targetRect.setLocation(x, y);
-                if (!a.intersects(targetRect)) {
+                
+                boolean free = true;
+                int nextX = x + 10;
+                for (Vertex vertex : findVertices(targetRect)) {
+                    // lets discount the vertex we are adding from the space
+                    // calculations
+                    if (vertex != t) {
+                        free = false;
+                        // the places to the left of this vertex's right edge
+                        // overlap it too, so try past it next
+                        int right = vertex.getX() + vertex.getWidth();
+                        nextX = Math.max(nextX, x + (right - x + 9) / 10 * 10);
+                    }
+                }
+                if (free) {
                     t.setPos(x + 10, y + 10);
                     return;
                 }
+                x = nextX;
             }
         }
 
@@ -176,6 +188,15 @@ public abstract class Graph
      */
     private Vertex findVertex(int x, int y)
     {
+        VertexIndex index = getVertexIndex();
+        List<Vertex> found = null;
+        if (index != null) {
+            found = index.findVertices(x, y);
+            if (found.size() < 2) {
+                return found.isEmpty() ? null : found.get(0);
+            }
+        }
+        
         GraphElement element = null;
         GraphElement topElement = null;
 
@@ -185,13 +206,37 @@ public abstract class Graph
         // This turns out to be the vertex which is rendered at the front
         for (Iterator<? extends Vertex> it = getVertices(); it.hasNext();) {
             element = it.next();
-            if (element.contains(x, y)) {
+            if (found != null ? found.contains(element) : element.contains(x, y)) {
                 topElement = element;
             }
         }
         return (Vertex) topElement;
     }
     
+    /**
+     * Finds the vertices whose rectangles intersect the given area.
+     * 
+     * @param area
+     *            the area to search
+     * @return the vertices in the area, in no particular order
+     */
+    public List<Vertex> findVertices(Rectangle area)
+    {
+        VertexIndex index = getVertexIndex();
+        if (index != null) {
+            return index.findVertices(area);
+        }
+        
+        List<Vertex> found = new ArrayList<Vertex>();
+        for (Iterator<? extends Vertex> it = getVertices(); it.hasNext();) {
+            Vertex vertex = it.next();
+            if (vertex.getRectangle().intersects(area)) {
+                found.add(vertex);
+            }
+        }
+        return found;
+    }
+    
     /**
      * Add a listener to be notified of graph events.
      */
@@ -24,6 +24,7 @@ package bluej.graph;
 import java.awt.*;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseMotionListener;
+import java.awt.image.BufferedImage;
 
 import javax.swing.JComponent;
 
@@ -58,6 +59,18 @@ public class GraphEditor extends JComponent
 
     private Cursor currentCursor = defaultCursor;  // currently shown cursor
     
+    /**
+     * While the user drags vertices, or draws a dependency, the graph is
+     * painted from an image of the visible part of it, so that only what is
+     * dragged need be painted as it moves. The image is used as long as only
+     * repaintOverlay() is asked to repaint the graph editor.
+     */
+    private BufferedImage graphImage;
+    private Rectangle graphImageBounds;
+    private boolean graphImageValid;
+    private boolean useGraphImage;
+    private boolean repaintingOverlay;
+    
     /**
      * Create a graph editor.
      * @param graph The graph being edited by this editor.
@@ -108,18 +121,90 @@ public class GraphEditor extends JComponent
     public void paint(Graphics g)
     {
         Graphics2D g2D = (Graphics2D) g;
-        //draw background
-        if (!(g2D instanceof PrintGraphics)) {
-            Dimension d = getSize();
-            g2D.setColor(background);
-            g2D.fillRect(0, 0, d.width, d.height);
+        if (useGraphImage && !(g2D instanceof PrintGraphics)) {
+            paintGraphImage(g2D);
+            graphPainter.paintOverlay(g2D, this);
+        }
+        else {
+            graphImage = null;
+            
+            //draw background
+            if (!(g2D instanceof PrintGraphics)) {
+                Dimension d = getSize();
+                g2D.setColor(background);
+                g2D.fillRect(0, 0, d.width, d.height);
+            }
+            graphPainter.paint(g2D, this);
         }
 
-        graphPainter.paint(g2D, this);
         marqueePainter.paint(g2D, selectionController.getMarquee());
 
 //        super.paint(g); // for border
     }
+    
+    /**
+     * Paint the graph from the image of it, first painting the image if the
+     * graph has changed, or been scrolled, since then.
+     */
+    private void paintGraphImage(Graphics2D g)
+    {
+        Rectangle visible = getVisibleRect();
+        if (graphImage == null || !graphImageValid || !visible.equals(graphImageBounds)) {
+            int width = Math.max(visible.width, 1);
+            int height = Math.max(visible.height, 1);
+            if (graphImage == null || graphImage.getWidth() != width || graphImage.getHeight() != height) {
+                GraphicsConfiguration gc = getGraphicsConfiguration();
+                if (gc != null) {
+                    graphImage = gc.createCompatibleImage(width, height);
+                }
+                else {
+                    graphImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+                }
+            }
+            
+            Graphics2D imageG = graphImage.createGraphics();
+            imageG.setColor(background);
+            imageG.fillRect(0, 0, width, height);
+            imageG.translate(-visible.x, -visible.y);
+            imageG.clip(visible);
+            graphPainter.paintGraph(imageG, this);
+            imageG.dispose();
+            
+            graphImageBounds = visible;
+            graphImageValid = true;
+        }
+        g.drawImage(graphImage, visible.x, visible.y, null);
+    }
+    
+    /**
+     * Repaint part of the graph editor in which only the ghosts of dragged
+     * vertices, or a dependency being drawn, have changed. The graph itself
+     * is painted from an image.
+     */
+    public void repaintOverlay(Rectangle area)
+    {
+        useGraphImage = true;
+        repaintingOverlay = true;
+        try {
+            repaint(area);
+        }
+        finally {
+            repaintingOverlay = false;
+        }
+    }
+    
+    /**
+     * Repaint part of the graph editor. The image of the graph (if any) will
+     * not be used again.
+     */
+    public void repaint(long tm, int x, int y, int width, int height)
+    {
+        if (! repaintingOverlay) {
+            useGraphImage = false;
+            graphImageValid = false;
+        }
+        super.repaint(tm, x, y, width, height);
+    }
 
     // ---- MouseMotionListener interface: ----
 
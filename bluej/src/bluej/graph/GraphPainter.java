@@ -36,4 +36,20 @@ public interface GraphPainter
      * @param graphEditor  The editor to be painted.
      */
     void paint(Graphics2D g, GraphEditor graphEditor);
+    
+    /**
+     * Paint the graph itself (its edges and vertices), leaving out what is
+     * painted over it while the user drags something.
+     * @param g  The graphics contect to paint on.
+     * @param graphEditor  The editor to be painted.
+     */
+    void paintGraph(Graphics2D g, GraphEditor graphEditor);
+    
+    /**
+     * Paint what is painted over the graph while the user drags something:
+     * the ghosts of dragged vertices, and a dependency being drawn.
+     * @param g  The graphics contect to paint on.
+     * @param graphEditor  The editor to be painted.
+     */
+    void paintOverlay(Graphics2D g, GraphEditor graphEditor);
 }
\ No newline at end of file
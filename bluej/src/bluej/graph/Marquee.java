@@ -22,7 +22,6 @@
 package bluej.graph;
 
 import java.awt.*;
-import java.util.*;
 
 /**
  * The diagram's marquee (a rectangular drag area for selecting graph elements).
@@ -91,11 +90,8 @@ public final class Marquee
         selected.clear();
 
         //find the intersecting vertices
-        for (Iterator it = graph.getVertices(); it.hasNext();) {
-            Vertex v = (Vertex) it.next();
-            if (v.getRectangle().intersects(x, y, w, h)) {
-                selected.add(v);
-            }
+        for (Vertex v : graph.findVertices(new Rectangle(x, y, w, h))) {
+            selected.add(v);
         }
     }
 
@@ -47,6 +47,16 @@ public interface Moveable
      */
     public int getGhostY();
     
+    /**
+     * Return the width of the ghost image.
+     */
+    public int getGhostWidth();
+    
+    /**
+     * Return the height of the ghost image.
+     */
+    public int getGhostHeight();
+    
     /**
      * Set the position of the ghost image given a delta to the real size.
      */
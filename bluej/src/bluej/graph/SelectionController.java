@@ -65,6 +65,11 @@ public class SelectionController
     private int currentDependencyIndex;  // for cycling through dependencies
 
     private TraverseStragegy traverseStragegiImpl = new TraverseStragegyImpl();
+    
+    /** How far a ghost's border may be painted outside it */
+    private static final int GHOST_MARGIN = 2;
+    /** How far a dependency being drawn may be painted from its ends */
+    private static final int RUBBER_BAND_MARGIN = 20;
 
     
     /**
@@ -217,14 +222,22 @@ public class SelectionController
                 graphEditor.repaint(newRect);
             }
             else if (rubberBand != null) {
+                // Repaint where the dependency was and where it is now
+                Rectangle changedRect = new Rectangle(rubberBand.startPt);
+                changedRect.add(rubberBand.endPt);
                 rubberBand.setEnd(evt.getX(), evt.getY());
-                graphEditor.repaint();
+                changedRect.add(rubberBand.endPt);
+                changedRect.grow(RUBBER_BAND_MARGIN, RUBBER_BAND_MARGIN);
+                graphEditor.repaintOverlay(changedRect);
             }
             else 
             {
                 if(! selection.isEmpty()) {
                     int deltaX = snapToGrid(evt.getX() - dragStartX);
                     int deltaY = snapToGrid(evt.getY() - dragStartY);
+                    
+                    // Repaint where the ghosts were and where they are now
+                    Rectangle changedRect = selection.getGhostBounds();
     
                     if(resizing) {
                         selection.resize(deltaX, deltaY);
@@ -232,8 +245,16 @@ public class SelectionController
                     else if (moving) {
                         selection.move(deltaX, deltaY);
                     }
+                    
+                    if (changedRect != null) {
+                        changedRect.add(selection.getGhostBounds());
+                        changedRect.grow(GHOST_MARGIN, GHOST_MARGIN);
+                        graphEditor.repaintOverlay(changedRect);
+                    }
+                }
+                else {
+                    graphEditor.repaint();
                 }
-                graphEditor.repaint();
             }
         }
     }
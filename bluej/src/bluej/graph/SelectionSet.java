@@ -22,6 +22,7 @@
 package bluej.graph;
 
 import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.event.MouseEvent;
 import java.util.*;
 
@@ -133,6 +134,30 @@ public final class SelectionSet
         }
     }
 
+    /**
+     * Return the area covered by the ghosts of the moveable elements in this
+     * selection, or null if there are none.
+     */
+    public Rectangle getGhostBounds()
+    {
+        Rectangle bounds = null;
+        for (Iterator i = elements.iterator(); i.hasNext();) {
+            GraphElement element = (GraphElement) i.next();
+            if(element instanceof Moveable) {
+                Moveable moveable = (Moveable) element;
+                Rectangle ghost = new Rectangle(moveable.getGhostX(), moveable.getGhostY(),
+                        moveable.getGhostWidth(), moveable.getGhostHeight());
+                if (bounds == null) {
+                    bounds = ghost;
+                }
+                else {
+                    bounds.add(ghost);
+                }
+            }
+        }
+        return bounds;
+    }
+
     /**
      * Restrict the delta so that no target moves out of the screen.
      */
@@ -0,0 +1,169 @@
+/*
+ This file is part of the BlueJ program. 
+ Copyright (C) 2010  Michael Kolling and John Rosenberg 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package bluej.graph;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A spatial index of the vertices in a graph, for finding the vertices at a
+ * point or in an area without looking at all of them. The graph is divided
+ * into square cells, and each vertex is listed in every cell its rectangle
+ * overlaps.
+ * 
+ * <p>The index must be told when a vertex is added, removed, moved or
+ * resized (update()).
+ */
+public final class VertexIndex
+{
+    /** The cells are 128 pixels square */
+    private static final int CELL_SHIFT = 7;
+    
+    private Map<Long,List<Vertex>> cells = new HashMap<Long,List<Vertex>>();
+    
+    /** The rectangle each vertex was indexed with */
+    private Map<Vertex,Rectangle> bounds = new IdentityHashMap<Vertex,Rectangle>();
+    
+    /**
+     * Add a vertex to the index.
+     */
+    public void add(Vertex vertex)
+    {
+        if (bounds.containsKey(vertex)) {
+            update(vertex);
+            return;
+        }
+        
+        Rectangle r = vertex.getRectangle();
+        bounds.put(vertex, r);
+        for (int cy = cellOf(r.y); cy <= cellOf(r.y + r.height - 1); cy++) {
+            for (int cx = cellOf(r.x); cx <= cellOf(r.x + r.width - 1); cx++) {
+                Long key = key(cx, cy);
+                List<Vertex> cell = cells.get(key);
+                if (cell == null) {
+                    cell = new ArrayList<Vertex>(4);
+                    cells.put(key, cell);
+                }
+                cell.add(vertex);
+            }
+        }
+    }
+    
+    /**
+     * Remove a vertex from the index. Does nothing if it is not in the index.
+     */
+    public void remove(Vertex vertex)
+    {
+        Rectangle r = bounds.remove(vertex);
+        if (r == null) {
+            return;
+        }
+        
+        for (int cy = cellOf(r.y); cy <= cellOf(r.y + r.height - 1); cy++) {
+            for (int cx = cellOf(r.x); cx <= cellOf(r.x + r.width - 1); cx++) {
+                Long key = key(cx, cy);
+                List<Vertex> cell = cells.get(key);
+                cell.remove(vertex);
+                if (cell.isEmpty()) {
+                    cells.remove(key);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Update the index after a vertex has moved or changed size. Does
+     * nothing if the vertex is not in the index.
+     */
+    public void update(Vertex vertex)
+    {
+        Rectangle r = bounds.get(vertex);
+        if (r != null && ! r.equals(vertex.getRectangle())) {
+            remove(vertex);
+            add(vertex);
+        }
+    }
+    
+    /**
+     * Get the vertices which contain the given point.
+     */
+    public List<Vertex> findVertices(int x, int y)
+    {
+        List<Vertex> found = new ArrayList<Vertex>(2);
+        List<Vertex> cell = cells.get(key(cellOf(x), cellOf(y)));
+        if (cell != null) {
+            for (Vertex vertex : cell) {
+                if (vertex.contains(x, y)) {
+                    found.add(vertex);
+                }
+            }
+        }
+        return found;
+    }
+    
+    /**
+     * Get the vertices whose rectangles intersect the given area.
+     */
+    public List<Vertex> findVertices(Rectangle area)
+    {
+        List<Vertex> found = new ArrayList<Vertex>();
+        if (area.width <= 0 || area.height <= 0) {
+            return found;
+        }
+        
+        int firstX = cellOf(area.x);
+        int firstY = cellOf(area.y);
+        for (int cy = firstY; cy <= cellOf(area.y + area.height - 1); cy++) {
+            for (int cx = firstX; cx <= cellOf(area.x + area.width - 1); cx++) {
+                List<Vertex> cell = cells.get(key(cx, cy));
+                if (cell == null) {
+                    continue;
+                }
+                for (Vertex vertex : cell) {
+                    // A vertex may be in several of the cells; take it only
+                    // from the first
+                    Rectangle r = bounds.get(vertex);
+                    if (cx == Math.max(firstX, cellOf(r.x))
+                            && cy == Math.max(firstY, cellOf(r.y))
+                            && r.intersects(area)) {
+                        found.add(vertex);
+                    }
+                }
+            }
+        }
+        return found;
+    }
+    
+    private static int cellOf(int coordinate)
+    {
+        return coordinate >> CELL_SHIFT;
+    }
+    
+    private static Long key(int cx, int cy)
+    {
+        return Long.valueOf(((long) cx << 32) | (cy & 0xffffffffL));
+    }
+}
@@ -32,6 +32,8 @@ import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
 import bluej.pkgmgr.BlueJPackageFile;
+import bluej.pkgmgr.ClassInfoCache;
+import bluej.pkgmgr.SignatureIndex;
 
 /**
  * A FilenameFilter that filters out files based on a list of patterns. It also
@@ -118,6 +120,12 @@ public class CodeFileFilter implements FileFilter, FilenameFilter
 		if (name.equals("team.defs")){
 			result = false;
 		}
+		if (name.equals(SignatureIndex.indexFileName)){
+			result = false;
+		}
+		if (name.equals(ClassInfoCache.cacheFileName)){
+			result = false;
+		}
         if (name.equals(".DS_Store")){
 			result = false;
 		}
@@ -365,6 +365,8 @@ public class TeamSettingsController
         teamProperties.put("bluej.teamsettings.ignore6", ".*\\#");
         teamProperties.put("bluej.teamsettings.ignore7", ".*\\#backup");
         teamProperties.put("bluej.teamsettings.ignore8", "\\.DS_Store");
+        teamProperties.put("bluej.teamsettings.ignore9", "bluej\\.sig");
+        teamProperties.put("bluej.teamsettings.ignore10", "bluej\\.info");
     }
 
     /**
@@ -98,6 +98,16 @@ public class EditorParser extends JavaParser
         pcuNode.setParentResolver(resolver);
     }
     
+    /**
+     * Constructor for use by subclasses (InfoReader), reading from a token stream.
+     */
+    protected EditorParser(TokenStream lexer, EntityResolver resolver)
+    {
+        super(lexer);
+        pcuNode = new ParsedCUNode();
+        pcuNode.setParentResolver(resolver);
+    }
+    
     /**
      * Constructor for an EditorParser to parse a particular document.
      * After construction the normal course of action is to call parseCU(ParsedCUNode).
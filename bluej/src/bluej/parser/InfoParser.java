@@ -117,6 +117,11 @@ public class InfoParser extends EditorParser
     {
         super(r, resolver);
     }
+    
+    public InfoParser(TokenStream lexer, EntityResolver resolver)
+    {
+        super(lexer, resolver);
+    }
 
     public static ClassInfo parse(File f) throws FileNotFoundException
     {
@@ -137,11 +142,25 @@ public class InfoParser extends EditorParser
                 pkg.getQualifiedName());
         return parse(new InputStreamReader(fis), resolver, pkg.getQualifiedName());
     }
+    
+    /**
+     * Parse a source file of a package from the tokens already read from it
+     * (by a lexer obtained from JavaParser.getLexer()).
+     */
+    public static ClassInfo parse(TokenStream tokens, Package pkg)
+    {
+        EntityResolver resolver = new PackageResolver(pkg.getProject().getEntityResolver(),
+                pkg.getQualifiedName());
+        return parse(new InfoParser(tokens, resolver), pkg.getQualifiedName());
+    }
 
     public static ClassInfo parse(Reader r, EntityResolver resolver, String targetPkg)
     {
-        InfoParser infoParser = null;
-        infoParser = new InfoParser(r, resolver);
+        return parse(new InfoParser(r, resolver), targetPkg);
+    }
+    
+    private static ClassInfo parse(InfoParser infoParser, String targetPkg)
+    {
         infoParser.targetPkg = targetPkg;
         infoParser.parseCU();
 
@@ -62,6 +62,15 @@ public class JavaParser
         TokenStream lexer = getLexer(r, line, col);
         tokenStream = new JavaTokenFilter(lexer, this);
     }
+    
+    /**
+     * Construct a parser which reads from an existing stream of (unfiltered)
+     * tokens, such as those produced by a lexer from getLexer().
+     */
+    public JavaParser(TokenStream lexer)
+    {
+        tokenStream = new JavaTokenFilter(lexer, this);
+    }
 
     /**
      * An error occurred during parsing. Override this method to control error behaviour.
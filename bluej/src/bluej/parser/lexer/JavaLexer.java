@@ -24,8 +24,6 @@ package bluej.parser.lexer;
 
 import java.io.IOException;
 import java.io.Reader;
-import java.util.HashMap;
-import java.util.Map;
 
 import bluej.parser.EscapedUnicodeReader;
 import bluej.parser.TokenStream;
@@ -34,72 +32,101 @@ import bluej.parser.TokenStream;
 /**
  * A Java lexer. Breaks up a source stream into tokens.
  * 
+ * <p>To keep allocation down, the text buffer is reused for every token, and
+ * the text of keywords, operators, common identifiers and any identifier or
+ * number seen before by the same lexer is shared rather than copied anew.
+ * 
  * @author Marion Zalk
  */
 public class JavaLexer implements TokenStream
 {
-    private StringBuffer textBuffer; // text of current token
+    private StringBuilder textBuffer = new StringBuilder(); // text of current token
     private EscapedUnicodeReader reader;
     private int rChar; 
     private int beginColumn, beginLine;
     private int endColumn, endLine;
     private char [] buf = new char[1];
     
-    private static Map<String,Integer> keywords = new HashMap<String,Integer>();
+    /** Text of the identifiers and numbers seen by this lexer (created when needed) */
+    private TokenTextTable tokenText;
+    
+    /**
+     * Text shared by all lexers: the keywords, with their token types, the
+     * operators, and some very common identifiers (with type IDENT). This is
+     * not modified after initialisation.
+     */
+    private static TokenTextTable commonText = new TokenTextTable(200);
     
     static {
-        keywords.put("abstract", JavaTokenTypes.ABSTRACT);
-        keywords.put("assert", JavaTokenTypes.LITERAL_assert);
-        keywords.put("boolean", JavaTokenTypes.LITERAL_boolean);
-        keywords.put("break", JavaTokenTypes.LITERAL_break);
-        keywords.put("byte", JavaTokenTypes.LITERAL_byte);
-        keywords.put("case", JavaTokenTypes.LITERAL_case);
-        keywords.put("catch", JavaTokenTypes.LITERAL_catch);
-        keywords.put("char", JavaTokenTypes.LITERAL_char);
-        keywords.put("class", JavaTokenTypes.LITERAL_class);
-        keywords.put("continue", JavaTokenTypes.LITERAL_continue);
-        keywords.put("default", JavaTokenTypes.LITERAL_default);
-        keywords.put("do", JavaTokenTypes.LITERAL_do);
-        keywords.put("double", JavaTokenTypes.LITERAL_double);
-        keywords.put("else", JavaTokenTypes.LITERAL_else);
-        keywords.put("enum", JavaTokenTypes.LITERAL_enum);
-        keywords.put("extends", JavaTokenTypes.LITERAL_extends);
-        keywords.put("false", JavaTokenTypes.LITERAL_false);
-        keywords.put("final", JavaTokenTypes.FINAL);
-        keywords.put("finally", JavaTokenTypes.LITERAL_finally);
-        keywords.put("float", JavaTokenTypes.LITERAL_float);
-        keywords.put("for", JavaTokenTypes.LITERAL_for);
-        keywords.put("goto", JavaTokenTypes.GOTO);
-        keywords.put("if", JavaTokenTypes.LITERAL_if);
-        keywords.put("implements", JavaTokenTypes.LITERAL_implements);
-        keywords.put("import", JavaTokenTypes.LITERAL_import);
-        keywords.put("instanceof", JavaTokenTypes.LITERAL_instanceof);
-        keywords.put("int", JavaTokenTypes.LITERAL_int);
-        keywords.put("interface", JavaTokenTypes.LITERAL_interface);
-        keywords.put("long", JavaTokenTypes.LITERAL_long);
-        keywords.put("native", JavaTokenTypes.LITERAL_native);
-        keywords.put("new", JavaTokenTypes.LITERAL_new);
-        keywords.put("null", JavaTokenTypes.LITERAL_null);
-        keywords.put("package", JavaTokenTypes.LITERAL_package);
-        keywords.put("private", JavaTokenTypes.LITERAL_private);
-        keywords.put("protected", JavaTokenTypes.LITERAL_protected);
-        keywords.put("public", JavaTokenTypes.LITERAL_public);
-        keywords.put("return", JavaTokenTypes.LITERAL_return);
-        keywords.put("short", JavaTokenTypes.LITERAL_short);
-        keywords.put("static", JavaTokenTypes.LITERAL_static);
-        keywords.put("strictfp", JavaTokenTypes.STRICTFP);
-        keywords.put("super", JavaTokenTypes.LITERAL_super);
-        keywords.put("switch", JavaTokenTypes.LITERAL_switch);
-        keywords.put("synchronized", JavaTokenTypes.LITERAL_synchronized);
-        keywords.put("this", JavaTokenTypes.LITERAL_this);
-        keywords.put("throw", JavaTokenTypes.LITERAL_throw);
-        keywords.put("throws", JavaTokenTypes.LITERAL_throws);
-        keywords.put("transient", JavaTokenTypes.LITERAL_transient);
-        keywords.put("true", JavaTokenTypes.LITERAL_true);
-        keywords.put("try", JavaTokenTypes.LITERAL_try);
-        keywords.put("volatile", JavaTokenTypes.LITERAL_volatile);
-        keywords.put("while", JavaTokenTypes.LITERAL_while);
-        keywords.put("void", JavaTokenTypes.LITERAL_void);
+        commonText.add("abstract", JavaTokenTypes.ABSTRACT);
+        commonText.add("assert", JavaTokenTypes.LITERAL_assert);
+        commonText.add("boolean", JavaTokenTypes.LITERAL_boolean);
+        commonText.add("break", JavaTokenTypes.LITERAL_break);
+        commonText.add("byte", JavaTokenTypes.LITERAL_byte);
+        commonText.add("case", JavaTokenTypes.LITERAL_case);
+        commonText.add("catch", JavaTokenTypes.LITERAL_catch);
+        commonText.add("char", JavaTokenTypes.LITERAL_char);
+        commonText.add("class", JavaTokenTypes.LITERAL_class);
+        commonText.add("continue", JavaTokenTypes.LITERAL_continue);
+        commonText.add("default", JavaTokenTypes.LITERAL_default);
+        commonText.add("do", JavaTokenTypes.LITERAL_do);
+        commonText.add("double", JavaTokenTypes.LITERAL_double);
+        commonText.add("else", JavaTokenTypes.LITERAL_else);
+        commonText.add("enum", JavaTokenTypes.LITERAL_enum);
+        commonText.add("extends", JavaTokenTypes.LITERAL_extends);
+        commonText.add("false", JavaTokenTypes.LITERAL_false);
+        commonText.add("final", JavaTokenTypes.FINAL);
+        commonText.add("finally", JavaTokenTypes.LITERAL_finally);
+        commonText.add("float", JavaTokenTypes.LITERAL_float);
+        commonText.add("for", JavaTokenTypes.LITERAL_for);
+        commonText.add("goto", JavaTokenTypes.GOTO);
+        commonText.add("if", JavaTokenTypes.LITERAL_if);
+        commonText.add("implements", JavaTokenTypes.LITERAL_implements);
+        commonText.add("import", JavaTokenTypes.LITERAL_import);
+        commonText.add("instanceof", JavaTokenTypes.LITERAL_instanceof);
+        commonText.add("int", JavaTokenTypes.LITERAL_int);
+        commonText.add("interface", JavaTokenTypes.LITERAL_interface);
+        commonText.add("long", JavaTokenTypes.LITERAL_long);
+        commonText.add("native", JavaTokenTypes.LITERAL_native);
+        commonText.add("new", JavaTokenTypes.LITERAL_new);
+        commonText.add("null", JavaTokenTypes.LITERAL_null);
+        commonText.add("package", JavaTokenTypes.LITERAL_package);
+        commonText.add("private", JavaTokenTypes.LITERAL_private);
+        commonText.add("protected", JavaTokenTypes.LITERAL_protected);
+        commonText.add("public", JavaTokenTypes.LITERAL_public);
+        commonText.add("return", JavaTokenTypes.LITERAL_return);
+        commonText.add("short", JavaTokenTypes.LITERAL_short);
+        commonText.add("static", JavaTokenTypes.LITERAL_static);
+        commonText.add("strictfp", JavaTokenTypes.STRICTFP);
+        commonText.add("super", JavaTokenTypes.LITERAL_super);
+        commonText.add("switch", JavaTokenTypes.LITERAL_switch);
+        commonText.add("synchronized", JavaTokenTypes.LITERAL_synchronized);
+        commonText.add("this", JavaTokenTypes.LITERAL_this);
+        commonText.add("throw", JavaTokenTypes.LITERAL_throw);
+        commonText.add("throws", JavaTokenTypes.LITERAL_throws);
+        commonText.add("transient", JavaTokenTypes.LITERAL_transient);
+        commonText.add("true", JavaTokenTypes.LITERAL_true);
+        commonText.add("try", JavaTokenTypes.LITERAL_try);
+        commonText.add("volatile", JavaTokenTypes.LITERAL_volatile);
+        commonText.add("while", JavaTokenTypes.LITERAL_while);
+        commonText.add("void", JavaTokenTypes.LITERAL_void);
+        
+        String [] operators = {"?", ",", ";", ":", "^", "^=", "~", "(", ")", "[", "]",
+                "{", "}", "@", "&", "&=", "&&", "|", "|=", "||", "!", "!=", "+", "+=", "++",
+                "-", "-=", "--", "=", "==", "%", "%=", "/", "/=", ".", "...", "*", "*=",
+                ">", ">=", ">>", ">>=", ">>>", ">>>=", "<", "<=", "<<", "<<="};
+        for (int i = 0; i < operators.length; i++) {
+            commonText.add(operators[i], JavaTokenTypes.INVALID);
+        }
+        
+        String [] identifiers = {"java", "lang", "util", "io", "String", "Object", "System",
+                "out", "println", "print", "Integer", "Math", "List", "ArrayList", "Map",
+                "HashMap", "Iterator", "Exception", "length", "size", "get", "set", "add",
+                "remove", "equals", "hashCode", "toString", "main", "args", "i", "j", "k",
+                "x", "y", "n", "e", "Override"};
+        for (int i = 0; i < identifiers.length; i++) {
+            commonText.add(identifiers[i], JavaTokenTypes.IDENT);
+        }
     }
 
     /**
@@ -167,7 +194,30 @@ public class JavaLexer implements TokenStream
 
     private void resetText()
     {
-        textBuffer=new StringBuffer();
+        textBuffer.setLength(0);
+    }
+    
+    /**
+     * Get the text of the current token, sharing the String with earlier
+     * tokens with the same text where possible. This is used for short tokens
+     * which are likely to be repeated, not for literals or comments.
+     */
+    private String getSharedText()
+    {
+        int index = commonText.find(textBuffer);
+        if (index != -1) {
+            return commonText.getString(index);
+        }
+        if (tokenText == null) {
+            tokenText = new TokenTextTable(64);
+        }
+        else {
+            index = tokenText.find(textBuffer);
+            if (index != -1) {
+                return tokenText.getString(index);
+            }
+        }
+        return tokenText.add(textBuffer.toString(), 0);
     }
 
     private void consume(char c)
@@ -210,18 +260,34 @@ public class JavaLexer implements TokenStream
             return createWordToken(nextChar); 
         if (Character.isDigit(nextChar))
             return createDigitToken(nextChar);
-        return makeToken(getSymbolType(nextChar), textBuffer.toString());
+        
+        int type = getSymbolType(nextChar);
+        switch (type) {
+            case JavaTokenTypes.STRING_LITERAL:
+            case JavaTokenTypes.CHAR_LITERAL:
+            case JavaTokenTypes.SL_COMMENT:
+            case JavaTokenTypes.ML_COMMENT:
+            case JavaTokenTypes.INVALID:
+                return makeToken(type, textBuffer.toString());
+            default:
+                return makeToken(type, getSharedText());
+        }
     }
 
 
     private LocatableToken createDigitToken(char nextChar){
-        return makeToken(getDigitType(nextChar, false), textBuffer.toString());
+        return makeToken(getDigitType(nextChar, false), getSharedText());
     }
 
     private LocatableToken createWordToken(char nextChar)
     {
         populateTextBuffer(nextChar);
-        return makeToken(getWordType(), textBuffer.toString());
+        int index = commonText.find(textBuffer);
+        if (index != -1) {
+            // keyword, or common identifier
+            return makeToken(commonText.getValue(index), commonText.getString(index));
+        }
+        return makeToken(JavaTokenTypes.IDENT, getSharedText());
     }
 
     private void populateTextBuffer(char ch)
@@ -481,8 +547,6 @@ public class JavaLexer implements TokenStream
 
     private int getBXORType()
     {
-        char validChars[]=new char[1];
-        validChars[0]='='; 
         int rval=readNextChar();
         if (rval != '=') {
             return JavaTokenTypes.BXOR;
@@ -495,9 +559,6 @@ public class JavaLexer implements TokenStream
 
     private int getAndType()
     {
-        char validChars[]=new char[2];
-        validChars[0]='=';
-        validChars[1]='&';        
         int rval=readNextChar();
         char thisChar = (char)rval; 
         if (thisChar=='='){
@@ -769,16 +830,6 @@ public class JavaLexer implements TokenStream
         return -1;
     }
 
-    private int getWordType()
-    {
-        String text=textBuffer.toString();
-        Integer i = keywords.get(text);
-        if (i == null) {
-            return JavaTokenTypes.IDENT;
-        }
-        return i;
-    }
-
     private boolean match(char c1, char c2)
     {
         if (c1==c2){
@@ -0,0 +1,148 @@
+/*
+ This file is part of the BlueJ program. 
+ Copyright (C) 1999-2009  Michael Kolling and John Rosenberg 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package bluej.parser.lexer;
+
+/**
+ * A hash table of strings, each with an associated int value, which can be
+ * searched using any character sequence (such as the lexer's text buffer)
+ * without first creating a String. The lexer uses it to share the text of
+ * tokens which occur many times.
+ */
+final class TokenTextTable
+{
+    private String [] strings;
+    private int [] values;
+    private int count;
+    
+    /**
+     * Create a table which can hold the given number of strings before it
+     * needs to grow.
+     */
+    TokenTextTable(int capacity)
+    {
+        int size = 16;
+        while (size < capacity * 2) {
+            size *= 2;
+        }
+        strings = new String[size];
+        values = new int[size];
+    }
+    
+    /**
+     * Find the entry for the given text. Returns the index of the entry, or -1
+     * if there is none.
+     */
+    int find(CharSequence text)
+    {
+        int mask = strings.length - 1;
+        int i = hash(text) & mask;
+        String s;
+        while ((s = strings[i]) != null) {
+            if (matches(s, text)) {
+                return i;
+            }
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+    
+    /**
+     * Get the string of the entry at the given index (as returned by find()).
+     */
+    String getString(int index)
+    {
+        return strings[index];
+    }
+    
+    /**
+     * Get the value of the entry at the given index (as returned by find()).
+     */
+    int getValue(int index)
+    {
+        return values[index];
+    }
+    
+    /**
+     * Add a string, which must not already be in the table. Returns the string.
+     */
+    String add(String s, int value)
+    {
+        if ((count + 1) * 2 > strings.length) {
+            grow();
+        }
+        insert(s, value);
+        count++;
+        return s;
+    }
+    
+    private void insert(String s, int value)
+    {
+        int mask = strings.length - 1;
+        int i = s.hashCode() & mask;
+        while (strings[i] != null) {
+            i = (i + 1) & mask;
+        }
+        strings[i] = s;
+        values[i] = value;
+    }
+    
+    private void grow()
+    {
+        String [] oldStrings = strings;
+        int [] oldValues = values;
+        strings = new String[oldStrings.length * 2];
+        values = new int[oldValues.length * 2];
+        for (int i = 0; i < oldStrings.length; i++) {
+            if (oldStrings[i] != null) {
+                insert(oldStrings[i], oldValues[i]);
+            }
+        }
+    }
+    
+    /**
+     * Calculate the hash code of a character sequence; the same as
+     * String.hashCode() for the same characters.
+     */
+    private static int hash(CharSequence text)
+    {
+        int h = 0;
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            h = 31 * h + text.charAt(i);
+        }
+        return h;
+    }
+    
+    private static boolean matches(String s, CharSequence text)
+    {
+        int length = s.length();
+        if (length != text.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (s.charAt(i) != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -26,6 +26,10 @@ import java.util.Iterator;
 
 /**
  * Represents a set of ParsedNode using a (red/black) tree structure.
+ * 
+ * <p>Node positions are stored relative to the enclosing subtree, so that
+ * finding a node, and moving or resizing a node (which moves all the nodes
+ * following it), take time proportional to the depth of the tree.
  *
  * @author davmac
  */
@@ -174,6 +178,17 @@ public class NodeTree
     {
         pnodeSize = newSize;
     }
+    
+    /**
+     * Change the size of the contained ParsedNode, because text has been inserted
+     * into or removed from it, moving all following nodes by the same amount.
+     */
+    public void resizeNode(int newSize)
+    {
+        int change = newSize - pnodeSize;
+        pnodeSize = newSize;
+        adjustFollowingAncestors(change);
+    }
 
     /**
      * Move the node. This also has the effect of moving all following nodes.
@@ -182,6 +197,29 @@ public class NodeTree
     public void slideNode(int offset)
     {
         pnodeOffset += offset;
+        adjustFollowingAncestors(offset);
+    }
+    
+    /**
+     * Move the nodes in ancestors of this tree node which follow it. (Nodes in
+     * the right subtree are positioned relative to this node and so move with it
+     * anyway.) Each such ancestor holds this node in its left subtree; moving the
+     * ancestor's node also moves its right subtree.
+     */
+    private void adjustFollowingAncestors(int offset)
+    {
+        if (offset == 0) {
+            return;
+        }
+        NodeTree current = this;
+        NodeTree parent = this.parent;
+        while (parent != null) {
+            if (current == parent.left) {
+                parent.pnodeOffset += offset;
+            }
+            current = parent;
+            parent = current.parent;
+        }
     }
 
     /**
@@ -27,7 +27,6 @@ import java.util.Map;
 import javax.swing.text.Document;
 
 import bluej.debugger.gentype.Reflective;
-import bluej.editor.moe.MoeSyntaxDocument;
 import bluej.editor.moe.Token;
 import bluej.parser.DocumentReader;
 import bluej.parser.JavaParser;
@@ -234,12 +233,19 @@ public class ParentParsedNode extends ParsedNode
         if (child != null) {
             ParsedNode cnode = child.getNode();
             NodeTree cnodeTree = cnode.getContainingNodeTree();
-            // grow the child node
-            cnodeTree.setNodeSize(cnodeTree.getNodeSize() + length);
+            // grow the child node (following nodes move along with it)
+            cnodeTree.resizeNode(cnodeTree.getNodeSize() + length);
             // inform the child node of the change
             child.getNode().textInserted(document, child.getPosition(), insPos, length);
         }
         else {
+            // Move the following nodes along in one step, so that they remain
+            // in place over their text until the reparse
+            NodeAndPosition next = getNodeTree().findNodeAtOrAfter(insPos, nodePos);
+            if (next != null) {
+                next.getNode().getContainingNodeTree().slideNode(length);
+            }
+            
             // We must handle the insertion ourself
             // TODO
             // for now just do a full reparse
@@ -257,60 +263,52 @@ public class ParentParsedNode extends ParsedNode
         if (child != null && child.getPosition() < delPos) {
             // Remove the end portion (or middle) of the child node
             int childEndPos = child.getPosition() + child.getSize();
-            if (childEndPos > endPos) {
+            if (childEndPos >= endPos) {
                 // Remove the middle of the child node
-                child.getNode().textRemoved(document, child.getPosition() + nodePos, delPos, length);
+                child.getNode().textRemoved(document, child.getPosition(), delPos, length);
                 NodeTree childTree = child.getNode().getContainingNodeTree();
-                childTree.setNodeSize(childTree.getNodeSize() - length);
+                childTree.resizeNode(childTree.getNodeSize() - length);
 
                 reparseNode(document, nodePos, 0);
-                ((MoeSyntaxDocument) document).documentChanged();
                 return;
             }
             else {
                 // Remove the end portion of the child node
                 int rlength = childEndPos - delPos; // how much is removed
-                child.getNode().textRemoved(document, child.getPosition() + nodePos, delPos, rlength);
+                child.getNode().textRemoved(document, child.getPosition(), delPos, rlength);
                 NodeTree childTree = child.getNode().getContainingNodeTree();
-                childTree.setNodeSize(childTree.getNodeSize() - length);
+                childTree.resizeNode(childTree.getNodeSize() - rlength);
                 length -= rlength;
                 endPos -= rlength;
             }
             child = getNodeTree().findNodeAtOrAfter(delPos, nodePos);
         }
         
+        // Remove the children which lie wholly within the removed text
+        while (child != null && child.getPosition() < endPos && child.getEnd() <= endPos) {
+            child.getNode().getContainingNodeTree().remove();
+            child = getNodeTree().findNodeAtOrAfter(delPos, nodePos);
+        }
+        
         if (child != null) {
+            NodeTree childTree = child.getNode().getContainingNodeTree();
             int childPos = child.getPosition();
-            int childLen = child.getSize();
-            
-            while (childPos + childLen < endPos) {
-                // The whole child should be removed
-                child.getNode().getContainingNodeTree().remove();
-                child = getNodeTree().findNodeAtOrAfter(delPos, nodePos);
-                if (child == null) {
-                    break;
-                }
-                childPos = child.getPosition();
-                childLen = child.getSize();
+            if (childPos < endPos) {
+                // Remove the start portion of the child node: move it back to
+                // where the removal starts, and shrink it by the rest
+                int slideLen = childPos - delPos;
+                int rlength = endPos - childPos;
+                childTree.slideNode(-slideLen);
+                child.getNode().textRemoved(document, delPos, delPos, rlength);
+                childTree.resizeNode(childTree.getNodeSize() - rlength);
             }
-            
-            if (child != null) {
-                if (childPos < endPos) {
-                    int slideLen = childPos - delPos;
-                    child.getNode().getContainingNodeTree().slideNode(-slideLen);
-                    length -= slideLen;
-                    child.getNode().textRemoved(document, childPos, delPos, length - slideLen);
-                    child.getNode().getContainingNodeTree().setNodeSize(child.getSize() - length);
-                }
-                else {
-                    child.getNode().getContainingNodeTree().slideNode(-length);
-                }
+            else {
+                // The child and all following nodes move back
+                childTree.slideNode(-length);
             }
-            
         }
         
         reparseNode(document, nodePos, 0);
-        ((MoeSyntaxDocument) document).documentChanged();
     }
 
     /**
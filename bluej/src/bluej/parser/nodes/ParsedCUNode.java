@@ -117,22 +117,37 @@ public class ParsedCUNode extends ParentParsedNode
     }
     
     /**
-     * Reparse this node from the specified offset.
+     * Reparse this node from the specified offset. If the document is being
+     * edited on the event thread, the reparse is deferred until editing
+     * pauses (see MoeSyntaxDocument.deferReparse()).
      */
     protected void reparseNode(Document document, int nodePos, int offset)
     {
+        if (document instanceof MoeSyntaxDocument
+                && ((MoeSyntaxDocument) document).deferReparse()) {
+            return;
+        }
         doReparse(document, 0, offset);
     }
     
     protected void doReparse(Document document, int nodePos, int pos)
+    {
+        reparse(document);
+        ((MoeSyntaxDocument) document).documentChanged();
+    }
+    
+    /**
+     * Discard the current structure and parse the whole document again.
+     * Structure listeners are notified of the removed nodes, but no
+     * repaint is requested.
+     */
+    public void reparse(Document document)
     {
         clearNode(this);
         size = document.getLength();
         
         EditorParser parser = new EditorParser(document);
         parser.parseCU(this);
-	    
-        ((MoeSyntaxDocument) document).documentChanged();
     }
     
     @Override
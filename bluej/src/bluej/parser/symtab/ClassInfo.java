@@ -21,8 +21,13 @@
  */
 package bluej.parser.symtab;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.*;
 
+import bluej.parser.SourceLocation;
+import bluej.parser.SourceSpan;
 import bluej.utility.JavaUtils;
 import bluej.utility.SortedProperties;
 
@@ -43,7 +48,10 @@ import bluej.utility.SortedProperties;
  * </ul><p>
  * 
  * Some other information, such as classes which are imported, is stored but
- * not used in BlueJ.
+ * not used in BlueJ.<p>
+ * 
+ * A ClassInfo can be written to a stream and read back, so that it can be
+ * cached between sessions (see bluej.pkgmgr.ClassInfoCache).
  */
 public final class ClassInfo
 {
@@ -64,7 +72,7 @@ public final class ClassInfo
     private List<String> typeParameterTexts;
     private Selection typeParametersSelection;
 
-    private class SavedComment
+    private static class SavedComment
     {
         public String target;   // the method signature of the item we have a
                                 // comment for. Can be class name or interface
@@ -525,6 +533,202 @@ public final class ClassInfo
         return this.isEnum;
     }
 
+    
+    /**
+     * Write this information to a stream, in the form read by read().
+     */
+    public void write(DataOutputStream out)
+        throws IOException
+    {
+        out.writeBoolean(foundClass);
+        out.writeBoolean(foundPublicClass);
+        writeString(out, name);
+        writeString(out, superclass);
+        writeStrings(out, implemented);
+        writeStrings(out, imported);
+        writeStrings(out, used);
+        
+        out.writeInt(comments.size());
+        for (SavedComment c : comments) {
+            writeString(out, c.target);
+            writeString(out, c.comment);
+            writeString(out, c.paramnames);
+        }
+        
+        writeStrings(out, typeParameterTexts);
+        writeSelection(out, typeParametersSelection);
+        
+        out.writeBoolean(isInterface);
+        out.writeBoolean(isAbstract);
+        out.writeBoolean(isApplet);
+        out.writeBoolean(isUnitTest);
+        out.writeBoolean(isEnum);
+        out.writeBoolean(isMIDlet);
+        
+        writeSelection(out, extendsInsertSelection);
+        writeSelection(out, implementsInsertSelection);
+        writeSelection(out, extendsReplaceSelection);
+        writeSelection(out, superReplaceSelection);
+        if (interfaceSelections == null) {
+            out.writeInt(-1);
+        }
+        else {
+            out.writeInt(interfaceSelections.size());
+            for (Selection s : interfaceSelections) {
+                writeSelection(out, s);
+            }
+        }
+        
+        out.writeBoolean(packageStatementExists);
+        writeSelection(out, packageStatementSelection);
+        writeSelection(out, packageNameSelection);
+        writeSelection(out, packageSemiSelection);
+        writeString(out, packageName);
+    }
+    
+    /**
+     * Read information written by write().
+     * 
+     * @throws IOException  if the stream could not be read, or does not
+     *                      contain valid information
+     */
+    public static ClassInfo read(DataInputStream in)
+        throws IOException
+    {
+        ClassInfo info = new ClassInfo();
+        info.foundClass = in.readBoolean();
+        info.foundPublicClass = in.readBoolean();
+        info.name = readString(in);
+        info.superclass = readString(in);
+        info.implemented = readStrings(in);
+        info.imported = readStrings(in);
+        info.used = readStrings(in);
+        if (info.implemented == null || info.imported == null || info.used == null) {
+            throw new IOException("Invalid class information");
+        }
+        
+        int commentCount = in.readInt();
+        for (int i = 0; i < commentCount; i++) {
+            String target = readString(in);
+            if (target == null) {
+                throw new IOException("Invalid class information");
+            }
+            info.comments.add(new SavedComment(target, readString(in), readString(in)));
+        }
+        
+        info.typeParameterTexts = readStrings(in);
+        info.typeParametersSelection = readSelection(in);
+        
+        info.isInterface = in.readBoolean();
+        info.isAbstract = in.readBoolean();
+        info.isApplet = in.readBoolean();
+        info.isUnitTest = in.readBoolean();
+        info.isEnum = in.readBoolean();
+        info.isMIDlet = in.readBoolean();
+        
+        info.extendsInsertSelection = readSelection(in);
+        info.implementsInsertSelection = readSelection(in);
+        info.extendsReplaceSelection = readSelection(in);
+        info.superReplaceSelection = readSelection(in);
+        int interfaceCount = in.readInt();
+        if (interfaceCount >= 0) {
+            info.interfaceSelections = new ArrayList<Selection>();
+            for (int i = 0; i < interfaceCount; i++) {
+                info.interfaceSelections.add(readSelection(in));
+            }
+        }
+        
+        info.packageStatementExists = in.readBoolean();
+        info.packageStatementSelection = readSelection(in);
+        info.packageNameSelection = readSelection(in);
+        info.packageSemiSelection = readSelection(in);
+        info.packageName = readString(in);
+        return info;
+    }
+    
+    /**
+     * Write a string, which may be null. (Unlike writeUTF(), this allows
+     * strings of any length.)
+     */
+    public static void writeString(DataOutputStream out, String s)
+        throws IOException
+    {
+        if (s == null) {
+            out.writeInt(-1);
+        }
+        else {
+            out.writeInt(s.length());
+            out.writeChars(s);
+        }
+    }
+    
+    /**
+     * Read a string written by writeString().
+     */
+    public static String readString(DataInputStream in)
+        throws IOException
+    {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        // The length is not trusted: the string grows as it is read
+        StringBuffer s = new StringBuffer();
+        for (int i = 0; i < length; i++) {
+            s.append(in.readChar());
+        }
+        return s.toString();
+    }
+    
+    private static void writeStrings(DataOutputStream out, List<String> strings)
+        throws IOException
+    {
+        if (strings == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(strings.size());
+        for (String s : strings) {
+            writeString(out, s);
+        }
+    }
+    
+    private static List<String> readStrings(DataInputStream in)
+        throws IOException
+    {
+        int count = in.readInt();
+        if (count < 0) {
+            return null;
+        }
+        List<String> strings = new ArrayList<String>();
+        for (int i = 0; i < count; i++) {
+            strings.add(readString(in));
+        }
+        return strings;
+    }
+    
+    private static void writeSelection(DataOutputStream out, Selection s)
+        throws IOException
+    {
+        out.writeBoolean(s != null);
+        if (s != null) {
+            out.writeInt(s.getLine());
+            out.writeInt(s.getColumn());
+            out.writeInt(s.getEndLine());
+            out.writeInt(s.getEndColumn());
+        }
+    }
+    
+    private static Selection readSelection(DataInputStream in)
+        throws IOException
+    {
+        if (! in.readBoolean()) {
+            return null;
+        }
+        SourceLocation start = new SourceLocation(in.readInt(), in.readInt());
+        SourceLocation end = new SourceLocation(in.readInt(), in.readInt());
+        return new Selection(new SourceSpan(start, end));
+    }
 
     public void print()
     {
@@ -0,0 +1,230 @@
+/*
+ This file is part of the BlueJ program. 
+ Copyright (C) 1999-2009  Michael Kolling and John Rosenberg 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package bluej.pkgmgr;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import bluej.parser.symtab.ClassInfo;
+import bluej.utility.Debug;
+
+/**
+ * A cache, kept in a file in the package directory, of the information
+ * (ClassInfo) found by parsing each source file of the package. It allows
+ * a package to be opened without parsing sources which have not changed.
+ * 
+ * <p>An entry is used only if the source file still has the length and
+ * modification time it had when it was parsed. Because the result of
+ * parsing also depends on which names resolve to classes (of the package
+ * and on the class path), each lookup also supplies a "context" string
+ * describing these; if it differs from the context the cache was built in,
+ * the whole cache is discarded.
+ * 
+ * <p>The file is written in a format of its own (see ClassInfo.write()),
+ * rather than by serialization, as projects come from other people and
+ * reading it must not create objects of arbitrary classes.
+ */
+public class ClassInfoCache
+{
+    /** The name of the cache file */
+    public static final String cacheFileName = "bluej.info";
+    
+    /** The version of the file format, to be changed if ClassInfo changes */
+    private static final int FORMAT_VERSION = 2;
+    
+    private File cacheFile;
+    private boolean loaded;
+    private boolean modified;
+    private String context = "";
+    private HashMap<String,Entry> entries = new HashMap<String,Entry>();
+    
+    private static class Entry
+    {
+        long length;
+        long lastModified;
+        ClassInfo info;
+    }
+    
+    /**
+     * Create a cache for the package in the given directory. The cache file
+     * (if there is one) is read when first needed.
+     */
+    public ClassInfoCache(File packageDir)
+    {
+        cacheFile = new File(packageDir, cacheFileName);
+    }
+    
+    /**
+     * Get the cached information for a source file, or null if there is
+     * none or the file has changed since it was cached.
+     * 
+     * @param sourceFile  The source file
+     * @param context     The current context (see class comment)
+     */
+    public synchronized ClassInfo get(File sourceFile, String context)
+    {
+        checkContext(context);
+        Entry entry = entries.get(sourceFile.getName());
+        if (entry == null) {
+            return null;
+        }
+        if (entry.length != sourceFile.length() || entry.lastModified != sourceFile.lastModified()) {
+            entries.remove(sourceFile.getName());
+            modified = true;
+            return null;
+        }
+        return entry.info;
+    }
+    
+    /**
+     * Store the information found by parsing a source file.
+     * 
+     * @param sourceFile    The source file
+     * @param length        The length of the file when it was read
+     * @param lastModified  The modification time of the file when it was read
+     * @param context       The current context (see class comment)
+     * @param info          The information found
+     */
+    public synchronized void put(File sourceFile, long length, long lastModified,
+            String context, ClassInfo info)
+    {
+        checkContext(context);
+        Entry entry = new Entry();
+        entry.length = length;
+        entry.lastModified = lastModified;
+        entry.info = info;
+        entries.put(sourceFile.getName(), entry);
+        modified = true;
+    }
+    
+    /**
+     * Write the cache file, if anything has changed. Failure to write it (for
+     * instance because the package directory is read-only) is not an error.
+     */
+    public synchronized void save()
+    {
+        if (! modified) {
+            return;
+        }
+        modified = false;
+        
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(cacheFile)));
+            out.writeInt(FORMAT_VERSION);
+            ClassInfo.writeString(out, context);
+            out.writeInt(entries.size());
+            for (Iterator<Map.Entry<String,Entry>> i = entries.entrySet().iterator(); i.hasNext(); ) {
+                Map.Entry<String,Entry> mapEntry = i.next();
+                Entry entry = mapEntry.getValue();
+                ClassInfo.writeString(out, mapEntry.getKey());
+                out.writeLong(entry.length);
+                out.writeLong(entry.lastModified);
+                entry.info.write(out);
+            }
+        }
+        catch (IOException ioe) {
+            Debug.message("Could not write class information cache " + cacheFile + ": " + ioe);
+        }
+        finally {
+            if (out != null) {
+                try {
+                    out.close();
+                }
+                catch (IOException ioe) {}
+            }
+        }
+    }
+    
+    /**
+     * Make sure the cache file has been read, and discard the contents of the
+     * cache if they were built in a different context.
+     */
+    private void checkContext(String newContext)
+    {
+        if (! loaded) {
+            loaded = true;
+            load();
+        }
+        
+        if (! context.equals(newContext)) {
+            context = newContext;
+            if (! entries.isEmpty()) {
+                entries.clear();
+                modified = true;
+            }
+        }
+    }
+    
+    private void load()
+    {
+        if (! cacheFile.exists()) {
+            return;
+        }
+        
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)));
+            if (in.readInt() == FORMAT_VERSION) {
+                String fileContext = ClassInfo.readString(in);
+                if (fileContext == null) {
+                    throw new IOException("Invalid class information cache");
+                }
+                Map<String,Entry> fileEntries = new HashMap<String,Entry>();
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    String fileName = ClassInfo.readString(in);
+                    Entry entry = new Entry();
+                    entry.length = in.readLong();
+                    entry.lastModified = in.readLong();
+                    entry.info = ClassInfo.read(in);
+                    fileEntries.put(fileName, entry);
+                }
+                context = fileContext;
+                entries.putAll(fileEntries);
+            }
+        }
+        catch (Exception e) {
+            // An unreadable or out-of-date cache is simply ignored (and will
+            // be overwritten).
+            entries.clear();
+            modified = true;
+        }
+        finally {
+            if (in != null) {
+                try {
+                    in.close();
+                }
+                catch (IOException ioe) {}
+            }
+        }
+    }
+}
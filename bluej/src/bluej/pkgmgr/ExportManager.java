@@ -240,11 +240,13 @@ final class ExportManager
     /**
      * Checks whether a file should be skipped during a copy operation.
      * BlueJ specific files (bluej.pkg and *.ctxt) and - optionally - Java
-     * source files are skipped.
+     * source files are skipped. The class signature index and the cache of
+     * class information are always skipped.
      */
     private boolean skipFile(String fileName, boolean skipSource, boolean skipPkg)
     {
-        if(fileName.equals(packageFileBackup))
+        if(fileName.equals(packageFileBackup) || fileName.equals(SignatureIndex.indexFileName)
+                || fileName.equals(ClassInfoCache.cacheFileName))
             return true;
         
         if(fileName.endsWith(sourceSuffix))
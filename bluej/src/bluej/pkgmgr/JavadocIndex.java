@@ -0,0 +1,473 @@
+/*
+ This file is part of the BlueJ program. 
+ Copyright (C) 2010  Michael Kolling and John Rosenberg 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package bluej.pkgmgr;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import bluej.Config;
+import bluej.debugger.gentype.Reflective;
+import bluej.parser.InfoParser;
+import bluej.parser.entity.ClassLoaderResolver;
+import bluej.parser.entity.EntityResolver;
+import bluej.parser.entity.PackageOrClass;
+import bluej.parser.entity.PackageResolver;
+import bluej.parser.entity.TypeEntity;
+import bluej.parser.symtab.ClassInfo;
+import bluej.utility.Debug;
+import bluej.utility.JavaNames;
+
+/**
+ * An index of the comments (javadoc and parameter names) of every class in
+ * a source archive, such as the JDK's src.zip. The index is built once, in
+ * the background, by parsing each source file in the archive; it is then
+ * kept in a file in the user configuration directory and memory-mapped, so
+ * that comments can be looked up without parsing any source.
+ * 
+ * <p>The index file holds a header (identifying the archive, and its length
+ * and modification time when indexed), then a directory of the offsets of
+ * the class records sorted by class name, then the records themselves. Each
+ * record holds the class name and the target, text and parameter names of
+ * each comment.
+ */
+public final class JavadocIndex
+{
+    private static final int MAGIC = 0x424a4449;
+    private static final int FORMAT_VERSION = 1;
+    private static final String INDEX_DIR = "javadoc-index";
+    
+    /** Indexes which are open, by archive */
+    private static Map<File,JavadocIndex> indexes = new HashMap<File,JavadocIndex>();
+    /** Archives which are being indexed (or which could not be indexed) */
+    private static Set<File> unavailable = new HashSet<File>();
+    
+    private ByteBuffer buffer;
+    private long archiveLength;
+    private long archiveModified;
+    private int classCount;
+    private int directoryStart;
+    
+    private JavadocIndex(ByteBuffer buffer)
+    {
+        this.buffer = buffer;
+    }
+    
+    /**
+     * Get the index for a source archive. If the archive has not yet been
+     * indexed (or has changed since), indexing is started in the background
+     * and null is returned; a later call will return the index once it is
+     * ready.
+     * 
+     * @param archive  The source archive (a zip or jar file)
+     * @param loader   A class loader used to resolve the types named in the
+     *                 archive's method signatures
+     */
+    public static synchronized JavadocIndex getIndex(final File archive, final ClassLoader loader)
+    {
+        JavadocIndex index = indexes.get(archive);
+        if (index != null) {
+            if (index.archiveLength == archive.length()
+                    && index.archiveModified == archive.lastModified()) {
+                return index;
+            }
+            indexes.remove(archive);
+        }
+        if (unavailable.contains(archive)) {
+            return null;
+        }
+        
+        index = open(archive);
+        if (index != null) {
+            indexes.put(archive, index);
+            return index;
+        }
+        
+        unavailable.add(archive);
+        Thread indexer = new Thread("BlueJ javadoc indexer") {
+            public void run()
+            {
+                try {
+                    build(archive, loader);
+                }
+                catch (IOException ioe) {
+                    Debug.reportError("Could not build javadoc index for " + archive, ioe);
+                    return;
+                }
+                JavadocIndex index = open(archive);
+                if (index != null) {
+                    synchronized (JavadocIndex.class) {
+                        indexes.put(archive, index);
+                        unavailable.remove(archive);
+                    }
+                }
+            }
+        };
+        indexer.setDaemon(true);
+        indexer.setPriority(Thread.MIN_PRIORITY);
+        indexer.start();
+        return null;
+    }
+    
+    /**
+     * Get the comments for a class, in the form returned by
+     * ClassInfo.getComments(). Returns null if the class is not in the index.
+     * 
+     * @param className  The fully qualified name of the class
+     */
+    public synchronized Properties getComments(String className)
+    {
+        // Binary search of the directory
+        int low = 0;
+        int high = classCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            buffer.position(buffer.getInt(directoryStart + mid * 4));
+            int cmp = readString().compareTo(className);
+            if (cmp < 0) {
+                low = mid + 1;
+            }
+            else if (cmp > 0) {
+                high = mid - 1;
+            }
+            else {
+                return readComments();
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Read the comments of the class record at the buffer's position (just
+     * after the class name).
+     */
+    private Properties readComments()
+    {
+        Properties comments = new Properties();
+        int numComments = buffer.getInt();
+        comments.setProperty("numComments", String.valueOf(numComments));
+        for (int i = 0; i < numComments; i++) {
+            String prefix = "comment" + i;
+            comments.setProperty(prefix + ".target", readString());
+            String text = readString();
+            if (text != null) {
+                comments.setProperty(prefix + ".text", text);
+            }
+            String params = readString();
+            if (params != null) {
+                comments.setProperty(prefix + ".params", params);
+            }
+        }
+        return comments;
+    }
+    
+    /**
+     * Read a string (or null) at the buffer's position.
+     */
+    private String readString()
+    {
+        int length = buffer.getInt();
+        if (length == -1) {
+            return null;
+        }
+        byte [] bytes = new byte[length];
+        buffer.get(bytes);
+        try {
+            return new String(bytes, "UTF-8");
+        }
+        catch (IOException ioe) {
+            // UTF-8 is always supported
+            throw new RuntimeException(ioe);
+        }
+    }
+    
+    /**
+     * Check the header of the index against the archive, and read the size
+     * and position of the directory.
+     */
+    private boolean readHeader(File archive)
+    {
+        if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+            return false;
+        }
+        archiveLength = buffer.getLong();
+        archiveModified = buffer.getLong();
+        if (archiveLength != archive.length() || archiveModified != archive.lastModified()
+                || ! archive.getAbsolutePath().equals(readString())) {
+            return false;
+        }
+        classCount = buffer.getInt();
+        directoryStart = buffer.position();
+        return true;
+    }
+    
+    /**
+     * Open and memory-map the index file for an archive. Returns null if
+     * there is no index file, or it does not match the archive.
+     */
+    private static JavadocIndex open(File archive)
+    {
+        File indexFile = getIndexFile(archive);
+        if (! indexFile.isFile()) {
+            return null;
+        }
+        
+        try {
+            FileInputStream fis = new FileInputStream(indexFile);
+            try {
+                // The mapping remains valid after the file is closed
+                FileChannel channel = fis.getChannel();
+                JavadocIndex index = new JavadocIndex(channel.map(FileChannel.MapMode.READ_ONLY,
+                        0, channel.size()));
+                if (index.readHeader(archive)) {
+                    return index;
+                }
+            }
+            finally {
+                fis.close();
+            }
+        }
+        catch (IOException ioe) {}
+        catch (RuntimeException re) {
+            // corrupt index file (buffer underflow etc)
+        }
+        return null;
+    }
+    
+    /**
+     * Get the index file for an archive.
+     */
+    private static File getIndexFile(File archive)
+    {
+        String path = archive.getAbsolutePath();
+        File indexDir = Config.getUserConfigFile(INDEX_DIR);
+        return new File(indexDir, archive.getName() + "-"
+                + Integer.toHexString(path.hashCode()) + ".idx");
+    }
+    
+    /**
+     * Get the name of the class whose source is in an archive entry, or null
+     * if the entry is not a source file. The entries of a modular archive
+     * (as from JDK 9) are preceded by the module name, which is removed.
+     */
+    private static String getClassName(String entryName)
+    {
+        if (! entryName.endsWith(".java")) {
+            return null;
+        }
+        String name = entryName.substring(0, entryName.length() - 5);
+        int firstSlash = name.indexOf('/');
+        if (firstSlash != -1 && name.lastIndexOf('.', firstSlash) != -1) {
+            name = name.substring(firstSlash + 1);
+        }
+        return name.replace('/', '.');
+    }
+    
+    /**
+     * Build the index file for an archive, by parsing each source file in it.
+     */
+    private static void build(File archive, ClassLoader loader) throws IOException
+    {
+        long length = archive.length();
+        long modified = archive.lastModified();
+        
+        File indexFile = getIndexFile(archive);
+        indexFile.getParentFile().mkdirs();
+        File dataFile = new File(indexFile.getPath() + ".data");
+        File tempFile = new File(indexFile.getPath() + ".tmp");
+        
+        // Write the class records to a data file, noting where each is
+        SortedMap<String,Integer> offsets = new TreeMap<String,Integer>();
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(dataFile)));
+        try {
+            ZipFile zipFile = new ZipFile(archive);
+            try {
+                EntityResolver baseResolver = new IndexResolver(loader);
+                Enumeration<? extends ZipEntry> entries = zipFile.entries();
+                while (entries.hasMoreElements()) {
+                    ZipEntry entry = entries.nextElement();
+                    String className = getClassName(entry.getName());
+                    if (className == null || offsets.containsKey(className)) {
+                        continue;
+                    }
+                    
+                    Properties comments = null;
+                    Reader r = new InputStreamReader(zipFile.getInputStream(entry));
+                    try {
+                        EntityResolver resolver = new PackageResolver(baseResolver,
+                                JavaNames.getPrefix(className));
+                        ClassInfo info = InfoParser.parse(r, resolver, null);
+                        if (info != null) {
+                            comments = info.getComments();
+                        }
+                    }
+                    catch (Exception e) {}  // probably a parse exception
+                    catch (StackOverflowError soe) {}  // deeply nested source
+                    finally {
+                        r.close();
+                    }
+                    
+                    if (comments != null) {
+                        offsets.put(className, Integer.valueOf(data.size()));
+                        writeRecord(data, className, comments);
+                    }
+                }
+            }
+            finally {
+                zipFile.close();
+            }
+        }
+        finally {
+            data.close();
+        }
+        
+        // Write the header and directory, followed by the records
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(tempFile)));
+            try {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeLong(length);
+                out.writeLong(modified);
+                writeString(out, archive.getAbsolutePath());
+                out.writeInt(offsets.size());
+                int dataStart = out.size() + offsets.size() * 4;
+                for (Iterator<Integer> i = offsets.values().iterator(); i.hasNext(); ) {
+                    out.writeInt(dataStart + i.next().intValue());
+                }
+                copy(dataFile, out);
+            }
+            finally {
+                out.close();
+            }
+        }
+        finally {
+            dataFile.delete();
+        }
+        
+        indexFile.delete();
+        if (! tempFile.renameTo(indexFile)) {
+            tempFile.delete();
+            throw new IOException("Could not rename " + tempFile);
+        }
+    }
+    
+    /**
+     * Write the record for one class.
+     */
+    private static void writeRecord(DataOutputStream out, String className, Properties comments)
+        throws IOException
+    {
+        writeString(out, className);
+        int numComments = 0;
+        while (comments.getProperty("comment" + numComments + ".target") != null) {
+            numComments++;
+        }
+        out.writeInt(numComments);
+        for (int i = 0; i < numComments; i++) {
+            String prefix = "comment" + i;
+            writeString(out, comments.getProperty(prefix + ".target"));
+            writeString(out, comments.getProperty(prefix + ".text"));
+            writeString(out, comments.getProperty(prefix + ".params"));
+        }
+    }
+    
+    /**
+     * Write a string (which may be null) as its length and UTF-8 bytes.
+     */
+    private static void writeString(DataOutputStream out, String s) throws IOException
+    {
+        if (s == null) {
+            out.writeInt(-1);
+        }
+        else {
+            byte [] bytes = s.getBytes("UTF-8");
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+    
+    /**
+     * Copy the contents of a file to a stream.
+     */
+    private static void copy(File file, OutputStream out) throws IOException
+    {
+        InputStream in = new FileInputStream(file);
+        try {
+            byte [] buf = new byte[8192];
+            int n;
+            while ((n = in.read(buf)) != -1) {
+                out.write(buf, 0, n);
+            }
+        }
+        finally {
+            in.close();
+        }
+    }
+    
+    /**
+     * Resolves the types named in the archive's sources. Like the project's
+     * resolver, it looks for unqualified names in java.lang.
+     */
+    private static class IndexResolver extends ClassLoaderResolver
+    {
+        private ClassLoader loader;
+        
+        IndexResolver(ClassLoader loader)
+        {
+            super(loader);
+            this.loader = loader;
+        }
+        
+        public PackageOrClass resolvePackageOrClass(String name, Reflective querySource)
+        {
+            try {
+                return new TypeEntity(loader.loadClass("java.lang." + name));
+            }
+            catch (ClassNotFoundException cnfe) {}
+            catch (LinkageError le) {}
+            return super.resolvePackageOrClass(name, querySource);
+        }
+    }
+}
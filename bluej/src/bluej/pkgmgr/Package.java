@@ -23,10 +23,12 @@ package bluej.pkgmgr;
 
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.FilenameFilter;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -36,11 +38,14 @@ import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.Stack;
+import java.util.TreeSet;
 
 import bluej.Config;
+import bluej.classmgr.ClassSignature;
 import bluej.compiler.CompileObserver;
 import bluej.compiler.EventqueueCompileObserver;
 import bluej.compiler.JobQueue;
+import bluej.compiler.UpToDateCheck;
 import bluej.debugger.Debugger;
 import bluej.debugger.DebuggerThread;
 import bluej.debugger.SourceLocation;
@@ -53,6 +58,7 @@ import bluej.extensions.event.CompileEvent;
 import bluej.extmgr.ExtensionsManager;
 import bluej.graph.Edge;
 import bluej.graph.Graph;
+import bluej.graph.VertexIndex;
 import bluej.parser.symtab.ClassInfo;
 import bluej.parser.symtab.Selection;
 import bluej.pkgmgr.dependency.Dependency;
@@ -153,6 +159,9 @@ public final class Package extends Graph
     /* all the targets in a package */
     private TargetCollection targets;
 
+    /** The targets, indexed by their position in the diagram */
+    private VertexIndex vertexIndex = new VertexIndex();
+
     /** all the uses-arrows in a package */
     private List<Dependency> usesArrows;
 
@@ -197,6 +206,12 @@ public final class Package extends Graph
     
     /** File pointing at the directory for this package */
     private File dir;
+    
+    /** The signatures of classes used by the compiled classes (created lazily) */
+    private SignatureIndex signatureIndex;
+    
+    /** The cached results of parsing the sources (created lazily) */
+    private ClassInfoCache classInfoCache;
 
     /* ------------------- end of field declarations ------------------- */
 
@@ -703,6 +718,18 @@ public final class Package extends Graph
             }
         }
         recalcArrows();
+        
+        // Start reading the sources which will need to be analysed
+        targetIt = targets.iterator();
+        for ( ; targetIt.hasNext();) {
+            Target target = targetIt.next();
+            if (target instanceof ClassTarget) {
+                ClassTarget ct = (ClassTarget) target;
+                if (! (ct.isCompiled() && ct.upToDate())) {
+                    ct.getSourceInfo().prefetch(ct.getSourceFile(), this);
+                }
+            }
+        }
 
         //Update class roles, and their state
         targetIt = targets.iterator();
@@ -731,6 +758,7 @@ public final class Package extends Graph
                 }
             }
         }
+        saveClassInfoCache();
 
         // our associations are based on name so we mustn't deal with
         // them until all classes/packages have been loaded
@@ -760,6 +788,75 @@ public final class Package extends Graph
         return PackageFileFactory.getPackageFile(dir);
     }
 
+    /**
+     * Get the information from parsing a source file of this package, if it
+     * is held in the package's cache and the file has not changed since.
+     * Otherwise return null.
+     */
+    ClassInfo getCachedClassInfo(File sourceFile)
+    {
+        if (! useClassInfoCache()) {
+            return null;
+        }
+        return getClassInfoCache().get(sourceFile, getClassInfoContext());
+    }
+    
+    /**
+     * Store the information from parsing a source file of this package in
+     * the package's cache.
+     * 
+     * @param length        The length of the file when it was read
+     * @param lastModified  The modification time of the file when it was read
+     */
+    void cacheClassInfo(File sourceFile, long length, long lastModified, ClassInfo info)
+    {
+        if (useClassInfoCache()) {
+            getClassInfoCache().put(sourceFile, length, lastModified, getClassInfoContext(), info);
+        }
+    }
+    
+    private static boolean useClassInfoCache()
+    {
+        return ! "false".equals(Config.getPropString("bluej.parser.cache", "true"));
+    }
+    
+    private ClassInfoCache getClassInfoCache()
+    {
+        if (classInfoCache == null) {
+            classInfoCache = new ClassInfoCache(getPath());
+        }
+        return classInfoCache;
+    }
+    
+    /**
+     * Write the cache of parse results, if it has changed.
+     */
+    private void saveClassInfoCache()
+    {
+        if (classInfoCache != null) {
+            classInfoCache.save();
+        }
+    }
+    
+    /**
+     * Get a description of what (other than a source file itself) determines
+     * the result of parsing it: the class path, and the names of the targets
+     * of this package.
+     */
+    private String getClassInfoContext()
+    {
+        Set<String> names = new TreeSet<String>();
+        for (Iterator<Target> i = targets.iterator(); i.hasNext(); ) {
+            names.add(i.next().getIdentifierName());
+        }
+        
+        StringBuffer context = new StringBuffer(getProject().getClassLoader().getClassPathAsString());
+        for (Iterator<String> i = names.iterator(); i.hasNext(); ) {
+            context.append(' ').append(i.next());
+        }
+        return context.toString();
+    }
+
     /**
      * Position a target which has been added, based on the layout file
      * (if an entry exists) or find a suitable position otherwise.
@@ -858,6 +955,15 @@ public final class Package extends Graph
             }
         }
 
+        for (Iterator<Target> it = targets.iterator(); it.hasNext();) {
+            Target target = (Target) it.next();
+
+            if (target instanceof ClassTarget) {
+                ClassTarget ct = (ClassTarget) target;
+                ct.getSourceInfo().prefetch(ct.getSourceFile(), this);
+            }
+        }
+
         for (Iterator<Target> it = targets.iterator(); it.hasNext();) {
             Target target = (Target) it.next();
 
@@ -866,6 +972,7 @@ public final class Package extends Graph
                 ct.analyseSource();
             }
         }
+        saveClassInfoCache();
         
         //Update class roles, and their state
         for (Iterator<Target> it = targets.iterator(); it.hasNext();) {
@@ -1082,6 +1189,20 @@ public final class Package extends Graph
         return targets.sortediterator();
     }
 
+    @Override
+    protected VertexIndex getVertexIndex()
+    {
+        return vertexIndex;
+    }
+    
+    /**
+     * A target in this package has moved or changed size.
+     */
+    public void targetMoved(Target t)
+    {
+        vertexIndex.update(t);
+    }
+
     public Iterator<? extends Edge> getEdges()
     {
         List<Iterator<? extends Edge>> iterations = new ArrayList<Iterator<? extends Edge>>();
@@ -1137,25 +1258,26 @@ public final class Package extends Graph
             }
         }
         
-        compile(toCompile, new PackageCompileObserver());
+        compile(toCompile);
     }
 
     /**
      * Compile a set of classes.
      */
-    private void compile(Set<? extends ClassTarget> toCompile, CompileObserver observer)
+    private void compile(Set<? extends ClassTarget> toCompile)
     {
         if (! toCompile.isEmpty()) {
-            project.removeClassLoader();
-            project.newRemoteClassLoaderLeavingBreakpoints();
+            // The classes in the debug VM are brought up to date once they
+            // are compiled (see LoadedClassUpdater)
+            LoadedClassUpdater updater = new LoadedClassUpdater();
 
             // Clear-down the compiler Warning dialog box singleton
             bluej.compiler.CompilerWarningDialog.getDialog().reset();
 
             for (Iterator<? extends ClassTarget> i = toCompile.iterator(); i.hasNext(); ) {
                 ClassTarget target = (ClassTarget) i.next();
-                boolean success = searchCompile(target, 1, new Stack<ClassTarget>(),
-                        new PackageCompileObserver());
+                boolean success = searchCompile(target, null, 1, new Stack<ClassTarget>(),
+                        new PackageCompileObserver(updater));
                 if (! success)
                     break;
             }
@@ -1191,20 +1313,19 @@ public final class Package extends Graph
         }
 
         if (ct != null || assocTarget != null) {
-            project.removeClassLoader();
-            project.newRemoteClassLoaderLeavingBreakpoints();
-
+            LoadedClassUpdater updater = new LoadedClassUpdater();
+            
             // Clear-down the compiler Warning dialog box singleton
             bluej.compiler.CompilerWarningDialog.getDialog().reset();
 
             if (ct != null) {
-                searchCompile(ct, 1, new Stack<ClassTarget>(),
-                        new PackageCompileObserver());
+                searchCompile(ct, ct, 1, new Stack<ClassTarget>(),
+                        new PackageCompileObserver(updater));
             }
 
             if (assocTarget != null) {
-                searchCompile(assocTarget, 1, new Stack<ClassTarget>(),
-                        new QuietPackageCompileObserver());
+                searchCompile(assocTarget, assocTarget, 1, new Stack<ClassTarget>(),
+                        new QuietPackageCompileObserver(updater));
             }
         }
     }
@@ -1219,7 +1340,8 @@ public final class Package extends Graph
         }
 
         ct.setInvalidState(); // to force compile
-        searchCompile(ct, 1, new Stack<ClassTarget>(), new QuietPackageCompileObserver());
+        searchCompile(ct, ct, 1, new Stack<ClassTarget>(),
+                new QuietPackageCompileObserver(new LoadedClassUpdater()));
     }
 
     /**
@@ -1254,7 +1376,7 @@ public final class Package extends Graph
             // Clear-down the compiler Warning dialog box singleton
             bluej.compiler.CompilerWarningDialog.getDialog().reset();
 
-            doCompile(compileTargets, new PackageCompileObserver());
+            doCompile(compileTargets, new PackageCompileObserver(new LoadedClassUpdater()), true);
         }
         catch (IOException ioe) {
             showMessageWithText("file-save-error-before-compile", ioe.getLocalizedMessage());
@@ -1283,8 +1405,10 @@ public final class Package extends Graph
      * Use Tarjan's algorithm to construct compiler Jobs. (Cyclic dependencies are
      * submitted together as one job; otherwise we attempt to submit every file as
      * a separate job, compiling dependencies before their dependents).
+     * The job containing 'requested' (if not null) is always compiled; the
+     * jobs for its dependencies may be skipped if they are up to date.
      */
-    private boolean searchCompile(ClassTarget t, int dfcount,
+    private boolean searchCompile(ClassTarget t, ClassTarget requested, int dfcount,
             Stack<ClassTarget> stack, CompileObserver observer)
     {
         if (! t.isInvalidState() || t.isQueued()) {
@@ -1323,7 +1447,7 @@ public final class Package extends Graph
                     t.link = Math.min(t.link, to.dfn);
             }
             else if (to.isInvalidState()) {
-                boolean success = searchCompile(to, dfcount + 1, stack, observer);
+                boolean success = searchCompile(to, requested, dfcount + 1, stack, observer);
                 if (! success) {
                     t.setQueued(false);
                     return false;
@@ -1341,7 +1465,7 @@ public final class Package extends Graph
                 compileTargets.add(x);
             } while (x != t);
 
-            doCompile(compileTargets, observer);
+            doCompile(compileTargets, observer, compileTargets.contains(requested));
         }
         return true;
     }
@@ -1349,8 +1473,14 @@ public final class Package extends Graph
     /**
      * Compile every Target in 'targetList'. Every compilation goes through this method.
      * All targets in the list should have been saved beforehand.
+     * 
+     * <p>Unless 'force' is true, one of the targets has been edited since it
+     * was compiled, or incremental compilation is turned off, the targets are
+     * not compiled if, when the job is started, their class files are newer
+     * than their sources and the signatures of the classes they use are the
+     * same as when they were last compiled.
      */
-    private void doCompile(List<ClassTarget> targetList, CompileObserver observer)
+    private void doCompile(List<ClassTarget> targetList, CompileObserver observer, boolean force)
     {
 
         observer = new EventqueueCompileObserver(observer);
@@ -1364,9 +1494,171 @@ public final class Package extends Graph
             srcFiles[i] = ct.getSourceFile();
         }
         
-        JobQueue.getJobQueue().addJob(srcFiles, observer, getProject().getClassLoader(), getProject().getProjectDir(),
+        // The job only has to wait for the jobs compiling the classes it
+        // depends on; other jobs can be compiled at the same time.
+        Set<File> depFiles = new HashSet<File>();
+        for (Iterator<ClassTarget> i = targetList.iterator(); i.hasNext(); ) {
+            Iterator<? extends Dependency> dependencies = i.next().dependencies();
+            while (dependencies.hasNext()) {
+                Dependency d = dependencies.next();
+                if (d.getTo() instanceof ClassTarget && ! targetList.contains(d.getTo())) {
+                    depFiles.add(((ClassTarget) d.getTo()).getSourceFile());
+                }
+            }
+        }
+        
+        for (Iterator<ClassTarget> i = targetList.iterator(); i.hasNext(); ) {
+            if (i.next().isModifiedSinceCompile()) {
+                force = true;
+            }
+        }
+        
+        UpToDateCheck check = null;
+        if (! force && ! "false".equals(Config.getPropString("bluej.compiler.incremental", "true"))) {
+            String [] classNames = new String[targetList.size()];
+            for (int i = 0; i < classNames.length; i++) {
+                classNames[i] = targetList.get(i).getQualifiedName();
+            }
+            check = new SignatureCheck(classNames, getSignatureIndex());
+        }
+        
+        JobQueue.getJobQueue().addJob(srcFiles, depFiles.toArray(new File[depFiles.size()]),
+                check, observer, getProject().getClassLoader(), getProject().getProjectDir(),
                 ! PrefMgr.getFlag(PrefMgr.SHOW_UNCHECKED));
     }
+    
+    /**
+     * Get the index of the signatures of the classes used by the classes in
+     * this package.
+     */
+    private synchronized SignatureIndex getSignatureIndex()
+    {
+        if (signatureIndex == null) {
+            signatureIndex = new SignatureIndex(getProject().getProjectDir(), getPath());
+        }
+        return signatureIndex;
+    }
+    
+    /**
+     * Record the signatures of the classes used by a class which has just
+     * been compiled successfully. The classes it has source dependencies on
+     * are recorded as well as those referred to from its class files, as
+     * their constants may have been inlined.
+     */
+    private void recordSignatures(ClassTarget t)
+    {
+        String qualifiedName = t.getQualifiedName();
+        String [] classNames = getClassNames(t);
+        
+        Set<String> sourceRefs = new HashSet<String>();
+        for (Iterator<? extends Dependency> i = t.dependencies(); i.hasNext(); ) {
+            Dependency d = i.next();
+            if (d.getTo() instanceof ClassTarget) {
+                sourceRefs.add(((ClassTarget) d.getTo()).getQualifiedName());
+            }
+        }
+        
+        getSignatureIndex().recordCompiled(qualifiedName, classNames, sourceRefs);
+    }
+    
+    /**
+     * Get the names of the classes compiled from a class's source: the class
+     * itself, followed by its inner classes (those with class files).
+     */
+    private String [] getClassNames(ClassTarget t)
+    {
+        final String prefix = t.getBaseName() + "$";
+        String [] innerFiles = getPath().list(new FilenameFilter() {
+            public boolean accept(File dir, String name)
+            {
+                return name.startsWith(prefix) && name.endsWith(".class");
+            }
+        });
+        
+        int innerCount = innerFiles == null ? 0 : innerFiles.length;
+        String [] classNames = new String[innerCount + 1];
+        classNames[0] = t.getQualifiedName();
+        for (int i = 0; i < innerCount; i++) {
+            String innerName = innerFiles[i].substring(0, innerFiles[i].length() - ".class".length());
+            classNames[i + 1] = getQualifiedName(innerName);
+        }
+        return classNames;
+    }
+    
+    /**
+     * Get the names of the classes compiled from some source files of this
+     * package (see getClassNames(ClassTarget)).
+     */
+    private String [] getClassNames(File[] sources)
+    {
+        List<String> classNames = new ArrayList<String>();
+        for (int i = 0; i < sources.length; i++) {
+            String fullName = getProject().convertPathToPackageName(sources[i].getPath());
+            Target t = targets.get(JavaNames.getBase(fullName));
+            if (t instanceof ClassTarget) {
+                classNames.addAll(Arrays.asList(getClassNames((ClassTarget) t)));
+            }
+        }
+        return classNames.toArray(new String[classNames.size()]);
+    }
+    
+    /**
+     * Get the hash of the static initialization of a class in the project
+     * (see ClassSignature.getStaticInitHash()), from its current class file.
+     * Returns null if there is no readable class file.
+     */
+    private String getStaticInitHash(String className)
+    {
+        File classFile = new File(getProject().getProjectDir(),
+                className.replace('.', File.separatorChar) + ".class");
+        if (! classFile.exists()) {
+            return null;
+        }
+        try {
+            return ClassSignature.read(classFile).getStaticInitHash();
+        }
+        catch (IOException ioe) {
+            return null;
+        }
+    }
+
+    /**
+     * A check, made on the compiler thread, of whether the class files for a
+     * set of classes are still valid: they are strictly newer than the
+     * sources, and the signatures of the classes they use are the same as
+     * when they were compiled.
+     */
+    private static class SignatureCheck implements UpToDateCheck
+    {
+        private String [] classNames;
+        private SignatureIndex index;
+        
+        SignatureCheck(String [] classNames, SignatureIndex index)
+        {
+            this.classNames = classNames;
+            this.index = index;
+        }
+        
+        public boolean isUpToDate(File[] sources)
+        {
+            for (int i = 0; i < sources.length; i++) {
+                File source = sources[i];
+                String name = source.getName();
+                File classFile = new File(source.getParentFile(),
+                        name.substring(0, name.length() - ".java".length()) + ".class");
+                long classTime = classFile.lastModified();
+                // File times may be as coarse as a second or two, so a class
+                // file with the same time as its source may be older than it
+                if (classTime == 0 || classTime <= source.lastModified()) {
+                    return false;
+                }
+                if (! index.referencesUnchanged(classNames[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
 
     /**
      * Returns true if the debugger is not busy. This is true if it is either
@@ -1449,13 +1741,19 @@ public final class Package extends Graph
         if (t.getPackage() != this)
             throw new IllegalArgumentException();
 
+        Target replaced = targets.get(t.getIdentifierName());
+        if (replaced != null) {
+            vertexIndex.remove(replaced);
+        }
         targets.add(t.getIdentifierName(), t);
+        vertexIndex.add(t);
         graphChanged();
     }
 
     public void removeTarget(Target t)
     {
         targets.remove(t.getIdentifierName());
+        vertexIndex.remove(t);
         removedSelectableElement(t);
         t.setRemoved();
         graphChanged();
@@ -2250,6 +2548,13 @@ public final class Package extends Graph
     private class QuietPackageCompileObserver
         implements CompileObserver
     {
+        private LoadedClassUpdater updater;
+        
+        QuietPackageCompileObserver(LoadedClassUpdater updater)
+        {
+            this.updater = updater;
+        }
+        
         private void markAsCompiling(File[] sources)
         {
             for (int i = 0; i < sources.length; i++) {
@@ -2296,6 +2601,8 @@ public final class Package extends Graph
 
             // Change view of source classes
             markAsCompiling(sources);
+            
+            updater.startCompile(sources);
         }
 
         public void errorMessage(String filename, int lineNo, String message)
@@ -2316,6 +2623,8 @@ public final class Package extends Graph
          */
         public void endCompile(File[] sources, boolean successful)
         {
+            updater.endCompile(sources, successful);
+            
             for (int i = 0; i < sources.length; i++) {
                 String filename = sources[i].getPath();
 
@@ -2351,6 +2660,10 @@ public final class Package extends Graph
                     // Empty class files should not be marked compiled,
                     // even though compilation is "successful".
                     newCompiledState &= t.upToDate();
+                    
+                    if (newCompiledState) {
+                        recordSignatures(t);
+                    }
                 }
 
                 t.setState(newCompiledState ? ClassTarget.S_NORMAL : ClassTarget.S_INVALID);
@@ -2358,6 +2671,10 @@ public final class Package extends Graph
                 if (successful && t.editorOpen())
                     t.getEditor().setCompiled(true);
             }
+            if (signatureIndex != null) {
+                signatureIndex.save();
+            }
+            saveClassInfoCache();
             setStatus(compileDone);
             graphChanged();
 
@@ -2368,11 +2685,85 @@ public final class Package extends Graph
         }
     }
 
+    /**
+     * Brings the classes in the debug VM up to date as the jobs of a
+     * compilation finish. If a job succeeds, the code of those of its
+     * classes which have been loaded is replaced, so that the objects on the
+     * object bench are kept. If that can't be done (because more than the
+     * code of methods has changed), if the initial values of the static
+     * fields of a class have changed (as a static initializer would not run
+     * again), or if the job fails, a new class loader is created instead,
+     * which removes them.
+     * 
+     * <p>All the jobs of a compilation share an updater, so that the class
+     * loader is renewed at most once.
+     */
+    private class LoadedClassUpdater
+    {
+        /** The static initialization hashes of classes before they were compiled */
+        private Map<String,String> staticInitHashes = new HashMap<String,String>();
+        private boolean loaderRenewed;
+        
+        /**
+         * Record the static initialization of the classes compiled from some
+         * sources, before their class files are replaced.
+         */
+        void startCompile(File[] sources)
+        {
+            String [] classNames = getClassNames(sources);
+            for (int i = 0; i < classNames.length; i++) {
+                String hash = getStaticInitHash(classNames[i]);
+                if (hash != null) {
+                    staticInitHashes.put(classNames[i], hash);
+                }
+            }
+        }
+        
+        /**
+         * Bring the classes compiled from some sources up to date.
+         */
+        void endCompile(File[] sources, boolean successful)
+        {
+            if (successful) {
+                String [] classNames = getClassNames(sources);
+                if (! staticInitChanged(classNames) && project.redefineClasses(classNames)) {
+                    return;
+                }
+            }
+            
+            if (! loaderRenewed) {
+                loaderRenewed = true;
+                project.removeClassLoader();
+                project.newRemoteClassLoaderLeavingBreakpoints();
+            }
+        }
+        
+        /**
+         * Check whether the static initialization of any of the given
+         * classes, which existed before they were compiled, has changed.
+         */
+        private boolean staticInitChanged(String [] classNames)
+        {
+            for (int i = 0; i < classNames.length; i++) {
+                String oldHash = staticInitHashes.get(classNames[i]);
+                if (oldHash != null && ! oldHash.equals(getStaticInitHash(classNames[i]))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
     /**
      * The same, but also display error/warning messages for the user
      */
     private class PackageCompileObserver extends QuietPackageCompileObserver
     {
+        PackageCompileObserver(LoadedClassUpdater updater)
+        {
+            super(updater);
+        }
+        
         /**
          * Display an error message associated with a specific line in a class.
          * This is done by opening the class's source, highlighting the line and
@@ -51,8 +51,10 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Map;
 import java.util.Properties;
 import java.util.StringTokenizer;
 import java.util.jar.JarEntry;
@@ -2104,6 +2106,34 @@ public class PkgMgrFrame extends JFrame
         }
     }
 
+    /**
+     * Place several objects onto the object bench, as putObjectOnBench does
+     * (with no invoker record). The objects are loaded into the runtime scope
+     * together, which is much quicker than loading them one at a time.
+     * 
+     * @param objects  The names for the instances on the bench, and the
+     *                 objects to place.
+     */
+    public void putObjectsOnBench(Map<String,DebuggerObject> objects)
+    {
+        Map<String,DebuggerObject> added = new LinkedHashMap<String,DebuggerObject>();
+        for (Iterator<Map.Entry<String,DebuggerObject>> i = objects.entrySet().iterator(); i.hasNext(); ) {
+            Map.Entry<String,DebuggerObject> entry = i.next();
+            DebuggerObject object = entry.getValue();
+            if (!object.isNullObject()) {
+                ObjectWrapper wrapper = ObjectWrapper.getWrapper(this, getObjectBench(), object,
+                        object.getGenType(), entry.getKey());
+                getObjectBench().addObject(wrapper); // might change name
+                added.put(wrapper.getName(), object);
+            }
+        }
+
+        // load the objects into runtime scope
+        if (! added.isEmpty()) {
+            getPackage().getDebugger().addObjects(pkg.getId(), added);
+        }
+    }
+
     /**
      * Implementation of the "New Class" user function.
      */
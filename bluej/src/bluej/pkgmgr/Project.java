@@ -24,7 +24,9 @@ package bluej.pkgmgr;
 import java.awt.Component;
 import java.awt.EventQueue;
 import java.awt.Window;
+import java.io.DataInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URISyntaxException;
@@ -63,6 +65,7 @@ import bluej.debugmgr.inspector.InspectorManager;
 import bluej.debugmgr.inspector.ObjectInspector;
 import bluej.debugmgr.inspector.ResultInspector;
 import bluej.editor.Editor;
+import bluej.editor.moe.MemberIndex;
 import bluej.extensions.BProject;
 import bluej.extensions.ExtensionBridge;
 import bluej.extmgr.ExtensionsManager;
@@ -87,7 +90,6 @@ import bluej.utility.FileUtility;
 import bluej.utility.JavaNames;
 import bluej.utility.Utility;
 import bluej.utility.FileUtility.WriteCapabilities;
-import bluej.views.View;
 
 
 /**
@@ -414,6 +416,7 @@ public class Project implements DebuggerListener, InspectorManager
 
         project.removeAllInspectors();
         project.getDebugger().removeDebuggerListener(project);
+        project.getDebugger().stopTestRuns();
         project.getDebugger().close(false);
 
         PrefMgr.addRecentProject(project.getProjectDir().getAbsolutePath());
@@ -554,6 +557,8 @@ public class Project implements DebuggerListener, InspectorManager
     {
         EventQueue.invokeLater(new Runnable() {
             public void run() {
+                // Show any changes made by threads running in the background
+                getDebugger().valuesChanged();
                 inspector.update();
                 inspector.updateLayout();
                 inspector.setVisible(true);
@@ -723,6 +728,7 @@ public class Project implements DebuggerListener, InspectorManager
      */
     public void updateInspectors() 
     {
+        getDebugger().valuesChanged();
         for (Iterator<Inspector> it = inspectors.values().iterator(); it.hasNext();) {
             Inspector inspector = it.next();
             inspector.update();
@@ -1182,6 +1188,7 @@ public class Project implements DebuggerListener, InspectorManager
      */
     public void restartVM()
     {
+        getDebugger().stopTestRuns();
         getDebugger().close(true);
         vmClosed();
         PkgMgrFrame.displayMessage(this, Config.getString("pkgmgr.creatingVM"));
@@ -1249,8 +1256,9 @@ public class Project implements DebuggerListener, InspectorManager
         // as part of removing objects from the bench
         removeAllInspectors();
 
-        // remove views for classes loaded by this classloader
-        View.removeAll(currentClassLoader);
+        // remove completion members for classes loaded by this classloader
+        // (views of them are kept by the loader, and go with it)
+        MemberIndex.removeAll(currentClassLoader);
 
         if (! Config.isGreenfoot()) {
             // dispose windows for local classes. Should not run user code
@@ -1288,6 +1296,62 @@ public class Project implements DebuggerListener, InspectorManager
         }
     }
 
+    /**
+     * Bring the classes in the debugging VM up to date with their class
+     * files, after some have been compiled, without creating a new class
+     * loader: the code of those which have been loaded is replaced, and the
+     * objects on the object benches are kept. Breakpoints are set again.
+     * This can't be done if anything but the code of their methods has
+     * changed. It can be turned off with "bluej.compiler.redefine".
+     * 
+     * @param classNames  the fully qualified names of the compiled classes
+     * @return  true if the classes were brought up to date, false if a new
+     *          class loader must be created instead
+     */
+    public boolean redefineClasses(String [] classNames)
+    {
+        if (! Config.getPropBoolean("bluej.compiler.redefine", true)) {
+            return false;
+        }
+        
+        byte [][] bytes = new byte[classNames.length][];
+        for (int i = 0; i < classNames.length; i++) {
+            File classFile = new File(getProjectDir(),
+                    classNames[i].replace('.', File.separatorChar) + ".class");
+            try {
+                DataInputStream in = new DataInputStream(new FileInputStream(classFile));
+                try {
+                    bytes[i] = new byte[(int) classFile.length()];
+                    in.readFully(bytes[i]);
+                }
+                finally {
+                    in.close();
+                }
+            }
+            catch (IOException ioe) {
+                return false;
+            }
+        }
+        
+        if (! getDebugger().redefineClasses(classNames, bytes)) {
+            return false;
+        }
+        
+        // Classes loaded here may have changed in more than their code
+        // (they needn't have been loaded in the debugging VM)
+        if (currentClassLoader != null) {
+            MemberIndex.removeAll(currentClassLoader);
+            currentClassLoader = null;
+        }
+        
+        Iterator<Package> i = packages.values().iterator();
+        while (i.hasNext()) {
+            Package pkg = (Package) i.next();
+            pkg.reInitBreakpoints();
+        }
+        return true;
+    }
+
     public Debugger getDebugger()
     {
         return debugger;
@@ -122,8 +122,9 @@ public class ProjectJavadocResolver implements JavadocResolver
 
     /**
      * Find the javadoc for a given class (target) by searching the project source path.
-     * In particular, this normally includes the JDK source. When source for the required
-     * class is found, it is parsed to extract comments.
+     * In particular, this normally includes the JDK source. The comments are taken from
+     * the index of each source archive (see JavadocIndex) if it has been built; otherwise
+     * the source for the required class is found and parsed to extract them.
      */
     private Properties getCommentsFromSource(String target)
     {
@@ -133,19 +134,33 @@ public class ProjectJavadocResolver implements JavadocResolver
         
         for (File pathEntry : sourcePath) {
             if (pathEntry.isFile()) {
+                JavadocIndex index = JavadocIndex.getIndex(pathEntry, project.getClassLoader());
+                if (index != null) {
+                    Properties comments = index.getComments(target);
+                    if (comments != null) {
+                        return comments;
+                    }
+                    continue;
+                }
+                
                 try {
                     ZipFile zipFile = new ZipFile(pathEntry);
-                    ZipEntry zipEnt = zipFile.getEntry(entName);
-                    if (zipEnt != null) {
-                        InputStream zeis = zipFile.getInputStream(zipEnt);
-                        Reader r = new InputStreamReader(zeis);
-                        EntityResolver resolver = new PackageResolver(project.getEntityResolver(),
-                                pkg);
-                        ClassInfo info = InfoParser.parse(r, resolver, null);
-                        if (info == null) {
-                            return null;
+                    try {
+                        ZipEntry zipEnt = zipFile.getEntry(entName);
+                        if (zipEnt != null) {
+                            InputStream zeis = zipFile.getInputStream(zipEnt);
+                            Reader r = new InputStreamReader(zeis);
+                            EntityResolver resolver = new PackageResolver(project.getEntityResolver(),
+                                    pkg);
+                            ClassInfo info = InfoParser.parse(r, resolver, null);
+                            if (info == null) {
+                                return null;
+                            }
+                            return info.getComments();
                         }
-                        return info.getComments();
+                    }
+                    finally {
+                        zipFile.close();
                     }
                 }
                 catch (IOException ioe) {}
@@ -0,0 +1,274 @@
+/*
+ This file is part of the BlueJ program. 
+ Copyright (C) 1999-2009  Michael Kolling and John Rosenberg 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package bluej.pkgmgr;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.StringTokenizer;
+import java.util.TreeSet;
+
+import bluej.classmgr.ClassSignature;
+import bluej.utility.Debug;
+
+/**
+ * An index, kept in a file in the package directory, recording for each
+ * compiled class of a package the API signature hashes (see ClassSignature)
+ * of the classes it referred to when it was compiled. A class whose source
+ * has not changed need not be recompiled for as long as the signatures of
+ * all those classes stay the same, even if their implementation changes.
+ * 
+ * <p>The signature of a class does not cover the members it inherits, so
+ * the supertypes of each class referred to (and theirs, and so on) are
+ * recorded as well.
+ * 
+ * <p>For each class the index holds a property "name.refs", with a
+ * comma-separated list of entries of the form "refname=hash".
+ * 
+ * <p>The methods of this class may be called from compiler threads, and
+ * are synchronized.
+ */
+public class SignatureIndex
+{
+    /** The name of the index file */
+    public static final String indexFileName = "bluej.sig";
+    
+    private File projectDir;
+    private File indexFile;
+    private Properties index = new Properties();
+    private boolean modified;
+    
+    /** Signatures of class files read, with the modification time when read */
+    private Map<File,ClassSignature> signatures = new HashMap<File,ClassSignature>();
+    private Map<File,Long> signatureTimes = new HashMap<File,Long>();
+    
+    /**
+     * Create a signature index for the package in the given directory,
+     * loading the index file if there is one.
+     * 
+     * @param projectDir  The project directory, where class files are
+     *                    found by their qualified names
+     * @param packageDir  The directory of the package
+     */
+    public SignatureIndex(File projectDir, File packageDir)
+    {
+        this.projectDir = projectDir;
+        indexFile = new File(packageDir, indexFileName);
+        
+        if (indexFile.exists()) {
+            InputStream in = null;
+            try {
+                in = new FileInputStream(indexFile);
+                index.load(in);
+            }
+            catch (IOException ioe) {
+                Debug.reportError("Could not read class signature index " + indexFile, ioe);
+                index.clear();
+            }
+            finally {
+                if (in != null) {
+                    try {
+                        in.close();
+                    }
+                    catch (IOException ioe) {}
+                }
+            }
+        }
+    }
+    
+    /**
+     * Get the signature of a class in the project, from its current class
+     * file. Returns null if the class file doesn't exist or can't be read.
+     * 
+     * @param className  The binary name of the class
+     */
+    public synchronized ClassSignature getSignature(String className)
+    {
+        File classFile = new File(projectDir, className.replace('.', File.separatorChar) + ".class");
+        long modified = classFile.lastModified();
+        if (modified == 0) {
+            signatures.remove(classFile);
+            signatureTimes.remove(classFile);
+            return null;
+        }
+        
+        Long time = signatureTimes.get(classFile);
+        if (time != null && time.longValue() == modified) {
+            return signatures.get(classFile);
+        }
+        
+        ClassSignature signature = null;
+        try {
+            signature = ClassSignature.read(classFile);
+        }
+        catch (IOException ioe) {
+            // treat as missing
+        }
+        signatures.put(classFile, signature);
+        signatureTimes.put(classFile, Long.valueOf(modified));
+        return signature;
+    }
+    
+    /**
+     * Check whether the signatures of all the classes the given class
+     * referred to when it was last compiled are the same now. Returns
+     * false if nothing is known about the class.
+     * 
+     * @param className  The binary name of the class
+     */
+    public synchronized boolean referencesUnchanged(String className)
+    {
+        String refs = index.getProperty(className + ".refs");
+        if (refs == null) {
+            return false;
+        }
+        
+        StringTokenizer tokenizer = new StringTokenizer(refs, ",");
+        while (tokenizer.hasMoreTokens()) {
+            String entry = tokenizer.nextToken();
+            int eq = entry.indexOf('=');
+            if (eq == -1) {
+                return false;
+            }
+            ClassSignature signature = getSignature(entry.substring(0, eq));
+            if (signature == null || ! signature.getHash().equals(entry.substring(eq + 1))) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Record the classes referred to by a class which has just been
+     * compiled, with their current signatures. Only classes in the project
+     * (those with a class file in the project directory) are recorded.
+     * 
+     * @param className   The binary name of the class
+     * @param classNames  The binary names of the classes compiled from the
+     *                    class's source (itself and its inner classes)
+     * @param extraRefs   The names of other classes to record, in addition
+     *                    to those referred to from the class files. This is
+     *                    used for classes whose constants may have been
+     *                    inlined.
+     */
+    public synchronized void recordCompiled(String className, String [] classNames, Set<String> extraRefs)
+    {
+        Set<String> refs = new TreeSet<String>(extraRefs);
+        for (int i = 0; i < classNames.length; i++) {
+            ClassSignature signature = getSignature(classNames[i]);
+            if (signature == null) {
+                // can't tell what it depends on
+                remove(className);
+                return;
+            }
+            refs.addAll(signature.getReferences());
+        }
+        addSupertypes(refs);
+        for (int i = 0; i < classNames.length; i++) {
+            refs.remove(classNames[i]);
+        }
+        
+        StringBuffer value = new StringBuffer();
+        for (Iterator<String> i = refs.iterator(); i.hasNext(); ) {
+            String ref = i.next();
+            ClassSignature signature = getSignature(ref);
+            if (signature != null) {
+                if (value.length() != 0) {
+                    value.append(',');
+                }
+                value.append(ref).append('=').append(signature.getHash());
+            }
+        }
+        
+        index.setProperty(className + ".refs", value.toString());
+        modified = true;
+    }
+    
+    /**
+     * Add the supertypes, in the project, of the given classes to the set,
+     * and theirs in turn.
+     */
+    private void addSupertypes(Set<String> classNames)
+    {
+        List<String> toVisit = new ArrayList<String>(classNames);
+        while (! toVisit.isEmpty()) {
+            ClassSignature signature = getSignature(toVisit.remove(toVisit.size() - 1));
+            if (signature != null) {
+                List<String> supertypes = signature.getSupertypes();
+                for (int i = 0; i < supertypes.size(); i++) {
+                    if (classNames.add(supertypes.get(i))) {
+                        toVisit.add(supertypes.get(i));
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * Forget what is recorded about a class, so that it will be compiled
+     * next time.
+     */
+    public synchronized void remove(String className)
+    {
+        if (index.remove(className + ".refs") != null) {
+            modified = true;
+        }
+    }
+    
+    /**
+     * Write the index file, if anything has changed.
+     */
+    public synchronized void save()
+    {
+        if (! modified) {
+            return;
+        }
+        
+        OutputStream out = null;
+        try {
+            out = new FileOutputStream(indexFile);
+            index.store(out, "BlueJ class signature index");
+            modified = false;
+        }
+        catch (IOException ioe) {
+            Debug.reportError("Could not write class signature index " + indexFile, ioe);
+        }
+        finally {
+            if (out != null) {
+                try {
+                    out.close();
+                }
+                catch (IOException ioe) {}
+            }
+        }
+    }
+}
@@ -21,23 +21,54 @@
  */
 package bluej.pkgmgr;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import bluej.parser.InfoParser;
+import bluej.parser.JavaParser;
+import bluej.parser.TokenStream;
+import bluej.parser.lexer.JavaTokenTypes;
+import bluej.parser.lexer.LocatableToken;
 import bluej.parser.symtab.ClassInfo;
 
 /**
  * A container holding information about a class's source file. The
  * information is collected mainly by the class parser, and used for
  * automatic editing of the source.
+ * 
+ * <p>When many classes are to be analysed together (as when a package is
+ * opened) prefetch() can be called for each first. This reads and tokenises
+ * the source files in parallel, leaving only the parsing proper, which
+ * resolves names against the project and so must be done on the calling
+ * thread, to getInfo().
  *
  * @author  Michael Kolling
  * @version $Id: SourceInfo.java 6991 2010-01-12 06:37:26Z davmac $
  */
 public final class SourceInfo
 {
+    /** Threads used to read source files ahead of parsing them */
+    private static ExecutorService readers;
+    
     private boolean valid;
     private ClassInfo info;
+    private Future<TokenStream> pendingTokens;
+    
+    /** The length and modification time of the source file when it was read */
+    private long sourceLength;
+    private long sourceModified;
 
     public SourceInfo()
     {
@@ -53,15 +84,60 @@ public final class SourceInfo
     public void setSourceModified()
     {
         info = null;
+        pendingTokens = null;
+    }
+    
+    /**
+     * Prepare for a following call to getInfo(). The information is taken
+     * from the package's cache if it is there; otherwise the source file is
+     * read and tokenised in the background.
+     */
+    public void prefetch(final File sourceFile, Package pkg)
+    {
+        if (info != null || pendingTokens != null) {
+            return;
+        }
+        
+        info = pkg.getCachedClassInfo(sourceFile);
+        if (info != null) {
+            valid = true;
+            return;
+        }
+        
+        sourceLength = sourceFile.length();
+        sourceModified = sourceFile.lastModified();
+        pendingTokens = getReaders().submit(new Callable<TokenStream>() {
+            public TokenStream call() throws IOException
+            {
+                return readTokens(sourceFile);
+            }
+        });
     }
 
     public ClassInfo getInfo(File sourceFile, Package pkg)
     {
         if(info == null)
         {
+            TokenStream tokens = takePendingTokens();
+            if (tokens == null) {
+                info = pkg.getCachedClassInfo(sourceFile);
+                if (info != null) {
+                    valid = true;
+                    return info;
+                }
+                sourceLength = sourceFile.length();
+                sourceModified = sourceFile.lastModified();
+            }
+            
             try {
-                info = InfoParser.parse(sourceFile, pkg);
+                if (tokens != null) {
+                    info = InfoParser.parse(tokens, pkg);
+                }
+                else {
+                    info = InfoParser.parse(sourceFile, pkg);
+                }
                 valid = true;
+                pkg.cacheClassInfo(sourceFile, sourceLength, sourceModified, info);
             }
             catch(Exception e) {
                 // uncomment the following line to track parsing problems
@@ -87,4 +163,90 @@ public final class SourceInfo
     {
         return info;
     }
+    
+    /**
+     * Wait for, and return, the tokens read by an earlier call to prefetch().
+     * Returns null if there are none (or they could not be read).
+     */
+    private TokenStream takePendingTokens()
+    {
+        Future<TokenStream> pending = pendingTokens;
+        pendingTokens = null;
+        if (pending == null) {
+            return null;
+        }
+        
+        try {
+            return pending.get();
+        }
+        catch (InterruptedException ie) {
+            return null;
+        }
+        catch (ExecutionException ee) {
+            // the file will be read again (and the error reported) when parsed
+            return null;
+        }
+    }
+    
+    /**
+     * Read all the tokens (including comments) from a source file.
+     */
+    private static TokenStream readTokens(File sourceFile) throws IOException
+    {
+        Reader reader = new BufferedReader(new InputStreamReader(new FileInputStream(sourceFile)));
+        try {
+            TokenStream lexer = JavaParser.getLexer(reader, 1, 1);
+            List<LocatableToken> tokens = new ArrayList<LocatableToken>();
+            LocatableToken token;
+            do {
+                token = lexer.nextToken();
+                tokens.add(token);
+            }
+            while (token.getType() != JavaTokenTypes.EOF);
+            return new TokenList(tokens);
+        }
+        finally {
+            reader.close();
+        }
+    }
+    
+    private static synchronized ExecutorService getReaders()
+    {
+        if (readers == null) {
+            readers = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+                    new ThreadFactory() {
+                        public Thread newThread(Runnable r)
+                        {
+                            Thread thread = new Thread(r, "BlueJ source reader");
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+        }
+        return readers;
+    }
+    
+    /**
+     * A stream of tokens which have already been read. The last token (the EOF
+     * token) is repeated once the others have been returned.
+     */
+    private static class TokenList implements TokenStream
+    {
+        private List<LocatableToken> tokens;
+        private int pos = 0;
+        
+        TokenList(List<LocatableToken> tokens)
+        {
+            this.tokens = tokens;
+        }
+        
+        public LocatableToken nextToken()
+        {
+            LocatableToken token = tokens.get(pos);
+            if (pos < tokens.size() - 1) {
+                pos++;
+            }
+            return token;
+        }
+    }
 }
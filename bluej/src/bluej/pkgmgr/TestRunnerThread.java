@@ -28,6 +28,7 @@ import java.util.Iterator;
 import java.util.List;
 
 import bluej.Config;
+import bluej.debugger.DebuggerTestListener;
 import bluej.debugger.DebuggerTestResult;
 import bluej.pkgmgr.target.ClassTarget;
 import bluej.pkgmgr.target.role.UnitTestClassRole;
@@ -40,7 +41,10 @@ import bluej.testmgr.TestDisplayFrame;
  * This class provides the means to do this.
  * 
  * There are two primary modes of operation: run a single test (methodname != null),
- * and run all tests for a series of ClassTargets.
+ * and run all tests for a series of ClassTargets. The tests are run together,
+ * and their results are shown as they arrive. If "bluej.testing.vms" is set,
+ * running all the tests of the project runs them in that many separate VMs
+ * at once, rather than in the debug VM.
  * 
  * @author Davin McCall
  * @version $Id$
@@ -48,12 +52,12 @@ import bluej.testmgr.TestDisplayFrame;
 public class TestRunnerThread extends Thread
 {
     private Iterator testIterator;
-    private DebuggerTestResult lastResult = null;
     private PkgMgrFrame pmf;
 
     private ClassTarget ct;
     private String[] allMethods;
     private String methodName; // Name of the test method; null to run all tests.
+    private boolean testAll;   // Whether the tests are all those of the project.
     
     private int state;
     
@@ -64,6 +68,7 @@ public class TestRunnerThread extends Thread
     {
         this.pmf = pmf;
         testIterator = i;
+        testAll = true;
         state = 0;
     }
     
@@ -100,6 +105,8 @@ public class TestRunnerThread extends Thread
         switch (state) {
             case 0:
                 try {
+                    List<String> classNames = new ArrayList<String>();
+                    List<String> methodNames = new ArrayList<String>();
                     while (testIterator.hasNext()) {
                         
                         ct = (ClassTarget) testIterator.next();
@@ -114,14 +121,39 @@ public class TestRunnerThread extends Thread
                             allMethods = new String [] { methodName };
                         }
                         
-                        // State 1 has given us the tests we need to run. Now run them:
+                        // State 1 has given us the tests we need to run.
                         for (int i = 0; i < allMethods.length; i++) {
-                            lastResult = pmf.getProject().getDebugger().runTestMethod(ct.getQualifiedName(), allMethods[i]);
-                            
-                            // Add the test result to the test display frame in state 2:
-                            state = 2;
-                            EventQueue.invokeAndWait(this);
+                            classNames.add(ct.getQualifiedName());
+                            methodNames.add(allMethods[i]);
+                        }
+                    }
+                    
+                    // Now run them all, adding the results to the test display
+                    // frame as they arrive
+                    String [] testClasses = classNames.toArray(new String[classNames.size()]);
+                    String [] testMethods = methodNames.toArray(new String[methodNames.size()]);
+                    DebuggerTestListener listener = new DebuggerTestListener() {
+                        public void testsFinished(final List<DebuggerTestResult> results)
+                        {
+                            EventQueue.invokeLater(new Runnable() {
+                                public void run()
+                                {
+                                    for (DebuggerTestResult result : results) {
+                                        addResult(result);
+                                    }
+                                }
+                            });
                         }
+                    };
+                    
+                    Project project = pmf.getProject();
+                    int testVMs = Config.getPropInteger("bluej.testing.vms", 0);
+                    if (testAll && testVMs > 0) {
+                        project.getDebugger().runTestMethodsInParallel(testClasses, testMethods,
+                                testVMs, listener);
+                    }
+                    else {
+                        project.getDebugger().runTestMethods(testClasses, testMethods, listener);
                     }
                     
                     // Finally, tell the PkgMgrFrame that we're done:
@@ -146,16 +178,6 @@ public class TestRunnerThread extends Thread
                 }
                 break;
                 
-            // Here we add a test result to the test display frame.
-            case 2:
-                boolean quiet = methodName != null && lastResult.isSuccess();
-                TestDisplayFrame.getTestDisplay().addResult(lastResult, quiet);
-                
-                if (quiet)
-                    pmf.setStatus(methodName + " " + Config.getString("pkgmgr.test.succeeded"));
-
-                break;
-
             // Now we are finished.
             case 3:
                 if (methodName == null)
@@ -164,4 +186,16 @@ public class TestRunnerThread extends Thread
                 break;
         }
     }
+    
+    /**
+     * Add a test result to the test display frame.
+     */
+    private void addResult(DebuggerTestResult result)
+    {
+        boolean quiet = methodName != null && result.isSuccess();
+        TestDisplayFrame.getTestDisplay().addResult(result, quiet);
+        
+        if (quiet)
+            pmf.setStatus(methodName + " " + Config.getString("pkgmgr.test.succeeded"));
+    }
 }
@@ -49,6 +49,14 @@ public class GraphPainterStdImpl
     static final int TEXT_BORDER = 4;
     static final float alpha = (float) 0.5;
     static AlphaComposite alphaComposite = AlphaComposite.getInstance(AlphaComposite.SRC_OVER, alpha);
+    
+    /** How far a vertex's shadow extends past it */
+    private static final int VERTEX_MARGIN = 5;
+    /**
+     * How far a dependency may be painted from its end points: for the
+     * corners of uses arrows, and arrow heads
+     */
+    private static final int DEPENDENCY_MARGIN = 20;
 
     private final ClassTargetPainter classTargetPainter = new ClassTargetPainter();
     private final ReadmeTargetPainter readmePainter = new ReadmeTargetPainter();
@@ -59,6 +67,12 @@ public class GraphPainterStdImpl
     private static final GraphPainterStdImpl singleton = new GraphPainterStdImpl();
 
     private GraphEditor graphEditor;
+    
+    /**
+     * The antialiasing left set by painting the graph. The painters leave
+     * it set, and what is painted after them depends on it.
+     */
+    private Object graphAntialiasing;
 
     private GraphPainterStdImpl()
     {} // prevent instantiation
@@ -67,6 +81,42 @@ public class GraphPainterStdImpl
      * Paint 'graph' on 'g'
      */
     public void paint(Graphics2D g, GraphEditor graphEditor)
+    {
+        paintGraph(g, graphEditor);
+        paintOverlay(g, graphEditor);
+    }
+
+    /**
+     * Paint the edges and vertices of 'graph' on 'g'
+     */
+    public void paintGraph(Graphics2D g, GraphEditor graphEditor)
+    {
+        Graph graph = setUp(g, graphEditor);
+        Rectangle clip = g.getClipBounds();
+        paintEdges(g, graph, clip);
+        paintVertices(g, graph, clip);
+        graphAntialiasing = g.getRenderingHint(RenderingHints.KEY_ANTIALIASING);
+    }
+
+    /**
+     * Paint the ghosts and intermediate dependency of 'graph' on 'g'
+     */
+    public void paintOverlay(Graphics2D g, GraphEditor graphEditor)
+    {
+        Graph graph = setUp(g, graphEditor);
+        if (graphAntialiasing != null) {
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, graphAntialiasing);
+        }
+        paintGhosts(g, graph);
+        paintIntermediateDependency(g, graph);
+    }
+
+    /**
+     * Prepare to paint the graph of 'graphEditor' on 'g'
+     * 
+     * @return the graph
+     */
+    private Graph setUp(Graphics2D g, GraphEditor graphEditor)
     {
         // Use system settings for text rendering (Java 6 only)
         Toolkit tk = Toolkit.getDefaultToolkit(); 
@@ -76,11 +126,7 @@ public class GraphPainterStdImpl
         } 
         
         this.graphEditor = graphEditor;
-        Graph graph = graphEditor.getGraph();
-        paintEdges(g, graph);
-        paintVertices(g, graph);
-        paintGhosts(g, graph);
-        paintIntermediateDependency(g, graph);
+        return graphEditor.getGraph();
     }
 
     /**
@@ -88,33 +134,75 @@ public class GraphPainterStdImpl
      * 
      * @param g
      * @param graph
+     * @param clip  the area to be painted, or null for all of it
      */
-    private void paintEdges(Graphics2D g, Graph graph)
+    private void paintEdges(Graphics2D g, Graph graph, Rectangle clip)
     {
         Edge edge;
         //Paint the edges
         for (Iterator it = graph.getEdges(); it.hasNext();) {
             edge = (Edge) it.next();
-            paintEdge(g, edge);
+            if (clip == null || getDependencyBounds((Dependency) edge).intersects(clip)) {
+                paintEdge(g, edge);
+            }
+            else {
+                // as the dependency painters do
+                g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            }
         }
     }
 
     /**
-     * Paint the vertices in 'graph' on 'g'. If one of the targets to be painted
-     * is in the process of drawing a dependency to another class, assign that
-     * class to 'dependency'
+     * Paint the vertices in 'graph' on 'g'
      * 
      * @param g
      * @param graph
-     * @param dependentTarget
-     * @return the class from which a dependency is being drawn. Null if none.
+     * @param clip  the area to be painted, or null for all of it
      */
-    private void paintVertices(Graphics2D g, Graph graph)
+    private void paintVertices(Graphics2D g, Graph graph, Rectangle clip)
     {
         for (Iterator it = graph.getVertices(); it.hasNext();) {
             Vertex vertex = (Vertex) it.next();
-            paintVertex(g, vertex);
+            if (clip == null || intersects(vertex, clip)) {
+                paintVertex(g, vertex);
+            }
+            else if (vertex instanceof ReadmeTarget) {
+                // as the readme painter does
+                g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
+            }
+        }
+    }
+
+    /**
+     * Tell whether 'vertex', including its shadow, is painted in 'area'
+     */
+    private static boolean intersects(Vertex vertex, Rectangle area)
+    {
+        return vertex.getX() < area.x + area.width
+            && vertex.getY() < area.y + area.height
+            && vertex.getX() + vertex.getWidth() + VERTEX_MARGIN > area.x
+            && vertex.getY() + vertex.getHeight() + VERTEX_MARGIN > area.y;
+    }
+
+    /**
+     * Return a rectangle which holds everything painted for 'dependency'
+     * (with room to spare).
+     */
+    private static Rectangle getDependencyBounds(Dependency dependency)
+    {
+        Rectangle bounds;
+        if (dependency instanceof UsesDependency) {
+            UsesDependency d = (UsesDependency) dependency;
+            bounds = new Rectangle(d.getSourceX(), d.getSourceY(), 0, 0);
+            bounds.add(d.getDestX(), d.getDestY());
+        }
+        else {
+            Dependency.Line line = dependency.computeLine();
+            bounds = new Rectangle(line.from);
+            bounds.add(line.to);
         }
+        bounds.grow(DEPENDENCY_MARGIN, DEPENDENCY_MARGIN);
+        return bounds;
     }
 
     /**
@@ -869,6 +869,15 @@ public class ClassTarget extends DependentTarget
         }.start();
     }
 
+    /**
+     * Check whether the source has been edited since the class was last
+     * compiled.
+     */
+    public boolean isModifiedSinceCompile()
+    {
+        return modifiedSinceCompile;
+    }
+
     // --- EditorWatcher interface ---
 
     public void modificationEvent(Editor editor)
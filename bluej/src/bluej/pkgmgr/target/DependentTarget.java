@@ -70,14 +70,22 @@ public abstract class DependentTarget extends EditableTarget
     
     public void setPos(int x, int y)
     {
+        int oldX = getX();
+        int oldY = getY();
         super.setPos(x,y);
-        recalcDependentPositions();
+        if (getX() != oldX || getY() != oldY) {
+            recalcDependentPositions();
+        }
     }
 
     public void setSize(int width, int height)
     {
+        int oldWidth = getWidth();
+        int oldHeight = getHeight();
         super.setSize(width, height);
-        recalcDependentPositions();
+        if (getWidth() != oldWidth || getHeight() != oldHeight) {
+            recalcDependentPositions();
+        }
     }
 
     /**
@@ -99,6 +99,28 @@ public abstract class Target extends Vertex
             return (width + 29) / GraphEditor.GRID_SIZE * GraphEditor.GRID_SIZE;
     }
     
+    /**
+     * Set the position of this target.
+     */
+    public void setPos(int x, int y)
+    {
+        super.setPos(x, y);
+        if (pkg != null) {
+            pkg.targetMoved(this);
+        }
+    }
+
+    /**
+     * Set the size of this target.
+     */
+    public void setSize(int width, int height)
+    {
+        super.setSize(width, height);
+        if (pkg != null) {
+            pkg.targetMoved(this);
+        }
+    }
+    
     /**
      * This target has been removed from its package.
      */
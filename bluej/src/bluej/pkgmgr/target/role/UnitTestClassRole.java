@@ -31,7 +31,6 @@ import java.io.Reader;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
@@ -388,18 +387,11 @@ public class UnitTestClassRole extends ClassRole
         new Thread() {
             public void run() {
                 
-                final Map dobs = pmf.getProject().getDebugger().runTestSetUp(ct.getQualifiedName());
+                final Map<String,DebuggerObject> dobs = pmf.getProject().getDebugger().runTestSetUp(ct.getQualifiedName());
                 
                 EventQueue.invokeLater(new Runnable() {
                     public void run() {
-                        Iterator it = dobs.entrySet().iterator();
-                        
-                        while(it.hasNext()) {
-                            Map.Entry mapent = (Map.Entry) it.next();
-                            DebuggerObject objVal = (DebuggerObject) mapent.getValue();
-                            
-                            pmf.putObjectOnBench((String) mapent.getKey(), objVal, objVal.getGenType(), null);
-                        }
+                        pmf.putObjectsOnBench(dobs);
                     }
                 });
             }
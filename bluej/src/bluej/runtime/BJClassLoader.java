@@ -0,0 +1,80 @@
+/*
+ This file is part of the BlueJ program. 
+ Copyright (C) 1999-2009  Michael Kolling and John Rosenberg 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package bluej.runtime;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The class loader used to load user classes in the debug VM. As well as
+ * loading classes from the project class path, it can define classes (such
+ * as shell classes) whose bytecode is sent directly from the BlueJ VM,
+ * without the class files being written to disk. Such classes belong to the
+ * same runtime package as the user classes loaded by this loader, so they
+ * have the same access to them as classes loaded from the class path.
+ */
+public class BJClassLoader extends URLClassLoader
+{
+    // bytecode for the classes most recently added, which have not yet been
+    // defined
+    private Map<String,byte[]> definitions = new HashMap<String,byte[]>();
+    
+    public BJClassLoader(URL[] urls)
+    {
+        super(urls);
+    }
+    
+    /**
+     * Add the bytecode for some classes. Each class will be defined when
+     * it is first loaded through this loader. The classes added before,
+     * which have not been loaded by now, are discarded: they belong to a
+     * shell whose execution has finished (and whose class files, when it
+     * is compiled to files, are removed at that point).
+     * 
+     * @param names  The binary names of the classes
+     * @param bytes  The corresponding class file contents
+     */
+    public synchronized void addClassDefinitions(String [] names, byte [][] bytes)
+    {
+        definitions.clear();
+        for (int i = 0; i < names.length; i++) {
+            definitions.put(names[i], bytes[i]);
+        }
+    }
+    
+    protected Class<?> findClass(String name)
+        throws ClassNotFoundException
+    {
+        byte [] bytes;
+        synchronized (this) {
+            bytes = definitions.remove(name);
+        }
+        
+        if (bytes != null) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+        
+        return super.findClass(name);
+    }
+}
@@ -22,68 +22,121 @@
 package bluej.runtime;
 
 /**
- * A simple map implementation, for use in J2ME. Not efficient, but fine for
- * how it is presently used.
+ * A simple map implementation, for use in J2ME (and in the debug VM, where it
+ * avoids loading any more classes than are needed). It is a hash table with
+ * open addressing: keys are kept in a single array, whose size is a power of
+ * two, at or after (wrapping around) the slot given by their hash code.
+ * Null keys are not allowed.
  * 
  * @author Davin McCall
  */
 public class BJMap<K,V>
 {
+    private static final int INITIAL_CAPACITY = 8;
+    
     private V[] values;
     private K[] keys;
+    private int size;
     
     @SuppressWarnings("unchecked")
     public BJMap()
     {
-        values = (V[]) new Object[0];
-        keys = (K[]) new Object[0];
+        values = (V[]) new Object[INITIAL_CAPACITY];
+        keys = (K[]) new Object[INITIAL_CAPACITY];
     }
     
     public V get(K key)
     {
-        for (int i = 0; i < keys.length; i++) {
-            if (keys[i].equals(key)) {
-                return values[i];
-            }
+        int i = indexOf(key);
+        return keys[i] == null ? null : values[i];
+    }
+    
+    public void put(K key, V value)
+    {
+        int i = indexOf(key);
+        if (keys[i] != null) {
+            values[i] = value;
+            return;
         }
         
-        return null;
+        // Keep the table at most half full, so that runs of used slots are short
+        if ((size + 1) * 2 > keys.length) {
+            resize(keys.length * 2);
+            i = indexOf(key);
+        }
+        keys[i] = key;
+        values[i] = value;
+        size++;
     }
     
-    @SuppressWarnings("unchecked")
-    public void put(K key, V value)
+    public void remove(K key)
     {
-        for (int i = 0; i < keys.length; i++) {
-            if (keys[i].equals(key)) {
-                values[i] = value;
-                return;
-            }
+        int i = indexOf(key);
+        if (keys[i] == null) {
+            return;
         }
         
-        K [] newKeys = (K []) new Object[keys.length + 1];
-        V [] newValues = (V []) new Object[keys.length + 1];
-        System.arraycopy(keys, 0, newKeys, 0, keys.length);
-        System.arraycopy(values, 0, newValues, 0, keys.length);
-        newKeys[keys.length] = key;
-        newValues[keys.length] = value;
-        keys = newKeys;
-        values = newValues;
+        // Move back any following keys which would no longer be found
+        // once this slot is empty
+        int mask = keys.length - 1;
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            if (keys[j] == null) {
+                break;
+            }
+            int home = slot(keys[j]);
+            // the key at j can fill the gap at i unless its home slot lies
+            // (cyclically) after i, up to and including j
+            if (i <= j ? (home <= i || home > j) : (home <= i && home > j)) {
+                keys[i] = keys[j];
+                values[i] = values[j];
+                i = j;
+            }
+        }
+        keys[i] = null;
+        values[i] = null;
+        size--;
+    }
+    
+    /**
+     * Get the slot at which a key should first be looked for.
+     */
+    private int slot(K key)
+    {
+        int h = key.hashCode();
+        // spread the high bits down, as string hashes of similar names
+        // differ mostly in their low bits
+        h ^= (h >>> 16);
+        return h & (keys.length - 1);
+    }
+    
+    /**
+     * Get the slot which holds the given key, or the empty slot at which
+     * it would be added.
+     */
+    private int indexOf(K key)
+    {
+        int mask = keys.length - 1;
+        int i = slot(key);
+        while (keys[i] != null && ! keys[i].equals(key)) {
+            i = (i + 1) & mask;
+        }
+        return i;
     }
     
     @SuppressWarnings("unchecked")
-    public void remove(K key)
+    private void resize(int capacity)
     {
-        for (int i = 0; i < keys.length; i++) {
-            if (keys[i].equals(key)) {
-                K [] newKeys = (K []) new Object[keys.length - 1];
-                V [] newValues = (V []) new Object[keys.length - 1];
-                System.arraycopy(keys, 0, newKeys, 0, i);
-                System.arraycopy(keys, i+1, newKeys, i, keys.length - i - 1);
-                System.arraycopy(values, 0, newValues, 0, i);
-                System.arraycopy(values, i+1, newValues, i, keys.length - i - 1);
-                keys = newKeys;
-                values = newValues;
-                return;
+        K [] oldKeys = keys;
+        V [] oldValues = values;
+        keys = (K []) new Object[capacity];
+        values = (V []) new Object[capacity];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int j = indexOf(oldKeys[i]);
+                keys[j] = oldKeys[i];
+                values[j] = oldValues[i];
             }
         }
     }
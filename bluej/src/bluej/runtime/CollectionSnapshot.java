@@ -0,0 +1,203 @@
+/*
+ This file is part of the BlueJ program. 
+ Copyright (C) 2010  Michael Kolling and John Rosenberg 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package bluej.runtime;
+
+import java.util.*;
+
+/**
+ * Takes snapshots of collections and maps in the debug VM, for the object
+ * inspector. A snapshot holds some of the elements (or entries) of a
+ * collection, together with descriptions of them, so that the inspector can
+ * show them without reading the internal structure of the collection through
+ * the debugger, field by field.<p>
+ * 
+ * Snapshots are taken by the worker thread, which must not execute user
+ * code. So only the collection classes listed here (and not subclasses of
+ * them) are supported, and an element is only described by its toString()
+ * value if it is a string, an enum constant or a boxed primitive value from
+ * the Java library.
+ * 
+ * @see ExecServer#runBatch(String, Object[])
+ */
+public class CollectionSnapshot
+{
+    /** The names of the classes whose instances a snapshot can be taken of */
+    private static final Set<String> SUPPORTED_CLASSES = new HashSet<String>();
+    
+    static {
+        Class<?> [] classes = {
+            ArrayList.class, LinkedList.class, Vector.class, Stack.class,
+            PriorityQueue.class, HashSet.class,
+            LinkedHashSet.class, TreeSet.class, HashMap.class,
+            LinkedHashMap.class, TreeMap.class, Hashtable.class,
+            IdentityHashMap.class
+        };
+        for (int i = 0; i < classes.length; i++) {
+            SUPPORTED_CLASSES.add(classes[i].getName());
+        }
+        SUPPORTED_CLASSES.add("java.util.Arrays$ArrayList"); // Arrays.asList()
+        // Named rather than referred to, as this class also runs on Java 5
+        SUPPORTED_CLASSES.add("java.util.ArrayDeque");
+    }
+    
+    /**
+     * The names of the supported classes whose iterators lock the collection.
+     * The debugger reads their elements itself, rather than having the
+     * worker thread wait for a lock which a stopped thread may hold.
+     */
+    private static final Set<String> LOCKING_CLASSES = new HashSet<String>();
+    
+    static {
+        Class<?> [] classes = { Vector.class, Stack.class, Hashtable.class };
+        for (int i = 0; i < classes.length; i++) {
+            LOCKING_CLASSES.add(classes[i].getName());
+        }
+    }
+    
+    /** The kind of snapshot for a collection */
+    public static final String COLLECTION = "C";
+    /** The kind of snapshot for a map */
+    public static final String MAP = "M";
+    
+    /**
+     * Check whether a snapshot can be taken of an object of the named class.
+     */
+    public static boolean canTake(String className)
+    {
+        return SUPPORTED_CLASSES.contains(className);
+    }
+    
+    /**
+     * Check whether taking a snapshot of an object of the named class locks
+     * the object.
+     */
+    public static boolean takesLock(String className)
+    {
+        return LOCKING_CLASSES.contains(className);
+    }
+    
+    /**
+     * Take a snapshot of the elements 'first' to 'first + count - 1' (or as
+     * many of them as exist) of a collection, or of the entries of a map. The
+     * elements are those the collection's iterator returns, in that order.<p>
+     * 
+     * The snapshot is an array of two objects. The first is a string which
+     * holds a number of fields, each written as its length in decimal, a
+     * colon, and then the field itself (see ExecServer.nextField). They are:
+     * the size of the collection, its kind (COLLECTION or MAP), and then a
+     * description of each element, or of the key and the value of each map
+     * entry. A description is empty if the element is not a value which can
+     * be described, such as a null or other object reference. The second
+     * object is an array of the elements, or keys and values, themselves.
+     * 
+     * @return  the snapshot, or null if a snapshot can't be taken of the
+     *          object (including if the collection is modified while it
+     *          is being taken)
+     */
+    static Object[] take(Object collection, int first, int count)
+    {
+        if (collection == null || ! canTake(collection.getClass().getName())) {
+            return null;
+        }
+        
+        StringBuffer descriptions = new StringBuffer();
+        List<Object> elements = new ArrayList<Object>();
+        try {
+            int size;
+            Iterator<?> i;
+            if (collection instanceof Map<?,?>) {
+                Map<?,?> map = (Map<?,?>) collection;
+                size = map.size();
+                i = map.entrySet().iterator();
+                ExecServer.addField(descriptions, Integer.toString(size));
+                ExecServer.addField(descriptions, MAP);
+            }
+            else {
+                Collection<?> c = (Collection<?>) collection;
+                size = c.size();
+                if (c instanceof List<?>) {
+                    // go straight to the first element
+                    i = ((List<?>) c).listIterator(Math.min(first, size));
+                    first = 0;
+                }
+                else {
+                    i = c.iterator();
+                }
+                ExecServer.addField(descriptions, Integer.toString(size));
+                ExecServer.addField(descriptions, COLLECTION);
+            }
+            
+            for (int skipped = 0; skipped < first && i.hasNext(); skipped++) {
+                i.next();
+            }
+            for (int taken = 0; taken < count && i.hasNext(); taken++) {
+                Object element = i.next();
+                if (element instanceof Map.Entry<?,?>) {
+                    Map.Entry<?,?> entry = (Map.Entry<?,?>) element;
+                    addElement(descriptions, elements, entry.getKey());
+                    addElement(descriptions, elements, entry.getValue());
+                }
+                else {
+                    addElement(descriptions, elements, element);
+                }
+            }
+        }
+        catch (RuntimeException re) {
+            // ConcurrentModificationException or NoSuchElementException,
+            // if another thread is changing the collection
+            return null;
+        }
+        
+        return new Object[] {descriptions.toString(), elements.toArray()};
+    }
+    
+    /**
+     * Add an element, and its description, to a snapshot.
+     */
+    private static void addElement(StringBuffer descriptions, List<Object> elements, Object element)
+    {
+        elements.add(element);
+        ExecServer.addField(descriptions, describe(element));
+    }
+    
+    /**
+     * Describe an element in the way the debugger describes a value: quoted,
+     * if it is a string, and by name, if it is an enum constant. The
+     * description is empty if the element can't be described without
+     * running user code.
+     */
+    private static String describe(Object element)
+    {
+        if (element instanceof String) {
+            return "\"" + element + "\"";
+        }
+        else if (element instanceof Enum<?>) {
+            return ((Enum<?>) element).name();
+        }
+        else if ((element instanceof Number || element instanceof Character
+                || element instanceof Boolean)
+                && element.getClass().getClassLoader() == null) {
+            return element.toString();
+        }
+        return "";
+    }
+}
@@ -34,7 +34,6 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.net.URLClassLoader;
 import java.util.*;
 
 import bluej.utility.Utility;
@@ -69,7 +68,7 @@ public class ExecServer
     
     // Parameters for main thread actions
     public static String classToRun;
-    public static String methodToRun;
+    public static String testsToRun;
     public static String [] parameterTypes;
     public static Object [] arguments;
     public static int execAction;   // EXEC_SHELL, TEST_SETUP or TEST_RUN
@@ -78,20 +77,27 @@ public class ExecServer
     public static Class<?> executedClass;
     public static Throwable exception;
     
+    // The results of the tests run by TEST_RUN, and how many have been run
+    // so far. They are read while the tests are running (see runTests).
+    public static String [] testResults;
+    public static volatile int testsRun;
+    
     // These constant values must match the variable names declared above
     public static final String CLASS_TO_RUN_NAME = "classToRun";
-    public static final String METHOD_TO_RUN_NAME = "methodToRun";
+    public static final String TESTS_TO_RUN_NAME = "testsToRun";
     public static final String PARAMETER_TYPES_NAME = "parameterTypes";
     public static final String ARGUMENTS_NAME = "arguments";
     public static final String EXEC_ACTION_NAME = "execAction";
     public static final String METHOD_RETURN_NAME = "methodReturn";
     public static final String EXCEPTION_NAME = "exception";
     public static final String EXECUTED_CLASS_NAME = "executedClass";
+    public static final String TEST_RESULTS_NAME = "testResults";
+    public static final String TESTS_RUN_NAME = "testsRun";
     
     // Possible actions for the main thread
     public static final int EXEC_SHELL = 0;  // Execute a shell class
     public static final int TEST_SETUP = 1;
-    public static final int TEST_RUN = 2;
+    public static final int TEST_RUN = 2;  // run a list of test methods
     public static final int DISPOSE_WINDOWS = 3;
     public static final int EXIT_VM = 4;
     public static final int LOAD_INIT_CLASS = 5;  // load and initialize a class
@@ -107,6 +113,10 @@ public class ExecServer
     public static String className;
     public static String scopeId;
     public static ClassLoader classLoader = null; // null to use current loader.
+    public static String [] classNames;
+    public static byte [][] classBytes;
+    public static String batchCommands;
+    public static Object [] batchObjects;
     
     public static Object workerReturn;
     
@@ -119,6 +129,10 @@ public class ExecServer
     public static final String WORKER_RETURN_NAME = "workerReturn";
     public static final String SCOPE_ID_NAME = "scopeId";
     public static final String CLASSLOADER_NAME = "classLoader";
+    public static final String CLASSNAMES_NAME = "classNames";
+    public static final String CLASSBYTES_NAME = "classBytes";
+    public static final String BATCH_COMMANDS_NAME = "batchCommands";
+    public static final String BATCH_OBJECTS_NAME = "batchObjects";
     
     // possible actions for worker thread
     public static final int REMOVE_OBJECT = 0;
@@ -127,6 +141,9 @@ public class ExecServer
     public static final int NEW_LOADER    = 3;
     // EXIT_VM ( = 4) is also used in the worker thread
     public static final int LOAD_ALL      = 5; // load class and inner classes
+    public static final int DEFINE_CLASSES = 6; // define classes from bytecode
+    public static final int BATCH         = 7; // several actions (see runBatch)
+    public static final int TAKE_SNAPSHOT = 8; // of a collection (only in a batch)
 
     // the current class loader
     private static ClassLoader currentLoader;
@@ -208,6 +225,16 @@ public class ExecServer
                             System.exit(0);
                         case LOAD_ALL:
                             workerReturn = loadAllClasses(className);
+                            break;
+                        case DEFINE_CLASSES:
+                            workerReturn = defineClasses(classNames, classBytes);
+                            classNames = null;
+                            classBytes = null;
+                            break;
+                        case BATCH:
+                            workerReturn = runBatch(batchCommands, batchObjects);
+                            batchCommands = null;
+                            batchObjects = null;
                     }
                     // After any action, set the next action to exit. If connection to
                     // primary VM is lost, the secondary VM (i.e. this VM) will then exit.
@@ -336,7 +363,7 @@ public class ExecServer
             System.err.println("ExecServer.newLoader() Malformed URL=" + splits[index]);
         }
         
-        currentLoader = new URLClassLoader(urls);
+        currentLoader = new BJClassLoader(urls);
         
         synchronized (objectMaps) {
             objectMaps.clear();
@@ -419,6 +446,119 @@ public class ExecServer
         return cl;
     }
     
+    /**
+     * Define some classes in the current class loader from their bytecode,
+     * and load (but don't initialize) the first of them. Returns the loaded
+     * class, or null if the classes could not be defined (in which case they
+     * must be loaded from class files instead).
+     */
+    private static Class<?> defineClasses(String [] names, byte [][] bytes)
+    {
+        if (! (currentLoader instanceof BJClassLoader)) {
+            return null;
+        }
+        
+        try {
+            ((BJClassLoader) currentLoader).addClassDefinitions(names, bytes);
+            Class<?> c = Class.forName(names[0], false, currentLoader);
+            c.getFields(); // prepare class
+            return c;
+        }
+        catch (Throwable t) {
+            return null;
+        }
+    }
+    
+    /**
+     * Perform a batch of worker thread actions, so that the main VM can
+     * request all of them at once.
+     * 
+     * <p>The commands string is a sequence of string fields, each written as
+     * its length in decimal, a colon, and then the string itself. Each
+     * command is an action number (one of ADD_OBJECT, REMOVE_OBJECT,
+     * LOAD_CLASS or TAKE_SNAPSHOT) followed by its arguments: the scope id
+     * and object name for ADD_OBJECT and REMOVE_OBJECT (ADD_OBJECT also
+     * takes the next object from the objects array), the class name for
+     * LOAD_CLASS, and the first element and the number of elements for
+     * TAKE_SNAPSHOT (which takes the collection from the objects array).
+     * 
+     * @return  an array with the result of each command: the class for
+     *          LOAD_CLASS (or null if it couldn't be loaded), the snapshot
+     *          for TAKE_SNAPSHOT (see CollectionSnapshot.take), and null for
+     *          the other actions.
+     */
+    private static Object[] runBatch(String commands, Object [] objects)
+    {
+        List<Object> results = new ArrayList<Object>();
+        int [] pos = new int[1];
+        int objectIndex = 0;
+        while (pos[0] < commands.length()) {
+            int action = Integer.parseInt(nextField(commands, pos));
+            switch (action) {
+                case ADD_OBJECT:
+                {
+                    String scope = nextField(commands, pos);
+                    addObject(scope, nextField(commands, pos), objects[objectIndex++]);
+                    results.add(null);
+                    break;
+                }
+                case REMOVE_OBJECT:
+                {
+                    String scope = nextField(commands, pos);
+                    removeObject(scope, nextField(commands, pos));
+                    results.add(null);
+                    break;
+                }
+                case TAKE_SNAPSHOT:
+                {
+                    int first = Integer.parseInt(nextField(commands, pos));
+                    int count = Integer.parseInt(nextField(commands, pos));
+                    results.add(CollectionSnapshot.take(objects[objectIndex++], first, count));
+                    break;
+                }
+                case LOAD_CLASS:
+                {
+                    String name = nextField(commands, pos);
+                    try {
+                        Class<?> c = Class.forName(name, false, currentLoader);
+                        c.getFields(); // prepare class
+                        results.add(c);
+                    }
+                    catch (Throwable t) {
+                        results.add(null);
+                    }
+                    break;
+                }
+                default:
+                    throw new IllegalArgumentException("Bad batch action: " + action);
+            }
+        }
+        return results.toArray();
+    }
+    
+    /**
+     * Read the next field from a batch command string (see runBatch), or
+     * from the descriptions in a collection snapshot (see CollectionSnapshot).
+     * 
+     * @param pos  a single-element array holding the position at which to
+     *             read; it is updated to the position of the next field
+     */
+    public static String nextField(String commands, int [] pos)
+    {
+        int colon = commands.indexOf(':', pos[0]);
+        int length = Integer.parseInt(commands.substring(pos[0], colon));
+        pos[0] = colon + 1 + length;
+        return commands.substring(colon + 1, pos[0]);
+    }
+    
+    /**
+     * Write a field, in the form that nextField reads.
+     */
+    public static void addField(StringBuffer fields, String field)
+    {
+        fields.append(field.length()).append(':').append(field);
+    }
+    
     /**
      * Load a class, and all its inner classes.
      */
@@ -582,22 +722,68 @@ public class ExecServer
         return null;
     }
 
+    /**
+     * Run a list of JUnit test methods, one after another. The result of each
+     * (see runTestMethod) is put in testResults as soon as the test has run,
+     * and testsRun is then increased, so that the results can be read and
+     * shown while the remaining tests run.
+     * 
+     * @param tests  the class name and method name of each test, written
+     *               as for the commands of runBatch
+     */
+    private static void runTests(String tests)
+    {
+        List<String> names = new ArrayList<String>();
+        int [] pos = new int[1];
+        while (pos[0] < tests.length()) {
+            names.add(nextField(tests, pos));
+        }
+        
+        testsRun = 0;
+        testResults = new String[names.size() / 2];
+        for (int i = 0; i < testResults.length; i++) {
+            testResults[i] = runTest(names.get(i * 2), names.get(i * 2 + 1));
+            testsRun = i + 1;
+        }
+    }
+    
+    /**
+     * Run a JUnit test method, and return the result as runTestMethod does.
+     * If the test can't be run at all, the result is an error with no
+     * failure point.
+     */
+    static String runTest(String className, String methodName)
+    {
+        try {
+            return runTestMethod(className, methodName);
+        }
+        catch (Throwable t) {
+            recordException(t);
+            StringBuffer result = new StringBuffer();
+            addField(result, "error");
+            addField(result, "Internal invocation error");
+            addField(result, "");
+            return result.toString();
+        }
+    }
+
     /**
      * Execute a JUnit test method and return the result.<p>
      * 
-     * The array returned in case of failure or error contains:<br>
-     *  [0] = "failure" or "error" (string)<br>
+     * The result in case of failure or error holds these fields, each written
+     * as for the commands of runBatch:<br>
+     *  [0] = "failure" or "error"<br>
      *  [1] = the exception message (or "no exception message")<br>
      *  [2] = the stack trace as a string (or "no stack trace")<br>
      *  [3] = the name of the class in which the exception/failure occurred<br>
      *  [4] = the source filename for where the exception/failure occurred<br>
      *  [5] = the name of the method in which the exception/failure occurred<br>
-     *  [6] = the line number where the exception/failure occurred (a string)
+     *  [6] = the line number where the exception/failure occurred
      * 
-     * @return an array in case of failure or error, and null if the test ran
-     *         successfully.
+     * @return the result in case of failure or error, and null if the test
+     *         ran successfully.
      */
-    private static Object[] runTestMethod(String className, String methodName)
+    private static String runTestMethod(String className, String methodName)
     {
         // Debug.message("[VM] runTestMethod" + className + " " + methodName);
 
@@ -645,19 +831,8 @@ public class ExecServer
 
         if (tr.errorCount() == 1) {
             for (Enumeration<?> e = tr.errors(); e.hasMoreElements(); ) {
-                Object result[] = new Object[7];
                 TestFailure tf = (TestFailure)e.nextElement();
-
-                result[0] = tf.isFailure() ? "failure" : "error";
-                result[1] = tf.exceptionMessage() != null ? tf.exceptionMessage() : "no exception message";
-                result[2] = tf.trace() != null ? tf.trace() : "no trace";
-                StackTraceElement [] ste = tf.thrownException().getStackTrace();
-                result[3] = ste[0].getClassName();
-                result[4] = ste[0].getFileName();
-                result[5] = ste[0].getMethodName();
-                result[6] = String.valueOf(ste[0].getLineNumber());
-
-                return result;
+                return getTestResult(tf, tf.thrownException().getStackTrace()[0]);
             }
             // should not reach here
             throw new IllegalStateException("errorCount was 1 but found no errors");
@@ -665,12 +840,7 @@ public class ExecServer
 
         if (tr.failureCount() == 1) {
             for (Enumeration<?> e = tr.failures(); e.hasMoreElements(); ) {
-                Object result[] = new Object[7];
                 TestFailure tf = (TestFailure)e.nextElement();
-
-                result[0] = tf.isFailure() ? "failure" : "error";
-                result[1] = tf.exceptionMessage() != null ? tf.exceptionMessage() : "no exception message";
-                result[2] = tf.trace() != null ? tf.trace() : "no trace";
                 StackTraceElement [] ste = tf.thrownException().getStackTrace();
 
                 // search the stack trace backward until finding a class not
@@ -678,12 +848,7 @@ public class ExecServer
                 int i = 0;
                 while(i < ste.length && ste[i].getClassName().startsWith("junit."))
                     i++;
-                result[3] = ste[i].getClassName();
-                result[4] = ste[i].getFileName();
-                result[5] = ste[i].getMethodName();
-                result[6] = String.valueOf(ste[i].getLineNumber());
-
-                return result;
+                return getTestResult(tf, ste[i]);
             }
             // should not reach here
             throw new IllegalStateException("failureCount was 1 but found no errors");
@@ -692,6 +857,25 @@ public class ExecServer
         // success
         return null;
     }
+    
+    /**
+     * Get the result of a test which failed (see runTestMethod).
+     * 
+     * @param tf         the failure or error
+     * @param failPoint  where it occurred
+     */
+    private static String getTestResult(TestFailure tf, StackTraceElement failPoint)
+    {
+        StringBuffer result = new StringBuffer();
+        addField(result, tf.isFailure() ? "failure" : "error");
+        addField(result, tf.exceptionMessage() != null ? tf.exceptionMessage() : "no exception message");
+        addField(result, tf.trace() != null ? tf.trace() : "no trace");
+        addField(result, failPoint.getClassName());
+        addField(result, failPoint.getFileName() != null ? failPoint.getFileName() : "");
+        addField(result, failPoint.getMethodName());
+        addField(result, String.valueOf(failPoint.getLineNumber()));
+        return result.toString();
+    }
 
 //    private static Object executeCode(String code) throws Throwable
 //    {
@@ -861,7 +1045,8 @@ public class ExecServer
                             methodReturn = runTestSetUp(classToRun);
                             break;
                         case TEST_RUN:
-                            methodReturn = runTestMethod(classToRun, methodToRun);
+                            runTests(testsToRun);
+                            testsToRun = null;
                             break;
                         case DISPOSE_WINDOWS:
                             disposeWindows();
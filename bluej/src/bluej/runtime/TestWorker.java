@@ -0,0 +1,99 @@
+/*
+ This file is part of the BlueJ program. 
+ Copyright (C) 2010  Michael Kolling and John Rosenberg 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package bluej.runtime;
+
+import java.io.*;
+
+/**
+ * The main class of a test VM: a VM, separate from the debug VM, which runs
+ * some of the unit tests of a project when they are run in parallel. Its
+ * class path holds the project's classes.<p>
+ * 
+ * The commands are read from the standard input. Each is the name of a test
+ * class, the number of test methods to run, and then their names. The
+ * result of each test is written to the standard output as soon as the test
+ * has run: it is empty if the test passed, and is otherwise as returned by
+ * ExecServer.runTestMethod. The commands and results are written as fields
+ * (see readField). Anything the tests print goes to the standard error.
+ */
+public class TestWorker
+{
+    public static void main(String[] args)
+        throws IOException
+    {
+        Reader commands = new BufferedReader(new InputStreamReader(System.in, "UTF-8"));
+        Writer results = new BufferedWriter(new OutputStreamWriter(System.out, "UTF-8"));
+        System.setIn(new ByteArrayInputStream(new byte[0]));
+        System.setOut(System.err);
+        ExecServer.setClassLoader(TestWorker.class.getClassLoader());
+        
+        String className = readField(commands);
+        while (className != null) {
+            int count = Integer.parseInt(readField(commands));
+            for (int i = 0; i < count; i++) {
+                String result = ExecServer.runTest(className, readField(commands));
+                StringBuffer field = new StringBuffer();
+                ExecServer.addField(field, result != null ? result : "");
+                results.write(field.toString());
+                results.flush();
+            }
+            className = readField(commands);
+        }
+        
+        // Windows the tests opened would otherwise keep the VM running
+        System.exit(0);
+    }
+    
+    /**
+     * Read a field, written as its length in decimal, a colon, and then the
+     * field itself (as by ExecServer.addField), from a stream.
+     * 
+     * @return  the field, or null at the end of the stream
+     */
+    public static String readField(Reader in)
+        throws IOException
+    {
+        int length = 0;
+        int c = in.read();
+        if (c == -1) {
+            return null;
+        }
+        while (c != ':') {
+            if (c < '0' || c > '9') {
+                throw new IOException("Bad field length");
+            }
+            length = length * 10 + (c - '0');
+            c = in.read();
+        }
+        
+        char [] field = new char[length];
+        int read = 0;
+        while (read < length) {
+            int n = in.read(field, read, length - read);
+            if (n == -1) {
+                throw new EOFException();
+            }
+            read += n;
+        }
+        return new String(field);
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ This file is part of the BlueJ program. 
+ Copyright (C) 2010  Michael Kolling and John Rosenberg 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package bluej.terminal;
+
+/**
+ * A buffer for output on its way to the BlueJ terminal. Implemented with
+ * a circular array.
+ * 
+ * <p>Output is put in the buffer by the threads which copy it from the debug
+ * VM, and taken out, all at once, on the event thread. A writer waits only
+ * when the buffer is full, so a program producing a lot of output is not
+ * held up while each small piece of it is displayed. Whenever output is put
+ * in the empty buffer, and whenever a writer has to wait because it is full,
+ * the buffer asks (by running a given task) for it to be emptied.
+ */
+public final class OutputBuffer
+{
+    private char[] buffer;
+    private int bufferNextFull = 0;  // first full position
+    private int bufferLength = 0;    // number of full positions
+    private Runnable flushRequest;
+    
+    /**
+     * Create an output buffer.
+     * 
+     * @param size          the number of characters the buffer can hold
+     * @param flushRequest  a task which arranges for take() to be called; it
+     *                      must not wait for it to be called
+     */
+    public OutputBuffer(int size, Runnable flushRequest)
+    {
+        buffer = new char[size];
+        this.flushRequest = flushRequest;
+    }
+    
+    /**
+     * Put characters in the buffer, waiting for space as necessary.
+     * 
+     * @throws InterruptedException  if interrupted while waiting for space;
+     *          some of the characters may have been put in the buffer
+     */
+    public synchronized void write(char[] cbuf, int off, int len)
+        throws InterruptedException
+    {
+        while (len > 0) {
+            if (bufferLength == buffer.length) {
+                flushRequest.run();
+                do {
+                    wait();  // sleep until the buffer is emptied
+                }
+                while (bufferLength == buffer.length);
+            }
+            int nextFree = (bufferNextFull + bufferLength) % buffer.length;
+            int n = Math.min(len, buffer.length - bufferLength);
+            int first = Math.min(n, buffer.length - nextFree);
+            System.arraycopy(cbuf, off, buffer, nextFree, first);
+            System.arraycopy(cbuf, off + first, buffer, 0, n - first);
+            if (bufferLength == 0) {
+                flushRequest.run();
+            }
+            bufferLength += n;
+            off += n;
+            len -= n;
+        }
+    }
+    
+    /**
+     * Check whether the buffer is full (so that a writer may be waiting).
+     */
+    public synchronized boolean isFull()
+    {
+        return bufferLength == buffer.length;
+    }
+    
+    /**
+     * Take all the characters out of the buffer.
+     * 
+     * @return  the characters, or null if the buffer is empty
+     */
+    public synchronized String take()
+    {
+        if (bufferLength == 0) {
+            return null;
+        }
+        
+        String s;
+        int first = Math.min(bufferLength, buffer.length - bufferNextFull);
+        if (first == bufferLength) {
+            s = new String(buffer, bufferNextFull, bufferLength);
+        }
+        else {
+            char [] chars = new char[bufferLength];
+            System.arraycopy(buffer, bufferNextFull, chars, 0, first);
+            System.arraycopy(buffer, 0, chars, first, bufferLength - first);
+            s = new String(chars);
+        }
+        bufferNextFull = 0;
+        bufferLength = 0;
+        notifyAll();
+        return s;
+    }
+}
@@ -0,0 +1,325 @@
+/*
+ This file is part of the BlueJ program. 
+ Copyright (C) 2010  Michael Kolling and John Rosenberg 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package bluej.terminal;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.text.AbstractDocument;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Position;
+import javax.swing.text.Segment;
+import javax.swing.undo.UndoableEdit;
+
+/**
+ * Storage for the text of the terminal document. The text is held in a
+ * circular array, so that text can be removed from the start (as the oldest
+ * lines are dropped from the terminal) as cheaply as it is added at the end,
+ * however much text the terminal holds.
+ * 
+ * <p>Positions are kept in offset order. Those past an insertion or removal
+ * point are updated one by one (and, for the terminal, there are few past
+ * the end of the text), but removing from the start moves them all at once
+ * by changing the base they are measured from.
+ * 
+ * <p>The terminal is not undoable, so no undo information is kept.
+ */
+final class RingContent implements AbstractDocument.Content
+{
+    private static final int INITIAL_CAPACITY = 1024;
+    
+    private char[] buffer;
+    private int mask;      // buffer.length - 1; the length is a power of two
+    private int start;     // buffer index of the first character
+    private int length;    // number of characters, including the final newline
+    
+    /** The number of characters ever removed from the start */
+    private long removed;
+    
+    private List<Mark> marks = new ArrayList<Mark>();
+    private ReferenceQueue<Pos> unusedQueue = new ReferenceQueue<Pos>();
+    private int unusedMarks;
+    
+    /**
+     * Create the content of an empty document (which, as for other documents,
+     * consists of a single newline).
+     */
+    RingContent()
+    {
+        buffer = new char[INITIAL_CAPACITY];
+        mask = INITIAL_CAPACITY - 1;
+        buffer[0] = '\n';
+        length = 1;
+    }
+    
+    public int length()
+    {
+        return length;
+    }
+    
+    public Position createPosition(int offset) throws BadLocationException
+    {
+        if (offset < 0 || offset > length) {
+            throw new BadLocationException("Invalid position", offset);
+        }
+        removeUnusedMarks();
+        
+        // Keep the marks in order: put the new one after those at or before it
+        int low = 0;
+        int high = marks.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (getOffset(marks.get(mid)) <= offset) {
+                low = mid + 1;
+            }
+            else {
+                high = mid;
+            }
+        }
+        
+        Pos pos = new Pos();
+        pos.mark = new Mark(pos, unusedQueue);
+        pos.mark.location = offset + removed;
+        marks.add(low, pos.mark);
+        return pos;
+    }
+    
+    public UndoableEdit insertString(int where, String str) throws BadLocationException
+    {
+        if (where < 0 || where >= length) {
+            throw new BadLocationException("Invalid insert", where);
+        }
+        int count = str.length();
+        if (count == 0) {
+            return null;
+        }
+        setCapacity(length + count);
+        
+        // Make a gap by moving whichever of the text before and after it is
+        // shorter
+        if (where < length - where) {
+            start = (start - count) & mask;
+            move(count, 0, where);
+        }
+        else {
+            move(where, where + count, length - where);
+        }
+        int index = (start + where) & mask;
+        int firstPart = Math.min(count, buffer.length - index);
+        str.getChars(0, firstPart, buffer, index);
+        str.getChars(firstPart, count, buffer, 0);
+        length += count;
+        
+        // Marks at the insertion point move with the text after it, except
+        // at the very start.
+        int moveFrom = Math.max(where, 1);
+        for (int i = marks.size() - 1; i >= 0; i--) {
+            Mark mark = marks.get(i);
+            if (getOffset(mark) < moveFrom) {
+                break;
+            }
+            mark.location += count;
+        }
+        return null;
+    }
+    
+    public UndoableEdit remove(int where, int nitems) throws BadLocationException
+    {
+        if (where < 0 || nitems < 0 || where + nitems >= length) {
+            throw new BadLocationException("Invalid remove", where + nitems);
+        }
+        if (nitems == 0) {
+            return null;
+        }
+        
+        if (where < length - where - nitems) {
+            move(0, nitems, where);
+            start = (start + nitems) & mask;
+        }
+        else {
+            move(where + nitems, where, length - where - nitems);
+        }
+        length -= nitems;
+        
+        if (where == 0) {
+            // Marks in the removed text go to zero (as getOffset() returns
+            // zero for any location before the start), the others back
+            removed += nitems;
+        }
+        else {
+            for (int i = marks.size() - 1; i >= 0; i--) {
+                Mark mark = marks.get(i);
+                int offset = getOffset(mark);
+                if (offset < where) {
+                    break;
+                }
+                mark.location = Math.max(offset - nitems, where) + removed;
+            }
+        }
+        
+        if (buffer.length > INITIAL_CAPACITY && length < buffer.length / 4) {
+            setCapacity(length);
+        }
+        return null;
+    }
+    
+    public String getString(int where, int len) throws BadLocationException
+    {
+        Segment segment = new Segment();
+        getChars(where, len, segment);
+        return new String(segment.array, segment.offset, segment.count);
+    }
+    
+    public void getChars(int where, int len, Segment txt) throws BadLocationException
+    {
+        if (where < 0 || len < 0 || where + len > length) {
+            throw new BadLocationException("Invalid range", where + len);
+        }
+        int index = (start + where) & mask;
+        if (index + len <= buffer.length) {
+            txt.array = buffer;
+            txt.offset = index;
+            txt.count = len;
+        }
+        else if (txt.isPartialReturn()) {
+            txt.array = buffer;
+            txt.offset = index;
+            txt.count = buffer.length - index;
+        }
+        else {
+            int firstPart = buffer.length - index;
+            txt.array = new char[len];
+            txt.offset = 0;
+            txt.count = len;
+            System.arraycopy(buffer, index, txt.array, 0, firstPart);
+            System.arraycopy(buffer, 0, txt.array, firstPart, len - firstPart);
+        }
+    }
+    
+    private int getOffset(Mark mark)
+    {
+        return (int) Math.max(mark.location - removed, 0);
+    }
+    
+    /**
+     * Move characters within the text. The ranges may overlap.
+     */
+    private void move(int from, int to, int count)
+    {
+        if (to < from) {
+            for (int i = 0; i < count; i++) {
+                buffer[(start + to + i) & mask] = buffer[(start + from + i) & mask];
+            }
+        }
+        else {
+            for (int i = count - 1; i >= 0; i--) {
+                buffer[(start + to + i) & mask] = buffer[(start + from + i) & mask];
+            }
+        }
+    }
+    
+    /**
+     * Make the buffer big enough for the given number of characters: at
+     * least that size if it is too small, or (if it is too big) twice that
+     * size. The text is moved to the start of a new buffer.
+     */
+    private void setCapacity(int required)
+    {
+        if (required <= buffer.length && buffer.length / 4 <= required) {
+            return;
+        }
+        int capacity = INITIAL_CAPACITY;
+        while (capacity < required * 2 && capacity > 0) {
+            capacity <<= 1;
+        }
+        if (capacity <= 0) {
+            throw new OutOfMemoryError("Terminal text too long");
+        }
+        
+        char[] newBuffer = new char[capacity];
+        int firstPart = Math.min(length, buffer.length - start);
+        System.arraycopy(buffer, start, newBuffer, 0, firstPart);
+        System.arraycopy(buffer, 0, newBuffer, firstPart, length - firstPart);
+        buffer = newBuffer;
+        mask = capacity - 1;
+        start = 0;
+    }
+    
+    /**
+     * Forget the marks of positions which are no longer referenced, once
+     * there are enough of them to make it worthwhile.
+     */
+    private void removeUnusedMarks()
+    {
+        while (unusedQueue.poll() != null) {
+            unusedMarks++;
+        }
+        if (unusedMarks < 32 || unusedMarks < marks.size() / 2) {
+            return;
+        }
+        
+        List<Mark> usedMarks = new ArrayList<Mark>(marks.size());
+        for (Mark mark : marks) {
+            if (mark.get() != null) {
+                usedMarks.add(mark);
+            }
+        }
+        marks = usedMarks;
+        
+        // Those still queued have been removed too
+        while (unusedQueue.poll() != null) { }
+        unusedMarks = 0;
+    }
+    
+    /**
+     * The record of a position's location, which is forgotten when the
+     * position is no longer referenced.
+     */
+    private static final class Mark extends WeakReference<Pos>
+    {
+        /** The position's offset plus the characters removed from the start */
+        long location;
+        
+        Mark(Pos pos, ReferenceQueue<Pos> queue)
+        {
+            super(pos, queue);
+        }
+    }
+    
+    private final class Pos implements Position
+    {
+        Mark mark;
+        
+        public int getOffset()
+        {
+            return RingContent.this.getOffset(mark);
+        }
+        
+        @Override
+        public String toString()
+        {
+            return Integer.toString(getOffset());
+        }
+    }
+}
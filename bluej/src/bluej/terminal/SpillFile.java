@@ -0,0 +1,138 @@
+/*
+ This file is part of the BlueJ program. 
+ Copyright (C) 2010  Michael Kolling and John Rosenberg 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package bluej.terminal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+
+/**
+ * A temporary file holding lines of terminal output which are no longer
+ * kept in memory. Lines are added at the end, and can be read back in
+ * chunks of CHUNK_LINES lines, counting from the first line written.
+ * 
+ * <p>Characters are stored as two bytes each, so that the position of any
+ * character in the file is known; the position of the start of each chunk
+ * is recorded as it is written.
+ */
+final class SpillFile
+{
+    /** The number of lines in each chunk */
+    static final int CHUNK_LINES = 1000;
+    
+    private static final String ENCODING = "UTF-16BE";
+    
+    private File file;
+    private RandomAccessFile data;
+    
+    /** The character position of the start of each chunk */
+    private long[] chunkStarts = new long[16];
+    private int lineCount;
+    private long charCount;
+    
+    /**
+     * Create a new, empty, temporary file.
+     */
+    SpillFile() throws IOException
+    {
+        file = File.createTempFile("bluej-terminal", ".txt");
+        file.deleteOnExit();
+        data = new RandomAccessFile(file, "rw");
+    }
+    
+    /**
+     * Get the number of lines written to the file.
+     */
+    int getLineCount()
+    {
+        return lineCount;
+    }
+    
+    /**
+     * Add lines at the end of the file.
+     * 
+     * @param lines  the text of one or more lines; the last must be ended
+     *               with a newline.
+     */
+    void write(String lines) throws IOException
+    {
+        data.seek(charCount * 2);
+        data.write(lines.getBytes(ENCODING));
+        
+        int length = lines.length();
+        for (int i = 0; i < length; i++) {
+            if (lines.charAt(i) == '\n') {
+                lineCount++;
+                if (lineCount % CHUNK_LINES == 0) {
+                    int chunk = lineCount / CHUNK_LINES;
+                    if (chunk == chunkStarts.length) {
+                        long[] newStarts = new long[chunk * 2];
+                        System.arraycopy(chunkStarts, 0, newStarts, 0, chunk);
+                        chunkStarts = newStarts;
+                    }
+                    chunkStarts[chunk] = charCount + i + 1;
+                }
+            }
+        }
+        charCount += length;
+    }
+    
+    /**
+     * Read a chunk of lines back from the file.
+     * 
+     * @param chunk  the chunk number; the chunk's first line is
+     *               chunk * CHUNK_LINES. It must be a whole chunk.
+     */
+    String readChunk(int chunk) throws IOException
+    {
+        long chunkStart = chunkStarts[chunk];
+        byte[] bytes = new byte[(int) (chunkStarts[chunk + 1] - chunkStart) * 2];
+        data.seek(chunkStart * 2);
+        data.readFully(bytes);
+        return new String(bytes, ENCODING);
+    }
+    
+    /**
+     * Copy the first chunks of the file to a writer.
+     * 
+     * @param chunks  the number of whole chunks to copy
+     */
+    void copyTo(Writer writer, int chunks) throws IOException
+    {
+        for (int i = 0; i < chunks; i++) {
+            writer.write(readChunk(i));
+        }
+    }
+    
+    /**
+     * Close and delete the file.
+     */
+    void delete()
+    {
+        try {
+            data.close();
+        }
+        catch (IOException ioe) {}
+        file.delete();
+    }
+}
@@ -23,8 +23,14 @@ package bluej.terminal;
 
 import java.awt.datatransfer.UnsupportedFlavorException;
 import java.io.IOException;
+import java.io.Writer;
+
 import javax.swing.JTextArea;
 import javax.swing.text.BadLocationException;
+import javax.swing.text.Caret;
+import javax.swing.text.DefaultCaret;
+import javax.swing.text.Document;
+import javax.swing.text.PlainDocument;
 
 import bluej.utility.Debug;
 import java.awt.Toolkit;
@@ -34,6 +40,11 @@ import java.awt.datatransfer.Transferable;
 
 /**
  * A customised text area for use in the BlueJ text terminal.
+ * 
+ * <p>Normally only the last BUFFER_LINES lines of output are kept. With
+ * unlimited buffering, all output is kept, but only the last MEMORY_LINES
+ * lines (or so) in memory: older lines are moved to a temporary file, and
+ * read back a chunk at a time if the user scrolls up to them.
  *
  * @author  Michael Kolling
  * @version $Id: TermTextArea.java 7054 2010-01-27 03:58:25Z davmac $
@@ -41,8 +52,25 @@ import java.awt.datatransfer.Transferable;
 public final class TermTextArea extends JTextArea
 {
     private static final int BUFFER_LINES = 48;
+    private static final int MEMORY_LINES = 10000;
 
     private boolean unlimitedBuffer = false;
+    
+    /** The file holding output which has been removed from the text */
+    private SpillFile spillFile;
+    private boolean spillFailed = false;
+    /**
+     * The number of lines of output before the text, always a whole number
+     * of chunks. These are all in the spill file (as may be some lines of the
+     * text, if they have been read back).
+     */
+    private int spilledLines = 0;
+    /**
+     * The number of lines at the start of the text which have been read back
+     * from the spill file. These are allowed in addition to MEMORY_LINES, so
+     * that output read back for the user is not removed again straight away.
+     */
+    private int readBackLines = 0;
 
     private InputBuffer buffer;
     private Terminal terminal;
@@ -57,17 +85,63 @@ public final class TermTextArea extends JTextArea
         this.terminal = terminal;
     }
 
+    @Override
+    protected Document createDefaultModel()
+    {
+        return new PlainDocument(new RingContent());
+    }
+
     public void setUnlimitedBuffering(boolean arg)
     {
         unlimitedBuffer = arg;
+        if (!unlimitedBuffer) {
+            discardSpilledOutput();
+        }
+    }
+    
+    @Override
+    public void setText(String t)
+    {
+        discardSpilledOutput();
+        super.setText(t);
+    }
+    
+    /**
+     * Write all the output, including any which has been moved out of the
+     * text, to a writer.
+     */
+    @Override
+    public void write(Writer out) throws IOException
+    {
+        if (spilledLines != 0) {
+            spillFile.copyTo(out, spilledLines / SpillFile.CHUNK_LINES);
+        }
+        super.write(out);
     }
 
     @Override
     public void append(String s)
     {
+        if(!unlimitedBuffer) {
+            // If the new text holds enough lines to fill the buffer, it
+            // replaces all the old text; don't insert lines which would only
+            // be removed again
+            int linePos = s.length();
+            for(int i = 0; i < BUFFER_LINES && linePos != -1; i++) {
+                linePos = s.lastIndexOf('\n', linePos - 1);
+            }
+            if(linePos != -1) {
+                setText(s.substring(linePos + 1));
+                return;
+            }
+        }
+        
         super.append(s);
 
-        if(!unlimitedBuffer) {             // possibly remove top line
+        if(unlimitedBuffer) {
+            spillOldLines();
+        }
+        else {             // possibly remove top line
             int lines = getLineCount();
             if(lines > BUFFER_LINES) {
                 try {
@@ -81,6 +155,104 @@ public final class TermTextArea extends JTextArea
         }
     }
 
+    /**
+     * Once there are more than MEMORY_LINES lines (besides any which have
+     * been read back), remove whole chunks of lines from the start of the
+     * text, writing them to the spill file if they are not there already.
+     */
+    private void spillOldLines()
+    {
+        int lines = getLineCount();
+        if (lines <= MEMORY_LINES + readBackLines) {
+            return;
+        }
+        // The lines read back are at the start, so they all go
+        int removeLines = ((lines - MEMORY_LINES) / SpillFile.CHUNK_LINES + 1) * SpillFile.CHUNK_LINES;
+        readBackLines = 0;
+        
+        try {
+            int removeLength = getLineStartOffset(removeLines);
+            int storedLines = (spillFile == null) ? 0 : spillFile.getLineCount() - spilledLines;
+            if (!spillFailed && storedLines < removeLines) {
+                try {
+                    if (spillFile == null) {
+                        spillFile = new SpillFile();
+                    }
+                    int storeFrom = getLineStartOffset(storedLines);
+                    spillFile.write(getText(storeFrom, removeLength - storeFrom));
+                }
+                catch (IOException ioe) {
+                    // Keep the memory use down anyway, losing the old output
+                    Debug.reportError("could not save terminal output: " + ioe);
+                    discardSpilledOutput();
+                    spillFailed = true;
+                }
+            }
+            if (!spillFailed) {
+                spilledLines += removeLines;
+            }
+            getDocument().remove(0, removeLength);
+        }
+        catch(BadLocationException exc) {
+            Debug.reportError("bad location in terminal operation");
+        }
+    }
+    
+    /**
+     * Read the chunk of output before the text back from the spill file,
+     * and put it at the start of the text.
+     * 
+     * @return  the height of the added text, or 0 if there is none
+     */
+    int showEarlierOutput()
+    {
+        if (spilledLines == 0) {
+            return 0;
+        }
+        
+        // Don't let the caret, at the end of the text, be moved (which would
+        // scroll the text to show it)
+        Caret caret = getCaret();
+        int updatePolicy = 0;
+        if (caret instanceof DefaultCaret) {
+            updatePolicy = ((DefaultCaret) caret).getUpdatePolicy();
+            ((DefaultCaret) caret).setUpdatePolicy(DefaultCaret.NEVER_UPDATE);
+        }
+        try {
+            String chunk = spillFile.readChunk(spilledLines / SpillFile.CHUNK_LINES - 1);
+            getDocument().insertString(0, chunk, null);
+            spilledLines -= SpillFile.CHUNK_LINES;
+            readBackLines += SpillFile.CHUNK_LINES;
+            return SpillFile.CHUNK_LINES * getRowHeight();
+        }
+        catch (IOException ioe) {
+            Debug.reportError("could not read saved terminal output: " + ioe);
+            return 0;
+        }
+        catch (BadLocationException exc) {
+            Debug.reportError("bad location in terminal operation");
+            return 0;
+        }
+        finally {
+            if (caret instanceof DefaultCaret) {
+                ((DefaultCaret) caret).setUpdatePolicy(updatePolicy);
+            }
+        }
+    }
+    
+    /**
+     * Forget the output which has been moved out of the text.
+     */
+    private void discardSpilledOutput()
+    {
+        if (spillFile != null) {
+            spillFile.delete();
+            spillFile = null;
+        }
+        spilledLines = 0;
+        readBackLines = 0;
+    }
+
     /*
      * Overrides the default method to stop it append to the JTextArea straight
      * away, instead we add the resultant string to our pasteBuffer for use
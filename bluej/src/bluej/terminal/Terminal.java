@@ -25,7 +25,6 @@ import java.awt.*;
 import java.awt.event.*;
 import java.awt.print.PrinterJob;
 import java.io.*;
-import java.lang.reflect.InvocationTargetException;
 
 import javax.swing.*;
 import javax.swing.text.BadLocationException;
@@ -72,6 +71,11 @@ public final class Terminal extends JFrame
     private static final String RECORDMETHODCALLSPROPNAME = "bluej.terminal.recordcalls";
     private static final String CLEARONMETHODCALLSPROPNAME = "bluej.terminal.clearscreen";
     private static final String UNLIMITEDBUFFERINGCALLPROPNAME = "bluej.terminal.buffering";
+    
+    // the size of the buffers for output from the debug VM, and how long
+    // (in milliseconds) output is collected before it is displayed
+    private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+    private static final int OUTPUT_DELAY = 30;
         
     // initialise to config value or zero.
     private static int terminalFontSize = Config.getPropInteger(
@@ -104,6 +108,16 @@ public final class Terminal extends JFrame
     private Reader in = new TerminalReader();
     private Writer out = new TerminalWriter(false);
     private Writer err = new TerminalWriter(true);
+    
+    private Runnable flushRequest = new Runnable() {
+        public void run()
+        {
+            scheduleFlush();
+        }
+    };
+    private OutputBuffer outBuffer = new OutputBuffer(OUTPUT_BUFFER_SIZE, flushRequest);
+    private OutputBuffer errBuffer = new OutputBuffer(OUTPUT_BUFFER_SIZE, flushRequest);
+    private Timer outputTimer;
 
     /** Used for lazy initialisation  */
     private boolean initialised = false; 
@@ -220,6 +234,7 @@ public final class Terminal extends JFrame
     public void clear()
     {
         initialise();
+        flushOutput();
         text.setText("");
         if(errorText!=null) {
             errorText.setText("");
@@ -261,9 +276,19 @@ public final class Terminal extends JFrame
     }
 
     /**
-     * Write some text to the terminal.
+     * Write some text to the terminal. Any output from the debug VM which
+     * has not yet been displayed is written first.
      */
     public void writeToTerminal(String s)
+    {
+        flushOutput();
+        appendToTerminal(s);
+    }
+    
+    /**
+     * Write some text to the terminal, after any text already displayed.
+     */
+    private void appendToTerminal(String s)
     {
         prepare();
         
@@ -307,6 +332,55 @@ public final class Terminal extends JFrame
     }
 
     private StringBuffer erroutBuffer = new StringBuffer(120);
+    
+    /**
+     * Display all the output from the debug VM which is waiting in the
+     * output buffers. Must be called on the event thread.
+     */
+    private void flushOutput()
+    {
+        String s = outBuffer.take();
+        if (s != null) {
+            initialise();
+            appendToTerminal(s);
+        }
+        s = errBuffer.take();
+        if (s != null) {
+            initialise();
+            writeToErrorOut(s);
+        }
+    }
+    
+    /**
+     * Arrange for the output buffers to be flushed shortly, so that output
+     * arriving in the meantime is displayed together with the output already
+     * there. If a buffer is full, it is flushed straight away. May be called
+     * on any thread.
+     */
+    private void scheduleFlush()
+    {
+        EventQueue.invokeLater(new Runnable() {
+            public void run()
+            {
+                if (outBuffer.isFull() || errBuffer.isFull()) {
+                    flushOutput();
+                    return;
+                }
+                if (outputTimer == null) {
+                    outputTimer = new Timer(OUTPUT_DELAY, new ActionListener() {
+                        public void actionPerformed(ActionEvent e)
+                        {
+                            flushOutput();
+                        }
+                    });
+                    outputTimer.setRepeats(false);
+                }
+                if (! outputTimer.isRunning()) {
+                    outputTimer.start();
+                }
+            }
+        });
+    }
 
     
     /**
@@ -502,6 +576,21 @@ public final class Terminal extends JFrame
         setIconImage(Config.getImage("image.icon.terminal"));        
         text = new TermTextArea(rows, columns, buffer, this);
         scrollPane = new JScrollPane(text);
+        scrollPane.getVerticalScrollBar().addAdjustmentListener(new AdjustmentListener() {
+            public void adjustmentValueChanged(AdjustmentEvent e)
+            {
+                // When scrolled to the top, show any earlier output which was
+                // moved out of the text, keeping the same lines in view
+                JScrollBar scrollBar = scrollPane.getVerticalScrollBar();
+                if (e.getValue() == scrollBar.getMinimum()) {
+                    int addedHeight = text.showEarlierOutput();
+                    if (addedHeight != 0) {
+                        scrollPane.validate();
+                        scrollBar.setValue(scrollBar.getMinimum() + addedHeight);
+                    }
+                }
+            }
+        });
         text.setFont(getTerminalFont());
         text.setEditable(false);
         text.setLineWrap(false);
@@ -800,28 +889,15 @@ public final class Terminal extends JFrame
             isErrorOut = isError;
         }
 
-        public void write(final char[] cbuf, final int off, final int len)
+        public void write(char[] cbuf, int off, int len)
         {
+            // The output is displayed in batches, on the event thread. The
+            // writer waits only if the output buffer is full; this limits the
+            // output to the speed at which it can be displayed, so the UI
+            // still responds to user input even if the output is really gushing.
+            OutputBuffer buffer = isErrorOut ? errBuffer : outBuffer;
             try {
-                // We use invokeAndWait so that terminal output is limited to
-                // the processing speed of the event queue. This means the UI
-                // will still respond to user input even if the output is really
-                // gushing.
-                EventQueue.invokeAndWait(new Runnable() {
-                    public void run()
-                    {
-                        initialise();
-                        if(isErrorOut) {
-                            writeToErrorOut(new String(cbuf, off, len));
-                        }
-                        else {
-                            writeToTerminal(new String(cbuf, off, len));
-                        }
-                    }
-                });
-            }
-            catch (InvocationTargetException ite) {
-                ite.printStackTrace();
+                buffer.write(cbuf, off, len);
             }
             catch (InterruptedException ie) {}
         }
@@ -38,6 +38,11 @@ import bluej.utility.JavaUtils;
 public final class ConstructorView extends CallableView
 {
     protected Constructor cons;
+    
+    // Formatted descriptions, kept once found
+    private String signature;
+    private String shortDesc;
+    private String longDesc;
 
     /**
      * Constructor.
@@ -80,7 +85,10 @@ public final class ConstructorView extends CallableView
      *  name(type,type,type)
      */
     public String getSignature() {
-        return JavaUtils.getSignature(cons);
+        if (signature == null) {
+            signature = JavaUtils.getSignature(cons);
+        }
+        return signature;
     }
 
     /**
@@ -89,7 +97,10 @@ public final class ConstructorView extends CallableView
      */
     public String getShortDesc() 
     {
-        return JavaUtils.getJavaUtils().getShortDesc(cons, getParamNames());       
+        if (shortDesc == null) {
+            shortDesc = JavaUtils.getJavaUtils().getShortDesc(cons, getParamNames());
+        }
+        return shortDesc;
     }
 
     /**
@@ -99,7 +110,10 @@ public final class ConstructorView extends CallableView
      */
     public String getLongDesc() 
     {
-        return JavaUtils.getJavaUtils().getLongDesc(cons, getParamNames());
+        if (longDesc == null) {
+            longDesc = JavaUtils.getJavaUtils().getLongDesc(cons, getParamNames());
+        }
+        return longDesc;
     }
     
     /**
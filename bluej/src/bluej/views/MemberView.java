@@ -32,7 +32,7 @@ import java.lang.reflect.Modifier;
 public abstract class MemberView
 {
     private View view;
-    private Comment comment;
+    private volatile Comment comment;
 
     protected MemberView(View view)
     {
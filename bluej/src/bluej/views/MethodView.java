@@ -41,6 +41,11 @@ public class MethodView extends CallableView implements Comparable<MethodView>
 {
     protected Method method;
     protected View returnType;
+    
+    // Formatted descriptions, kept once found
+    private String signature;
+    private String shortDesc;
+    private String longDesc;
 
     /**
      * Constructor.
@@ -85,7 +90,10 @@ public class MethodView extends CallableView implements Comparable<MethodView>
      */
     public String getSignature()
     {
-        return JavaUtils.getSignature(method);
+        if (signature == null) {
+            signature = JavaUtils.getSignature(method);
+        }
+        return signature;
     }
     
     /**
@@ -114,7 +122,10 @@ public class MethodView extends CallableView implements Comparable<MethodView>
      * to the signature, but it has parameter names in it instead of types.
      */
     public String getShortDesc() {
-        return JavaUtils.getJavaUtils().getShortDesc(method, getParamNames());
+        if (shortDesc == null) {
+            shortDesc = JavaUtils.getJavaUtils().getShortDesc(method, getParamNames());
+        }
+        return shortDesc;
     }
 
     /**
@@ -137,7 +148,10 @@ public class MethodView extends CallableView implements Comparable<MethodView>
      * included.
      */
     public String getLongDesc() {
-        return JavaUtils.getJavaUtils().getLongDesc(method, getParamNames());
+        if (longDesc == null) {
+            longDesc = JavaUtils.getJavaUtils().getLongDesc(method, getParamNames());
+        }
+        return longDesc;
     }
     
     /**
@@ -152,7 +166,7 @@ public class MethodView extends CallableView implements Comparable<MethodView>
     public String getLongDesc(Map<String,GenTypeParameter> genericParams)
     {
         if (genericParams == null && isStatic()) {
-            return JavaUtils.getJavaUtils().getLongDesc(method, getParamNames());
+            return getLongDesc();
         }
         else {
             return JavaUtils.getJavaUtils().getLongDesc(method, getParamNames(), genericParams);
@@ -22,11 +22,15 @@
 package bluej.views;
 
 import java.io.InputStream;
+import java.lang.ref.SoftReference;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+import bluej.classmgr.BPClassLoader;
 import bluej.debugger.gentype.GenTypeDeclTpar;
 import bluej.utility.JavaNames;
 import bluej.utility.JavaUtils;
@@ -48,70 +52,102 @@ public class View
     /** The class that this view is for **/
     protected Class<?> cl;
 
-    protected FieldView[] fields;
-    protected FieldView[] allFields;
-    protected ConstructorView[] constructors;
-    protected MethodView[] methods;
-    protected MethodView[] allMethods;
-    protected TypeParamView[] typeParams;
+    // The members are found when first asked for, while holding the lock on
+    // this view, and kept; the fields are volatile so that they can then be
+    // read without locking.
+    protected volatile FieldView[] fields;
+    protected volatile FieldView[] allFields;
+    protected volatile ConstructorView[] constructors;
+    protected volatile MethodView[] methods;
+    protected volatile MethodView[] allMethods;
+    protected volatile TypeParamView[] typeParams;
 
     protected Comment comment;
 
-    private static Map<Class<?>,View> views = new HashMap<Class<?>,View>();
+    /** Views of classes from loaders which last as long as BlueJ itself */
+    private static final ConcurrentMap<Class<?>,View> views = new ConcurrentHashMap<Class<?>,View>();
+    
+    /**
+     * Views of classes from other loaders. These are held softly, as a
+     * view refers to its class and would otherwise keep the loader alive.
+     */
+    private static final Map<Class<?>,SoftReference<View>> otherViews =
+        new WeakHashMap<Class<?>,SoftReference<View>>();
 
     /**
      * Return a view of a class.
      * This is the only way to obtain a View object.
      * This method is thread-safe.
+     * 
+     * <p>Views are kept with the class loader of their class, as a
+     * ClassValue would be: views of classes loaded by a project class loader
+     * are held by that loader, and go when it does.
      */
     public static View getView(Class<?> cl)
     {
         if(cl == null)
             return null;
 
-        // Debug.message("Started getView for class " + cl);
-
-        synchronized (views) {
-            View v = views.get(cl);
-            if(v == null) {
-                v = new View(cl);
-                views.put(cl, v);
+        ClassLoader loader = cl.getClassLoader();
+        ConcurrentMap<Class<?>,View> loaderViews;
+        if (loader instanceof BPClassLoader) {
+            loaderViews = ((BPClassLoader) loader).getViews();
+        }
+        else if (isPermanent(loader)) {
+            loaderViews = views;
+        }
+        else {
+            return getOtherView(cl);
+        }
+        
+        View v = loaderViews.get(cl);
+        if (v == null) {
+            View newView = new View(cl);
+            v = loaderViews.putIfAbsent(cl, newView);
+            if (v == null) {
+                v = newView;
             }
-
-            // Debug.message("Ended getView for class " + cl);
-
-            return v;
         }
+        return v;
     }
-
+    
     /**
-     * Remove from the view cache, all views of classes
-     * which were loaded by the given class loader.
-     * This method is thread-safe.
+     * Check whether a class loader will last as long as BlueJ itself: that is,
+     * whether it is the loader of BlueJ's classes or one of its parents.
      */
-    public static void removeAll(ClassLoader loader)
+    private static boolean isPermanent(ClassLoader loader)
     {
-        synchronized (views) {
-            Iterator<View> it = views.values().iterator();
-
-            while(it.hasNext()) {
-                View v = it.next();
-
-                if (v.getClassLoader() == loader) {
-                    it.remove();
-                }
+        if (loader == null) {
+            return true;
+        }
+        for (ClassLoader l = View.class.getClassLoader(); l != null; l = l.getParent()) {
+            if (l == loader) {
+                return true;
             }
         }
+        return false;
     }
-
-    private View(Class<?> cl)
+    
+    /**
+     * Get a view of a class from a loader which is neither permanent nor
+     * a project class loader.
+     */
+    private static View getOtherView(Class<?> cl)
     {
-        this.cl = cl;
+        synchronized (otherViews) {
+            SoftReference<View> ref = otherViews.get(cl);
+            View v = (ref == null) ? null : ref.get();
+            if (v == null) {
+                v = new View(cl);
+                otherViews.put(cl, new SoftReference<View>(v));
+            }
+            return v;
+        }
     }
 
-    private ClassLoader getClassLoader()
+    private View(Class<?> cl)
     {
-        return cl.getClassLoader();
+        this.cl = cl;
     }
 
     public String getQualifiedName()
@@ -176,12 +212,17 @@ public class View
      * @return Type parameters. Empty array if none exist.
      */
     public  TypeParamView[] getTypeParams() {
-        if(typeParams == null) {            
-            List<GenTypeDeclTpar> genTypeParams = JavaUtils.getJavaUtils().getTypeParams(this.cl);            
-            typeParams = new TypeParamView[genTypeParams.size()];
-                for (int i = 0; i < typeParams.length; i++) {
-                typeParams[i] = new TypeParamView(this, genTypeParams.get(i));                
-            }            
+        if(typeParams == null) {
+            synchronized (this) {
+                if(typeParams == null) {
+                    List<GenTypeDeclTpar> genTypeParams = JavaUtils.getJavaUtils().getTypeParams(this.cl);
+                    TypeParamView[] tparams = new TypeParamView[genTypeParams.size()];
+                    for (int i = 0; i < tparams.length; i++) {
+                        tparams[i] = new TypeParamView(this, genTypeParams.get(i));
+                    }
+                    typeParams = tparams;
+                }
+            }
         }
         return typeParams;
     }
@@ -196,17 +237,22 @@ public class View
     public MethodView[] getAllMethods()
     {
         if(allMethods == null) {
-            HashMap<String,MemberElement> map = new HashMap<String,MemberElement>();
-            getAllMethods(map, 0);
-            
-            List<MemberElement> methods = new ArrayList<MemberElement>(map.values());
-            Collections.sort(methods, new ElementComparer());
-
-            int numMethods = methods.size();
-            allMethods = new MethodView[numMethods];
-            for(int i = 0; i < numMethods; i++) {
-                MemberElement elem = (MemberElement)methods.get(i);
-                allMethods[i] = (MethodView)elem.member;
+            synchronized (this) {
+                if(allMethods == null) {
+                    HashMap<String,MemberElement> map = new HashMap<String,MemberElement>();
+                    getAllMethods(map, 0);
+
+                    List<MemberElement> methods = new ArrayList<MemberElement>(map.values());
+                    Collections.sort(methods, new ElementComparer());
+
+                    int numMethods = methods.size();
+                    MethodView[] all = new MethodView[numMethods];
+                    for(int i = 0; i < numMethods; i++) {
+                        MemberElement elem = (MemberElement)methods.get(i);
+                        all[i] = (MethodView)elem.member;
+                    }
+                    allMethods = all;
+                }
             }
         }
 
@@ -220,17 +266,22 @@ public class View
     public FieldView[] getAllFields()
     {
         if(allFields == null) {
-            HashMap<String,MemberElement> map = new HashMap<String,MemberElement>();
-            getAllFields(map, 0);
-            
-            List<MemberElement> fields = new ArrayList<MemberElement>(map.values());
-            Collections.sort(fields, new ElementComparer());
-
-            int numFields = fields.size();
-            allFields = new FieldView[numFields];
-            for(int i = 0; i < numFields; i++) {
-                MemberElement elem = (MemberElement)fields.get(i);
-                allFields[i] = (FieldView)elem.member;
+            synchronized (this) {
+                if(allFields == null) {
+                    HashMap<String,MemberElement> map = new HashMap<String,MemberElement>();
+                    getAllFields(map, 0);
+
+                    List<MemberElement> fields = new ArrayList<MemberElement>(map.values());
+                    Collections.sort(fields, new ElementComparer());
+
+                    int numFields = fields.size();
+                    FieldView[] all = new FieldView[numFields];
+                    for(int i = 0; i < numFields; i++) {
+                        MemberElement elem = (MemberElement)fields.get(i);
+                        all[i] = (FieldView)elem.member;
+                    }
+                    allFields = all;
+                }
             }
         }
 
@@ -344,72 +395,95 @@ public class View
 
     public MethodView[] getDeclaredMethods()
     {
-        int count = 0;
         if(methods == null) {
-            try {
-                Method[] cl_methods = cl.getDeclaredMethods();
-                
-                for(int i = 0; i < cl_methods.length; i++) {
-                    if (!hideMethodName(cl_methods[i]))
-                        count++;
+            synchronized (this) {
+                if(methods == null) {
+                    methods = findDeclaredMethods();
                 }
-                methods = new MethodView[count];
-                
-                count = 0;
-                for(int i = 0; i < cl_methods.length; i++) {
-                    if (!hideMethodName(cl_methods[i])) {
-                        methods[count] = new MethodView(this, cl_methods[i]);
-                        count++;
-                    }
-                }
-            }
-            catch (LinkageError le) {
-                // getDeclaredMethods can cause attempts for other classes to be loaded.
-                // This in turn can cause a LinkageError variant to be thrown. (For
-                // instance, NoClassDefFoundError).
-                methods = new MethodView[0];
             }
         }
 
         return methods;
     }
+    
+    private MethodView[] findDeclaredMethods()
+    {
+        int count = 0;
+        try {
+            Method[] cl_methods = cl.getDeclaredMethods();
+
+            for(int i = 0; i < cl_methods.length; i++) {
+                if (!hideMethodName(cl_methods[i]))
+                    count++;
+            }
+            MethodView[] declared = new MethodView[count];
+
+            count = 0;
+            for(int i = 0; i < cl_methods.length; i++) {
+                if (!hideMethodName(cl_methods[i])) {
+                    declared[count] = new MethodView(this, cl_methods[i]);
+                    count++;
+                }
+            }
+            return declared;
+        }
+        catch (LinkageError le) {
+            // getDeclaredMethods can cause attempts for other classes to be loaded.
+            // This in turn can cause a LinkageError variant to be thrown. (For
+            // instance, NoClassDefFoundError).
+            return new MethodView[0];
+        }
+    }
 
     public FieldView[] getDeclaredFields()
     {
-        if(fields == null)
-        {
-            try {
-                Field[] cl_fields= cl.getDeclaredFields();
-                fields = new FieldView[cl_fields.length];
-            
-                for(int i = 0; i < cl_fields.length; i++)
-                    fields[i] = new FieldView(this, cl_fields[i]);
-            }
-            catch (LinkageError le) {
-                // getDeclaredFields can cause attempts for other classes to be loaded.
-                // This in turn can cause a LinkageError variant to be thrown. (For
-                // instance, NoClassDefFoundError).
-                fields = new FieldView[0];
+        if(fields == null) {
+            synchronized (this) {
+                if(fields == null) {
+                    fields = findDeclaredFields();
+                }
             }
         }
 
         return fields;
     }
+    
+    private FieldView[] findDeclaredFields()
+    {
+        try {
+            Field[] cl_fields= cl.getDeclaredFields();
+            FieldView[] declared = new FieldView[cl_fields.length];
+
+            for(int i = 0; i < cl_fields.length; i++)
+                declared[i] = new FieldView(this, cl_fields[i]);
+            return declared;
+        }
+        catch (LinkageError le) {
+            // getDeclaredFields can cause attempts for other classes to be loaded.
+            // This in turn can cause a LinkageError variant to be thrown. (For
+            // instance, NoClassDefFoundError).
+            return new FieldView[0];
+        }
+    }
 
     public ConstructorView[] getConstructors()
     {
-        if(constructors == null)
-        {
-            try {
-                Constructor<?>[] cl_constrs = cl.getDeclaredConstructors();
-                constructors = new ConstructorView[cl_constrs.length];
-                
-                for(int i = 0; i < constructors.length; i++)
-                    constructors[i] = new ConstructorView(this, cl_constrs[i]);
-            }
-            catch (LinkageError le) {
-                // Class.getDeclaredConstructors() can throw various linkage errors
-                return new ConstructorView[0];
+        if(constructors == null) {
+            synchronized (this) {
+                if(constructors == null) {
+                    try {
+                        Constructor<?>[] cl_constrs = cl.getDeclaredConstructors();
+                        ConstructorView[] declared = new ConstructorView[cl_constrs.length];
+
+                        for(int i = 0; i < declared.length; i++)
+                            declared[i] = new ConstructorView(this, cl_constrs[i]);
+                        constructors = declared;
+                    }
+                    catch (LinkageError le) {
+                        // Class.getDeclaredConstructors() can throw various linkage errors
+                        return new ConstructorView[0];
+                    }
+                }
             }
         }
 
@@ -427,14 +501,22 @@ public class View
         this.comment = comment;
     }
 
-    boolean comments_loaded = false;
+    volatile boolean comments_loaded = false;
     protected void loadComments()
     {
         if(comments_loaded)
             return;     // already loaded - nothing to do
 
-        comments_loaded = true;
-
+        synchronized (this) {
+            if(comments_loaded)
+                return;
+            loadCommentsNow();
+            comments_loaded = true;
+        }
+    }
+    
+    private void loadCommentsNow()
+    {
         // match the comments against this view's members
         // -> put all members into a hashmap indexed by
         // <member>.getSignature() (== <comment>.getTarget())
@@ -0,0 +1,191 @@
+/*
+ This file is part of the BlueJ program. 
+ Copyright (C) 1999-2009  Michael Kolling and John Rosenberg 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package bluej.classmgr;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Collections;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import junit.framework.TestCase;
+import bluej.pkgmgr.SignatureIndex;
+
+/**
+ * Tests for reading class signatures from class files.
+ */
+public class ClassSignatureTest extends TestCase
+{
+    private File dir;
+    private int compileCount;
+    
+    @Override
+    protected void setUp() throws IOException
+    {
+        dir = File.createTempFile("bjsig", "");
+        dir.delete();
+        dir.mkdir();
+    }
+    
+    @Override
+    protected void tearDown()
+    {
+        File [] files = dir.listFiles();
+        for (int i = 0; i < files.length; i++) {
+            files[i].delete();
+        }
+        dir.delete();
+    }
+    
+    /**
+     * Compile a class A with the given body, and return its signature.
+     */
+    private ClassSignature compile(String body) throws IOException
+    {
+        return compile("A", "public class A {\n" + body + "\n}\n");
+    }
+    
+    /**
+     * Compile a class with the given name and source (against the classes
+     * already compiled), and return its signature.
+     */
+    private ClassSignature compile(String name, String text) throws IOException
+    {
+        File source = new File(dir, name + ".java");
+        FileWriter writer = new FileWriter(source);
+        writer.write(text);
+        writer.close();
+        
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assertEquals(0, compiler.run(null, null, null, "-d", dir.getPath(),
+                "-cp", dir.getPath(), source.getPath()));
+        File classFile = new File(dir, name + ".class");
+        // make sure a recompiled class is seen as changed
+        classFile.setLastModified(System.currentTimeMillis() + 2000 * (++compileCount));
+        return ClassSignature.read(classFile);
+    }
+    
+    /**
+     * Changes to method bodies and private members don't change the hash.
+     */
+    public void testImplementationChange() throws IOException
+    {
+        String hash = compile("public int f() { return 1; }").getHash();
+        assertEquals(hash, compile("public int f() { return g() + 1; }\n"
+                + "private int g() { return 2; }\n"
+                + "private java.util.List<String> list;").getHash());
+    }
+    
+    /**
+     * Changes to non-private members, and to constant values, do.
+     */
+    public void testApiChange() throws IOException
+    {
+        String hash = compile("public int f() { return 1; }").getHash();
+        assertFalse(hash.equals(compile("public long f() { return 1; }").getHash()));
+        assertFalse(hash.equals(compile("public int f() { return 1; }\n"
+                + "int g() { return 2; }").getHash()));
+        
+        hash = compile("public static final int X = 1;").getHash();
+        assertFalse(hash.equals(compile("public static final int X = 2;").getHash()));
+    }
+    
+    /**
+     * Referenced classes are found in descriptors, generic signatures and
+     * the body of the class, but the class itself is not included.
+     */
+    public void testReferences() throws IOException
+    {
+        ClassSignature sig = compile("public java.util.List<java.net.URL> f(String [] a) {\n"
+                + "  new java.util.Random(); return null; }");
+        assertTrue(sig.getReferences().contains("java.util.List"));
+        assertTrue(sig.getReferences().contains("java.net.URL"));
+        assertTrue(sig.getReferences().contains("java.lang.String"));
+        assertTrue(sig.getReferences().contains("java.util.Random"));
+        assertFalse(sig.getReferences().contains("A"));
+    }
+    
+    /**
+     * The direct superclass and superinterfaces are reported as supertypes.
+     */
+    public void testSupertypes() throws IOException
+    {
+        compile("public void m() { }");
+        ClassSignature sig = compile("B", "public class B extends A implements Runnable {\n"
+                + "  public void run() { } }");
+        assertEquals(2, sig.getSupertypes().size());
+        assertEquals("A", sig.getSupertypes().get(0));
+        assertEquals("java.lang.Runnable", sig.getSupertypes().get(1));
+    }
+    
+    /**
+     * A class using a member which another class inherits depends on the
+     * signature of the class it is inherited from.
+     */
+    public void testInheritedMember() throws IOException
+    {
+        compile("public void m() { }");
+        String hash = compile("B", "public class B extends A { }").getHash();
+        compile("C", "public class C { void f(B b) { b.m(); } }");
+        
+        SignatureIndex index = new SignatureIndex(dir, dir);
+        index.recordCompiled("C", new String[] {"C"}, Collections.<String>emptySet());
+        assertTrue(index.referencesUnchanged("C"));
+        
+        compile("");
+        assertEquals(hash, ClassSignature.read(new File(dir, "B.class")).getHash());
+        assertFalse(index.referencesUnchanged("C"));
+    }
+    
+    /**
+     * The static initialization hash changes with the initial values of
+     * static fields, but not with other code, even if the constant pool is
+     * laid out differently.
+     */
+    public void testStaticInit() throws IOException
+    {
+        String hash = compile("static int count = 5;\n"
+                + "static String s = \"a\" + count;\n"
+                + "private static final int MAX = 3;\n"
+                + "int f() { return 1; }").getStaticInitHash();
+        assertEquals(hash, compile("static int count = 5;\n"
+                + "static String s = \"a\" + count;\n"
+                + "private static final int MAX = 3;\n"
+                + "int g = 7;\n"
+                + "int f() { return new java.util.Random().nextInt() + g; }").getStaticInitHash());
+        
+        assertFalse(hash.equals(compile("static int count = 10;\n"
+                + "static String s = \"a\" + count;\n"
+                + "private static final int MAX = 3;\n"
+                + "int f() { return 1; }").getStaticInitHash()));
+        assertFalse(hash.equals(compile("static int count = 5;\n"
+                + "static String s = \"b\" + count;\n"
+                + "private static final int MAX = 3;\n"
+                + "int f() { return 1; }").getStaticInitHash()));
+        assertFalse(hash.equals(compile("static int count = 5;\n"
+                + "static String s = \"a\" + count;\n"
+                + "private static final int MAX = 4;\n"
+                + "int f() { return 1; }").getStaticInitHash()));
+    }
+}
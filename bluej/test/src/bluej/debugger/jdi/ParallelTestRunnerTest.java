@@ -0,0 +1,166 @@
+/*
+ This file is part of the BlueJ program. 
+ Copyright (C) 2010  Michael Kolling and John Rosenberg 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package bluej.debugger.jdi;
+
+import java.io.File;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+import bluej.debugger.DebuggerTestListener;
+import bluej.debugger.DebuggerTestResult;
+
+/**
+ * Tests for the scheduling of tests by ParallelTestRunner. The test VMs are
+ * simulated: the name of each test method says what it does ("pass", "exit"
+ * to stop the VM, "hang" to wait until the VM is destroyed, or "sleep" and a
+ * number of milliseconds and then pass).
+ */
+public class ParallelTestRunnerTest extends TestCase
+{
+    /** The classes whose tests were started, in order */
+    private List<String> started = Collections.synchronizedList(new ArrayList<String>());
+    private int vmsStarted;
+    private Map<String,DebuggerTestResult> results = new HashMap<String,DebuggerTestResult>();
+    
+    private void run(String [] classNames, String [] methodNames, int vmCount, long timeout)
+    {
+        started.clear();
+        ParallelTestRunner runner = new ParallelTestRunner(new File("."), new URL[0], null,
+                vmCount, timeout) {
+            ParallelTestRunner.TestVM newVM()
+            {
+                synchronized (ParallelTestRunnerTest.this) {
+                    vmsStarted++;
+                }
+                return new SimulatedVM();
+            }
+        };
+        runner.runTestMethods(classNames, methodNames, new DebuggerTestListener() {
+            public void testsFinished(List<DebuggerTestResult> finished)
+            {
+                for (DebuggerTestResult result : finished) {
+                    results.put(result.getName(), result);
+                }
+            }
+        });
+        assertEquals(classNames.length, results.size());
+    }
+    
+    /**
+     * Test that those classes which took longest when last run go first,
+     * after any which have not been run.
+     */
+    public void testLongestFirst()
+    {
+        run(new String [] {"order.Short", "order.Long", "order.Middle"},
+                new String [] {"sleep10", "sleep300", "sleep100"}, 1, 0);
+        results.clear();
+        run(new String [] {"order.Short", "order.Long", "order.Middle", "order.New"},
+                new String [] {"sleep10", "sleep300", "sleep100", "pass"}, 1, 0);
+        assertEquals("[order.New, order.Long, order.Middle, order.Short]", started.toString());
+    }
+    
+    /**
+     * Test that when a test VM stops, the remaining tests of its class are
+     * errors, and the other classes are run in a new VM.
+     */
+    public void testVMStopped()
+    {
+        run(new String [] {"stop.A", "stop.A", "stop.A", "stop.B", "stop.B"},
+                new String [] {"pass1", "exit", "pass2", "pass1", "pass2"}, 1, 0);
+        assertTrue(results.get("stop.A.pass1").isSuccess());
+        assertTrue(results.get("stop.A.exit").isError());
+        assertEquals("VM terminated", results.get("stop.A.exit").getExceptionMessage());
+        assertTrue(results.get("stop.A.pass2").isError());
+        assertTrue(results.get("stop.B.pass1").isSuccess());
+        assertTrue(results.get("stop.B.pass2").isSuccess());
+        assertEquals(2, vmsStarted);
+    }
+    
+    /**
+     * Test that a test which takes too long is stopped, along with its VM,
+     * and reported as having timed out.
+     */
+    public void testTimeout()
+    {
+        run(new String [] {"timeout.A", "timeout.A", "timeout.B"},
+                new String [] {"hang", "pass", "pass"}, 1, 200);
+        DebuggerTestResult hang = results.get("timeout.A.hang");
+        assertTrue(hang.isError());
+        assertTrue(hang.getExceptionMessage().startsWith("Test timed out"));
+        assertEquals("VM terminated", results.get("timeout.A.pass").getExceptionMessage());
+        assertTrue(results.get("timeout.B.pass").isSuccess());
+        assertEquals(2, vmsStarted);
+    }
+    
+    /**
+     * A simulated test VM, running the methods as described above.
+     */
+    private class SimulatedVM extends ParallelTestRunner.TestVM
+    {
+        private LinkedList<String> methods = new LinkedList<String>();
+        private boolean destroyed;
+        
+        void startTests(String className, List<String> methods)
+        {
+            started.add(className);
+            this.methods.addAll(methods);
+        }
+        
+        synchronized String readResult()
+        {
+            String method = methods.removeFirst();
+            if (method.equals("exit")) {
+                destroyed = true;
+            }
+            else if (method.equals("hang")) {
+                while (! destroyed) {
+                    try {
+                        wait();
+                    }
+                    catch (InterruptedException ie) {}
+                }
+            }
+            else if (method.startsWith("sleep")) {
+                try {
+                    Thread.sleep(Integer.parseInt(method.substring("sleep".length())));
+                }
+                catch (InterruptedException ie) {}
+            }
+            return destroyed ? null : "";
+        }
+        
+        void close() { }
+        
+        synchronized void destroy()
+        {
+            destroyed = true;
+            notifyAll();
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ This file is part of the BlueJ program. 
+ Copyright (C) 2010  Michael Kolling and John Rosenberg 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package bluej.graph;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class VertexIndexTest extends TestCase
+{
+    /**
+     * Test that the index finds the same vertices as looking at each one, as
+     * vertices are added, moved, resized and removed.
+     */
+    public void testAgainstSearch()
+    {
+        VertexIndex index = new VertexIndex();
+        List<Vertex> vertices = new ArrayList<Vertex>();
+        Random random = new Random(1);
+        
+        for (int i = 0; i < 3000; i++) {
+            int op = random.nextInt(4);
+            if (op == 0 || vertices.size() < 10) {
+                Vertex vertex = new TestVertex(random.nextInt(1000), random.nextInt(1000),
+                        1 + random.nextInt(300), 1 + random.nextInt(100));
+                vertices.add(vertex);
+                index.add(vertex);
+            }
+            else if (op == 1) {
+                index.remove(vertices.remove(random.nextInt(vertices.size())));
+            }
+            else if (op == 2) {
+                Vertex vertex = vertices.get(random.nextInt(vertices.size()));
+                vertex.setPos(random.nextInt(1000) - 100, random.nextInt(1000) - 100);
+                index.update(vertex);
+            }
+            else {
+                Vertex vertex = vertices.get(random.nextInt(vertices.size()));
+                vertex.setSize(1 + random.nextInt(300), 1 + random.nextInt(100));
+                index.update(vertex);
+            }
+            
+            int x = random.nextInt(1200) - 100;
+            int y = random.nextInt(1200) - 100;
+            Rectangle area = new Rectangle(x, y, random.nextInt(400), random.nextInt(400));
+            HashSet<Vertex> atPoint = new HashSet<Vertex>();
+            HashSet<Vertex> inArea = new HashSet<Vertex>();
+            for (Vertex vertex : vertices) {
+                if (vertex.contains(x, y)) {
+                    atPoint.add(vertex);
+                }
+                if (vertex.getRectangle().intersects(area)) {
+                    inArea.add(vertex);
+                }
+            }
+            
+            List<Vertex> found = index.findVertices(x, y);
+            assertEquals(atPoint.size(), found.size());
+            assertEquals(atPoint, new HashSet<Vertex>(found));
+            found = index.findVertices(area);
+            assertEquals(inArea.size(), found.size());
+            assertEquals(inArea, new HashSet<Vertex>(found));
+        }
+    }
+    
+    /**
+     * Test that a vertex placed in a graph does not overlap the others.
+     */
+    public void testFindSpaceForVertex()
+    {
+        final List<Vertex> vertices = new ArrayList<Vertex>();
+        final VertexIndex index = new VertexIndex();
+        Graph graph = new Graph() {
+            public Iterator<? extends Vertex> getVertices()
+            {
+                return vertices.iterator();
+            }
+            
+            public Iterator<? extends Edge> getEdges()
+            {
+                return new ArrayList<Edge>().iterator();
+            }
+            
+            protected VertexIndex getVertexIndex()
+            {
+                return index;
+            }
+        };
+        
+        Random random = new Random(1);
+        for (int i = 0; i < 200; i++) {
+            Vertex vertex = new TestVertex(0, 0, 80 + random.nextInt(100), 50 + random.nextInt(30));
+            graph.findSpaceForVertex(vertex);
+            for (Vertex other : vertices) {
+                assertFalse(other.getRectangle().intersects(vertex.getRectangle()));
+            }
+            vertices.add(vertex);
+            index.add(vertex);
+        }
+    }
+    
+    private static class TestVertex extends Vertex
+    {
+        TestVertex(int x, int y, int width, int height)
+        {
+            super(x, y, width, height);
+        }
+        
+        public void remove() { }
+        
+        public void popupMenu(int x, int y, GraphEditor graphEditor) { }
+        
+        public void setSelected(boolean selected) { }
+        
+        public boolean isSelected()
+        {
+            return false;
+        }
+        
+        public boolean isHandle(int x, int y)
+        {
+            return false;
+        }
+        
+        public boolean isResizable()
+        {
+            return false;
+        }
+    }
+}
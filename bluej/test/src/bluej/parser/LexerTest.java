@@ -865,4 +865,26 @@ public class LexerTest extends junit.framework.TestCase
             }
         }
     }
+
+    /**
+     * Repeated identifiers, numbers and operators share their text, and
+     * the text is correct.
+     */
+    public void testSharedText()
+    {
+        TokenStream ts = getNonfilteringLexerFor("fooBar += 12 fooBar += 12 \"fooBar\"");
+        LocatableToken [] tokens = new LocatableToken[7];
+        for (int i = 0; i < tokens.length; i++) {
+            tokens[i] = (LocatableToken) ts.nextToken();
+        }
+        assertEquals("fooBar", tokens[0].getText());
+        assertEquals("+=", tokens[1].getText());
+        assertEquals(JavaTokenTypes.PLUS_ASSIGN, tokens[1].getType());
+        assertEquals("12", tokens[2].getText());
+        assertSame(tokens[0].getText(), tokens[3].getText());
+        assertSame(tokens[1].getText(), tokens[4].getText());
+        assertSame(tokens[2].getText(), tokens[5].getText());
+        assertEquals(JavaTokenTypes.STRING_LITERAL, tokens[6].getType());
+        assertEquals("\"fooBar\"", tokens[6].getText());
+    }
 }
@@ -1,9 +1,14 @@
 package bluej.parser;
 
+import java.util.Iterator;
+
+import javax.swing.text.Document;
+
 import junit.framework.TestCase;
 import bluej.editor.moe.Token;
 import bluej.parser.nodes.CommentNode;
 import bluej.parser.nodes.NodeTree;
+import bluej.parser.nodes.ParentParsedNode;
 import bluej.parser.nodes.ParsedNode;
 import bluej.parser.nodes.NodeTree.NodeAndPosition;
 
@@ -179,4 +184,148 @@ public class NodeTreeTest extends TestCase
         nap = nt.findNode(75);
         assertTrue(nap.getNode() == pn3);
     }
+    
+    /**
+     * A node whose tree node can be moved and resized directly.
+     */
+    private static class TreeNode extends CommentNode
+    {
+        TreeNode(ParsedNode parent)
+        {
+            super(parent, Token.KEYWORD1);
+        }
+        
+        NodeTree getTree()
+        {
+            return getContainingNodeTree();
+        }
+    }
+    
+    /**
+     * Put 'count' nodes, each of size 10, at 0, 20, 40... in a new tree.
+     */
+    private TreeNode [] insertNodes(int count)
+    {
+        nt = new NodeTree();
+        TreeNode [] nodes = new TreeNode[count];
+        for (int i = 0; i < count; i++) {
+            nodes[i] = new TreeNode(null);
+            nt.insertNode(nodes[i], i * 20, 10);
+        }
+        return nodes;
+    }
+    
+    private void checkNode(NodeAndPosition nap, ParsedNode node, int position, int size)
+    {
+        assertNotNull(nap);
+        assertTrue(nap.getNode() == node);
+        assertEquals(position, nap.getPosition());
+        assertEquals(size, nap.getSize());
+    }
+    
+    /**
+     * Sliding a node moves it and every following node, wherever they are
+     * in the tree.
+     */
+    public void testSlide()
+    {
+        TreeNode [] nodes = insertNodes(5);
+        nodes[0].getTree().slideNode(5);
+        checkNode(nt.findNode(5), nodes[0], 5, 10);
+        for (int i = 1; i < nodes.length; i++) {
+            checkNode(nt.findNode(i * 20 + 5), nodes[i], i * 20 + 5, 10);
+        }
+        
+        nodes[3].getTree().slideNode(-5);
+        checkNode(nt.findNode(45), nodes[2], 45, 10);
+        checkNode(nt.findNode(60), nodes[3], 60, 10);
+        checkNode(nt.findNode(80), nodes[4], 80, 10);
+    }
+    
+    /**
+     * Resizing a node moves every following node.
+     */
+    public void testResize()
+    {
+        TreeNode [] nodes = insertNodes(5);
+        nodes[0].getTree().resizeNode(15);
+        checkNode(nt.findNode(0), nodes[0], 0, 15);
+        for (int i = 1; i < nodes.length; i++) {
+            checkNode(nt.findNode(i * 20 + 5), nodes[i], i * 20 + 5, 10);
+        }
+        
+        nodes[2].getTree().resizeNode(5);
+        checkNode(nt.findNode(25), nodes[1], 25, 10);
+        checkNode(nt.findNode(45), nodes[2], 45, 5);
+        checkNode(nt.findNode(60), nodes[3], 60, 10);
+        checkNode(nt.findNode(80), nodes[4], 80, 10);
+    }
+    
+    /**
+     * Moving and resizing nodes in a large tree keeps all positions right.
+     */
+    public void testManyNodes()
+    {
+        TreeNode [] nodes = insertNodes(1000);
+        for (int i = 0; i < nodes.length; i += 7) {
+            nodes[i].getTree().resizeNode(11);
+        }
+        for (int i = 3; i < nodes.length; i += 11) {
+            nodes[i].getTree().slideNode(-1);
+        }
+        
+        int shift = 0;
+        for (int i = 0; i < nodes.length; i++) {
+            if (i % 11 == 3) {
+                shift--;
+            }
+            int size = (i % 7 == 0) ? 11 : 10;
+            checkNode(nt.findNode(i * 20 + shift), nodes[i], i * 20 + shift, size);
+            if (size == 11) {
+                shift++;
+            }
+        }
+    }
+    
+    /**
+     * Removing text which spans several children of a parent node shortens
+     * the first, removes those in between, and shortens or moves back the
+     * rest.
+     */
+    public void testTextRemovedAcrossChildren()
+    {
+        ParentParsedNode parent = new ParentParsedNode() {
+            protected void reparseNode(Document document, int nodePos, int offset) { }
+        };
+        TreeNode [] nodes = new TreeNode[5];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = new TreeNode(parent);
+            parent.insertNode(nodes[i], i * 20, 10);
+        }
+        
+        // Remove 5 - 65: the end of the first child, the second and third
+        // children, and the start of the fourth
+        parent.textRemoved(null, 0, 5, 60);
+        checkNode(parent.findNodeAt(0, 0), nodes[0], 0, 5);
+        checkNode(parent.findNodeAt(5, 0), nodes[3], 5, 5);
+        checkNode(parent.findNodeAt(20, 0), nodes[4], 20, 10);
+        int count = 0;
+        for (Iterator<NodeAndPosition> i = parent.getChildren(); i.hasNext(); i.next()) {
+            count++;
+        }
+        assertEquals(3, count);
+        
+        // Remove 2 - 22: the end of the first child, all of the second, and
+        // the start of the third
+        parent.textRemoved(null, 0, 2, 20);
+        checkNode(parent.findNodeAt(0, 0), nodes[0], 0, 2);
+        checkNode(parent.findNodeAt(2, 0), nodes[4], 2, 8);
+        
+        // Remove text between two children: the second moves back
+        TreeNode last = new TreeNode(parent);
+        parent.insertNode(last, 20, 10);
+        parent.textRemoved(null, 0, 12, 4);
+        checkNode(parent.findNodeAt(2, 0), nodes[4], 2, 8);
+        checkNode(parent.findNodeAt(16, 0), last, 16, 10);
+    }
 }
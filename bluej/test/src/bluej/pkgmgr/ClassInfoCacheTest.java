@@ -0,0 +1,170 @@
+/*
+ This file is part of the BlueJ program. 
+ Copyright (C) 1999-2009  Michael Kolling and John Rosenberg 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package bluej.pkgmgr;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+
+import junit.framework.TestCase;
+import bluej.parser.InfoParser;
+import bluej.parser.symtab.ClassInfo;
+
+/**
+ * Tests for the cache of class information.
+ */
+public class ClassInfoCacheTest extends TestCase
+{
+    private File dir;
+    private File source;
+    
+    @Override
+    protected void setUp() throws IOException
+    {
+        dir = File.createTempFile("bjinfo", "");
+        dir.delete();
+        dir.mkdir();
+        source = new File(dir, "A.java");
+        writeSource("class A extends B { }");
+    }
+    
+    @Override
+    protected void tearDown()
+    {
+        File [] files = dir.listFiles();
+        for (int i = 0; i < files.length; i++) {
+            files[i].delete();
+        }
+        dir.delete();
+    }
+    
+    private void writeSource(String text) throws IOException
+    {
+        FileWriter writer = new FileWriter(source);
+        writer.write(text);
+        writer.close();
+    }
+    
+    private ClassInfo parse(String text)
+    {
+        return InfoParser.parse(new StringReader(text), null, null);
+    }
+    
+    /**
+     * Information is saved to, and read back from, the cache file.
+     */
+    public void testSaveAndLoad()
+    {
+        ClassInfoCache cache = new ClassInfoCache(dir);
+        assertNull(cache.get(source, "ctx"));
+        cache.put(source, source.length(), source.lastModified(), "ctx",
+                parse("interface A { }"));
+        cache.save();
+        
+        cache = new ClassInfoCache(dir);
+        ClassInfo info = cache.get(source, "ctx");
+        assertNotNull(info);
+        assertEquals("A", info.getName());
+        assertTrue(info.isInterface());
+    }
+    
+    /**
+     * Information is not used once the file has changed.
+     */
+    public void testFileChanged() throws IOException
+    {
+        ClassInfoCache cache = new ClassInfoCache(dir);
+        cache.put(source, source.length(), source.lastModified(), "ctx",
+                parse("class A extends B { }"));
+        writeSource("class A extends Object { }");
+        assertNull(cache.get(source, "ctx"));
+    }
+    
+    /**
+     * All information is discarded when the context changes.
+     */
+    public void testContextChanged()
+    {
+        ClassInfoCache cache = new ClassInfoCache(dir);
+        cache.put(source, source.length(), source.lastModified(), "ctx",
+                parse("class A extends B { }"));
+        cache.save();
+        
+        cache = new ClassInfoCache(dir);
+        assertNull(cache.get(source, "other"));
+        assertNull(cache.get(source, "ctx"));
+    }
+    
+    /**
+     * All the information survives being saved and loaded.
+     */
+    public void testAllInformation()
+    {
+        ClassInfoCache cache = new ClassInfoCache(dir);
+        ClassInfo original = parse("package p;\n"
+                + "/** A class */\n"
+                + "public abstract class A<T> extends B implements C, D {\n"
+                + "  /** A method */\n"
+                + "  public void m(int x) { new java.util.ArrayList(); }\n"
+                + "}\n");
+        cache.put(source, source.length(), source.lastModified(), "ctx", original);
+        cache.save();
+        
+        ClassInfo info = new ClassInfoCache(dir).get(source, "ctx");
+        assertEquals(original.getName(), info.getName());
+        assertEquals(original.getSuperclass(), info.getSuperclass());
+        assertEquals(original.getImplements(), info.getImplements());
+        assertEquals(original.getUsed(), info.getUsed());
+        assertEquals(original.getComments(), info.getComments());
+        assertEquals(original.getTypeParameterTexts(), info.getTypeParameterTexts());
+        assertEquals(original.isAbstract(), info.isAbstract());
+        assertEquals(original.hasPackageStatement(), info.hasPackageStatement());
+        assertEquals(original.getPackage(), info.getPackage());
+        assertEquals(original.getPackageNameSelection().getLocation(),
+                info.getPackageNameSelection().getLocation());
+        assertEquals(original.getSuperReplaceSelection().getLocation(),
+                info.getSuperReplaceSelection().getLocation());
+        assertEquals(original.getInterfaceSelections().size(), info.getInterfaceSelections().size());
+        assertEquals(original.getInterfaceSelections().get(1).getLocation(),
+                info.getInterfaceSelections().get(1).getLocation());
+    }
+    
+    /**
+     * A cache file holding serialized objects (as written by other
+     * versions, or planted in a project) is not deserialized, but ignored.
+     */
+    public void testSerializedFileIgnored() throws IOException
+    {
+        ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(
+                new File(dir, ClassInfoCache.cacheFileName)));
+        out.writeInt(1);
+        out.writeObject("ctx");
+        out.writeObject(new ArrayList<String>());
+        out.close();
+        
+        assertNull(new ClassInfoCache(dir).get(source, "ctx"));
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ This file is part of the BlueJ program. 
+ Copyright (C) 1999-2009  Michael Kolling and John Rosenberg 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package bluej.runtime;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class BJMapTest extends TestCase
+{
+    public void testPutGetRemove()
+    {
+        BJMap<String,Object> map = new BJMap<String,Object>();
+        assertNull(map.get("a"));
+        
+        map.put("a", "1");
+        map.put("b", "2");
+        assertEquals("1", map.get("a"));
+        assertEquals("2", map.get("b"));
+        
+        map.put("a", "3");
+        assertEquals("3", map.get("a"));
+        
+        map.remove("a");
+        assertNull(map.get("a"));
+        assertEquals("2", map.get("b"));
+        
+        // removing an absent key does nothing
+        map.remove("c");
+        assertEquals("2", map.get("b"));
+    }
+    
+    /**
+     * Test that many entries, including keys with colliding hash codes, are
+     * kept correctly through puts and removes (which move colliding keys).
+     */
+    public void testAgainstHashMap()
+    {
+        BJMap<Object,Integer> map = new BJMap<Object,Integer>();
+        Map<Object,Integer> expected = new HashMap<Object,Integer>();
+        Random random = new Random(1);
+        
+        for (int i = 0; i < 20000; i++) {
+            Object key = new Key(random.nextInt(500));
+            if (random.nextInt(3) == 0) {
+                map.remove(key);
+                expected.remove(key);
+            }
+            else {
+                Integer value = Integer.valueOf(i);
+                map.put(key, value);
+                expected.put(key, value);
+            }
+        }
+        
+        for (int k = 0; k < 500; k++) {
+            Object key = new Key(k);
+            assertEquals(expected.get(key), map.get(key));
+        }
+        
+        for (Iterator<Object> i = expected.keySet().iterator(); i.hasNext(); ) {
+            map.remove(i.next());
+        }
+        for (int k = 0; k < 500; k++) {
+            assertNull(map.get(new Key(k)));
+        }
+    }
+    
+    /**
+     * A key whose hash codes often collide.
+     */
+    private static class Key
+    {
+        private int n;
+        
+        Key(int n)
+        {
+            this.n = n;
+        }
+        
+        public int hashCode()
+        {
+            return n / 7;
+        }
+        
+        public boolean equals(Object other)
+        {
+            return other instanceof Key && ((Key) other).n == n;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ This file is part of the BlueJ program. 
+ Copyright (C) 2010  Michael Kolling and John Rosenberg 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package bluej.runtime;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+public class CollectionSnapshotTest extends TestCase
+{
+    private enum Colour { RED, GREEN }
+    
+    /**
+     * Get the fields of a snapshot's descriptions string.
+     */
+    private static List<String> getFields(Object[] snapshot)
+    {
+        String descriptions = (String) snapshot[0];
+        List<String> fields = new ArrayList<String>();
+        int [] pos = new int[1];
+        while (pos[0] < descriptions.length()) {
+            fields.add(ExecServer.nextField(descriptions, pos));
+        }
+        return fields;
+    }
+    
+    public void testList()
+    {
+        List<Object> list = new LinkedList<Object>();
+        for (int i = 0; i < 100; i++) {
+            list.add("s" + i);
+        }
+        list.set(51, null);
+        list.set(52, Colour.GREEN);
+        list.set(53, new StringBuffer("x"));
+        list.set(54, Integer.valueOf(7));
+        
+        Object[] snapshot = CollectionSnapshot.take(list, 50, 5);
+        assertEquals(Arrays.asList(new String[] {"100", CollectionSnapshot.COLLECTION,
+                "\"s50\"", "", "GREEN", "", "7"}), getFields(snapshot));
+        assertEquals(Arrays.asList(list.subList(50, 55).toArray()),
+                Arrays.asList((Object[]) snapshot[1]));
+        
+        // past the end
+        snapshot = CollectionSnapshot.take(list, 98, 5);
+        assertEquals(4, getFields(snapshot).size());
+        assertEquals(2, ((Object[]) snapshot[1]).length);
+    }
+    
+    public void testMap()
+    {
+        Map<String,Integer> map = new LinkedHashMap<String,Integer>();
+        map.put("one", Integer.valueOf(1));
+        map.put("two", Integer.valueOf(2));
+        map.put("three", Integer.valueOf(3));
+        
+        Object[] snapshot = CollectionSnapshot.take(map, 1, 10);
+        assertEquals(Arrays.asList(new String[] {"3", CollectionSnapshot.MAP,
+                "\"two\"", "2", "\"three\"", "3"}), getFields(snapshot));
+        assertEquals(Arrays.asList(new Object[] {"two", Integer.valueOf(2), "three", Integer.valueOf(3)}),
+                Arrays.asList((Object[]) snapshot[1]));
+    }
+    
+    /**
+     * Snapshots are not taken of classes (such as subclasses of library
+     * collections) whose code might be user code.
+     */
+    public void testUnsupported()
+    {
+        List<String> list = new ArrayList<String>() {
+            public int size()
+            {
+                return 0;
+            }
+        };
+        assertNull(CollectionSnapshot.take(list, 0, 10));
+        assertNull(CollectionSnapshot.take("not a collection", 0, 10));
+        assertNull(CollectionSnapshot.take(null, 0, 10));
+        assertTrue(CollectionSnapshot.canTake("java.util.HashMap"));
+        assertNotNull(CollectionSnapshot.take(Arrays.asList(new String[] {"a"}), 0, 10));
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ This file is part of the BlueJ program. 
+ Copyright (C) 2010  Michael Kolling and John Rosenberg 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package bluej.terminal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Element;
+import javax.swing.text.GapContent;
+import javax.swing.text.PlainDocument;
+import javax.swing.text.Position;
+import javax.swing.text.Segment;
+
+import junit.framework.TestCase;
+
+public class RingContentTest extends TestCase
+{
+    public void testRemoveFromStart() throws BadLocationException
+    {
+        RingContent content = new RingContent();
+        content.insertString(0, "one\ntwo\nthree\n");
+        Position inFirst = content.createPosition(1);
+        Position atSecond = content.createPosition(4);
+        Position inThird = content.createPosition(10);
+        
+        content.remove(0, 4);
+        assertEquals("two\nthree\n\n", content.getString(0, content.length()));
+        assertEquals(0, inFirst.getOffset());
+        assertEquals(0, atSecond.getOffset());
+        assertEquals(6, inThird.getOffset());
+        
+        content.insertString(0, "zero\n");
+        assertEquals(0, inFirst.getOffset());
+        assertEquals(11, inThird.getOffset());
+    }
+    
+    /**
+     * Test that text which wraps around the end of the buffer is returned
+     * whole, or in parts if partial return is allowed.
+     */
+    public void testWrappedText() throws BadLocationException
+    {
+        RingContent content = new RingContent();
+        char [] chars = new char[1000];
+        java.util.Arrays.fill(chars, 'a');
+        content.insertString(0, new String(chars));
+        content.remove(0, 900);
+        content.insertString(100, new String(chars, 0, 500) + "bcd");
+        
+        assertEquals(604, content.length());
+        assertEquals("abcd\n", content.getString(599, 5));
+        
+        Segment segment = new Segment();
+        segment.setPartialReturn(true);
+        content.getChars(0, 604, segment);
+        assertTrue(segment.count > 0 && segment.count < 604);
+    }
+    
+    /**
+     * Test that a document using RingContent has the same text, lines and
+     * positions as one using the standard GapContent, as text is added and
+     * removed as the terminal does it (mostly added at the end and removed
+     * from the start) and otherwise.
+     */
+    public void testAgainstGapContent() throws BadLocationException
+    {
+        PlainDocument ringDoc = new PlainDocument(new RingContent());
+        PlainDocument gapDoc = new PlainDocument(new GapContent());
+        List<Position> ringPositions = new ArrayList<Position>();
+        List<Position> gapPositions = new ArrayList<Position>();
+        Random random = new Random(1);
+        
+        for (int i = 0; i < 5000; i++) {
+            int length = gapDoc.getLength();
+            int op = random.nextInt(10);
+            if (op < 5) {
+                int where = (op < 4) ? length : random.nextInt(length + 1);
+                String str = randomText(random);
+                ringDoc.insertString(where, str, null);
+                gapDoc.insertString(where, str, null);
+            }
+            else if (op < 8) {
+                int where = (op < 7) ? 0 : random.nextInt(length + 1);
+                int count = random.nextInt(length - where + 1);
+                ringDoc.remove(where, count);
+                gapDoc.remove(where, count);
+            }
+            else {
+                int offset = random.nextInt(length + 1);
+                ringPositions.add(ringDoc.createPosition(offset));
+                gapPositions.add(gapDoc.createPosition(offset));
+            }
+            
+            assertEquals(gapDoc.getText(0, gapDoc.getLength()), ringDoc.getText(0, ringDoc.getLength()));
+            for (int j = 0; j < gapPositions.size(); j++) {
+                assertEquals(gapPositions.get(j).getOffset(), ringPositions.get(j).getOffset());
+            }
+        }
+        
+        Element ringRoot = ringDoc.getDefaultRootElement();
+        Element gapRoot = gapDoc.getDefaultRootElement();
+        assertEquals(gapRoot.getElementCount(), ringRoot.getElementCount());
+        for (int i = 0; i < gapRoot.getElementCount(); i++) {
+            assertEquals(gapRoot.getElement(i).getStartOffset(), ringRoot.getElement(i).getStartOffset());
+            assertEquals(gapRoot.getElement(i).getEndOffset(), ringRoot.getElement(i).getEndOffset());
+        }
+    }
+    
+    private static String randomText(Random random)
+    {
+        StringBuffer text = new StringBuffer();
+        int length = random.nextInt(random.nextInt(10) == 0 ? 3000 : 40);
+        for (int i = 0; i < length; i++) {
+            text.append(random.nextInt(8) == 0 ? '\n' : (char) ('a' + random.nextInt(26)));
+        }
+        return text.toString();
+    }
+}
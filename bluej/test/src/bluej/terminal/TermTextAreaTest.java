@@ -0,0 +1,103 @@
+/*
+ This file is part of the BlueJ program. 
+ Copyright (C) 2010  Michael Kolling and John Rosenberg 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package bluej.terminal;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import javax.swing.text.BadLocationException;
+
+import junit.framework.TestCase;
+
+public class TermTextAreaTest extends TestCase
+{
+    private TermTextArea text;
+    private int nextLine;
+    
+    protected void setUp()
+    {
+        text = new TermTextArea(25, 80, null, null);
+        text.setUnlimitedBuffering(true);
+        nextLine = 0;
+    }
+    
+    protected void tearDown()
+    {
+        text.setUnlimitedBuffering(false);
+    }
+    
+    private void appendLines(int count)
+    {
+        StringBuffer lines = new StringBuffer();
+        for (int i = 0; i < count; i++) {
+            lines.append("line " + nextLine++ + "\n");
+        }
+        text.append(lines.toString());
+    }
+    
+    private String firstLine() throws BadLocationException
+    {
+        return text.getText(0, text.getLineEndOffset(0) - 1);
+    }
+    
+    /**
+     * Test that a chunk of output read back from the spill file is not
+     * removed again by the next output.
+     */
+    public void testReadBackThenAppend() throws BadLocationException
+    {
+        appendLines(10500);
+        assertEquals("line 1000", firstLine());
+        
+        assertTrue(text.showEarlierOutput() > 0);
+        assertEquals("line 0", firstLine());
+        
+        appendLines(1);
+        assertEquals("line 0", firstLine());
+        appendLines(498);
+        assertEquals("line 0", firstLine());
+        
+        // Once as much output again has been added, it goes
+        appendLines(1);
+        assertEquals("line 2000", firstLine());
+        assertTrue(text.getLineCount() <= 10000);
+    }
+    
+    /**
+     * Test that all the output is written, whether or not it has been moved
+     * out of the text and read back.
+     */
+    public void testWriteAll() throws IOException
+    {
+        appendLines(12500);
+        text.showEarlierOutput();
+        appendLines(10);
+        
+        StringWriter out = new StringWriter();
+        text.write(out);
+        String [] lines = out.toString().split("\n");
+        assertEquals(12510, lines.length);
+        for (int i = 0; i < lines.length; i++) {
+            assertEquals("line " + i, lines[i]);
+        }
+    }
+}
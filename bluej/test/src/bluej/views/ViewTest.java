@@ -0,0 +1,114 @@
+/*
+ This file is part of the BlueJ program. 
+ Copyright (C) 2010  Michael Kolling and John Rosenberg 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package bluej.views;
+
+import java.lang.ref.WeakReference;
+import java.net.URL;
+
+import junit.framework.TestCase;
+import bluej.classmgr.BPClassLoader;
+
+public class ViewTest extends TestCase
+{
+    /**
+     * A class to be loaded by a project class loader.
+     */
+    public static class Sample
+    {
+        public int count;
+        
+        public Sample(int count)
+        {
+            this.count = count;
+        }
+        
+        public int add(int n)
+        {
+            return count += n;
+        }
+    }
+    
+    private BPClassLoader newLoader()
+    {
+        URL location = ViewTest.class.getProtectionDomain().getCodeSource().getLocation();
+        return new BPClassLoader(new URL[] {location}, null);
+    }
+    
+    /**
+     * Test that there is one view of a class, however many threads ask for it.
+     */
+    public void testSameView() throws Exception
+    {
+        assertSame(View.getView(String.class), View.getView(String.class));
+        
+        final Class<?> cl = newLoader().loadClass(Sample.class.getName());
+        assertNotSame(Sample.class, cl);
+        
+        final View [] views = new View[8];
+        Thread [] threads = new Thread[views.length];
+        for (int i = 0; i < threads.length; i++) {
+            final int n = i;
+            threads[i] = new Thread() {
+                public void run()
+                {
+                    views[n] = View.getView(cl);
+                    views[n].getAllMethods();
+                }
+            };
+            threads[i].start();
+        }
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].join();
+            assertSame(views[0], views[i]);
+        }
+        
+        View view = views[0];
+        assertEquals(1, view.getDeclaredMethods().length);
+        assertEquals("int add(int)", view.getDeclaredMethods()[0].getSignature());
+        assertSame(view.getAllMethods(), view.getAllMethods());
+        assertSame(View.getView(int.class), view.getDeclaredMethods()[0].getReturnType());
+    }
+    
+    /**
+     * Test that views of classes from a project class loader do not keep the
+     * loader from being collected once it is no longer used.
+     */
+    public void testViewsGoWithLoader() throws Exception
+    {
+        BPClassLoader loader = newLoader();
+        View view = View.getView(loader.loadClass(Sample.class.getName()));
+        view.getConstructors();
+        view.getAllMethods();
+        view.getAllFields();
+        view.getComment();
+        
+        WeakReference<ClassLoader> loaderRef = new WeakReference<ClassLoader>(loader);
+        loader = null;
+        view = null;
+        
+        for (int i = 0; i < 50 && loaderRef.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull(loaderRef.get());
+    }
+}